@@ -24,7 +24,8 @@ include $(CLEAR_VARS)
 LOCAL_MODULE_TAGS := optional
 
 LOCAL_STATIC_JAVA_LIBRARIES := android-support-v13 \
-                               android-support-v7-recyclerview
+                               android-support-v7-recyclerview \
+                               android-support-annotations
 
 LOCAL_SRC_FILES := $(call all-java-files-under, src) \
     $(call all-java-files-under, WallpaperPicker/src) \
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.gallery3d.common;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// BitmapPool keeps mutable bitmaps that are no longer used so that they can be
+// passed as BitmapFactory.Options.inBitmap, or drawn into, instead of
+// allocating a new bitmap. Bitmaps are keyed by width, height and config, and
+// the pool is bounded by the number of bytes it holds.
+//
+// Bitmaps are released by the GL thread and acquired by decoder threads, so
+// all methods are synchronized.
+public class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    // Shared by the tile renderer and the tile sources feeding it
+    private static final int SHARED_POOL_MAX_BYTES = 16 * 1024 * 1024;
+    private static final BitmapPool sSharedPool = new BitmapPool(SHARED_POOL_MAX_BYTES);
+
+    private final HashMap<Key, ArrayList<Bitmap>> mPool = new HashMap<Key, ArrayList<Bitmap>>();
+    private final Key mTempKey = new Key();
+    private final int mMaxBytes;
+    private int mBytes;
+
+    // Statistics for debugging
+    private int mCountHits;
+    private int mCountMisses;
+    private int mCountDropped;
+
+    public static BitmapPool getSharedPool() {
+        return sSharedPool;
+    }
+
+    public BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    // Returns a pooled bitmap of the given shape, or null if there is none.
+    // The content of the returned bitmap is undefined.
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        ArrayList<Bitmap> bitmaps = mPool.get(mTempKey.set(width, height, config));
+        if (bitmaps == null || bitmaps.isEmpty()) {
+            mCountMisses++;
+            return null;
+        }
+        Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+        mBytes -= bitmap.getByteCount();
+        mCountHits++;
+        return bitmap;
+    }
+
+    // Like acquire(), but allocates a new mutable bitmap if none is pooled.
+    public Bitmap acquireOrCreate(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = acquire(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    // Hands a bitmap that is no longer used to the pool. Bitmaps that cannot
+    // be reused, or do not fit in the pool, are left to the garbage collector.
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        Bitmap.Config config = bitmap.getConfig();
+        int bytes = bitmap.getByteCount();
+        if (bitmap.isRecycled() || !bitmap.isMutable() || config == null
+                || mBytes + bytes > mMaxBytes) {
+            mCountDropped++;
+            return;
+        }
+        Key key = mTempKey.set(bitmap.getWidth(), bitmap.getHeight(), config);
+        ArrayList<Bitmap> bitmaps = mPool.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayList<Bitmap>();
+            mPool.put(key.clone(), bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mBytes += bytes;
+    }
+
+    public synchronized void clear() {
+        mPool.clear();
+        mBytes = 0;
+    }
+
+    public synchronized int getByteCount() {
+        return mBytes;
+    }
+
+    public synchronized int getBitmapCount() {
+        int count = 0;
+        for (ArrayList<Bitmap> bitmaps : mPool.values()) {
+            count += bitmaps.size();
+        }
+        return count;
+    }
+
+    // The number of acquires that returned a pooled bitmap. For testing only.
+    public synchronized int getHitCount() {
+        return mCountHits;
+    }
+
+    // The number of acquires that found no pooled bitmap, which is the number
+    // of bitmaps acquireOrCreate() allocated. For testing only.
+    public synchronized int getMissCount() {
+        return mCountMisses;
+    }
+
+    // Dump statistics information and clear the counters. For debug only.
+    public synchronized void dumpStatisticsAndClear() {
+        String line = String.format("HITS:%d, MISSES:%d, DROPPED:%d, POOL_KB:%d",
+                mCountHits, mCountMisses, mCountDropped, mBytes / 1024);
+        mCountHits = 0;
+        mCountMisses = 0;
+        mCountDropped = 0;
+        Log.d(TAG, line);
+    }
+
+    private static class Key implements Cloneable {
+        int width;
+        int height;
+        Bitmap.Config config;
+
+        Key set(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + config.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) return false;
+            Key o = (Key) object;
+            return width == o.width && height == o.height && config == o.config;
+        }
+
+        @Override
+        public Key clone() {
+            try {
+                return (Key) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
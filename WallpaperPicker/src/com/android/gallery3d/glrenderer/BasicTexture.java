@@ -150,6 +150,19 @@ public abstract class BasicTexture implements Texture {
     // Returns the GL texture target for this texture (e.g. GL_TEXTURE_2D).
     abstract protected int getTarget();
 
+    // Returns the format the texture storage was allocated with (e.g. GL_RGBA),
+    // or 0 if the storage cannot be handed over to another texture when this
+    // one is unloaded.
+    protected int getStorageFormat() {
+        return 0;
+    }
+
+    // Returns the type the texture storage was allocated with (e.g.
+    // GL_UNSIGNED_BYTE). Only meaningful if getStorageFormat() is not 0.
+    protected int getStorageType() {
+        return 0;
+    }
+
     public boolean isLoaded() {
         return mState == STATE_LOADED;
     }
@@ -122,6 +122,12 @@ public interface GLCanvas {
     // BasicTexture or its descendant
     public abstract boolean unloadTexture(BasicTexture texture);
 
+    // Returns the id of a previously unloaded texture whose storage already has
+    // the given size, format and type, or -1 if there is none. The caller then
+    // only needs to upload the content. This function should only be called in
+    // the GL thread.
+    public abstract int obtainPooledTexture(int width, int height, int format, int type);
+
     // Delete the specified buffer object, similar to unloadTexture.
     public abstract void deleteBuffer(int bufferId);
 
@@ -243,11 +243,17 @@ public class GLES20Canvas implements GLCanvas {
     private final IntArray mUnboundTextures = new IntArray();
     private final IntArray mDeleteBuffers = new IntArray();
 
+    // Unloaded textures kept around so their storage can be reused
+    private static final int MAX_POOLED_TEXTURE_BYTES = 8 * 1024 * 1024;
+    private final GLTexturePool mTexturePool = new GLTexturePool(MAX_POOLED_TEXTURE_BYTES);
+
     // Keep track of statistics for debugging
     private int mCountDrawMesh = 0;
     private int mCountTextureRect = 0;
     private int mCountFillRect = 0;
     private int mCountDrawLine = 0;
+    private int mCountTextureAlloc = 0;
+    private int mCountTextureReuse = 0;
 
     // Buffer for framebuffer IDs -- we keep track so we can switch the attached
     // texture.
@@ -786,13 +792,30 @@ public class GLES20Canvas implements GLCanvas {
     public boolean unloadTexture(BasicTexture texture) {
         boolean unload = texture.isLoaded();
         if (unload) {
-            synchronized (mUnboundTextures) {
-                mUnboundTextures.add(texture.getId());
+            int format = texture.getStorageFormat();
+            if (format == 0 || !mTexturePool.release(texture.getId(),
+                    texture.getTextureWidth(), texture.getTextureHeight(),
+                    format, texture.getStorageType())) {
+                synchronized (mUnboundTextures) {
+                    mUnboundTextures.add(texture.getId());
+                }
             }
         }
         return unload;
     }
 
+    @Override
+    public int obtainPooledTexture(int width, int height, int format, int type) {
+        int id = mTexturePool.acquire(width, height, format, type);
+        if (id != -1) {
+            mCountTextureReuse++;
+        } else {
+            // The caller allocates a new texture
+            mCountTextureAlloc++;
+        }
+        return id;
+    }
+
     @Override
     public void deleteBuffer(int bufferId) {
         synchronized (mUnboundTextures) {
@@ -819,12 +842,16 @@ public class GLES20Canvas implements GLCanvas {
 
     @Override
     public void dumpStatisticsAndClear() {
-        String line = String.format("MESH:%d, TEX_RECT:%d, FILL_RECT:%d, LINE:%d", mCountDrawMesh,
-                mCountTextureRect, mCountFillRect, mCountDrawLine);
+        String line = String.format("MESH:%d, TEX_RECT:%d, FILL_RECT:%d, LINE:%d, "
+                + "TEX_ALLOC:%d, TEX_REUSE:%d, POOL_KB:%d", mCountDrawMesh,
+                mCountTextureRect, mCountFillRect, mCountDrawLine,
+                mCountTextureAlloc, mCountTextureReuse, mTexturePool.getByteCount() / 1024);
         mCountDrawMesh = 0;
         mCountTextureRect = 0;
         mCountFillRect = 0;
         mCountDrawLine = 0;
+        mCountTextureAlloc = 0;
+        mCountTextureReuse = 0;
         Log.d(TAG, line);
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.gallery3d.glrenderer;
+
+import android.opengl.GLES20;
+import android.util.LongSparseArray;
+
+import com.android.gallery3d.util.IntArray;
+
+// GLTexturePool keeps the ids of unloaded textures whose storage has already
+// been allocated with glTexImage2D, keyed by size, format and type. A texture
+// of the same shape can take over such an id and only upload its content with
+// glTexSubImage2D, which avoids reallocating GPU memory for every tile.
+//
+// The pool is bounded by the estimated number of bytes it holds. Textures may
+// be released from any thread (e.g. the finalizer), so all methods are
+// synchronized.
+class GLTexturePool {
+    private final LongSparseArray<IntArray> mFreeIds = new LongSparseArray<IntArray>();
+    private final int mMaxBytes;
+    private int mBytes;
+
+    GLTexturePool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    // Returns a pooled texture id of the given shape, or -1 if there is none.
+    synchronized int acquire(int width, int height, int format, int type) {
+        IntArray ids = mFreeIds.get(makeKey(width, height, format, type));
+        if (ids == null || ids.size() == 0) {
+            return -1;
+        }
+        mBytes -= getByteCount(width, height, format, type);
+        return ids.removeLast();
+    }
+
+    // Returns false if the texture cannot be pooled and should be deleted.
+    synchronized boolean release(int id, int width, int height, int format, int type) {
+        int bytes = getByteCount(width, height, format, type);
+        if (bytes <= 0 || mBytes + bytes > mMaxBytes) {
+            return false;
+        }
+        long key = makeKey(width, height, format, type);
+        IntArray ids = mFreeIds.get(key);
+        if (ids == null) {
+            ids = new IntArray();
+            mFreeIds.put(key, ids);
+        }
+        ids.add(id);
+        mBytes += bytes;
+        return true;
+    }
+
+    synchronized int getByteCount() {
+        return mBytes;
+    }
+
+    private static long makeKey(int width, int height, int format, int type) {
+        long result = width;
+        result = (result << 16) | height;
+        result = (result << 16) | (format & 0xffff);
+        result = (result << 16) | (type & 0xffff);
+        return result;
+    }
+
+    private static int getByteCount(int width, int height, int format, int type) {
+        int bytesPerPixel;
+        switch (type) {
+            case GLES20.GL_UNSIGNED_SHORT_5_6_5:
+            case GLES20.GL_UNSIGNED_SHORT_4_4_4_4:
+            case GLES20.GL_UNSIGNED_SHORT_5_5_5_1:
+                bytesPerPixel = 2;
+                break;
+            case GLES20.GL_UNSIGNED_BYTE:
+                switch (format) {
+                    case GLES20.GL_RGBA:
+                        bytesPerPixel = 4;
+                        break;
+                    case GLES20.GL_RGB:
+                        bytesPerPixel = 3;
+                        break;
+                    case GLES20.GL_LUMINANCE_ALPHA:
+                        bytesPerPixel = 2;
+                        break;
+                    case GLES20.GL_ALPHA:
+                    case GLES20.GL_LUMINANCE:
+                        bytesPerPixel = 1;
+                        break;
+                    default:
+                        return 0;
+                }
+                break;
+            default:
+                return 0;
+        }
+        return width * height * bytesPerPixel;
+    }
+}
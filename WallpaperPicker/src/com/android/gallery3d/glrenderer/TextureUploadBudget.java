@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.gallery3d.glrenderer;
+
+import android.util.Log;
+
+// TextureUploadBudget limits how much texture data is uploaded in one frame.
+// Uploads are allowed while both the time spent uploading and the number of
+// bytes uploaded stay within their budgets. The first upload of a frame is
+// always allowed so that progress is guaranteed.
+//
+// It also keeps counters of the uploads for debugging. All methods should be
+// called from the GL thread.
+public class TextureUploadBudget {
+    private static final String TAG = "TextureUploadBudget";
+
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 4000000L; // 4ms
+    public static final int DEFAULT_BYTE_BUDGET = 2 * 1024 * 1024;
+
+    private final long mTimeBudgetNanos;
+    private final int mByteBudget;
+
+    // State of the current frame
+    private int mFrameUploads;
+    private int mFrameBytes;
+    private long mFrameNanos;
+
+    // Statistics for debugging
+    private int mCountFrames;
+    private int mCountUploads;
+    private int mCountDeferred;
+    private int mMaxFrameUploads;
+    private long mCountBytes;
+    private long mCountNanos;
+    private long mMaxFrameNanos;
+
+    public TextureUploadBudget() {
+        this(DEFAULT_TIME_BUDGET_NANOS, DEFAULT_BYTE_BUDGET);
+    }
+
+    public TextureUploadBudget(long timeBudgetNanos, int byteBudget) {
+        mTimeBudgetNanos = timeBudgetNanos;
+        mByteBudget = byteBudget;
+    }
+
+    // Called at the start of each frame, before any uploads.
+    public void startFrame() {
+        if (mFrameUploads > 0) {
+            mMaxFrameUploads = Math.max(mMaxFrameUploads, mFrameUploads);
+            mMaxFrameNanos = Math.max(mMaxFrameNanos, mFrameNanos);
+        }
+        mCountFrames++;
+        mFrameUploads = 0;
+        mFrameBytes = 0;
+        mFrameNanos = 0;
+    }
+
+    // Returns whether an upload of the given size fits in the current frame.
+    // If it does not, the caller should defer it to the next frame.
+    public boolean canUpload(int bytes) {
+        if (mFrameUploads == 0
+                || (mFrameNanos < mTimeBudgetNanos && mFrameBytes + bytes <= mByteBudget)) {
+            return true;
+        }
+        mCountDeferred++;
+        return false;
+    }
+
+    public void recordUpload(int bytes, long durationNanos) {
+        mFrameUploads++;
+        mFrameBytes += bytes;
+        mFrameNanos += durationNanos;
+
+        mCountUploads++;
+        mCountBytes += bytes;
+        mCountNanos += durationNanos;
+    }
+
+    public int getUploadCount() {
+        return mCountUploads;
+    }
+
+    public long getUploadedBytes() {
+        return mCountBytes;
+    }
+
+    public long getUploadNanos() {
+        return mCountNanos;
+    }
+
+    // Dump statistics information and clear the counters. For debug only.
+    public void dumpStatisticsAndClear() {
+        String line = String.format("FRAMES:%d, UPLOADS:%d, DEFERRED:%d, MAX_UPLOADS/FRAME:%d, "
+                + "KB:%d, UPLOAD_MS:%.2f, MAX_MS/FRAME:%.2f",
+                mCountFrames, mCountUploads, mCountDeferred, mMaxFrameUploads,
+                mCountBytes / 1024, mCountNanos / 1000000f, mMaxFrameNanos / 1000000f);
+        mCountFrames = 0;
+        mCountUploads = 0;
+        mCountDeferred = 0;
+        mMaxFrameUploads = 0;
+        mCountBytes = 0;
+        mCountNanos = 0;
+        mMaxFrameNanos = 0;
+        Log.d(TAG, line);
+    }
+}
@@ -62,6 +62,10 @@ public abstract class UploadedTexture extends BasicTexture {
     protected Bitmap mBitmap;
     private int mBorder;
 
+    // The format and type of the GL storage, valid once the texture is loaded
+    private int mStorageFormat;
+    private int mStorageType;
+
     protected UploadedTexture() {
         this(false);
     }
@@ -221,18 +225,32 @@ public abstract class UploadedTexture extends BasicTexture {
 
                 Assert.assertTrue(bWidth <= texWidth && bHeight <= texHeight);
 
-                // Upload the bitmap to a new texture.
-                mId = canvas.getGLId().generateTexture();
-                canvas.setTextureParameters(this);
+                int format = GLUtils.getInternalFormat(bitmap);
+                int type = GLUtils.getType(bitmap);
+
+                // Upload the bitmap to a pooled texture of the same shape if
+                // there is one, or to a new texture otherwise.
+                mId = canvas.obtainPooledTexture(texWidth, texHeight, format, type);
+                boolean pooled = mId != -1;
+                if (!pooled) {
+                    mId = canvas.getGLId().generateTexture();
+                    canvas.setTextureParameters(this);
+                }
+                mStorageFormat = format;
+                mStorageType = type;
 
                 if (bWidth == texWidth && bHeight == texHeight) {
-                    canvas.initializeTexture(this, bitmap);
+                    if (pooled) {
+                        canvas.texSubImage2D(this, 0, 0, bitmap, format, type);
+                    } else {
+                        canvas.initializeTexture(this, bitmap);
+                    }
                 } else {
-                    int format = GLUtils.getInternalFormat(bitmap);
-                    int type = GLUtils.getType(bitmap);
                     Config config = bitmap.getConfig();
 
-                    canvas.initializeTextureSize(this, format, type);
+                    if (!pooled) {
+                        canvas.initializeTextureSize(this, format, type);
+                    }
                     canvas.texSubImage2D(this, mBorder, mBorder, bitmap, format, type);
 
                     if (mBorder > 0) {
@@ -281,6 +299,16 @@ public abstract class UploadedTexture extends BasicTexture {
         return GL11.GL_TEXTURE_2D;
     }
 
+    @Override
+    protected int getStorageFormat() {
+        return mStorageFormat;
+    }
+
+    @Override
+    protected int getStorageType() {
+        return mStorageType;
+    }
+
     public void setOpaque(boolean isOpaque) {
         mOpaque = isOpaque;
     }
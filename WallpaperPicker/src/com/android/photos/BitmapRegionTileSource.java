@@ -31,6 +31,7 @@ import android.os.Build;
 import android.os.Build.VERSION_CODES;
 import android.util.Log;
 
+import com.android.gallery3d.common.BitmapPool;
 import com.android.gallery3d.common.BitmapUtils;
 import com.android.gallery3d.common.Utils;
 import com.android.gallery3d.exif.ExifInterface;
@@ -150,6 +151,9 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
 
     private static final boolean REUSE_BITMAP =
             Build.VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN;
+    // Before KitKat, inBitmap only works for full decodes with inSampleSize 1
+    private static final boolean REUSE_PREVIEW_BITMAP =
+            Build.VERSION.SDK_INT >= VERSION_CODES.KITKAT;
     private static final int GL_SIZE_LIMIT = 2048;
     // This must be no larger than half the size of the GL_SIZE_LIMIT
     // due to decodePreview being allowed to be up to 2x the size of the target
@@ -189,7 +193,21 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
                     float scale = (float) previewSize / Math.max(width, height);
                     opts.inSampleSize = BitmapUtils.computeSampleSizeLarger(scale);
                     opts.inJustDecodeBounds = false;
-                    mPreview = loadPreviewBitmap(opts);
+                    opts.inMutable = true;
+                    if (REUSE_PREVIEW_BITMAP) {
+                        // Decoders round the sampled size down
+                        opts.inBitmap = BitmapPool.getSharedPool().acquire(
+                                width / opts.inSampleSize, height / opts.inSampleSize,
+                                Bitmap.Config.ARGB_8888);
+                    }
+                    try {
+                        mPreview = loadPreviewBitmap(opts);
+                    } catch (IllegalArgumentException e) {
+                        // The pooled bitmap did not match the decoded size
+                        BitmapPool.getSharedPool().release(opts.inBitmap);
+                        opts.inBitmap = null;
+                        mPreview = loadPreviewBitmap(opts);
+                    }
                 }
                 mState = State.LOADED;
                 return true;
@@ -375,6 +393,7 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
     private Rect mOverlapRegion = new Rect();
     private BitmapFactory.Options mOptions;
     private Canvas mCanvas;
+    private final BitmapPool mBitmapPool = BitmapPool.getSharedPool();
 
     public BitmapRegionTileSource(Context context, BitmapSource source) {
         mTileSize = TiledImageRenderer.suggestedTileSize(context);
@@ -443,7 +462,7 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
         mWantRegion.set(x, y, x + t, y + t);
 
         if (bitmap == null) {
-            bitmap = Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+            bitmap = mBitmapPool.acquireOrCreate(tileSize, tileSize, Bitmap.Config.ARGB_8888);
         }
 
         mOptions.inSampleSize = (1 << level);
@@ -453,6 +472,7 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
             bitmap = mDecoder.decodeRegion(mWantRegion, mOptions);
         } finally {
             if (mOptions.inBitmap != bitmap && mOptions.inBitmap != null) {
+                mBitmapPool.release(mOptions.inBitmap);
                 mOptions.inBitmap = null;
             }
         }
@@ -470,19 +490,24 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
         mWantRegion.set(x, y, x + t, y + t);
 
         mOverlapRegion.set(0, 0, mWidth, mHeight);
+        if (!mOverlapRegion.intersect(mWantRegion)) {
+            return null;
+        }
 
         mOptions.inSampleSize = (1 << level);
         Bitmap bitmap = mDecoder.decodeRegion(mOverlapRegion, mOptions);
 
         if (bitmap == null) {
             Log.w(TAG, "fail in decoding region");
+            return null;
         }
 
         if (mWantRegion.equals(mOverlapRegion)) {
             return bitmap;
         }
 
-        Bitmap result = Bitmap.createBitmap(tileSize, tileSize, Config.ARGB_8888);
+        Bitmap result = mBitmapPool.acquireOrCreate(tileSize, tileSize, Config.ARGB_8888);
+        result.eraseColor(0);
         if (mCanvas == null) {
             mCanvas = new Canvas();
         }
@@ -491,6 +516,7 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
                 (mOverlapRegion.left - mWantRegion.left) >> level,
                 (mOverlapRegion.top - mWantRegion.top) >> level, null);
         mCanvas.setBitmap(null);
+        mBitmapPool.release(bitmap);
         return result;
     }
 
@@ -509,17 +535,40 @@ public class BitmapRegionTileSource implements TiledImageRenderer.TileSource {
         float scale = (float) targetSize / (float) (Math.max(result.getWidth(), result.getHeight()));
 
         if (scale <= 0.5) {
-            result = BitmapUtils.resizeBitmapByScale(result, scale, true);
+            Bitmap resized = drawIntoPooledBitmap(result,
+                    Math.round(result.getWidth() * scale),
+                    Math.round(result.getHeight() * scale));
+            // The full preview is not needed anymore
+            source.mPreview = null;
+            mBitmapPool.release(result);
+            result = resized;
         }
         return ensureGLCompatibleBitmap(result);
     }
 
-    private static Bitmap ensureGLCompatibleBitmap(Bitmap bitmap) {
+    private Bitmap ensureGLCompatibleBitmap(Bitmap bitmap) {
         if (bitmap == null || bitmap.getConfig() != null) {
             return bitmap;
         }
-        Bitmap newBitmap = bitmap.copy(Config.ARGB_8888, false);
+        Bitmap newBitmap = drawIntoPooledBitmap(bitmap, bitmap.getWidth(), bitmap.getHeight());
         bitmap.recycle();
         return newBitmap;
     }
+
+    // Draws the bitmap scaled to the given size into an ARGB_8888 bitmap taken
+    // from the pool if possible
+    private Bitmap drawIntoPooledBitmap(Bitmap bitmap, int width, int height) {
+        Bitmap target = mBitmapPool.acquireOrCreate(width, height, Config.ARGB_8888);
+        target.eraseColor(0);
+        if (mCanvas == null) {
+            mCanvas = new Canvas();
+        }
+        mCanvas.setBitmap(target);
+        mCanvas.save();
+        mCanvas.scale((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+        mCanvas.drawBitmap(bitmap, 0, 0, new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG));
+        mCanvas.restore();
+        mCanvas.setBitmap(null);
+        return target;
+    }
 }
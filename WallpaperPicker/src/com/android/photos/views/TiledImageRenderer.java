@@ -23,14 +23,14 @@ import android.graphics.RectF;
 import android.support.v4.util.LongSparseArray;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.Pools.Pool;
-import android.util.Pools.SynchronizedPool;
 import android.view.View;
 import android.view.WindowManager;
 
+import com.android.gallery3d.common.BitmapPool;
 import com.android.gallery3d.common.Utils;
 import com.android.gallery3d.glrenderer.BasicTexture;
 import com.android.gallery3d.glrenderer.GLCanvas;
+import com.android.gallery3d.glrenderer.TextureUploadBudget;
 import com.android.gallery3d.glrenderer.UploadedTexture;
 
 /**
@@ -40,7 +40,6 @@ public class TiledImageRenderer {
     public static final int SIZE_UNKNOWN = -1;
 
     private static final String TAG = "TiledImageRenderer";
-    private static final int UPLOAD_LIMIT = 1;
 
     /*
      *  This is the tile state in the CPU side.
@@ -67,7 +66,8 @@ public class TiledImageRenderer {
     private static final int STATE_RECYCLING = 0x20;
     private static final int STATE_RECYCLED = 0x40;
 
-    private static Pool<Bitmap> sTilePool = new SynchronizedPool<Bitmap>(64);
+    // Decoded tiles are handed back to this pool once uploaded or recycled
+    private static final BitmapPool sTilePool = BitmapPool.getSharedPool();
 
     // TILE_SIZE must be 2^N
     private int mTileSize;
@@ -87,7 +87,8 @@ public class TiledImageRenderer {
     private int mOffsetX;
     private int mOffsetY;
 
-    private int mUploadQuota;
+    // Limits the time and bytes spent uploading decoded tiles per frame
+    private final TextureUploadBudget mUploadBudget = new TextureUploadBudget();
     private boolean mRenderComplete;
 
     private final RectF mSourceRect = new RectF();
@@ -407,14 +408,14 @@ public class TiledImageRenderer {
         mActiveTiles.clear();
         mTileRange.set(0, 0, 0, 0);
 
-        while (sTilePool.acquire() != null) {}
+        sTilePool.clear();
     }
 
     public boolean draw(GLCanvas canvas) {
         layoutTiles();
+        mUploadBudget.startFrame();
         uploadTiles(canvas);
 
-        mUploadQuota = UPLOAD_LIMIT;
         mRenderComplete = true;
 
         int level = mLevel;
@@ -568,9 +569,8 @@ public class TiledImageRenderer {
     }
 
     private void uploadTiles(GLCanvas canvas) {
-        int quota = UPLOAD_LIMIT;
         Tile tile = null;
-        while (quota > 0) {
+        while (true) {
             synchronized (mQueueLock) {
                 tile = mUploadQueue.pop();
             }
@@ -579,8 +579,13 @@ public class TiledImageRenderer {
             }
             if (!tile.isContentValid()) {
                 if (tile.mTileState == STATE_DECODED) {
-                    tile.updateContent(canvas);
-                    --quota;
+                    if (!uploadTile(tile, canvas)) {
+                        // Out of budget; try again on the next frame
+                        synchronized (mQueueLock) {
+                            mUploadQueue.push(tile);
+                        }
+                        break;
+                    }
                 } else {
                     Log.w(TAG, "Tile in upload queue has invalid state: " + tile.mTileState);
                 }
@@ -591,6 +596,25 @@ public class TiledImageRenderer {
         }
     }
 
+    // Uploads a decoded tile if it fits in the budget of the current frame.
+    private boolean uploadTile(Tile tile, GLCanvas canvas) {
+        Bitmap decoded = tile.mDecodedTile;
+        int bytes = decoded != null ? decoded.getByteCount() : 0;
+        if (!mUploadBudget.canUpload(bytes)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        tile.updateContent(canvas);
+        mUploadBudget.recordUpload(bytes, System.nanoTime() - start);
+        return true;
+    }
+
+    // Dump upload statistics and clear the counters. For debug only.
+    public void dumpStatisticsAndClear() {
+        mUploadBudget.dumpStatisticsAndClear();
+        sTilePool.dumpStatisticsAndClear();
+    }
+
     // Draw the tile to a square at canvas that locates at (x, y) and
     // has a side length of length.
     private void drawTile(GLCanvas canvas,
@@ -604,10 +628,7 @@ public class TiledImageRenderer {
         if (tile != null) {
             if (!tile.isContentValid()) {
                 if (tile.mTileState == STATE_DECODED) {
-                    if (mUploadQuota > 0) {
-                        --mUploadQuota;
-                        tile.updateContent(canvas);
-                    } else {
+                    if (!uploadTile(tile, canvas)) {
                         mRenderComplete = false;
                     }
                 } else if (tile.mTileState != STATE_DECODE_FAIL){
@@ -683,10 +704,7 @@ public class TiledImageRenderer {
             // Get a tile from the original image. The tile is down-scaled
             // by (1 << mTilelevel) from a region in the original image.
             try {
-                Bitmap reuse = sTilePool.acquire();
-                if (reuse != null && reuse.getWidth() != mTileSize) {
-                    reuse = null;
-                }
+                Bitmap reuse = sTilePool.acquire(mTileSize, mTileSize, Bitmap.Config.ARGB_8888);
                 mDecodedTile = mModel.getTile(mTileLevel, mX, mY, reuse);
             } catch (Throwable t) {
                 Log.w(TAG, "fail to decode tile", t);
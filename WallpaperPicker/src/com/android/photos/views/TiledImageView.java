@@ -29,7 +29,9 @@ import android.graphics.RectF;
 import android.opengl.GLSurfaceView;
 import android.opengl.GLSurfaceView.Renderer;
 import android.os.Build;
+import android.os.Debug;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.Choreographer;
 import android.view.Choreographer.FrameCallback;
 import android.view.View;
@@ -47,12 +49,15 @@ import javax.microedition.khronos.opengles.GL10;
  * or {@link BlockingGLTextureView}.
  */
 public class TiledImageView extends FrameLayout {
+    private static final String TAG = "TiledImageView";
 
     private static final boolean USE_TEXTURE_VIEW = false;
     private static final boolean IS_SUPPORTED =
             Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
     private static final boolean USE_CHOREOGRAPHER =
             Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    private static final boolean DEBUG_STATS = false;
+    private static final int STATS_INTERVAL_FRAMES = 120;
 
     private BlockingGLTextureView mTextureView;
     private GLSurfaceView mGLSurfaceView;
@@ -293,9 +298,14 @@ public class TiledImageView extends FrameLayout {
     private class TileRenderer implements Renderer {
 
         private GLES20Canvas mCanvas;
+        private int mFrameCount;
 
         @Override
         public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+            if (DEBUG_STATS) {
+                // Needed for the GC counts logged with the statistics
+                Debug.startAllocCounting();
+            }
             mCanvas = new GLES20Canvas();
             BasicTexture.invalidateAllTextures();
             mRenderer.image.setModel(mRenderer.source, mRenderer.rotation);
@@ -318,6 +328,14 @@ public class TiledImageView extends FrameLayout {
                         mRenderer.scale);
             }
             boolean complete = mRenderer.image.draw(mCanvas);
+            mCanvas.deleteRecycledResources();
+            if (DEBUG_STATS && ++mFrameCount % STATS_INTERVAL_FRAMES == 0) {
+                mCanvas.dumpStatisticsAndClear();
+                mRenderer.image.dumpStatisticsAndClear();
+                Log.d(TAG, String.format("ALLOCS:%d, GCS:%d",
+                        Debug.getGlobalAllocCount(), Debug.getGlobalGcInvocationCount()));
+                Debug.resetAllCounts();
+            }
             if (complete && readyCallback != null) {
                 synchronized (mLock) {
                     // Make sure we don't trample on a newly set callback/source
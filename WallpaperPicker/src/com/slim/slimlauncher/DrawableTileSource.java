@@ -22,6 +22,7 @@ import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 
+import com.android.gallery3d.common.BitmapPool;
 import com.android.gallery3d.glrenderer.BasicTexture;
 import com.android.gallery3d.glrenderer.BitmapTexture;
 import com.android.photos.views.TiledImageRenderer;
@@ -37,6 +38,10 @@ public class DrawableTileSource implements TiledImageRenderer.TileSource {
     private Drawable mDrawable;
     private BitmapTexture mPreview;
 
+    // For use only by getTile
+    private final Canvas mCanvas = new Canvas();
+    private final Rect mBounds = new Rect();
+
     public DrawableTileSource(Context context, Drawable d, int previewSize) {
         mTileSize = TiledImageRenderer.suggestedTileSize(context);
         mDrawable = d;
@@ -89,14 +94,17 @@ public class DrawableTileSource implements TiledImageRenderer.TileSource {
     public Bitmap getTile(int level, int x, int y, Bitmap bitmap) {
         int tileSize = getTileSize();
         if (bitmap == null) {
-            bitmap = Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+            bitmap = BitmapPool.getSharedPool().acquireOrCreate(
+                    tileSize, tileSize, Bitmap.Config.ARGB_8888);
         }
-        Canvas c = new Canvas(bitmap);
-        Rect bounds = new Rect(0, 0, getImageWidth(), getImageHeight());
-        bounds.offset(-x, -y);
-        mDrawable.setBounds(bounds);
-        mDrawable.draw(c);
-        c.setBitmap(null);
+        // Reused bitmaps hold an earlier tile, which the drawable may not cover at the edges
+        bitmap.eraseColor(0);
+        mCanvas.setBitmap(bitmap);
+        mBounds.set(0, 0, getImageWidth(), getImageHeight());
+        mBounds.offset(-x, -y);
+        mDrawable.setBounds(mBounds);
+        mDrawable.draw(mCanvas);
+        mCanvas.setBitmap(null);
         return bitmap;
     }
 }
@@ -37,11 +37,9 @@ import android.graphics.Point;
 import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LevelListDrawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -74,7 +72,6 @@ import com.android.photos.BitmapRegionTileSource;
 import com.android.photos.BitmapRegionTileSource.BitmapSource;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -102,6 +99,7 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
 
     ArrayList<Uri> mTempWallpaperTiles = new ArrayList<Uri>();
     private SavedWallpaperImages mSavedImages;
+    private WallpaperThumbnailLoader mThumbnailLoader;
     private WallpaperInfo mLiveWallpaperInfoOnPickerLaunch;
     private int mSelectedIndex = -1;
     private WallpaperInfo mLastClickedLiveWallpaperInfo;
@@ -109,10 +107,22 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
     public static abstract class WallpaperTileInfo {
         protected View mView;
         public Drawable mThumb;
+        protected WallpaperThumbnailLoader.ThumbnailRequest mThumbRequest;
+        protected boolean mRemoveOnThumbFailure;
 
         public void setView(View v) {
             mView = v;
         }
+        /**
+         * Sets the request used to generate {@link #mThumb} in the background.
+         * @param removeOnFailure whether the tile should be removed from the strip if no
+         *        thumbnail could be generated
+         */
+        public void setThumbnailRequest(WallpaperThumbnailLoader.ThumbnailRequest request,
+                boolean removeOnFailure) {
+            mThumbRequest = request;
+            mRemoveOnThumbFailure = removeOnFailure;
+        }
         public void onClick(WallpaperPickerActivity a) {}
         public void onSave(WallpaperPickerActivity a) {}
         public void onDelete(WallpaperPickerActivity a) {}
@@ -202,6 +212,20 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
             mFile = target;
             mThumb = thumb;
         }
+        public FileWallpaperInfo(File target, final File thumbnail) {
+            mFile = target;
+            setThumbnailRequest(new WallpaperThumbnailLoader.ThumbnailRequest() {
+                @Override
+                public String getCacheKey() {
+                    // Already a thumbnail on disk
+                    return null;
+                }
+                @Override
+                public Bitmap createThumbnail() {
+                    return BitmapFactory.decodeFile(thumbnail.getAbsolutePath());
+                }
+            }, false);
+        }
         @Override
         public void onClick(WallpaperPickerActivity a) {
             BitmapRegionTileSource.UriBitmapSource bitmapSource =
@@ -231,6 +255,21 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
             mResId = resId;
             mThumb = thumb;
         }
+        public ResourceWallpaperInfo(final Resources res, int resId, final int thumbResId) {
+            mResources = res;
+            mResId = resId;
+            setThumbnailRequest(new WallpaperThumbnailLoader.ThumbnailRequest() {
+                @Override
+                public String getCacheKey() {
+                    // Bundled thumbnails decode as fast as a cached copy would
+                    return null;
+                }
+                @Override
+                public Bitmap createThumbnail() {
+                    return BitmapFactory.decodeResource(res, thumbResId);
+                }
+            }, false);
+        }
         @Override
         public void onClick(WallpaperPickerActivity a) {
             BitmapRegionTileSource.ResourceBitmapSource bitmapSource =
@@ -269,6 +308,9 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
         public DefaultWallpaperInfo(Drawable thumb) {
             mThumb = thumb;
         }
+        public DefaultWallpaperInfo(WallpaperThumbnailLoader.ThumbnailRequest thumbRequest) {
+            setThumbnailRequest(thumbRequest, true);
+        }
         @Override
         public void onClick(WallpaperPickerActivity a) {
             CropView c = a.getCropView();
@@ -457,6 +499,9 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
             }
         };
 
+        // Thumbnails are generated in the background and bound as they complete
+        mThumbnailLoader = new WallpaperThumbnailLoader(this);
+
         // Populate the built-in wallpapers
         ArrayList<WallpaperTileInfo> wallpapers = findBundledWallpapers();
         mWallpapersView = (LinearLayout) findViewById(R.id.wallpaper_list);
@@ -496,15 +541,29 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
         masterWallpaperList.addView(pickImageTile, 0);
 
         // Make its background the last photo taken on external storage
-        Bitmap lastPhoto = getThumbnailOfLastPhoto();
-        if (lastPhoto != null) {
-            ImageView galleryThumbnailBg =
-                    (ImageView) pickImageTile.findViewById(R.id.wallpaper_image);
-            galleryThumbnailBg.setImageBitmap(getThumbnailOfLastPhoto());
-            int colorOverlay = getResources().getColor(R.color.wallpaper_picker_translucent_gray);
-            galleryThumbnailBg.setColorFilter(colorOverlay, PorterDuff.Mode.SRC_ATOP);
-
-        }
+        final ImageView galleryThumbnailBg =
+                (ImageView) pickImageTile.findViewById(R.id.wallpaper_image);
+        mThumbnailLoader.load(new WallpaperThumbnailLoader.ThumbnailRequest() {
+            @Override
+            public String getCacheKey() {
+                // MediaStore already caches its thumbnails
+                return null;
+            }
+            @Override
+            public Bitmap createThumbnail() {
+                return getThumbnailOfLastPhoto();
+            }
+        }, new WallpaperThumbnailLoader.Callback() {
+            @Override
+            public void onThumbnailLoaded(Bitmap lastPhoto) {
+                if (lastPhoto != null) {
+                    galleryThumbnailBg.setImageBitmap(lastPhoto);
+                    int colorOverlay =
+                            getResources().getColor(R.color.wallpaper_picker_translucent_gray);
+                    galleryThumbnailBg.setColorFilter(colorOverlay, PorterDuff.Mode.SRC_ATOP);
+                }
+            }
+        });
 
         PickImageInfo pickImageInfo = new PickImageInfo();
         pickImageTile.setTag(pickImageInfo);
@@ -700,6 +759,14 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
         return thumb;
     }
 
+    @Override
+    protected void onDestroy() {
+        if (mThumbnailLoader != null) {
+            mThumbnailLoader.destroy();
+        }
+        super.onDestroy();
+    }
+
     protected void onStop() {
         super.onStop();
         mWallpaperStrip = findViewById(R.id.wallpaper_strip);
@@ -734,9 +801,40 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
                 addLongPressHandler(thumbnail);
             }
             thumbnail.setOnClickListener(mThumbnailOnClickListener);
+            loadTileThumbnail(info, thumbnail);
         }
     }
 
+    private void loadTileThumbnail(final WallpaperTileInfo info, final View tile) {
+        if (info.mThumbRequest == null) {
+            return;
+        }
+        final ImageView image = (ImageView) tile.findViewById(R.id.wallpaper_image);
+        mThumbnailLoader.load(info.mThumbRequest, new WallpaperThumbnailLoader.Callback() {
+            @Override
+            public void onThumbnailLoaded(Bitmap thumb) {
+                if (thumb != null) {
+                    image.setImageBitmap(thumb);
+                    info.mThumb = image.getDrawable();
+                    info.mThumb.setDither(true);
+                    tile.setVisibility(View.VISIBLE);
+                } else if (info.mRemoveOnThumbFailure) {
+                    ViewGroup parent = (ViewGroup) tile.getParent();
+                    if (parent != null) {
+                        if (tile == mSelectedTile) {
+                            mSelectedTile = null;
+                            mSelectedIndex = -1;
+                        }
+                        parent.removeView(tile);
+                        updateTileIndices();
+                    }
+                } else {
+                    Log.e(TAG, "Error loading thumbnail for wallpaper tile " + tile);
+                }
+            }
+        });
+    }
+
     private void updateTileIndices() {
         LinearLayout masterWallpaperList = (LinearLayout) findViewById(R.id.master_wallpaper_list);
         final int childCount = masterWallpaperList.getChildCount();
@@ -833,14 +931,27 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
         mWallpapersView.addView(pickedImageThumbnail, 0);
 
         // Load the thumbnail
-        final ImageView image = (ImageView) pickedImageThumbnail.findViewById(R.id.wallpaper_image);
         final Point defaultSize = getDefaultThumbnailSize(this.getResources());
         final Context context = this;
-        new AsyncTask<Void, Bitmap, Bitmap>() {
-            protected Bitmap doInBackground(Void...args) {
+        UriWallpaperInfo info = new UriWallpaperInfo(uri);
+        info.setThumbnailRequest(new WallpaperThumbnailLoader.ThumbnailRequest() {
+            private int mRotation;
+
+            @Override
+            public String getCacheKey() {
                 try {
-                    int rotation = WallpaperCropActivity.getRotationFromExif(context, uri);
-                    return createThumbnail(defaultSize, context, uri, null, null, 0, rotation, false);
+                    mRotation = WallpaperCropActivity.getRotationFromExif(context, uri);
+                } catch (SecurityException securityException) {
+                    // Reported by createThumbnail below
+                    return null;
+                }
+                return getThumbnailCacheKey(uri.toString(), defaultSize, mRotation);
+            }
+            @Override
+            public Bitmap createThumbnail() {
+                try {
+                    return WallpaperPickerActivity.createThumbnail(
+                            defaultSize, context, uri, null, null, 0, mRotation, false);
                 } catch (SecurityException securityException) {
                     if (isDestroyed()) {
                         // Temporarily granted permissions are revoked when the activity
@@ -848,29 +959,17 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
                         // Even though {@link #isDestroyed} might also return true in different
                         // situations where the configuration changes, we are fine with
                         // catching these cases here as well.
-                        cancel(false);
+                        return null;
                     } else {
                         // otherwise it had a different cause and we throw it further
                         throw securityException;
                     }
-                    return null;
-                }
-            }
-            protected void onPostExecute(Bitmap thumb) {
-                if (!isCancelled() && thumb != null) {
-                    image.setImageBitmap(thumb);
-                    Drawable thumbDrawable = image.getDrawable();
-                    thumbDrawable.setDither(true);
-                    pickedImageThumbnail.setVisibility(View.VISIBLE);
-                } else {
-                    Log.e(TAG, "Error loading thumbnail for uri=" + uri);
                 }
             }
-        }.execute();
-
-        UriWallpaperInfo info = new UriWallpaperInfo(uri);
+        }, false);
         pickedImageThumbnail.setTag(info);
         info.setView(pickedImageThumbnail);
+        loadTileThumbnail(info, pickedImageThumbnail);
         addLongPressHandler(pickedImageThumbnail);
         updateTileIndices();
         pickedImageThumbnail.setOnClickListener(mThumbnailOnClickListener);
@@ -950,9 +1049,8 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
                     }
 
                     File thumbnail = new File(systemDir, name + "_small" + extension);
-                    Bitmap thumb = BitmapFactory.decodeFile(thumbnail.getAbsolutePath());
-                    if (thumb != null) {
-                        bundled.add(new FileWallpaperInfo(file, new BitmapDrawable(thumb)));
+                    if (thumbnail.isFile()) {
+                        bundled.add(new FileWallpaperInfo(file, thumbnail));
                     }
                 }
             }
@@ -980,92 +1078,80 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
         return bundled;
     }
 
-    private boolean writeImageToFileAsJpeg(File f, Bitmap b) {
-        try {
-            f.createNewFile();
-            FileOutputStream thumbFileStream =
-                    openFileOutput(f.getName(), Context.MODE_PRIVATE);
-            b.compress(Bitmap.CompressFormat.JPEG, 95, thumbFileStream);
-            thumbFileStream.close();
-            return true;
-        } catch (IOException e) {
-            Log.e(TAG, "Error while writing bitmap to file " + e);
-            f.delete();
-        }
-        return false;
-    }
-
-    private File getDefaultThumbFile() {
-        return new File(getFilesDir(), Build.VERSION.SDK_INT
-                + "_" + LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL);
+    static String getThumbnailCacheKey(String source, Point size, int rotation) {
+        return source + "_" + size.x + "x" + size.y + "_" + rotation;
     }
 
-    private boolean saveDefaultWallpaperThumb(Bitmap b) {
-        // Delete old thumbnails.
-        new File(getFilesDir(), LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL_OLD).delete();
-        new File(getFilesDir(), LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL).delete();
+    /**
+     * Removes default wallpaper thumbnails written by earlier versions to the files directory;
+     * they now live in the {@link WallpaperThumbnailLoader} cache.
+     */
+    private static void deleteLegacyDefaultThumbnails(File filesDir) {
+        new File(filesDir, LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL_OLD).delete();
+        new File(filesDir, LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL).delete();
 
-        for (int i = Build.VERSION_CODES.JELLY_BEAN; i < Build.VERSION.SDK_INT; i++) {
-            new File(getFilesDir(), i + "_" + LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL).delete();
+        for (int i = Build.VERSION_CODES.JELLY_BEAN; i <= Build.VERSION.SDK_INT; i++) {
+            new File(filesDir, i + "_" + LauncherFiles.DEFAULT_WALLPAPER_THUMBNAIL).delete();
         }
-        return writeImageToFileAsJpeg(getDefaultThumbFile(), b);
     }
 
     private ResourceWallpaperInfo getPreKKDefaultWallpaperInfo() {
-        Resources sysRes = Resources.getSystem();
-        int resId = sysRes.getIdentifier("default_wallpaper", "drawable", "android");
+        final Resources sysRes = Resources.getSystem();
+        final int resId = sysRes.getIdentifier("default_wallpaper", "drawable", "android");
+        final Resources res = getResources();
+        final Point defaultThumbSize = getDefaultThumbnailSize(res);
+        final Context context = this;
+        final File filesDir = getFilesDir();
 
-        File defaultThumbFile = getDefaultThumbFile();
-        Bitmap thumb = null;
-        boolean defaultWallpaperExists = false;
-        if (defaultThumbFile.exists()) {
-            thumb = BitmapFactory.decodeFile(defaultThumbFile.getAbsolutePath());
-            defaultWallpaperExists = true;
-        } else {
-            Resources res = getResources();
-            Point defaultThumbSize = getDefaultThumbnailSize(res);
-            int rotation = WallpaperCropActivity.getRotationFromExif(res, resId);
-            thumb = createThumbnail(
-                    defaultThumbSize, this, null, null, sysRes, resId, rotation, false);
-            if (thumb != null) {
-                defaultWallpaperExists = saveDefaultWallpaperThumb(thumb);
+        ResourceWallpaperInfo info = new ResourceWallpaperInfo(sysRes, resId, (Drawable) null);
+        info.setThumbnailRequest(new WallpaperThumbnailLoader.ThumbnailRequest() {
+            private int mRotation;
+
+            @Override
+            public String getCacheKey() {
+                mRotation = WallpaperCropActivity.getRotationFromExif(res, resId);
+                return getThumbnailCacheKey("android:" + resId + "_" + Build.FINGERPRINT,
+                        defaultThumbSize, mRotation);
             }
-        }
-        if (defaultWallpaperExists) {
-            return new ResourceWallpaperInfo(sysRes, resId, new BitmapDrawable(thumb));
-        }
-        return null;
+            @Override
+            public Bitmap createThumbnail() {
+                deleteLegacyDefaultThumbnails(filesDir);
+                return WallpaperPickerActivity.createThumbnail(defaultThumbSize, context,
+                        null, null, sysRes, resId, mRotation, false);
+            }
+        }, true);
+        return info;
     }
 
     @TargetApi(Build.VERSION_CODES.KITKAT)
     private DefaultWallpaperInfo getDefaultWallpaper() {
-        File defaultThumbFile = getDefaultThumbFile();
-        Bitmap thumb = null;
-        boolean defaultWallpaperExists = false;
-        if (defaultThumbFile.exists()) {
-            thumb = BitmapFactory.decodeFile(defaultThumbFile.getAbsolutePath());
-            defaultWallpaperExists = true;
-        } else {
-            Resources res = getResources();
-            Point defaultThumbSize = getDefaultThumbnailSize(res);
-            Drawable wallpaperDrawable = WallpaperManager.getInstance(this).getBuiltInDrawable(
-                    defaultThumbSize.x, defaultThumbSize.y, true, 0.5f, 0.5f);
-            if (wallpaperDrawable != null) {
-                thumb = Bitmap.createBitmap(
+        final Point defaultThumbSize = getDefaultThumbnailSize(getResources());
+        final WallpaperManager wallpaperManager = WallpaperManager.getInstance(this);
+        final File filesDir = getFilesDir();
+
+        return new DefaultWallpaperInfo(new WallpaperThumbnailLoader.ThumbnailRequest() {
+            @Override
+            public String getCacheKey() {
+                return getThumbnailCacheKey("default_wallpaper_" + Build.FINGERPRINT,
+                        defaultThumbSize, 0);
+            }
+            @Override
+            public Bitmap createThumbnail() {
+                deleteLegacyDefaultThumbnails(filesDir);
+                Drawable wallpaperDrawable = wallpaperManager.getBuiltInDrawable(
+                        defaultThumbSize.x, defaultThumbSize.y, true, 0.5f, 0.5f);
+                if (wallpaperDrawable == null) {
+                    return null;
+                }
+                Bitmap thumb = Bitmap.createBitmap(
                         defaultThumbSize.x, defaultThumbSize.y, Bitmap.Config.ARGB_8888);
                 Canvas c = new Canvas(thumb);
                 wallpaperDrawable.setBounds(0, 0, defaultThumbSize.x, defaultThumbSize.y);
                 wallpaperDrawable.draw(c);
                 c.setBitmap(null);
+                return thumb;
             }
-            if (thumb != null) {
-                defaultWallpaperExists = saveDefaultWallpaperThumb(thumb);
-            }
-        }
-        if (defaultWallpaperExists) {
-            return new DefaultWallpaperInfo(new BitmapDrawable(thumb));
-        }
-        return null;
+        });
     }
 
     public Pair<ApplicationInfo, Integer> getWallpaperArrayResourceId() {
@@ -1092,7 +1178,7 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
 
                 if (thumbRes != 0) {
                     ResourceWallpaperInfo wallpaperInfo =
-                            new ResourceWallpaperInfo(res, resId, res.getDrawable(thumbRes));
+                            new ResourceWallpaperInfo(res, resId, thumbRes);
                     known.add(wallpaperInfo);
                     // Log.d(TAG, "add: [" + packageName + "]: " + extra + " (" + res + ")");
                 }
@@ -1138,8 +1224,11 @@ public class WallpaperPickerActivity extends WallpaperCropActivity {
         }
 
         public View getView(int position, View convertView, ViewGroup parent) {
-            Drawable thumb = getItem(position).mThumb;
-            if (thumb == null) {
+            WallpaperTileInfo info = getItem(position);
+            Drawable thumb = info.mThumb;
+            // Tiles with a thumbnail request are filled in once it loads, and
+            // loadTileThumbnail() reports the ones that fail
+            if (thumb == null && info.mThumbRequest == null) {
                 Log.e(TAG, "Error decoding thumbnail for wallpaper #" + position);
             }
             return createImageTileView(mLayoutInflater, convertView, parent, thumb);
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates wallpaper picker thumbnails on a small background pool and keeps the results in a
+ * disk cache, so that the picker strip can be shown immediately and filled in as tiles complete.
+ */
+public class WallpaperThumbnailLoader {
+    private static final String TAG = "Launcher.WallpaperThumbnailLoader";
+
+    private static final int POOL_SIZE = 2;
+    private static final int KEEP_ALIVE_SECONDS = 1;
+    private static final int MAX_CACHED_THUMBNAILS = 64;
+    private static final int COMPRESS_QUALITY = 95;
+
+    /**
+     * A single thumbnail to generate. {@link #getCacheKey} and {@link #createThumbnail} are
+     * called on a background thread.
+     */
+    public static abstract class ThumbnailRequest {
+        /**
+         * @return a key uniquely describing the source, size and rotation of the thumbnail, or
+         * null if the result is cheap to recreate and should not be written to the disk cache.
+         */
+        public abstract String getCacheKey();
+
+        /**
+         * @return the thumbnail, or null if it could not be created.
+         */
+        public abstract Bitmap createThumbnail();
+    }
+
+    /**
+     * Receives the result of a {@link ThumbnailRequest} on the UI thread.
+     */
+    public interface Callback {
+        /**
+         * @param thumb the generated thumbnail, or null if generation failed
+         */
+        void onThumbnailLoaded(Bitmap thumb);
+    }
+
+    private final File mCacheDir;
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor;
+    private volatile boolean mDestroyed;
+
+    public WallpaperThumbnailLoader(Context context) {
+        mCacheDir = new File(context.getCacheDir(), LauncherFiles.WALLPAPER_THUMBNAILS_DIR);
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThumbnailThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a thumbnail for generation. The callback is not called if the loader has been
+     * destroyed in the meantime.
+     */
+    public void load(final ThumbnailRequest request, final Callback callback) {
+        if (mDestroyed) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mDestroyed) {
+                    return;
+                }
+                final Bitmap thumb = loadOrCreate(request);
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mDestroyed) {
+                            callback.onThumbnailLoaded(thumb);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops any pending requests; callbacks for requests already running are suppressed.
+     */
+    public void destroy() {
+        mDestroyed = true;
+        mExecutor.shutdownNow();
+    }
+
+    private Bitmap loadOrCreate(ThumbnailRequest request) {
+        String key = request.getCacheKey();
+        File cacheFile = key != null ? getCacheFile(key) : null;
+
+        if (cacheFile != null && cacheFile.exists()) {
+            Bitmap thumb = BitmapFactory.decodeFile(cacheFile.getAbsolutePath());
+            if (thumb != null) {
+                // Keep recently used entries at the end of the eviction order
+                cacheFile.setLastModified(System.currentTimeMillis());
+                return thumb;
+            }
+            cacheFile.delete();
+        }
+
+        Bitmap thumb = request.createThumbnail();
+        if (thumb != null && cacheFile != null) {
+            writeToCache(cacheFile, thumb);
+        }
+        return thumb;
+    }
+
+    private File getCacheFile(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(key.getBytes());
+            StringBuilder name = new StringBuilder(hash.length * 2 + 4);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            name.append(".jpg");
+            return new File(mCacheDir, name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "Unable to hash thumbnail key " + key, e);
+            return null;
+        }
+    }
+
+    private void writeToCache(File cacheFile, Bitmap thumb) {
+        if (!mCacheDir.isDirectory() && !mCacheDir.mkdirs()) {
+            Log.w(TAG, "Unable to create thumbnail cache " + mCacheDir);
+            return;
+        }
+        File tmp = new File(mCacheDir, cacheFile.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            thumb.compress(Bitmap.CompressFormat.JPEG, COMPRESS_QUALITY, out);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(cacheFile)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error while writing thumbnail to " + cacheFile, e);
+            tmp.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                tmp.delete();
+            }
+        }
+        trimCache();
+    }
+
+    private synchronized void trimCache() {
+        File[] files = mCacheDir.listFiles();
+        if (files == null || files.length <= MAX_CACHED_THUMBNAILS) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - MAX_CACHED_THUMBNAILS; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static class ThumbnailThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "wallpaper-thumbnail-" + mCount.getAndIncrement());
+        }
+    }
+}
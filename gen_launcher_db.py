@@ -0,0 +1,311 @@
+#!/usr/bin/env python3
+
+"""Generates a synthetic launcher.db, without a device.
+
+The database has the schema LauncherProvider creates (favorites and
+workspaceScreens, see LauncherDbSchema.java) and is filled with a workspace
+of the given size and shape: screens of apps, shortcuts, folders and widgets,
+a hotseat, and optionally orphaned and overlapping items for the provider and
+the loader to clean up. The same arguments and seed always give the same
+database.
+
+Push it to a device with
+  adb push launcher.db /data/data/com.slim.slimlauncher/databases/launcher.db
+or load it on the host with com.slim.slimlauncher.LauncherDbHarness.
+"""
+
+import argparse
+import os
+import random
+import sqlite3
+import struct
+import sys
+
+CONTAINER_DESKTOP = -100
+CONTAINER_HOTSEAT = -101
+
+ITEM_TYPE_APPLICATION = 0
+ITEM_TYPE_SHORTCUT = 1
+ITEM_TYPE_FOLDER = 2
+ITEM_TYPE_APPWIDGET = 4
+
+ICON_TYPE_BITMAP = 1
+
+# The oldest version LauncherDbHarness can upgrade on the host
+MIN_DB_VERSION = 14
+DB_VERSION = 20
+
+# Columns of the favorites table, with the version that added them
+FAVORITES_COLUMNS = [
+  ("_id", "INTEGER PRIMARY KEY", 1),
+  ("title", "TEXT", 1),
+  ("intent", "TEXT", 1),
+  ("container", "INTEGER", 1),
+  ("screen", "INTEGER", 1),
+  ("cellX", "INTEGER", 1),
+  ("cellY", "INTEGER", 1),
+  ("spanX", "INTEGER", 1),
+  ("spanY", "INTEGER", 1),
+  ("itemType", "INTEGER", 1),
+  ("appWidgetId", "INTEGER NOT NULL DEFAULT -1", 3),
+  ("isShortcut", "INTEGER", 1),
+  ("iconType", "INTEGER", 1),
+  ("iconPackage", "TEXT", 1),
+  ("iconResource", "TEXT", 1),
+  ("icon", "BLOB", 1),
+  ("uri", "TEXT", 1),
+  ("displayMode", "INTEGER", 1),
+  ("appWidgetProvider", "TEXT", 14),
+  ("modified", "INTEGER NOT NULL DEFAULT 0", 15),
+  ("restored", "INTEGER NOT NULL DEFAULT 0", 16),
+  ("profileId", "INTEGER DEFAULT 0", 20),
+]
+
+SCREENS_COLUMNS = [
+  ("_id", "INTEGER", 13),
+  ("screenRank", "INTEGER", 13),
+  ("modified", "INTEGER NOT NULL DEFAULT 0", 15),
+]
+
+# Widget spans, the common ones first
+WIDGET_SPANS = [(4, 1), (4, 2), (2, 2), (4, 2), (2, 1), (3, 3), (4, 4), (1, 1)]
+
+APP_INTENT_FORMAT = ("#Intent;action=android.intent.action.MAIN;"
+    "category=android.intent.category.LAUNCHER;launchFlags=0x10200000;"
+    "component=%s/%s;end")
+SHORTCUT_INTENT_FORMAT = ("content://com.android.contacts/contacts/lookup/%d#Intent;"
+    "action=com.android.contacts.action.QUICK_CONTACT;launchFlags=0x10008000;end")
+
+WORDS = ["Calculator", "Calendar", "Camera", "Chrome", "Clock", "Contacts",
+    "Downloads", "Drive", "Email", "Files", "Gallery", "Keep", "Maps",
+    "Messages", "Music", "News", "Notes", "Phone", "Photos", "Play", "Radio",
+    "Settings", "Shop", "Store", "Travel", "Video", "Wallet", "Weather", "Über",
+    "Élan", "2048", "eBay", "微信", "Яндекс"]
+
+NOW_MS = 1420070400000
+
+def usage_error(parser, message):
+  parser.print_usage(sys.stderr)
+  print("gen_launcher_db.py: error: " + message, file=sys.stderr)
+  sys.exit(2)
+
+def create_tables(c, version):
+  columns = [name + " " + decl for name, decl, since in FAVORITES_COLUMNS
+      if since <= version]
+  c.execute("CREATE TABLE favorites (" + ",".join(columns) + ");")
+  columns = [name + " " + decl for name, decl, since in SCREENS_COLUMNS
+      if since <= version]
+  c.execute("CREATE TABLE workspaceScreens (" + ",".join(columns) + ");")
+  # SQLiteOpenHelper reads these when it opens the database on a device
+  c.execute("CREATE TABLE android_metadata (locale TEXT)")
+  c.execute("INSERT INTO android_metadata VALUES ('en_US')")
+  c.execute("PRAGMA user_version = %d" % version)
+
+class Generator:
+  def __init__(self, args):
+    self.args = args
+    self.random = random.Random(args.seed)
+    self.next_id = 1
+    self.next_widget_id = 1
+    self.rows = []
+    self.counts = {}
+
+  def new_id(self):
+    id = self.next_id
+    self.next_id += 1
+    return id
+
+  def icon(self):
+    # A PNG signature followed by incompressible bytes, the size of a stored icon
+    size = self.args.icon_bytes
+    if size <= 0:
+      return None
+    body = self.random.getrandbits(8 * size).to_bytes(size, "little")
+    return b"\x89PNG\r\n\x1a\n" + struct.pack(">I", size) + body
+
+  def add(self, kind, **values):
+    values.setdefault("appWidgetId", -1)
+    values.setdefault("spanX", 1)
+    values.setdefault("spanY", 1)
+    values.setdefault("modified", NOW_MS)
+    values.setdefault("restored", 0)
+    values.setdefault("profileId", 0)
+    self.rows.append(values)
+    self.counts[kind] = self.counts.get(kind, 0) + 1
+    return values["_id"]
+
+  def add_icon(self, container, screen, x, y):
+    """Adds an app or a shortcut."""
+    id = self.new_id()
+    title = self.random.choice(WORDS)
+    if self.random.random() < self.args.shortcut_ratio:
+      return self.add("shortcuts", _id=id, title=title,
+          intent=SHORTCUT_INTENT_FORMAT % id, container=container, screen=screen,
+          cellX=x, cellY=y, itemType=ITEM_TYPE_SHORTCUT, iconType=ICON_TYPE_BITMAP,
+          icon=self.icon())
+    package = "com.%s.app%d" % (title.lower().encode("ascii", "ignore").decode() or "x",
+        self.random.randrange(self.args.installed_apps))
+    return self.add("apps", _id=id, title=title,
+        intent=APP_INTENT_FORMAT % (package, package + ".MainActivity"),
+        container=container, screen=screen, cellX=x, cellY=y,
+        itemType=ITEM_TYPE_APPLICATION, iconType=ICON_TYPE_BITMAP, icon=self.icon())
+
+  def add_folder(self, container, screen, x, y):
+    id = self.new_id()
+    self.add("folders", _id=id, title="Folder %d" % id, container=container,
+        screen=screen, cellX=x, cellY=y, itemType=ITEM_TYPE_FOLDER)
+    size = self.random.randint(2, max(2, 2 * self.args.folder_size - 2))
+    for rank in range(size):
+      self.add_icon(id, 0, rank % self.args.columns, rank // self.args.columns)
+    return id
+
+  def add_widget(self, screen, x, y, span_x, span_y):
+    widget_id = self.next_widget_id
+    self.next_widget_id += 1
+    return self.add("widgets", _id=self.new_id(), title=None, intent=None,
+        container=CONTAINER_DESKTOP, screen=screen, cellX=x, cellY=y,
+        spanX=span_x, spanY=span_y, itemType=ITEM_TYPE_APPWIDGET,
+        appWidgetId=widget_id,
+        appWidgetProvider="com.example.widgets%d/.Provider%d" % (widget_id % 40,
+            widget_id % 3))
+
+  def place(self, occupied, span_x, span_y):
+    """Returns a random free area of the given span on a screen, or None."""
+    cols, rows = self.args.columns, self.args.rows
+    free = [(x, y) for y in range(rows - span_y + 1) for x in range(cols - span_x + 1)
+        if all(not occupied[y + j][x + i] for i in range(span_x) for j in range(span_y))]
+    if not free:
+      return None
+    x, y = self.random.choice(free)
+    for i in range(span_x):
+      for j in range(span_y):
+        occupied[y + j][x + i] = True
+    return x, y
+
+  def generate(self):
+    args = self.args
+    cols, rows = args.columns, args.rows
+    screens = list(range(1, args.screens + 1))
+
+    # Hotseat, with a folder in the middle like many users have
+    folders = args.folders
+    for rank in range(args.hotseat):
+      if rank == args.hotseat // 2 and folders > 0:
+        self.add_folder(CONTAINER_HOTSEAT, rank, rank, 0)
+        folders -= 1
+      else:
+        self.add_icon(CONTAINER_HOTSEAT, rank, rank, 0)
+
+    # Widgets and folders go round robin over the screens, icons fill them up
+    grids = dict((s, [[False] * cols for _ in range(rows)]) for s in screens)
+    for i in range(args.widgets):
+      screen = screens[i % len(screens)]
+      span_x, span_y = self.random.choice(WIDGET_SPANS)
+      span_x, span_y = min(span_x, cols), min(span_y, rows)
+      cell = self.place(grids[screen], span_x, span_y)
+      if cell:
+        self.add_widget(screen, cell[0], cell[1], span_x, span_y)
+      else:
+        self.counts["unplaced"] = self.counts.get("unplaced", 0) + 1
+    for i in range(folders):
+      screen = screens[i % len(screens)]
+      cell = self.place(grids[screen], 1, 1)
+      if cell:
+        self.add_folder(CONTAINER_DESKTOP, screen, cell[0], cell[1])
+      else:
+        self.counts["unplaced"] = self.counts.get("unplaced", 0) + 1
+    for screen in screens:
+      grid = grids[screen]
+      used = sum(row.count(True) for row in grid)
+      for _ in range(int(args.fill * cols * rows) - used):
+        cell = self.place(grid, 1, 1)
+        if cell:
+          self.add_icon(CONTAINER_DESKTOP, screen, cell[0], cell[1])
+
+    # Items on cells that are already taken, which the loader discards
+    desktop = [r for r in self.rows if r["container"] == CONTAINER_DESKTOP]
+    for i in range(min(args.overlaps, len(desktop))):
+      taken = desktop[self.random.randrange(len(desktop))]
+      self.add_icon(CONTAINER_DESKTOP, taken["screen"], taken["cellX"], taken["cellY"])
+      self.counts["overlaps"] = self.counts.get("overlaps", 0) + 1
+
+    # Items on screens that were lost, half of them folders, which the provider removes
+    for i in range(args.orphans):
+      screen = args.screens + 1000 + i
+      if i % 2:
+        self.add_folder(CONTAINER_DESKTOP, screen, 0, 0)
+      else:
+        self.add_icon(CONTAINER_DESKTOP, screen, 0, 0)
+      self.counts["orphans"] = self.counts.get("orphans", 0) + 1
+
+    return screens
+
+  def write(self, path, version, screens):
+    if os.path.exists(path):
+      os.remove(path)
+    conn = sqlite3.connect(path)
+    c = conn.cursor()
+    create_tables(c, version)
+
+    columns = [name for name, decl, since in FAVORITES_COLUMNS if since <= version]
+    insert = "INSERT INTO favorites (%s) VALUES (%s)" % (",".join(columns),
+        ",".join("?" * len(columns)))
+    c.executemany(insert, [[row.get(name) for name in columns] for row in self.rows])
+
+    columns = [name for name, decl, since in SCREENS_COLUMNS if since <= version]
+    insert = "INSERT INTO workspaceScreens (%s) VALUES (%s)" % (",".join(columns),
+        ",".join("?" * len(columns)))
+    c.executemany(insert, [[screen, rank, NOW_MS][:len(columns)]
+        for rank, screen in enumerate(screens)])
+
+    conn.commit()
+    c.close()
+    conn.close()
+
+def main(argv):
+  parser = argparse.ArgumentParser(
+      description="Generates a synthetic launcher.db of the given size and shape.")
+  parser.add_argument("-o", "--output", default="launcher.db")
+  parser.add_argument("--db-version", type=int, default=DB_VERSION,
+      help="schema version, %d to %d (default %d)" % (MIN_DB_VERSION, DB_VERSION,
+          DB_VERSION))
+  parser.add_argument("--screens", type=int, default=30)
+  parser.add_argument("--columns", type=int, default=5)
+  parser.add_argument("--rows", type=int, default=5)
+  parser.add_argument("--hotseat", type=int, default=5)
+  parser.add_argument("--fill", type=float, default=0.85,
+      help="share of the cells of each screen that are used")
+  parser.add_argument("--folders", type=int, default=300)
+  parser.add_argument("--folder-size", type=int, default=10,
+      help="average number of items in a folder")
+  parser.add_argument("--widgets", type=int, default=60)
+  parser.add_argument("--shortcut-ratio", type=float, default=0.1,
+      help="share of the icons that are shortcuts rather than apps")
+  parser.add_argument("--installed-apps", type=int, default=300,
+      help="number of distinct apps the icons point to")
+  parser.add_argument("--icon-bytes", type=int, default=6000,
+      help="size of the stored icon of every app and shortcut, 0 for none")
+  parser.add_argument("--orphans", type=int, default=0,
+      help="items on screens that don't exist")
+  parser.add_argument("--overlaps", type=int, default=0,
+      help="items on cells taken by other items")
+  parser.add_argument("--seed", type=int, default=0)
+  args = parser.parse_args(argv[1:])
+
+  if not MIN_DB_VERSION <= args.db_version <= DB_VERSION:
+    usage_error(parser, "--db-version must be between %d and %d" % (MIN_DB_VERSION,
+        DB_VERSION))
+  if args.screens < 1 or args.columns < 1 or args.rows < 1 or args.hotseat < 0:
+    usage_error(parser, "the workspace must have at least one cell")
+
+  generator = Generator(args)
+  screens = generator.generate()
+  generator.write(args.output, args.db_version, screens)
+
+  print("%s: version %d, %d screens of %dx%d, %d favorites" % (args.output,
+      args.db_version, len(screens), args.columns, args.rows, len(generator.rows)))
+  for kind in sorted(generator.counts):
+    print("  %s: %d" % (kind, generator.counts[kind]))
+
+if __name__ == "__main__":
+  main(sys.argv)
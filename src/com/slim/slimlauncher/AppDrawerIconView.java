@@ -17,6 +17,7 @@
 package com.slim.slimlauncher;
 
 import android.content.Context;
+import android.graphics.Canvas;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.MotionEvent;
@@ -34,6 +35,9 @@ public class AppDrawerIconView extends LinearLayout {
     TextView mLabel;
     ImageView mIcon;
 
+    private UnreadBadgeCache mUnreadBadges;
+    private int mUnreadCount;
+
     public AppDrawerIconView(Context context) {
         super(context);
     }
@@ -53,11 +57,33 @@ public class AppDrawerIconView extends LinearLayout {
         mIcon = (ImageView) findViewById(R.id.image);
         LauncherAppState app = LauncherAppState.getInstance();
         DeviceProfile grid = app.getDynamicGrid().getDeviceProfile();
+        mUnreadBadges = app.getUnreadBadgeCache();
         mLabel.setTextSize(TypedValue.COMPLEX_UNIT_PX, grid.iconTextSizePx);
         mLabel.setShadowLayer(BubbleTextView.SHADOW_LARGE_RADIUS, 0.0f,
                 BubbleTextView.SHADOW_Y_OFFSET, BubbleTextView.SHADOW_LARGE_COLOUR);
     }
 
+    /**
+     * Sets the count drawn in the badge over the icon; 0 hides the badge.
+     */
+    public void setUnreadCount(int count) {
+        if (mUnreadCount != count) {
+            mUnreadCount = count;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+
+        if (mUnreadCount > 0) {
+            mUnreadBadges.drawBadge(canvas, mUnreadCount,
+                    mIcon.getRight() - mIcon.getPaddingRight(),
+                    mIcon.getTop() + mIcon.getPaddingTop());
+        }
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         switch (event.getAction()) {
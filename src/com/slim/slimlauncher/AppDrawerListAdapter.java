@@ -25,7 +25,7 @@ import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
+import android.text.TextUtils;
 import android.view.Display;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -39,11 +39,9 @@ import com.slim.slimlauncher.settings.SettingsProvider;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 
 /**
  * AppDrawerListAdapter - list adapter for the vertical app drawer
@@ -77,6 +75,8 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
     private Launcher mLauncher;
     private DeviceProfile mDeviceProfile;
     private LinkedHashMap<String, SectionIndices> mSectionHeaders;
+    private final AppDrawerSections mSections = new AppDrawerSections();
+    private final ArrayList<CharSequence> mTitles = new ArrayList<CharSequence>();
     private LinearLayout.LayoutParams mIconParams;
     private Rect mIconRect;
 
@@ -95,6 +95,7 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
     }
 
     private ItemAnimatorSet mItemAnimatorSet;
+    private UnreadBadgeCache mUnreadBadges;
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
         public AutoFitTextView mTextView;
@@ -112,7 +113,8 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
 
     /**
      * This class handles animating the different items when the user scrolls through the drawer
-     * quickly
+     * quickly. All the attached rows share the same progress, so a single ticking animator
+     * updates all of them.
      */
     private class ItemAnimatorSet {
         private static final long ANIMATION_DURATION = 200;
@@ -122,9 +124,10 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
         private static final int NO_SECTION_TARGET = -1;
 
         private final float YDPI;
-        private final HashSet<ViewHolder> mViewHolderSet;
+        private final ArrayList<ViewHolder> mViewHolders;
         private final Interpolator mInterpolator;
         private final View.OnLayoutChangeListener mLayoutChangeListener;
+        private final ValueAnimator mTicker;
 
         private boolean mDragging;
         private boolean mExpanding;
@@ -144,7 +147,7 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
             mPendingShrink = false;
             mScrollState = RecyclerView.SCROLL_STATE_IDLE;
             mSectionTarget = NO_SECTION_TARGET;
-            mViewHolderSet = new HashSet<>();
+            mViewHolders = new ArrayList<ViewHolder>();
             mInterpolator = new DecelerateInterpolator();
             YDPI = ctx.getResources().getDisplayMetrics().ydpi;
             mLayoutChangeListener = new View.OnLayoutChangeListener() {
@@ -156,17 +159,39 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
                     v.setPivotY(v.getMeasuredHeight() / 2);
                 }
             };
+
+            // The progress is computed from mStartTime, the animator only provides the frames
+            // and is cancelled once the progress reaches the end
+            mTicker = ValueAnimator.ofFloat(0f, 1f);
+            mTicker.setDuration(ANIMATION_DURATION);
+            mTicker.setRepeatCount(ValueAnimator.INFINITE);
+            mTicker.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    tick();
+                }
+            });
+            mTicker.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    animateAll(1f);
+                }
+            });
         }
 
         public void add(ViewHolder holder) {
-            mViewHolderSet.add(holder);
+            if (mViewHolders.contains(holder)) {
+                return;
+            }
+            mViewHolders.add(holder);
             holder.mTextView.addOnLayoutChangeListener(mLayoutChangeListener);
 
-            createAnimationHook(holder);
+            // Catch up with the rows that are already attached
+            animate(holder, getProgress());
         }
 
         public void remove(ViewHolder holder) {
-            mViewHolderSet.remove(holder);
+            mViewHolders.remove(holder);
             holder.mTextView.removeOnLayoutChangeListener(mLayoutChangeListener);
         }
 
@@ -225,52 +250,41 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
                 mPendingShrink = false;
                 mStartTime = System.currentTimeMillis();
 
-                for (ViewHolder holder : mViewHolderSet) {
-                    createAnimationHook(holder);
+                // A running ticker simply continues from the new start time
+                if (!mTicker.isStarted()) {
+                    mTicker.start();
                 }
             }
         }
 
-        public void createAnimationHook(final ViewHolder holder) {
-            holder.mTextView.animate().cancel();
-            holder.mTextView.animate()
-                    .setUpdateListener(new ItemAnimator(holder, mItemAnimatorSet))
-                    .setListener(new AnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationEnd(final Animator animation) {
-                            animateEnd(holder, animation);
-                        }
-                    })
-                    .setDuration(ANIMATION_DURATION)
-                    .start();
-        }
-
-        public void animateEnd(ViewHolder holder, Animator animation) {
-            animate(holder, animation, 1f);
+        private float getProgress() {
+            long diffTime = System.currentTimeMillis() - mStartTime;
+            return Math.min(diffTime / (float) ANIMATION_DURATION, 1f);
         }
 
-        public void animate(ViewHolder holder, Animator animation) {
+        private void tick() {
             long diffTime = System.currentTimeMillis() - mStartTime;
-
-            float percentage = Math.min(diffTime / (float) ANIMATION_DURATION, 1f);
-
-            animate(holder, animation, percentage);
+            animateAll(Math.min(diffTime / (float) ANIMATION_DURATION, 1f));
 
             if (diffTime >= ANIMATION_DURATION) {
-                if (animation != null) {
-                    animation.cancel();
-                }
+                mTicker.cancel();
 
                 if (mPendingShrink) {
                     mPendingShrink = false;
                     mLastScrollSpeed = 0;
                     checkAnimationState();
                 }
+            }
+        }
 
+        private void animateAll(float percentage) {
+            final int count = mViewHolders.size();
+            for (int i = 0; i < count; i++) {
+                animate(mViewHolders.get(i), percentage);
             }
         }
 
-        public void animate(ViewHolder holder, Animator animation, float percentage) {
+        public void animate(ViewHolder holder, float percentage) {
             percentage = mInterpolator.getInterpolation(percentage);
 
             if (!mExpanding) {
@@ -299,24 +313,7 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
          */
         public void setSectionTarget(int sectionIndex) {
             mSectionTarget = sectionIndex;
-            for (ViewHolder holder : mViewHolderSet) {
-                animate(holder, null);
-            }
-        }
-    }
-
-    private static class ItemAnimator implements ValueAnimator.AnimatorUpdateListener {
-        private ViewHolder mViewHolder;
-        private ItemAnimatorSet mAnimatorSet;
-
-        public ItemAnimator(final ViewHolder holder, final ItemAnimatorSet animatorSet) {
-            mViewHolder = holder;
-            mAnimatorSet = animatorSet;
-        }
-
-        @Override
-        public void onAnimationUpdate(ValueAnimator animation) {
-            mAnimatorSet.animate(mViewHolder, animation);
+            animateAll(getProgress());
         }
     }
 
@@ -331,6 +328,8 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
     }
 
     public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        FrameStats.setActive(FrameStats.INTERACTION_DRAWER_SCROLL,
+                newState != RecyclerView.SCROLL_STATE_IDLE);
         mItemAnimatorSet.onScrollStateChanged(recyclerView, newState);
     }
 
@@ -352,6 +351,7 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
 
     private void initParams() {
         mDeviceProfile = LauncherAppState.getInstance().getDynamicGrid().getDeviceProfile();
+        mUnreadBadges = LauncherAppState.getInstance().getUnreadBadgeCache();
 
         mDrawerType = DrawerType.getDrawerType(mLauncher);
 
@@ -376,62 +376,28 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
             return;
         }
 
-        // Create a clone of AppInfo ArrayList to preserve data
-        ArrayList<AppInfo> tempInfo = new ArrayList<AppInfo>(info.size());
-        for (AppInfo i : info) {
-            tempInfo.add(i);
-        }
-
-        ListIterator<AppInfo> it = tempInfo.listIterator();
-        ArrayList<AppInfo> appInfos = new ArrayList<AppInfo>();
-        appInfos.clear();
-
-        // get next app
-        AppInfo app = it.next();
-
-        // get starting character
-        boolean isSpecial = false;
-        char startChar = app.title.toString().toUpperCase().charAt(0);
-        if (!Character.isLetter(startChar)) {
-            isSpecial = true;
+        final int count = info.size();
+        for (int i = 0; i < count; i++) {
+            mTitles.add(info.get(i).title);
         }
+        mSections.build(mTitles, mDrawerType == DrawerType.VERTICAL);
+        mTitles.clear();
 
-        if (mDrawerType == DrawerType.VERTICAL) {
-            appInfos.addAll(tempInfo);
-        } else {
-
-            // now iterate through
-            for (AppInfo info1 : tempInfo) {
-                char newChar = info1.title.toString().toUpperCase().charAt(0);
-                // if same character
-                if (newChar == startChar) {
-                    // add it
-                    appInfos.add(info1);
-                } else if (isSpecial && !Character.isLetter(newChar)) {
-                    appInfos.add(info1);
+        // Split every section into rows
+        final int numCols = mDeviceProfile.allAppsNumCols;
+        for (int s = 0; s < mSections.getSectionCount(); s++) {
+            final int start = mSections.getSectionStart(s);
+            final int end = mSections.getSectionEnd(s);
+            for (int i = start; i < end; i += numCols) {
+                final int rowEnd = Math.min(i + numCols, end);
+                ArrayList<AppInfo> row = new ArrayList<AppInfo>(rowEnd - i);
+                for (int j = i; j < rowEnd; j++) {
+                    row.add(info.get(mSections.getItem(j)));
                 }
+                mHeaderList.add(
+                        new AppItemIndexedInfo(mSections.getSectionChar(s), row, i != start));
             }
         }
-
-        for (int i = 0; i < appInfos.size(); i += mDeviceProfile.allAppsNumCols) {
-            int endIndex = (int) Math.min(i + mDeviceProfile.allAppsNumCols, appInfos.size());
-            ArrayList<AppInfo> subList = new ArrayList<AppInfo>(appInfos.subList(i, endIndex));
-            AppItemIndexedInfo indexInfo;
-            if (mDrawerType == DrawerType.VERTICAL) {
-                indexInfo = new AppItemIndexedInfo(' ', subList, i != 0);
-            } else if (isSpecial) {
-                indexInfo = new AppItemIndexedInfo('#', subList, i != 0);
-            } else {
-                indexInfo = new AppItemIndexedInfo(startChar, subList, i != 0);
-            }
-            mHeaderList.add(indexInfo);
-        }
-
-        for (AppInfo remove : appInfos) {
-            // remove from mApps
-            tempInfo.remove(remove);
-        }
-        populateByCharacter(tempInfo);
     }
 
     public void setApps(ArrayList<AppInfo> list) {
@@ -453,13 +419,15 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
             mSectionHeaders = new LinkedHashMap<>();
         }
 
-        int sectionIndex = 0;
+        int sectionIndex = -1;
         for (int i = 0; i < mHeaderList.size(); i++) {
-            if (!mHeaderList.get(i).isChild) {
-                mSectionHeaders.put(String.valueOf(mHeaderList.get(i).mChar),
-                        new SectionIndices(sectionIndex, i));
+            AppItemIndexedInfo info = mHeaderList.get(i);
+            if (!info.isChild) {
                 sectionIndex++;
+                mSectionHeaders.put(String.valueOf(info.mChar),
+                        new SectionIndices(sectionIndex, i));
             }
+            info.mSectionIndex = Math.max(sectionIndex, 0);
         }
     }
 
@@ -494,6 +462,25 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
     }
 
 
+    /**
+     * Refreshes the unread badges of the rows currently attached, without rebinding them.
+     */
+    public void updateUnreadCounts() {
+        final ArrayList<ViewHolder> holders = mItemAnimatorSet.mViewHolders;
+        for (int i = 0; i < holders.size(); i++) {
+            updateUnreadCounts(holders.get(i));
+        }
+    }
+
+    private void updateUnreadCounts(ViewHolder holder) {
+        for (int i = 0; i < holder.mLayout.getChildCount(); i++) {
+            AppDrawerIconView icon = (AppDrawerIconView) holder.mLayout.getChildAt(i);
+            if (icon.getVisibility() == View.VISIBLE && icon.getTag() instanceof AppInfo) {
+                icon.setUnreadCount(mUnreadBadges.getUnreadCount((AppInfo) icon.getTag()));
+            }
+        }
+    }
+
     public void addApps(ArrayList<AppInfo> list) {
         if (!LauncherAppState.isDisableAllApps()) {
             addAppsWithoutInvalidate(list);
@@ -614,6 +601,8 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
         super.onViewAttachedToWindow(holder);
 
         mItemAnimatorSet.add(holder);
+        // Rows coming back from the recycler's cache are not rebound
+        updateUnreadCounts(holder);
     }
 
     @Override
@@ -640,10 +629,11 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
         holder.mTextView.setVisibility(mDrawerType == DrawerType.VERTICAL ? View.GONE :
                 (indexedInfo.isChild ? View.INVISIBLE : View.VISIBLE));
         if (!indexedInfo.isChild) {
-            if (indexedInfo.mChar == NUMERIC_OR_SPECIAL_CHAR) {
-                holder.mTextView.setText(NUMERIC_OR_SPECIAL_HEADER);
-            } else {
-                holder.mTextView.setText(String.valueOf(indexedInfo.mChar));
+            String header = indexedInfo.mChar == NUMERIC_OR_SPECIAL_CHAR
+                    ? NUMERIC_OR_SPECIAL_HEADER : String.valueOf(indexedInfo.mChar);
+            // Setting the same header again would re-run the auto fit on every scroll
+            if (!TextUtils.equals(header, holder.mTextView.getText())) {
+                holder.mTextView.setText(header);
             }
         }
 
@@ -664,6 +654,7 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
                 d.setBounds(mIconRect);
                 icon.mIcon.setImageDrawable(d);
                 icon.mLabel.setText(info.title);
+                icon.setUnreadCount(mUnreadBadges.getUnreadCount(info));
             }
         }
         holder.itemView.setTag(indexedInfo);
@@ -764,6 +755,7 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
         private boolean isChild;
         private char mChar;
         private ArrayList<AppInfo> mInfo;
+        private int mSectionIndex;
 
         private AppItemIndexedInfo(char startChar, ArrayList<AppInfo> info, boolean isChild) {
             this.mChar = startChar;
@@ -788,26 +780,15 @@ public class AppDrawerListAdapter extends RecyclerView.Adapter<AppDrawerListAdap
 
     @Override
     public int getSectionForPosition(int position) {
-        if (mSectionHeaders == null) {
+        if (mSectionHeaders == null || mHeaderList.isEmpty()) {
             return 0;
         }
 
         position = (position < 0) ? 0 : position;
-        position = (position > mHeaderList.size()) ? mHeaderList.size() : position;
-
-        int index = 0;
-        AppItemIndexedInfo info = mHeaderList.get(position);
-        if (info != null) {
-            SectionIndices indices = mSectionHeaders.get(info.mChar);
-            if (indices != null) {
-                index = indices.mSectionIndex;
-            } else {
-                Log.w(TAG, "SectionIndices are null");
-            }
-        } else {
-            Log.w(TAG, "AppItemIndexedInfo is null");
-        }
-        return index;
+        position = (position >= mHeaderList.size()) ? mHeaderList.size() - 1 : position;
+
+        // Set by populateSectionHeaders()
+        return mHeaderList.get(position).mSectionIndex;
     }
 
     private void filterHiddenApps(ArrayList<AppInfo> list) {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Groups the sorted app titles of the drawer into sections by their upper case first
+ * character. Titles that don't start with a letter all go to {@link #SECTION_OTHERS}. Sections
+ * are in the order of the first title they contain, and the titles of a section keep their
+ * order.
+ *
+ * The grouping is done in two passes over the titles and the arrays are reused across builds.
+ * It is kept free of framework classes so it can be tested and benchmarked on the host.
+ */
+final class AppDrawerSections {
+    static final char SECTION_OTHERS = '#';
+    static final char SECTION_ALL = ' ';
+
+    private char[] mSectionChars = new char[32];
+    // Section s covers the positions mSectionStarts[s] .. mSectionStarts[s + 1] - 1
+    private int[] mSectionStarts = new int[33];
+    private int[] mNextPositions = new int[32];
+    private int mSectionCount;
+
+    private int[] mItemSections = new int[0];
+    // The index in the titles of the item at each position
+    private int[] mOrder = new int[0];
+
+    /**
+     * @param titles The app titles, sorted.
+     * @param singleSection Whether to put all the titles in one {@link #SECTION_ALL} section.
+     */
+    void build(List<? extends CharSequence> titles, boolean singleSection) {
+        final int count = titles.size();
+        if (mOrder.length < count) {
+            mOrder = new int[count];
+            mItemSections = new int[count];
+        }
+        mSectionCount = 0;
+
+        // Assign every title to a section, counting the titles of each section
+        for (int i = 0; i < count; i++) {
+            final char c = singleSection ? SECTION_ALL : getSectionChar(titles.get(i));
+            int s = 0;
+            while (s < mSectionCount && mSectionChars[s] != c) {
+                s++;
+            }
+            if (s == mSectionCount) {
+                if (s == mSectionChars.length) {
+                    mSectionChars = Arrays.copyOf(mSectionChars, s * 2);
+                    mSectionStarts = Arrays.copyOf(mSectionStarts, s * 2 + 1);
+                    mNextPositions = Arrays.copyOf(mNextPositions, s * 2);
+                }
+                mSectionChars[s] = c;
+                mNextPositions[s] = 0;
+                mSectionCount++;
+            }
+            mNextPositions[s]++;
+            mItemSections[i] = s;
+        }
+
+        // Turn the counts into the first position of each section, then place the titles
+        int position = 0;
+        for (int s = 0; s < mSectionCount; s++) {
+            mSectionStarts[s] = position;
+            position += mNextPositions[s];
+            mNextPositions[s] = mSectionStarts[s];
+        }
+        mSectionStarts[mSectionCount] = position;
+        for (int i = 0; i < count; i++) {
+            mOrder[mNextPositions[mItemSections[i]]++] = i;
+        }
+    }
+
+    int getSectionCount() {
+        return mSectionCount;
+    }
+
+    char getSectionChar(int section) {
+        return mSectionChars[section];
+    }
+
+    int getSectionStart(int section) {
+        return mSectionStarts[section];
+    }
+
+    int getSectionEnd(int section) {
+        return mSectionStarts[section + 1];
+    }
+
+    /**
+     * Returns the index in the titles of the item at the given position, where the positions
+     * of section s go from {@link #getSectionStart} to {@link #getSectionEnd}.
+     */
+    int getItem(int position) {
+        return mOrder[position];
+    }
+
+    static char getSectionChar(CharSequence title) {
+        char c = getUpperCaseFirstChar(title);
+        return Character.isLetter(c) ? c : SECTION_OTHERS;
+    }
+
+    /**
+     * Returns the first character of the upper case title, converting only the first code
+     * point instead of the whole title.
+     */
+    static char getUpperCaseFirstChar(CharSequence title) {
+        final String s = title.toString();
+        final int end = Character.charCount(s.codePointAt(0));
+        return s.substring(0, end).toUpperCase().charAt(0);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.content.ComponentName;
+
+import java.text.Collator;
+
+/**
+ * The title ordering shared by the app comparators of LauncherModel: titles are compared with
+ * the collator of the default locale, ignoring leading and trailing white space, and apps with
+ * the same title are ordered by component. Apart from ComponentName it doesn't use the
+ * framework, so the comparators can be benchmarked on the host.
+ */
+final class AppTitleOrder {
+    private final Collator mCollator = Collator.getInstance();
+
+    int compare(CharSequence titleA, ComponentName componentA,
+            CharSequence titleB, ComponentName componentB) {
+        int result = mCollator.compare(titleA.toString().trim(), titleB.toString().trim());
+        if (result == 0) {
+            result = componentA.compareTo(componentB);
+        }
+        return result;
+    }
+}
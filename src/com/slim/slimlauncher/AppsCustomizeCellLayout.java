@@ -19,9 +19,13 @@ package com.slim.slimlauncher;
 import android.content.Context;
 import android.view.View;
 
+import java.util.ArrayList;
+
 public class AppsCustomizeCellLayout extends CellLayout implements Page {
 
     final FocusIndicatorView mFocusHandlerView;
+    private AppsCustomizeIconRecycler mIconRecycler;
+    private final ArrayList<View> mTempRecycledViews = new ArrayList<View>();
 
     public AppsCustomizeCellLayout(Context context) {
         super(context);
@@ -32,9 +36,30 @@ public class AppsCustomizeCellLayout extends CellLayout implements Page {
         mFocusHandlerView.getLayoutParams().height = FocusIndicatorView.DEFAULT_LAYOUT_SIZE;
     }
 
+    /**
+     * Sets the recycler that is given the icons of this page when it is cleared.
+     */
+    void setIconRecycler(AppsCustomizeIconRecycler recycler) {
+        mIconRecycler = recycler;
+    }
+
     @Override
     public void removeAllViewsOnPage() {
-        removeAllViews();
+        ShortcutAndWidgetContainer children = getShortcutsAndWidgets();
+        if (mIconRecycler == null || children.getChildCount() == 0) {
+            removeAllViews();
+        } else {
+            // Remove the icons before recycling them, so they are detached when reused
+            final int childCount = children.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                mTempRecycledViews.add(children.getChildAt(i));
+            }
+            removeAllViews();
+            for (int i = 0; i < childCount; i++) {
+                mIconRecycler.recycle(mTempRecycledViews.get(i));
+            }
+            mTempRecycledViews.clear();
+        }
         setLayerType(LAYER_TYPE_NONE, null);
     }
 
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.util.Log;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the application icons of drawer pages that are unloaded, so that the next page to be
+ * synced can reuse them instead of inflating new ones. A recycled icon stays bound to the app it
+ * showed last; {@link #obtain(Object)} prefers such an icon, so pages that scroll back in don't
+ * need to be rebound either.
+ *
+ * Only used from the UI thread.
+ */
+class AppsCustomizeIconRecycler {
+    private static final String TAG = "AppsCustomizeIconRecycler";
+
+    // Oldest icons first; icons are taken from the front when no bound icon matches
+    private final ArrayList<BubbleTextView> mScrap = new ArrayList<BubbleTextView>();
+    private int mMaxScrap;
+
+    // Statistics for dumpState()
+    private int mBoundHits;
+    private int mUnboundHits;
+    private int mMisses;
+
+    /**
+     * Sets how many icons are kept at most.
+     */
+    void setMaxScrap(int maxScrap) {
+        mMaxScrap = maxScrap;
+        while (mScrap.size() > mMaxScrap) {
+            mScrap.remove(0);
+        }
+    }
+
+    /**
+     * Keeps v for reuse if it is an icon and there is room. v must already be detached.
+     */
+    void recycle(View v) {
+        if (v instanceof BubbleTextView && mScrap.size() < mMaxScrap) {
+            BubbleTextView icon = (BubbleTextView) v;
+            icon.clearPressedBackground();
+            icon.setOnFocusChangeListener(null);
+            mScrap.add(icon);
+        }
+    }
+
+    /**
+     * Returns an icon to reuse, or null if there is none. If an icon is still bound to tag it is
+     * returned; otherwise the caller must bind the icon that is returned.
+     */
+    BubbleTextView obtain(Object tag) {
+        final int index = indexOfTag(tag);
+        if (index >= 0) {
+            mBoundHits++;
+            return mScrap.remove(index);
+        }
+        if (mScrap.isEmpty()) {
+            mMisses++;
+            return null;
+        }
+        mUnboundHits++;
+        return mScrap.remove(0);
+    }
+
+    /**
+     * Returns whether there is a recycled icon bound to tag.
+     */
+    boolean hasBoundIcon(Object tag) {
+        return indexOfTag(tag) >= 0;
+    }
+
+    /**
+     * Returns the recycled icon least likely to be reused as it is, so that it can be bound to
+     * something else, or null if there is none. The icon stays in the recycler.
+     */
+    BubbleTextView peekOldest() {
+        return mScrap.isEmpty() ? null : mScrap.get(0);
+    }
+
+    /**
+     * Moves an icon that was just bound, or adds a new one, to the back of the recycler.
+     */
+    void keep(BubbleTextView icon) {
+        mScrap.remove(icon);
+        if (mScrap.size() < mMaxScrap) {
+            mScrap.add(icon);
+        }
+    }
+
+    boolean isFull() {
+        return mScrap.size() >= mMaxScrap;
+    }
+
+    private int indexOfTag(Object tag) {
+        if (tag == null) {
+            return -1;
+        }
+        for (int i = mScrap.size() - 1; i >= 0; i--) {
+            if (mScrap.get(i).getTag() == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forgets which apps the recycled icons are bound to, eg. after the apps have changed.
+     */
+    void invalidateBindings() {
+        for (int i = 0; i < mScrap.size(); i++) {
+            mScrap.get(i).setTag(null);
+        }
+    }
+
+    void clear() {
+        mScrap.clear();
+    }
+
+    void dumpState() {
+        Log.d(TAG, "scrap=" + mScrap.size() + " max=" + mMaxScrap + " boundHits=" + mBoundHits
+                + " unboundHits=" + mUnboundHits + " misses=" + mMisses);
+    }
+}
@@ -25,6 +25,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
+import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -38,6 +39,8 @@ import android.graphics.drawable.shapes.RectShape;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Process;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -193,6 +196,8 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
     // Content
     private ArrayList<AppInfo> mApps;
     private ArrayList<Object> mWidgets;
+    // Everything in the model's widget catalog, before filtering
+    private final WidgetCatalog.Mirror mWidgetCatalog = new WidgetCatalog.Mirror();
 
     private ArrayList<AppInfo> mFilteredApps;
     private ArrayList<Object> mFilteredWidgets;
@@ -242,6 +247,23 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
     private boolean mInBulkBind;
     private boolean mNeedToUpdatePageCountsAndInvalidateData;
 
+    private final PageLayerManager mLayerManager;
+
+    // Icons of unloaded app pages, reused when the next page is synced
+    private final AppsCustomizeIconRecycler mIconRecycler = new AppsCustomizeIconRecycler();
+    private ColorStateList mDefaultIconTextColors;
+    private int mPrefetchDirection;
+    private boolean mPrefetchScheduled;
+
+    // Binds recycled icons to the apps of the page that will be loaded next, one icon each time
+    // the UI thread goes idle, so that the page can be synced without inflating or binding
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+        public boolean queueIdle() {
+            mPrefetchScheduled = prefetchNextIcon();
+            return mPrefetchScheduled;
+        }
+    };
+
     public AppsCustomizePagedView(Context context, AttributeSet attrs) {
         super(context, attrs);
         mLayoutInflater = LayoutInflater.from(context);
@@ -292,6 +314,29 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
 
         updateSortMode(context);
         updateHiddenAppsList(context);
+
+        mLayerManager = new PageLayerManager(TAG, this, new PageLayerManager.LayerHost() {
+            @Override
+            public View getLayerView(int page) {
+                return getPageAt(page);
+            }
+
+            @Override
+            public boolean canHaveLayer(int page) {
+                return shouldDrawChild(getPageAt(page));
+            }
+
+            @Override
+            public void setLayerEnabled(int page, boolean enabled) {
+                getPageAt(page).setLayerType(enabled ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE,
+                        null);
+            }
+
+            @Override
+            public void buildLayer(int page) {
+                getPageAt(page).buildLayer();
+            }
+        });
     }
 
     @Override
@@ -479,6 +524,21 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         }
     }
 
+    /**
+     * Applies the changes of the model's widget catalog, in order, to the copy shown here.
+     */
+    public void onWidgetsChanged(List<WidgetCatalog.Diff> diffs) {
+        for (WidgetCatalog.Diff diff : diffs) {
+            if (!mWidgetCatalog.apply(diff)) {
+                // A change was missed, start over from what the model has now
+                mWidgetCatalog.apply(
+                        LauncherAppState.getInstance().getModel().getWidgetCatalog().snapshot());
+                break;
+            }
+        }
+        onPackagesUpdated(mWidgetCatalog.getItems());
+    }
+
     public void onPackagesUpdated(ArrayList<Object> widgetsAndShortcuts) {
         LauncherAppState app = LauncherAppState.getInstance();
         DeviceProfile grid = app.getDynamicGrid().getDeviceProfile();
@@ -940,12 +1000,15 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         cancelAllTasks();
+        cancelPrefetch();
     }
 
     @Override
     public void trimMemory() {
         super.trimMemory();
         clearAllWidgetPages();
+        cancelPrefetch();
+        mIconRecycler.clear();
     }
 
     public void clearAllWidgetPages() {
@@ -995,6 +1058,11 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
     protected void snapToPage(int whichPage, int delta, int duration) {
         super.snapToPage(whichPage, delta, duration);
 
+        if (whichPage != mCurrentPage) {
+            mPrefetchDirection = whichPage > mCurrentPage ? 1 : -1;
+            schedulePrefetch();
+        }
+
         // Update the thread priorities given the direction lookahead
         Iterator<AppsCustomizeAsyncTask> iter = mRunningTasks.iterator();
         while (iter.hasNext()) {
@@ -1066,20 +1134,18 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         ArrayList<Bitmap> images = new ArrayList<Bitmap>();
         boolean hideIconLabels = SettingsProvider.getBoolean(mLauncher,
                 SettingsProvider.KEY_DRAWER_HIDE_LABELS, false);
+        boolean whiteText = !Utilities.darkTextColor(SettingsProvider.getInt(mLauncher,
+                SettingsProvider.KEY_DRAWER_BACKGROUND, Color.WHITE));
         for (int i = startIndex; i < endIndex; ++i) {
             AppInfo info = mFilteredApps.get(i);
-            BubbleTextView icon = (BubbleTextView) mLayoutInflater.inflate(
-                    R.layout.apps_customize_application, layout, false);
-            if (!Utilities.darkTextColor(SettingsProvider.getInt(mLauncher,
-                    SettingsProvider.KEY_DRAWER_BACKGROUND, Color.WHITE))) {
-                icon.setTextColor(Color.WHITE);
+            BubbleTextView icon = mIconRecycler.obtain(info);
+            if (icon == null) {
+                icon = inflateAppIcon(layout);
             }
-            icon.applyFromApplicationInfo(info);
+            bindAppIcon(icon, info);
+            icon.setTextColor(whiteText ? ColorStateList.valueOf(Color.WHITE)
+                    : mDefaultIconTextColors);
             icon.setTextVisibility(!hideIconLabels);
-            icon.setOnClickListener(mLauncher);
-            icon.setOnLongClickListener(this);
-            icon.setOnTouchListener(this);
-            icon.setOnKeyListener(this);
             icon.setOnFocusChangeListener(layout.mFocusHandlerView);
 
             int index = i - startIndex;
@@ -1097,6 +1163,103 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         enableHwLayersOnVisiblePages();
     }
 
+    private BubbleTextView inflateAppIcon(ViewGroup parent) {
+        BubbleTextView icon = (BubbleTextView) mLayoutInflater.inflate(
+                R.layout.apps_customize_application, parent, false);
+        if (mDefaultIconTextColors == null) {
+            mDefaultIconTextColors = icon.getTextColors();
+        }
+        icon.setOnClickListener(mLauncher);
+        icon.setOnLongClickListener(this);
+        icon.setOnTouchListener(this);
+        icon.setOnKeyListener(this);
+        return icon;
+    }
+
+    private void bindAppIcon(BubbleTextView icon, AppInfo info) {
+        if (icon.getTag() != info) {
+            icon.applyFromApplicationInfo(info);
+        } else {
+            // Still bound from before it was recycled, only the badge may have changed
+            icon.setUnreadCount(LauncherAppState.getInstance().getUnreadBadgeCache()
+                    .getUnreadCount(info));
+        }
+    }
+
+    private void schedulePrefetch() {
+        if (!mPrefetchScheduled && mContentType == ContentType.Applications) {
+            mPrefetchScheduled = true;
+            Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+        }
+    }
+
+    private void cancelPrefetch() {
+        if (mPrefetchScheduled) {
+            mPrefetchScheduled = false;
+            Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+        }
+    }
+
+    /**
+     * Returns the first unloaded app page in the direction we last scrolled, within two pages
+     * of the page we are on or going to, or -1 if there is none.
+     */
+    private int getPrefetchPage() {
+        if (mContentType != ContentType.Applications || mPrefetchDirection == 0) {
+            return -1;
+        }
+        final int page = mNextPage != INVALID_PAGE ? mNextPage : mCurrentPage;
+        final int count = Math.min(getChildCount(), mDirtyPageContent.size());
+        for (int i = 1; i <= 2; i++) {
+            int p = page + i * mPrefetchDirection;
+            if (p >= 0 && p < count && mDirtyPageContent.get(p)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binds one recycled icon, or a newly inflated one while the recycler has room, to an app
+     * of the prefetch page. Returns false when there is nothing left to do.
+     */
+    private boolean prefetchNextIcon() {
+        final int page = getPrefetchPage();
+        if (page < 0 || mLauncher == null) {
+            return false;
+        }
+        final int numCells = mCellCountX * mCellCountY;
+        final int startIndex = page * numCells;
+        final int endIndex = Math.min(startIndex + numCells, mFilteredApps.size());
+        for (int i = startIndex; i < endIndex; ++i) {
+            AppInfo info = mFilteredApps.get(i);
+            if (mIconRecycler.hasBoundIcon(info)) {
+                continue;
+            }
+            BubbleTextView icon;
+            if (!mIconRecycler.isFull()) {
+                icon = inflateAppIcon(this);
+            } else {
+                icon = mIconRecycler.peekOldest();
+                if (icon == null) {
+                    return false;
+                }
+                Object tag = icon.getTag();
+                if (tag instanceof AppInfo) {
+                    int index = mFilteredApps.indexOf(tag);
+                    if (index >= startIndex && index < endIndex) {
+                        // The recycler can't hold the whole page, keep what we have
+                        return false;
+                    }
+                }
+            }
+            bindAppIcon(icon, info);
+            mIconRecycler.keep(icon);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * A helper to return the priority for loading of the specified widget page.
      */
@@ -1388,6 +1551,17 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
     public void syncPages() {
         disablePagedViewAnimations();
 
+        // Keep the icons of the old pages; the apps may have changed, so they must be rebound
+        final int numCells = mCellCountX * mCellCountY;
+        mIconRecycler.setMaxScrap(2 * numCells);
+        for (int i = 0; i < getChildCount(); i++) {
+            View v = getChildAt(i);
+            if (v instanceof AppsCustomizeCellLayout) {
+                ((AppsCustomizeCellLayout) v).removeAllViewsOnPage();
+            }
+        }
+        mIconRecycler.invalidateBindings();
+
         removeAllViews();
         cancelAllTasks();
 
@@ -1395,6 +1569,7 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         if (mContentType == ContentType.Applications) {
             for (int i = 0; i < mNumAppsPages; ++i) {
                 AppsCustomizeCellLayout layout = new AppsCustomizeCellLayout(context);
+                layout.setIconRecycler(mIconRecycler);
                 setupPage(layout);
                 addView(layout, new PagedView.LayoutParams(LayoutParams.MATCH_PARENT,
                         LayoutParams.MATCH_PARENT));
@@ -1442,43 +1617,7 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
     }
 
     private void enableHwLayersOnVisiblePages() {
-        final int screenCount = getChildCount();
-
-        getVisiblePages(mTempVisiblePagesRange);
-        int leftScreen = mTempVisiblePagesRange[0];
-        int rightScreen = mTempVisiblePagesRange[1];
-        int forceDrawScreen = -1;
-        if (leftScreen == rightScreen) {
-            // make sure we're caching at least two pages always
-            if (rightScreen < screenCount - 1) {
-                rightScreen++;
-                forceDrawScreen = rightScreen;
-            } else if (leftScreen > 0) {
-                leftScreen--;
-                forceDrawScreen = leftScreen;
-            }
-        } else {
-            forceDrawScreen = leftScreen + 1;
-        }
-
-        for (int i = 0; i < screenCount; i++) {
-            final View layout = (View) getPageAt(i);
-            if (!(leftScreen <= i && i <= rightScreen &&
-                    (i == forceDrawScreen || shouldDrawChild(layout)))) {
-                layout.setLayerType(LAYER_TYPE_NONE, null);
-            }
-        }
-
-        for (int i = 0; i < screenCount; i++) {
-            final View layout = (View) getPageAt(i);
-
-            if (leftScreen <= i && i <= rightScreen &&
-                    (i == forceDrawScreen || shouldDrawChild(layout))) {
-                if (layout.getLayerType() != LAYER_TYPE_HARDWARE) {
-                    layout.setLayerType(LAYER_TYPE_HARDWARE, null);
-                }
-            }
-        }
+        mLayerManager.update();
     }
 
     protected void overScroll(float amount) {
@@ -1500,6 +1639,7 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         // We reset the save index when we change pages so that it will be recalculated on next
         // rotation
         mSaveInstanceStateItemIndex = -1;
+        schedulePrefetch();
     }
 
     public Comparator<AppInfo> getComparatorForSortMode() {
@@ -1613,6 +1753,30 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         }
     }
 
+    /**
+     * Refreshes the unread badges of the application icons without relaying out the pages.
+     */
+    public void updateUnreadCounts() {
+        UnreadBadgeCache badges = LauncherAppState.getInstance().getUnreadBadgeCache();
+        final int pageCount = getPageCount();
+        for (int i = 0; i < pageCount; i++) {
+            View page = getPageAt(i);
+            if (!(page instanceof AppsCustomizeCellLayout)) {
+                continue;
+            }
+            ShortcutAndWidgetContainer children =
+                    ((AppsCustomizeCellLayout) page).getShortcutsAndWidgets();
+            final int childCount = children.getChildCount();
+            for (int j = 0; j < childCount; j++) {
+                View child = children.getChildAt(j);
+                if (child instanceof BubbleTextView && child.getTag() instanceof AppInfo) {
+                    ((BubbleTextView) child).setUnreadCount(
+                            badges.getUnreadCount((AppInfo) child.getTag()));
+                }
+            }
+        }
+    }
+
     public void filterAppsWithoutInvalidate() {
         updateHiddenAppsList(mLauncher);
 
@@ -1684,6 +1848,8 @@ public class AppsCustomizePagedView extends PagedViewWithDraggableItems implemen
         // TODO: Dump information related to current list of Applications, Widgets, etc.
         AppInfo.dumpApplicationInfoList(TAG, "mApps", mApps);
         dumpAppWidgetProviderInfoList(TAG, "mWidgets", mWidgets);
+        mLayerManager.dumpState();
+        mIconRecycler.dumpState();
     }
 
     private void dumpAppWidgetProviderInfoList(String tag, String label,
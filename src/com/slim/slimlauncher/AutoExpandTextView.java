@@ -148,8 +148,17 @@ public class AutoExpandTextView extends TextView {
 
             mPaint.set(getPaint());
             mPaint.setTextSize(getTextSize());
-            float letterSpacing = getLetterSpacing(text, mPaint, targetWidth, low, high,
-                    mPrecision);
+            Float cached = TextFitCache.get(TextFitCache.TYPE_LETTER_SPACING, text, targetWidth,
+                    1, mPaint, getTextSize(), mPrecision);
+            float letterSpacing;
+            if (cached != null) {
+                letterSpacing = cached;
+            } else {
+                letterSpacing = getLetterSpacing(text, mPaint, targetWidth, low, high,
+                        mPrecision);
+                TextFitCache.put(TextFitCache.TYPE_LETTER_SPACING, text, targetWidth, 1,
+                        mPaint, getTextSize(), mPrecision, letterSpacing);
+            }
             mPaint.setLetterSpacing(letterSpacing);
             calculateSections(text);
 
@@ -284,10 +284,21 @@ public class AutoFitTextView extends TextView {
             mPaint.set(getPaint());
             mPaint.setTextSize(size);
 
-            if ((mMaxLines == 1 && mPaint.measureText(text, 0, text.length()) > targetWidth)
-                    || getLineCount(text, mPaint, size, targetWidth, displayMetrics) > mMaxLines) {
-                size = getTextSize(text, mPaint, targetWidth, mMaxLines, low, high, mPrecision,
-                        displayMetrics);
+            // Recycled drawer rows fit the same labels over and over, so skip the measuring
+            // when this text has already been fitted to this width
+            Float cached = TextFitCache.get(TextFitCache.TYPE_TEXT_SIZE, text, targetWidth,
+                    mMaxLines, mPaint, mMaxTextSize, mPrecision);
+            if (cached != null) {
+                size = cached;
+            } else {
+                if ((mMaxLines == 1 && mPaint.measureText(text, 0, text.length()) > targetWidth)
+                        || getLineCount(text, mPaint, size, targetWidth, displayMetrics)
+                        > mMaxLines) {
+                    size = getTextSize(text, mPaint, targetWidth, mMaxLines, low, high,
+                            mPrecision, displayMetrics);
+                }
+                TextFitCache.put(TextFitCache.TYPE_TEXT_SIZE, text, targetWidth, mMaxLines,
+                        mPaint, mMaxTextSize, mPrecision, size);
             }
 
             if (size < mMinTextSize) {
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+import com.android.gallery3d.common.BitmapPool;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Keeps track of how much bitmap memory each cache of the launcher holds, so that memory
+ * growth can be attributed without dumping the heap. Owners register under a name and report
+ * their live bitmaps when asked; several owners may share a name (eg. every folder icon), in
+ * which case they are added up.
+ *
+ * The registry only holds weak references to the owners, so an owner should implement
+ * {@link BitmapOwner} itself (or keep a strong reference to it) and doesn't need to unregister.
+ *
+ * {@link MemoryTracker} samples the owners into {@link OwnerMemInfo} histories, which are shown
+ * by {@link WeightWatcher}, and the current values are part of the launcher dumps.
+ */
+final class BitmapMemoryRegistry {
+    private static final String TAG = "BitmapMemoryRegistry";
+
+    static final String OWNER_ICON_CACHE = "icons";
+    static final String OWNER_WIDGET_PREVIEWS = "widgetPreviews";
+    static final String OWNER_FOLDER_PREVIEWS = "folderPreviews";
+    static final String OWNER_DRAG_BITMAPS = "dragBitmaps";
+    static final String OWNER_WALLPAPER_TILES = "wallpaperTiles";
+
+    private static final int HISTORY_SIZE = 256;
+
+    // The owners of a name are checked for cleared references once there are this many
+    private static final int MIN_PRUNE_SIZE = 16;
+
+    interface BitmapOwner {
+        /**
+         * Reports the bitmaps held by this owner to counter. May be called from any thread, so
+         * owners should take the same locks they use to access their bitmaps.
+         */
+        void countBitmaps(Counter counter);
+    }
+
+    /**
+     * Adds up bitmaps, counting a bitmap reported more than once by the same owner only once.
+     */
+    static final class Counter {
+        private final IdentityHashMap<Bitmap, Boolean> mSeen =
+                new IdentityHashMap<Bitmap, Boolean>();
+        int count;
+        long bytes;
+
+        void add(Bitmap bitmap) {
+            if (bitmap == null || bitmap.isRecycled() || mSeen.put(bitmap, Boolean.TRUE) != null) {
+                return;
+            }
+            count++;
+            bytes += getAllocationByteCount(bitmap);
+        }
+
+        /**
+         * Adds bitmaps that the owner only knows the totals of, eg. a {@link BitmapPool}.
+         */
+        void add(int bitmapCount, long bitmapBytes) {
+            count += bitmapCount;
+            bytes += bitmapBytes;
+        }
+
+        private void reset() {
+            mSeen.clear();
+            count = 0;
+            bytes = 0;
+        }
+    }
+
+    /**
+     * The bitmap memory of all the owners registered under one name, see
+     * {@link MemoryTracker.ProcessMemInfo}.
+     */
+    static class OwnerMemInfo {
+        final String name;
+        int currentCount;
+        long currentBytes;
+        final long[] bytes = new long[HISTORY_SIZE];
+        final int[] counts = new int[HISTORY_SIZE];
+        long max = 1;
+        int head = 0;
+
+        private final ArrayList<WeakReference<BitmapOwner>> mOwners =
+                new ArrayList<WeakReference<BitmapOwner>>();
+        private int mPruneSize = MIN_PRUNE_SIZE;
+
+        OwnerMemInfo(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds an owner. The owners that were collected are dropped whenever the list has doubled
+         * since it was last pruned, so it stays bounded when nothing samples the registry.
+         */
+        private void add(BitmapOwner owner) {
+            if (mOwners.size() >= mPruneSize) {
+                for (int i = mOwners.size() - 1; i >= 0; i--) {
+                    if (mOwners.get(i).get() == null) {
+                        mOwners.remove(i);
+                    }
+                }
+                mPruneSize = Math.max(MIN_PRUNE_SIZE, mOwners.size() * 2);
+            }
+            mOwners.add(new WeakReference<BitmapOwner>(owner));
+        }
+
+        /**
+         * Asks the owners still alive for their bitmaps, and forgets the others.
+         */
+        private void count(Counter counter) {
+            counter.reset();
+            for (int i = mOwners.size() - 1; i >= 0; i--) {
+                BitmapOwner owner = mOwners.get(i).get();
+                if (owner == null) {
+                    mOwners.remove(i);
+                } else {
+                    owner.countBitmaps(counter);
+                }
+            }
+            currentCount = counter.count;
+            currentBytes = counter.bytes;
+        }
+
+        private void sample(Counter counter) {
+            count(counter);
+            head = (head + 1) % bytes.length;
+            bytes[head] = currentBytes;
+            counts[head] = currentCount;
+            if (currentBytes > max) max = currentBytes;
+        }
+
+        String format() {
+            return name + " bitmaps=" + currentCount + " kb=" + currentBytes / 1024
+                    + " maxKb=" + max / 1024 + " owners=" + mOwners.size();
+        }
+    }
+
+    private static final ArrayList<OwnerMemInfo> sOwners = new ArrayList<OwnerMemInfo>();
+    private static final Counter sCounter = new Counter();
+
+    // The wallpaper tiles outlive the picker, so they are not owned by any launcher object
+    private static final BitmapOwner sWallpaperTiles = new BitmapOwner() {
+        @Override
+        public void countBitmaps(Counter counter) {
+            BitmapPool pool = BitmapPool.getSharedPool();
+            counter.add(pool.getBitmapCount(), pool.getByteCount());
+        }
+    };
+
+    static {
+        register(OWNER_WALLPAPER_TILES, sWallpaperTiles);
+    }
+
+    private BitmapMemoryRegistry() {
+    }
+
+    static long getAllocationByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    static void register(String name, BitmapOwner owner) {
+        synchronized (sOwners) {
+            getOrCreateL(name).add(owner);
+        }
+    }
+
+    private static OwnerMemInfo getOrCreateL(String name) {
+        for (int i = 0; i < sOwners.size(); i++) {
+            if (sOwners.get(i).name.equals(name)) {
+                return sOwners.get(i);
+            }
+        }
+        OwnerMemInfo info = new OwnerMemInfo(name);
+        sOwners.add(info);
+        return info;
+    }
+
+    /**
+     * Appends the current values of every owner to their histories.
+     */
+    static void sample() {
+        synchronized (sOwners) {
+            for (int i = 0; i < sOwners.size(); i++) {
+                sOwners.get(i).sample(sCounter);
+            }
+            sCounter.reset();
+        }
+    }
+
+    /**
+     * Returns the histories of the owners, in the order they were first registered.
+     */
+    static OwnerMemInfo[] getOwners() {
+        synchronized (sOwners) {
+            return sOwners.toArray(new OwnerMemInfo[sOwners.size()]);
+        }
+    }
+
+    /**
+     * Counts the bitmaps of every owner now, without adding to the histories, and returns one
+     * line per owner name.
+     */
+    static String[] countNow() {
+        synchronized (sOwners) {
+            final int N = sOwners.size();
+            String[] lines = new String[N];
+            for (int i = 0; i < N; i++) {
+                OwnerMemInfo info = sOwners.get(i);
+                info.count(sCounter);
+                lines[i] = info.format();
+            }
+            sCounter.reset();
+            return lines;
+        }
+    }
+
+    static void dumpState() {
+        for (String line : countNow()) {
+            Log.d(TAG, line);
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        writer.println(" ");
+        writer.println("Bitmap memory:");
+        for (String line : countNow()) {
+            writer.println("  " + line);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.content.res.Resources.Theme;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.Region;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
@@ -67,6 +68,9 @@ public class BubbleTextView extends TextView {
     private boolean mIgnorePressedStateChange;
     private CheckLongPressHelper mLongPressHelper;
 
+    private UnreadBadgeCache mUnreadBadges;
+    private int mUnreadCount;
+
     public BubbleTextView(Context context) {
         this(context, null, 0);
     }
@@ -106,6 +110,7 @@ public class BubbleTextView extends TextView {
         mLongPressHelper = new CheckLongPressHelper(this);
 
         mOutlineHelper = HolographicOutlineHelper.obtain(getContext());
+        mUnreadBadges = LauncherAppState.getInstance().getUnreadBadgeCache();
         if (mCustomShadowsEnabled) {
             setShadowLayer(SHADOW_LARGE_RADIUS, 0.0f, SHADOW_Y_OFFSET, SHADOW_LARGE_COLOUR);
         }
@@ -134,6 +139,7 @@ public class BubbleTextView extends TextView {
         }
         setText(info.title);
         setTag(info);
+        setUnreadCount(mUnreadBadges.getUnreadCount(info));
 
         if (promiseStateChanged || info.isPromise()) {
             applyState(promiseStateChanged);
@@ -153,8 +159,23 @@ public class BubbleTextView extends TextView {
             setContentDescription(info.contentDescription);
         }
         setTag(info);
+        setUnreadCount(mUnreadBadges.getUnreadCount(info));
+    }
+
+    /**
+     * Sets the count drawn in the badge over the icon; 0 hides the badge. The icon itself is
+     * left untouched, so this only costs an invalidate.
+     */
+    public void setUnreadCount(int count) {
+        if (mUnreadCount != count) {
+            mUnreadCount = count;
+            invalidate();
+        }
     }
 
+    public int getUnreadCount() {
+        return mUnreadCount;
+    }
 
     @Override
     protected boolean setFrame(int left, int top, int right, int bottom) {
@@ -207,6 +228,9 @@ public class BubbleTextView extends TextView {
                 if (mPressedBackground == null) {
                     mPressedBackground = mOutlineHelper.createMediumDropShadow(this);
                 }
+                // Likewise, start creating the drop outline in case this turns into a drag
+                DragOutlineCache.obtain(getContext()).prefetch(this,
+                        Workspace.DRAG_BITMAP_PADDING);
 
                 mLongPressHelper.postCheckForLongPress();
                 break;
@@ -279,6 +303,7 @@ public class BubbleTextView extends TextView {
     public void draw(Canvas canvas) {
         if (!mCustomShadowsEnabled) {
             super.draw(canvas);
+            drawUnreadBadge(canvas);
             return;
         }
 
@@ -305,6 +330,7 @@ public class BubbleTextView extends TextView {
         if (getCurrentTextColor() == getResources().getColor(android.R.color.transparent)) {
             getPaint().clearShadowLayer();
             super.draw(canvas);
+            drawUnreadBadge(canvas);
             return;
         }
 
@@ -318,6 +344,23 @@ public class BubbleTextView extends TextView {
         getPaint().setShadowLayer(SHADOW_SMALL_RADIUS, 0.0f, 0.0f, SHADOW_SMALL_COLOUR);
         super.draw(canvas);
         canvas.restore();
+        drawUnreadBadge(canvas);
+    }
+
+    private void drawUnreadBadge(Canvas canvas) {
+        if (mUnreadCount <= 0) {
+            return;
+        }
+        Drawable top = getCompoundDrawables()[1];
+        if (top == null) {
+            return;
+        }
+        // Same placement as TextView uses for the top compound drawable
+        final Rect bounds = top.getBounds();
+        final int hspace = getWidth() - getCompoundPaddingRight() - getCompoundPaddingLeft();
+        final int left = getScrollX() + getCompoundPaddingLeft() + (hspace - bounds.width()) / 2;
+        final int y = getScrollY() + getPaddingTop();
+        mUnreadBadges.drawBadge(canvas, mUnreadCount, left + bounds.width(), y);
     }
 
     @Override
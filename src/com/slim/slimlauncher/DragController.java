@@ -25,6 +25,7 @@ import android.graphics.PointF;
 import android.graphics.Rect;
 import android.os.Handler;
 import android.os.IBinder;
+import android.support.annotation.VisibleForTesting;
 import android.util.Log;
 import android.view.HapticFeedbackConstants;
 import android.view.KeyEvent;
@@ -34,13 +35,15 @@ import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.inputmethod.InputMethodManager;
 
+import com.android.gallery3d.common.BitmapPool;
+
 import java.util.ArrayList;
 import java.util.HashSet;
 
 /**
  * Class for initiating a drag within a view or across multiple views.
  */
-public class DragController {
+public class DragController implements BitmapMemoryRegistry.BitmapOwner {
     private static final String TAG = "Launcher.DragController";
 
     /** Indicates the drag is a move.  */
@@ -63,6 +66,9 @@ public class DragController {
 
     private static final float MAX_FLING_DEGREES = 35f;
 
+    // Enough for the drag bitmaps of a few drags in a row, even with large icons
+    private static final int MAX_POOLED_BITMAP_BYTES = 4 * 1024 * 1024;
+
     private Launcher mLauncher;
     private Handler mHandler;
 
@@ -86,6 +92,11 @@ public class DragController {
 
     private DropTarget.DragObject mDragObject;
 
+    /** Bitmaps of finished drags, reused by the next ones. */
+    private final BitmapPool mBitmapPool = new BitmapPool(MAX_POOLED_BITMAP_BYTES);
+    /** The view of the last finished drag, reused by the next one. */
+    private DragView mRecycledDragView;
+
     /** Who can receive drop events */
     private ArrayList<DropTarget> mDropTargets = new ArrayList<DropTarget>();
     private ArrayList<DragListener> mListeners = new ArrayList<DragListener>();
@@ -152,12 +163,29 @@ public class DragController {
         float density = r.getDisplayMetrics().density;
         mFlingToDeleteThresholdVelocity =
                 (int) (r.getInteger(R.integer.config_flingToDeleteMinVelocity) * density);
+
+        BitmapMemoryRegistry.register(BitmapMemoryRegistry.OWNER_DRAG_BITMAPS, this);
+    }
+
+    @Override
+    public void countBitmaps(BitmapMemoryRegistry.Counter counter) {
+        counter.add(mBitmapPool.getBitmapCount(), mBitmapPool.getByteCount());
     }
 
     public boolean dragging() {
         return mDragging;
     }
 
+    /**
+     * Returns the pool that drag bitmaps should be taken from and given back to, so that
+     * dragging does not allocate new bitmaps once a few drags have been done. Public so that
+     * the stress tests can read the pool counters.
+     */
+    @VisibleForTesting
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
     /**
      * Starts a drag.
      *
@@ -228,6 +256,7 @@ public class DragController {
         final int dragRegionTop = dragRegion == null ? 0 : dragRegion.top;
 
         mDragging = true;
+        FrameStats.begin(FrameStats.INTERACTION_DRAG);
 
         mDragObject = new DropTarget.DragObject();
 
@@ -237,8 +266,16 @@ public class DragController {
         mDragObject.dragSource = source;
         mDragObject.dragInfo = dragInfo;
 
-        final DragView dragView = mDragObject.dragView = new DragView(mLauncher, b, registrationX,
-                registrationY, 0, 0, b.getWidth(), b.getHeight(), initialDragViewScale);
+        DragView dragView = mRecycledDragView;
+        mRecycledDragView = null;
+        if (dragView != null && dragView.getParent() == null) {
+            dragView.reset(b, registrationX, registrationY, 0, 0, b.getWidth(), b.getHeight(),
+                    initialDragViewScale);
+        } else {
+            dragView = new DragView(mLauncher, b, registrationX, registrationY, 0, 0,
+                    b.getWidth(), b.getHeight(), initialDragViewScale);
+        }
+        mDragObject.dragView = dragView;
 
         if (dragOffset != null) {
             dragView.setDragVisualizeOffset(new Point(dragOffset));
@@ -349,12 +386,14 @@ public class DragController {
     private void endDrag() {
         if (mDragging) {
             mDragging = false;
+            FrameStats.end(FrameStats.INTERACTION_DRAG);
             clearScrollRunnable();
             boolean isDeferred = false;
             if (mDragObject.dragView != null) {
                 isDeferred = mDragObject.deferDragViewCleanupPostAnimation;
                 if (!isDeferred) {
                     mDragObject.dragView.remove();
+                    recycleDragView(mDragObject.dragView);
                 }
                 mDragObject.dragView = null;
             }
@@ -375,6 +414,7 @@ public class DragController {
      */
     void onDeferredEndDrag(DragView dragView) {
         dragView.remove();
+        recycleDragView(dragView);
 
         if (mDragObject.deferDragViewCleanupPostAnimation) {
             // If we skipped calling onDragEnd() before, do it now
@@ -384,6 +424,21 @@ public class DragController {
         }
     }
 
+    /**
+     * Keeps a drag view that has been removed from the drag layer for the next drag. Only
+     * one view is kept; the bitmap of the one it replaces goes back to the pool.
+     */
+    private void recycleDragView(DragView dragView) {
+        if (dragView == mRecycledDragView || (mDragObject != null
+                && dragView == mDragObject.dragView && mDragging)) {
+            return;
+        }
+        if (mRecycledDragView != null) {
+            mRecycledDragView.releaseBitmap();
+        }
+        mRecycledDragView = dragView;
+    }
+
     void onDeferredEndFling(DropTarget.DragObject d) {
         d.dragSource.onFlingToDeleteCompleted();
     }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps the drop outlines of recently touched icons, so that starting a drag does not have to
+ * blur the icon while the finger is already moving. Outlines are keyed by the item, the identity
+ * of its icon bitmap and the outline size, so a new icon or a resize simply misses the cache.
+ *
+ * Outlines are shared and must not be modified or recycled by callers.
+ */
+class DragOutlineCache {
+    private static final String TAG = "DragOutlineCache";
+    private static final int MAX_CACHE_BYTES = 4 * 1024 * 1024;
+
+    private static DragOutlineCache INSTANCE;
+
+    private final HolographicOutlineHelper mOutlineHelper;
+    private final int mOutlineColor;
+    private final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final LruCache<Key, Bitmap> mCache = new LruCache<Key, Bitmap>(MAX_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(Key key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    // The outlines being created in the background, guarded by itself
+    private final HashMap<Key, FutureTask<Bitmap>> mPending =
+            new HashMap<Key, FutureTask<Bitmap>>();
+
+    private DragOutlineCache(Context context) {
+        mOutlineHelper = HolographicOutlineHelper.obtain(context);
+        mOutlineColor = context.getResources().getColor(R.color.outline_color);
+    }
+
+    static DragOutlineCache obtain(Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new DragOutlineCache(context);
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Starts creating the outline for v in the background, if it is not cached yet. Called when
+     * the icon is touched, so the outline is usually ready by the time the long press fires.
+     */
+    void prefetch(BubbleTextView v, int padding) {
+        final Key key = Key.forView(v, padding);
+        if (key == null || mCache.get(key) != null) {
+            return;
+        }
+        final FutureTask<Bitmap> task = new FutureTask<Bitmap>(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                try {
+                    final Bitmap outline = createOutline(key);
+                    mCache.put(key, outline);
+                    return outline;
+                } finally {
+                    synchronized (mPending) {
+                        mPending.remove(key);
+                    }
+                }
+            }
+        });
+        synchronized (mPending) {
+            if (mPending.containsKey(key)) {
+                return;
+            }
+            mPending.put(key, task);
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Returns the outline for v, or null if the icon of v cannot be cached. If the outline is
+     * not cached, waits for its prefetch, or creates it on the calling thread.
+     */
+    Bitmap get(BubbleTextView v, int padding) {
+        final Key key = Key.forView(v, padding);
+        if (key == null) {
+            return null;
+        }
+        Bitmap outline = mCache.get(key);
+        if (outline != null) {
+            return outline;
+        }
+        final FutureTask<Bitmap> task;
+        synchronized (mPending) {
+            task = mPending.get(key);
+        }
+        if (task != null) {
+            // Runs the prefetch here if it is still queued behind other tasks, else waits for it
+            task.run();
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Couldn't create outline", e.getCause());
+            }
+        } else {
+            // The prefetch may have finished since the cache was checked
+            outline = mCache.get(key);
+            if (outline != null) {
+                return outline;
+            }
+        }
+        outline = createOutline(key);
+        mCache.put(key, outline);
+        return outline;
+    }
+
+    /**
+     * Same as Workspace.createDragOutline(View, int) for a text view, but drawing the icon
+     * bitmap directly so that it can run off the UI thread.
+     */
+    private Bitmap createOutline(Key key) {
+        final Bitmap b = Bitmap.createBitmap(key.width, key.height, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(b);
+        final int padding = key.padding;
+        canvas.translate(padding / 2, padding / 2);
+        canvas.drawBitmap(key.icon, null, key.iconBounds, mBitmapPaint);
+        canvas.setBitmap(null);
+        mOutlineHelper.applyExpensiveOutlineWithBlur(b, mOutlineColor, mOutlineColor);
+        return b;
+    }
+
+    private static class Key {
+        final long id;
+        final Bitmap icon;
+        final Rect iconBounds;
+        final int width;
+        final int height;
+        final int padding;
+
+        private Key(long id, Bitmap icon, Rect iconBounds, int width, int height, int padding) {
+            this.id = id;
+            this.icon = icon;
+            this.iconBounds = iconBounds;
+            this.width = width;
+            this.height = height;
+            this.padding = padding;
+        }
+
+        static Key forView(BubbleTextView v, int padding) {
+            final Drawable d = v.getCompoundDrawables()[1];
+            if (!(d instanceof FastBitmapDrawable) || !(v.getTag() instanceof ItemInfo)
+                    || v.getWidth() == 0 || v.getHeight() == 0) {
+                // Preloading icons change as the install progresses
+                return null;
+            }
+            final Bitmap icon = ((FastBitmapDrawable) d).getBitmap();
+            final Rect bounds = d.copyBounds();
+            if (icon == null || bounds.isEmpty()) {
+                return null;
+            }
+            return new Key(((ItemInfo) v.getTag()).id, icon, bounds,
+                    v.getWidth() + padding, v.getHeight() + padding, padding);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (id ^ (id >>> 32));
+            result = 31 * result + System.identityHashCode(icon);
+            result = 31 * result + iconBounds.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return 31 * result + padding;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return id == k.id && icon == k.icon && iconBounds.equals(k.iconBounds)
+                    && width == k.width && height == k.height && padding == k.padding;
+        }
+    }
+}
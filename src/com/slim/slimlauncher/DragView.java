@@ -21,6 +21,7 @@ import android.animation.ValueAnimator.AnimatorUpdateListener;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.PorterDuff;
@@ -29,12 +30,18 @@ import android.graphics.Rect;
 import android.view.View;
 import android.view.animation.DecelerateInterpolator;
 
+import com.android.gallery3d.common.BitmapPool;
+
 public class DragView extends View {
     private static float sDragAlpha = 1f;
 
+    private final BitmapPool mBitmapPool;
+    private final Canvas mCanvas = new Canvas();
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
     private Bitmap mBitmap;
     private Bitmap mCrossFadeBitmap;
-    private Paint mPaint;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
     private int mRegistrationX;
     private int mRegistrationY;
 
@@ -48,6 +55,11 @@ public class DragView extends View {
     private float mOffsetX = 0.0f;
     private float mOffsetY = 0.0f;
     private float mInitialScale = 1f;
+    private float mStartScale = 1f;
+    private float mTargetScale = 1f;
+    private final float mTargetOffsetX;
+    private final float mTargetOffsetY;
+    private final float mScaleDps;
     // The intrinsic icon scale factor is the scale factor for a drag icon over the workspace
     // size.  This is ignored for non-icons.
     private float mIntrinsicIconScale = 1f;
@@ -67,17 +79,12 @@ public class DragView extends View {
             int left, int top, int width, int height, final float initialScale) {
         super(launcher);
         mDragLayer = launcher.getDragLayer();
-        mInitialScale = initialScale;
+        mBitmapPool = launcher.getDragController().getBitmapPool();
 
         final Resources res = getResources();
-        final float offsetX = res.getDimensionPixelSize(R.dimen.dragViewOffsetX);
-        final float offsetY = res.getDimensionPixelSize(R.dimen.dragViewOffsetY);
-        final float scaleDps = res.getDimensionPixelSize(R.dimen.dragViewScale);
-        final float scale = (width + scaleDps) / width;
-
-        // Set the initial scale to avoid any jumps
-        setScaleX(initialScale);
-        setScaleY(initialScale);
+        mTargetOffsetX = res.getDimensionPixelSize(R.dimen.dragViewOffsetX);
+        mTargetOffsetY = res.getDimensionPixelSize(R.dimen.dragViewOffsetY);
+        mScaleDps = res.getDimensionPixelSize(R.dimen.dragViewScale);
 
         // Animate the view into the correct position
         mAnim = LauncherAnimUtils.ofFloat(this, 0f, 1f);
@@ -87,13 +94,13 @@ public class DragView extends View {
             public void onAnimationUpdate(ValueAnimator animation) {
                 final float value = (Float) animation.getAnimatedValue();
 
-                final int deltaX = (int) ((value * offsetX) - mOffsetX);
-                final int deltaY = (int) ((value * offsetY) - mOffsetY);
+                final int deltaX = (int) ((value * mTargetOffsetX) - mOffsetX);
+                final int deltaY = (int) ((value * mTargetOffsetY) - mOffsetY);
 
                 mOffsetX += deltaX;
                 mOffsetY += deltaY;
-                setScaleX(initialScale + (value * (scale - initialScale)));
-                setScaleY(initialScale + (value * (scale - initialScale)));
+                setScaleX(mStartScale + (value * (mTargetScale - mStartScale)));
+                setScaleY(mStartScale + (value * (mTargetScale - mStartScale)));
                 if (sDragAlpha != 1f) {
                     setAlpha(sDragAlpha * value + (1f - value));
                 }
@@ -107,7 +114,34 @@ public class DragView extends View {
             }
         });
 
-        mBitmap = Bitmap.createBitmap(bitmap, left, top, width, height);
+        reset(bitmap, registrationX, registrationY, left, top, width, height, initialScale);
+    }
+
+    /**
+     * Prepares this view, which must have been removed from the drag layer, for a new drag.
+     * The view keeps its animator, paint and, if the size matches, its bitmap.
+     */
+    void reset(Bitmap bitmap, int registrationX, int registrationY,
+            int left, int top, int width, int height, float initialScale) {
+        cancelAnimation();
+        removeCallbacks(mStartAnimRunnable);
+        mInitialScale = initialScale;
+        mStartScale = initialScale;
+        mTargetScale = (width + mScaleDps) / width;
+        mIntrinsicIconScale = 1f;
+        mOffsetX = mOffsetY = 0;
+        mHasDrawn = false;
+        mCrossFadeBitmap = null;
+        mCrossFadeProgress = 0f;
+        mDragVisualizeOffset = null;
+
+        // Set the initial scale to avoid any jumps
+        setScaleX(initialScale);
+        setScaleY(initialScale);
+        setAlpha(1f);
+        mPaint.setColorFilter(null);
+
+        setBitmap(bitmap, left, top, width, height);
         setDragRegion(new Rect(0, 0, width, height));
 
         // The point in our scaled bitmap that the touch events are located
@@ -117,7 +151,32 @@ public class DragView extends View {
         // Force a measure, because Workspace uses getMeasuredHeight() before the layout pass
         int ms = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
         measure(ms, ms);
-        mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    private void setBitmap(Bitmap bitmap, int left, int top, int width, int height) {
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            releaseBitmap();
+            mBitmap = mBitmapPool.acquireOrCreate(width, height, Bitmap.Config.ARGB_8888);
+        }
+        mBitmap.eraseColor(Color.TRANSPARENT);
+        mBitmap.setDensity(bitmap.getDensity());
+        // Drawing with rects, so that the density of the source does not scale it
+        mSrcRect.set(left, top, left + width, top + height);
+        mDstRect.set(0, 0, width, height);
+        mCanvas.setBitmap(mBitmap);
+        mCanvas.drawBitmap(bitmap, mSrcRect, mDstRect, null);
+        mCanvas.setBitmap(null);
+    }
+
+    /**
+     * Gives the bitmap of this view back to the pool. The view must not be shown again
+     * before it is reset.
+     */
+    void releaseBitmap() {
+        if (mBitmap != null) {
+            mBitmapPool.release(mBitmap);
+            mBitmap = null;
+        }
     }
 
     /** Sets the scale of the view over the normal workspace icon size. */
@@ -225,9 +284,6 @@ public class DragView extends View {
     }
 
     public void setColor(int color) {
-        if (mPaint == null) {
-            mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
-        }
         if (color != 0) {
             mPaint.setColorFilter(new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_ATOP));
         } else {
@@ -258,7 +314,8 @@ public class DragView extends View {
         mDragLayer.addView(this);
 
         // Start the pick-up animation
-        DragLayer.LayoutParams lp = new DragLayer.LayoutParams(0, 0);
+        DragLayer.LayoutParams lp = getLayoutParams() instanceof DragLayer.LayoutParams
+                ? (DragLayer.LayoutParams) getLayoutParams() : new DragLayer.LayoutParams(0, 0);
         lp.width = mBitmap.getWidth();
         lp.height = mBitmap.getHeight();
         lp.customPosition = true;
@@ -266,13 +323,15 @@ public class DragView extends View {
         setTranslationX(touchX - mRegistrationX);
         setTranslationY(touchY - mRegistrationY);
         // Post the animation to skip other expensive work happening on the first frame
-        post(new Runnable() {
-                public void run() {
-                    mAnim.start();
-                }
-            });
+        post(mStartAnimRunnable);
     }
 
+    private final Runnable mStartAnimRunnable = new Runnable() {
+        public void run() {
+            mAnim.start();
+        }
+    };
+
     public void cancelAnimation() {
         if (mAnim != null && mAnim.isRunning()) {
             mAnim.cancel();
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds the most recent debug logs of {@link Launcher#addDumpLog}. Writers never block: each log
+ * claims the next slot with an atomic counter and replaces the oldest entry once the buffer is
+ * full. A writer that was overtaken by one that wrapped around to the same slot drops its log
+ * instead of replacing the newer one. The entries keep the raw time, tag and message, and are
+ * only formatted when they are dumped.
+ */
+final class DumpLogBuffer {
+
+    private static final class Entry {
+        final long seq;
+        final long time;
+        final String tag;
+        final String log;
+        final Throwable e;
+
+        Entry(long seq, long time, String tag, String log, Throwable e) {
+            this.seq = seq;
+            this.time = time;
+            this.tag = tag;
+            this.log = log;
+            this.e = e;
+        }
+    }
+
+    private static final Comparator<Entry> SEQ_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            return lhs.seq < rhs.seq ? -1 : (lhs.seq == rhs.seq ? 0 : 1);
+        }
+    };
+
+    private final AtomicReferenceArray<Entry> mEntries;
+    private final AtomicLong mNextSeq = new AtomicLong();
+    private final int mMask;
+
+    // Only used while dumping, under the lock of this buffer
+    private final DateFormat mDateFormat =
+            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    private final Date mDate = new Date();
+
+    /**
+     * @param capacity The number of logs kept, must be a power of two.
+     */
+    DumpLogBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        mEntries = new AtomicReferenceArray<Entry>(capacity);
+        mMask = capacity - 1;
+    }
+
+    void add(String tag, String log, Throwable e) {
+        final long seq = mNextSeq.getAndIncrement();
+        final int slot = (int) (seq & mMask);
+        final Entry entry = new Entry(seq, System.currentTimeMillis(), tag, log, e);
+        while (true) {
+            final Entry current = mEntries.get(slot);
+            if (current != null && current.seq > seq) {
+                return;
+            }
+            if (mEntries.compareAndSet(slot, current, entry)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the logs in the order they were added.
+     */
+    private Entry[] snapshot() {
+        final int capacity = mEntries.length();
+        Entry[] entries = new Entry[capacity];
+        int count = 0;
+        for (int i = 0; i < capacity; i++) {
+            Entry entry = mEntries.get(i);
+            if (entry != null) {
+                entries[count++] = entry;
+            }
+        }
+        entries = Arrays.copyOf(entries, count);
+        Arrays.sort(entries, SEQ_COMPARATOR);
+        return entries;
+    }
+
+    private String format(Entry entry) {
+        mDate.setTime(entry.time);
+        return mDateFormat.format(mDate) + ": " + entry.tag + ", " + entry.log
+                + (entry.e == null ? "" : (", Exception: " + entry.e));
+    }
+
+    synchronized void dump(PrintWriter writer, String prefix) {
+        final Entry[] entries = snapshot();
+        final long dropped = mNextSeq.get() - entries.length;
+        if (dropped > 0) {
+            writer.println(prefix + "(" + dropped + " older logs dropped)");
+        }
+        for (Entry entry : entries) {
+            writer.println(prefix + format(entry));
+        }
+    }
+
+    synchronized void dumpToLog(String tag, String prefix) {
+        for (Entry entry : snapshot()) {
+            Log.d(tag, prefix + format(entry));
+        }
+    }
+}
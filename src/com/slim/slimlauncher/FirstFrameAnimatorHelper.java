@@ -40,6 +40,17 @@ public class FirstFrameAnimatorHelper extends AnimatorListenerAdapter
     private boolean mHandlingOnAnimationUpdate;
     private boolean mAdjustedSecondFrameTime;
 
+    // The animation to stop listening to once the first frames are done
+    private ValueAnimator mRemoveFromAnimation;
+    private final Runnable mRemoveListenerRunnable = new Runnable() {
+        public void run() {
+            if (mRemoveFromAnimation != null) {
+                mRemoveFromAnimation.removeUpdateListener(FirstFrameAnimatorHelper.this);
+                mRemoveFromAnimation = null;
+            }
+        }
+    };
+
     private static ViewTreeObserver.OnDrawListener sGlobalDrawListener;
     private static long sGlobalFrameCounter;
     private static boolean sVisible;
@@ -54,6 +65,16 @@ public class FirstFrameAnimatorHelper extends AnimatorListenerAdapter
         vpa.setListener(this);
     }
 
+    /**
+     * Prepares the helper to be used for another run of the same ViewPropertyAnimator.
+     */
+    public void reset() {
+        mTarget.removeCallbacks(mRemoveListenerRunnable);
+        mRemoveListenerRunnable.run();
+        mStartTime = -1;
+        mAdjustedSecondFrameTime = false;
+    }
+
     // only used for ViewPropertyAnimators
     public void onAnimationStart(Animator animation) {
         final ValueAnimator va = (ValueAnimator) animation;
@@ -120,12 +141,9 @@ public class FirstFrameAnimatorHelper extends AnimatorListenerAdapter
                 animation.setCurrentPlayTime(IDEAL_FRAME_DURATION);
                 mAdjustedSecondFrameTime = true;
             } else {
-                if (frameNum > 1) {
-                    mTarget.post(new Runnable() {
-                            public void run() {
-                                animation.removeUpdateListener(FirstFrameAnimatorHelper.this);
-                            }
-                        });
+                if (frameNum > 1 && mRemoveFromAnimation == null) {
+                    mRemoveFromAnimation = animation;
+                    mTarget.post(mRemoveListenerRunnable);
                 }
                 if (DEBUG) print(animation);
             }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+/**
+ * The fling and viscous fluid curves used by {@link LauncherScroller}. The tables are computed
+ * once and shared by all scrollers. This class must not depend on the framework, so that it can
+ * be tested and benchmarked on the host.
+ */
+final class FlingSpline {
+    static final float DECELERATION_RATE = (float) (Math.log(0.78) / Math.log(0.9));
+    static final float INFLEXION = 0.35f; // Tension lines cross at (INFLEXION, 1)
+    private static final float START_TENSION = 0.5f;
+    private static final float END_TENSION = 1.0f;
+    private static final float P1 = START_TENSION * INFLEXION;
+    private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+
+    private static final double DECEL_MINUS_ONE = DECELERATION_RATE - 1.0;
+    private static final double DISTANCE_EXPONENT = DECELERATION_RATE / DECEL_MINUS_ONE;
+
+    static final int NB_SAMPLES = 100;
+    private static final float[] SPLINE_POSITION = new float[NB_SAMPLES + 1];
+    // Slope of each segment of SPLINE_POSITION, so that it isn't divided out on every frame
+    private static final float[] SPLINE_VELOCITY = new float[NB_SAMPLES];
+
+    // This controls the viscous fluid effect (how much of it)
+    private static final float VISCOUS_FLUID_SCALE = 8.0f;
+    private static final float VISCOUS_FLUID_NORMALIZE;
+
+    static {
+        float x_min = 0.0f;
+        for (int i = 0; i < NB_SAMPLES; i++) {
+            final float alpha = (float) i / NB_SAMPLES;
+
+            float x_max = 1.0f;
+            float x, tx, coef;
+            while (true) {
+                x = x_min + (x_max - x_min) / 2.0f;
+                coef = 3.0f * x * (1.0f - x);
+                tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                if (Math.abs(tx - alpha) < 1E-5) break;
+                if (tx > alpha) x_max = x;
+                else x_min = x;
+            }
+            SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+        }
+        SPLINE_POSITION[NB_SAMPLES] = 1.0f;
+
+        for (int i = 0; i < NB_SAMPLES; i++) {
+            final float t_inf = (float) i / NB_SAMPLES;
+            final float t_sup = (float) (i + 1) / NB_SAMPLES;
+            SPLINE_VELOCITY[i] = (SPLINE_POSITION[i + 1] - SPLINE_POSITION[i]) / (t_sup - t_inf);
+        }
+
+        VISCOUS_FLUID_NORMALIZE = 1.0f / viscousFluid(1.0f, 1.0f);
+    }
+
+    private FlingSpline() {
+    }
+
+    /**
+     * Returns the fraction of the fling distance covered at fraction t of its duration.
+     */
+    static float getDistanceCoef(float t) {
+        final int index = (int) (NB_SAMPLES * t);
+        if (index >= NB_SAMPLES) {
+            return 1.f;
+        }
+        final float t_inf = (float) index / NB_SAMPLES;
+        return SPLINE_POSITION[index] + (t - t_inf) * SPLINE_VELOCITY[index];
+    }
+
+    /**
+     * Returns the slope of {@link #getDistanceCoef(float)} at t.
+     */
+    static float getVelocityCoef(float t) {
+        final int index = (int) (NB_SAMPLES * t);
+        return index < NB_SAMPLES ? SPLINE_VELOCITY[index] : 0.f;
+    }
+
+    /**
+     * Returns the log of the deceleration for a fling starting at velocity, where
+     * frictionCoeff is the friction times the physical coefficient of the display.
+     */
+    static double getDeceleration(float velocity, float frictionCoeff) {
+        return Math.log(INFLEXION * Math.abs(velocity) / frictionCoeff);
+    }
+
+    /**
+     * Returns the duration in milliseconds of a fling with the given deceleration.
+     */
+    static int getFlingDuration(double deceleration) {
+        return (int) (1000.0 * Math.exp(deceleration / DECEL_MINUS_ONE));
+    }
+
+    /**
+     * Returns the distance in pixels covered by a fling with the given deceleration.
+     */
+    static double getFlingDistance(double deceleration, float frictionCoeff) {
+        return frictionCoeff * Math.exp(DISTANCE_EXPONENT * deceleration);
+    }
+
+    static float viscousFluid(float x) {
+        return viscousFluid(x, VISCOUS_FLUID_NORMALIZE);
+    }
+
+    private static float viscousFluid(float x, float normalize) {
+        x *= VISCOUS_FLUID_SCALE;
+        if (x < 1.0f) {
+            x -= (1.0f - (float) Math.exp(-x));
+        } else {
+            float start = 0.36787944117f;   // 1/e == exp(-1)
+            x = 1.0f - (float) Math.exp(1.0f - x);
+            x = start + x * (1.0f - start);
+        }
+        x *= normalize;
+        return x;
+    }
+}
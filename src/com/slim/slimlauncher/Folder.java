@@ -565,6 +565,7 @@ public class Folder extends LinearLayout implements DragSource, View.OnClickList
             }
             @Override
             public void onAnimationEnd(Animator animation) {
+                FrameStats.end(FrameStats.INTERACTION_FOLDER_OPEN);
                 mState = STATE_OPEN;
 
                 if (onCompleteRunnable != null) {
@@ -574,6 +575,7 @@ public class Folder extends LinearLayout implements DragSource, View.OnClickList
                 setFocusOnFirstChild();
             }
         });
+        FrameStats.begin(FrameStats.INTERACTION_FOLDER_OPEN);
         openFolderAnim.start();
 
         // Make sure the folder picks up the last drag move even if the finger doesn't move.
@@ -22,6 +22,7 @@ import android.animation.ValueAnimator;
 import android.animation.ValueAnimator.AnimatorUpdateListener;
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.CornerPathEffect;
@@ -55,7 +56,8 @@ import java.util.ArrayList;
 /**
  * An icon that can appear on in the workspace representing an {@link UserFolder}.
  */
-public class FolderIcon extends FrameLayout implements FolderListener {
+public class FolderIcon extends FrameLayout implements FolderListener,
+        BitmapMemoryRegistry.BitmapOwner {
     private Launcher mLauncher;
     private Folder mFolder;
     private FolderInfo mInfo;
@@ -118,12 +120,24 @@ public class FolderIcon extends FrameLayout implements FolderListener {
     private PreviewItemDrawingParams mAnimParams = new PreviewItemDrawingParams(0, 0, 0, 0);
     private ArrayList<ShortcutInfo> mHiddenItems = new ArrayList<ShortcutInfo>();
 
+    // The static preview is rendered once into mPreviewBitmap, which covers mPreviewRect, and
+    // is redrawn from there until the items shown in it or their icons change. Items are only
+    // drawn individually while animating.
+    private Bitmap mPreviewBitmap;
+    private final Canvas mPreviewCanvas = new Canvas();
+    private final Rect mPreviewRect = new Rect();
+    private final View[] mPreviewItems = new View[NUM_ITEMS_IN_PREVIEW];
+    private boolean mPreviewDirty = true;
+
     private Alarm mOpenAlarm = new Alarm();
     private ItemInfo mDragInfo;
 
     private float downY;
     private float downX;
 
+    // Sum of the unread counts of the folder contents
+    private int mUnreadCount;
+
     public FolderIcon(Context context, AttributeSet attrs) {
         super(context, attrs);
         init();
@@ -136,6 +150,12 @@ public class FolderIcon extends FrameLayout implements FolderListener {
 
     private void init() {
         mLongPressHelper = new CheckLongPressHelper(this);
+        BitmapMemoryRegistry.register(BitmapMemoryRegistry.OWNER_FOLDER_PREVIEWS, this);
+    }
+
+    @Override
+    public void countBitmaps(BitmapMemoryRegistry.Counter counter) {
+        counter.add(mPreviewBitmap);
     }
 
     public boolean isDropEnabled() {
@@ -203,6 +223,7 @@ public class FolderIcon extends FrameLayout implements FolderListener {
 
         icon.mFolderRingAnimator = new FolderRingAnimator(launcher, icon);
         folderInfo.addListener(icon);
+        icon.updateUnreadCount();
 
         icon.setOnFocusChangeListener(launcher.mFocusHandler);
         return icon;
@@ -498,11 +519,12 @@ public class FolderIcon extends FrameLayout implements FolderListener {
             addItem(item);
             mHiddenItems.add(item);
             mFolder.hideItem(item);
+            invalidatePreview();
             postDelayed(new Runnable() {
                 public void run() {
                     mHiddenItems.remove(item);
                     mFolder.showItem(item);
-                    invalidate();
+                    invalidatePreview();
                 }
             }, DROP_IN_ANIMATION_DURATION);
         } else {
@@ -651,33 +673,119 @@ public class FolderIcon extends FrameLayout implements FolderListener {
         if (mFolder == null) return;
         if (mFolder.getItemCount() == 0 && !mAnimating) return;
 
-        ArrayList<View> items = mFolder.getItemsInReadingOrder();
-        Drawable d;
-        TextView v;
-
-        // Update our drawing parameters if necessary
         if (mAnimating) {
             computePreviewDrawingParams(mAnimParams.drawable);
+            drawPreviewItem(canvas, mAnimParams);
         } else {
-            v = (TextView) items.get(0);
-            d = getTopDrawable(v);
-            computePreviewDrawingParams(d);
+            ArrayList<View> items = mFolder.getItemsInReadingOrder();
+            if (!isPreviewBitmapValid(items)) {
+                updatePreviewBitmap(items);
+            }
+            if (mPreviewBitmap != null) {
+                canvas.drawBitmap(mPreviewBitmap, mPreviewRect.left, mPreviewRect.top, null);
+            }
         }
 
-        int nItemsInPreview = Math.min(items.size(), NUM_ITEMS_IN_PREVIEW);
-        if (!mAnimating) {
-            for (int i = nItemsInPreview - 1; i >= 0; i--) {
-                v = (TextView) items.get(i);
-                if (!mHiddenItems.contains(v.getTag())) {
-                    d = getTopDrawable(v);
-                    mParams = computePreviewItemDrawingParams(i, mParams);
-                    mParams.drawable = d;
-                    drawPreviewItem(canvas, mParams);
-                }
+        if (mUnreadCount > 0) {
+            LauncherAppState app = LauncherAppState.getInstance();
+            DeviceProfile grid = app.getDynamicGrid().getDeviceProfile();
+            // The preview background is centered in its view
+            final int iconSize = grid.iconSizePx;
+            final View bg = mPreviewBackground;
+            app.getUnreadBadgeCache().drawBadge(canvas, mUnreadCount,
+                    bg.getLeft() + (bg.getWidth() + iconSize) / 2,
+                    bg.getTop() + (bg.getHeight() - iconSize) / 2);
+        }
+    }
+
+    /**
+     * Recomputes the badge from the unread counts of the folder contents.
+     */
+    public void updateUnreadCount() {
+        UnreadBadgeCache badges = LauncherAppState.getInstance().getUnreadBadgeCache();
+        int count = 0;
+        for (ShortcutInfo item : mInfo.contents) {
+            count += badges.getUnreadCount(item);
+        }
+        if (mUnreadCount != count) {
+            mUnreadCount = count;
+            invalidate();
+        }
+    }
+
+    /**
+     * Forces the preview to be re-rendered on the next draw, e.g. after the icon of one of the
+     * items changed.
+     */
+    public void invalidatePreview() {
+        mPreviewDirty = true;
+        invalidate();
+    }
+
+    private boolean isPreviewBitmapValid(ArrayList<View> items) {
+        if (mPreviewDirty || mPreviewBitmap == null) {
+            return false;
+        }
+        // Catches items being added, removed or reordered
+        final int nItemsInPreview = Math.min(items.size(), NUM_ITEMS_IN_PREVIEW);
+        for (int i = 0; i < NUM_ITEMS_IN_PREVIEW; i++) {
+            if (mPreviewItems[i] != (i < nItemsInPreview ? items.get(i) : null)) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    private void updatePreviewBitmap(ArrayList<View> items) {
+        computePreviewDrawingParams(getTopDrawable((TextView) items.get(0)));
+
+        // Size the bitmap to cover every preview slot, so that it does not change with the
+        // number of items
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+        for (int i = 0; i < NUM_ITEMS_IN_PREVIEW; i++) {
+            mParams = computePreviewItemDrawingParams(i, mParams);
+            float x = mParams.transX + mPreviewOffsetX;
+            float y = mParams.transY + mPreviewOffsetY;
+            float size = mParams.scale * mIntrinsicIconSize;
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x + size);
+            bottom = Math.max(bottom, y + size);
+        }
+        mPreviewRect.set((int) Math.floor(left), (int) Math.floor(top),
+                (int) Math.ceil(right), (int) Math.ceil(bottom));
+        if (mPreviewRect.isEmpty()) {
+            return;
+        }
+
+        final int width = mPreviewRect.width();
+        final int height = mPreviewRect.height();
+        if (mPreviewBitmap == null || mPreviewBitmap.getWidth() != width
+                || mPreviewBitmap.getHeight() != height) {
+            mPreviewBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
         } else {
-            drawPreviewItem(canvas, mAnimParams);
+            mPreviewBitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        final Canvas canvas = mPreviewCanvas;
+        canvas.setBitmap(mPreviewBitmap);
+        canvas.save();
+        canvas.translate(-mPreviewRect.left, -mPreviewRect.top);
+        final int nItemsInPreview = Math.min(items.size(), NUM_ITEMS_IN_PREVIEW);
+        for (int i = NUM_ITEMS_IN_PREVIEW - 1; i >= 0; i--) {
+            TextView v = i < nItemsInPreview ? (TextView) items.get(i) : null;
+            mPreviewItems[i] = v;
+            if (v != null && !mHiddenItems.contains(v.getTag())) {
+                mParams = computePreviewItemDrawingParams(i, mParams);
+                mParams.drawable = getTopDrawable(v);
+                drawPreviewItem(canvas, mParams);
+            }
         }
+        canvas.restore();
+        canvas.setBitmap(null);
+        mParams.drawable = null;
+        mPreviewDirty = false;
     }
 
     private Drawable getTopDrawable(TextView v) {
@@ -717,6 +825,7 @@ public class FolderIcon extends FrameLayout implements FolderListener {
             @Override
             public void onAnimationEnd(Animator animation) {
                 mAnimating = false;
+                invalidatePreview();
                 if (onCompleteRunnable != null) {
                     onCompleteRunnable.run();
                 }
@@ -739,17 +848,20 @@ public class FolderIcon extends FrameLayout implements FolderListener {
     }
 
     public void onItemsChanged() {
-        invalidate();
+        updateUnreadCount();
+        invalidatePreview();
         requestLayout();
     }
 
     public void onAdd(ShortcutInfo item) {
-        invalidate();
+        updateUnreadCount();
+        invalidatePreview();
         requestLayout();
     }
 
     public void onRemove(ShortcutInfo item) {
-        invalidate();
+        updateUnreadCount();
+        invalidatePreview();
         requestLayout();
     }
 
@@ -804,6 +916,23 @@ public class FolderIcon extends FrameLayout implements FolderListener {
         mSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Re-rendered on the next draw if this icon is attached again
+        mPreviewBitmap = null;
+        mPreviewDirty = true;
+        for (int i = 0; i < NUM_ITEMS_IN_PREVIEW; i++) {
+            mPreviewItems[i] = null;
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mPreviewDirty = true;
+    }
+
     @Override
     public void cancelLongPress() {
         super.cancelLongPress();
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.io.PrintWriter;
+
+/**
+ * Collects frame times while the user interacts with the launcher, so that stutter can be
+ * measured on a device without attaching a profiler. Interactions are started and ended around
+ * the code that drives them, and while any is active a Choreographer frame callback records the
+ * time between consecutive frames into a histogram of every active interaction. A frame that
+ * took more than 1.5 refresh intervals is counted as janky.
+ *
+ * The histograms are log-linear like HdrHistogram: 16 buckets per power of two of
+ * microseconds, so percentiles are within about 6%, in preallocated arrays. Recording is only
+ * done from the main thread, the collector is turned on by the frame stats debug setting and
+ * the percentiles are printed by Launcher.dumpState() and Launcher.dump().
+ * "dumpsys activity com.slim.slimlauncher/.Launcher --reset-frame-stats" clears them after
+ * printing.
+ */
+final class FrameStats {
+    private static final String TAG = "FrameStats";
+
+    static final String DUMP_RESET_ARG = "--reset-frame-stats";
+
+    static final int INTERACTION_DRAWER_SCROLL = 0;
+    static final int INTERACTION_PAGE_SWIPE = 1;
+    static final int INTERACTION_FOLDER_OPEN = 2;
+    static final int INTERACTION_OVERVIEW_TRANSITION = 3;
+    static final int INTERACTION_DRAG = 4;
+
+    private static final String[] INTERACTION_NAMES = {
+        "drawerScroll",
+        "pageSwipe",
+        "folderOpen",
+        "overviewTransition",
+        "drag",
+    };
+    private static final int INTERACTION_COUNT = INTERACTION_NAMES.length;
+
+    private static final float[] PERCENTILES = { 50f, 90f, 95f, 99f };
+
+    // Values below 2^SUB_BUCKET_BITS us have a bucket each, larger ones 16 per power of two
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    // Frames are clamped to 2^MAX_VALUE_BITS us, about 16s
+    private static final int MAX_VALUE_BITS = 24;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = getBucket(MAX_VALUE) + 1;
+
+    // The histograms of all the interactions, one after the other
+    private static final int[] sCounts = new int[INTERACTION_COUNT * BUCKET_COUNT];
+    private static final long[] sFrames = new long[INTERACTION_COUNT];
+    private static final long[] sJankyFrames = new long[INTERACTION_COUNT];
+    private static final long[] sTotalMicros = new long[INTERACTION_COUNT];
+    private static final long[] sMaxMicros = new long[INTERACTION_COUNT];
+    private static final int[] sInteractions = new int[INTERACTION_COUNT];
+
+    private static boolean sEnabled;
+    private static long sJankThresholdNanos = 25000000;
+    // A bit for every active interaction
+    private static int sActive;
+    private static long sLastFrameTimeNanos;
+    private static boolean sCallbackPosted;
+
+    private static final Choreographer.FrameCallback sFrameCallback =
+            new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            sCallbackPosted = false;
+            if (sActive == 0) {
+                sLastFrameTimeNanos = 0;
+                return;
+            }
+            if (sLastFrameTimeNanos != 0) {
+                recordFrame(sActive, frameTimeNanos - sLastFrameTimeNanos);
+            }
+            sLastFrameTimeNanos = frameTimeNanos;
+            postFrameCallback();
+        }
+    };
+
+    private FrameStats() {
+    }
+
+    /**
+     * @param refreshRate The refresh rate of the display, in frames per second.
+     */
+    static void setEnabled(boolean enabled, float refreshRate) {
+        sEnabled = enabled;
+        if (refreshRate > 0) {
+            sJankThresholdNanos = (long) (1.5f * 1000000000 / refreshRate);
+        }
+        if (!enabled) {
+            sActive = 0;
+        }
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Starts attributing frames to interaction, until {@link #end} is called. Must be called
+     * on the main thread.
+     */
+    static void begin(int interaction) {
+        if (!sEnabled) {
+            return;
+        }
+        final int bit = 1 << interaction;
+        if ((sActive & bit) == 0) {
+            sActive |= bit;
+            synchronized (sCounts) {
+                sInteractions[interaction]++;
+            }
+            postFrameCallback();
+        }
+    }
+
+    static void end(int interaction) {
+        sActive &= ~(1 << interaction);
+    }
+
+    static void setActive(int interaction, boolean active) {
+        if (active) {
+            begin(interaction);
+        } else {
+            end(interaction);
+        }
+    }
+
+    private static void postFrameCallback() {
+        if (!sCallbackPosted) {
+            sCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(sFrameCallback);
+        }
+    }
+
+    private static void recordFrame(int active, long frameNanos) {
+        final long micros = Math.min(frameNanos / 1000, MAX_VALUE);
+        final int bucket = getBucket(micros);
+        final boolean janky = frameNanos > sJankThresholdNanos;
+        synchronized (sCounts) {
+            for (int i = 0; i < INTERACTION_COUNT; i++) {
+                if ((active & (1 << i)) != 0) {
+                    sCounts[i * BUCKET_COUNT + bucket]++;
+                    sFrames[i]++;
+                    sTotalMicros[i] += micros;
+                    sMaxMicros[i] = Math.max(sMaxMicros[i], micros);
+                    if (janky) {
+                        sJankyFrames[i]++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int getBucket(long micros) {
+        if (micros < 2 * SUB_BUCKET_HALF_COUNT) {
+            return (int) micros;
+        }
+        // The position of the highest bit decides the power of two, the next bits the bucket
+        final int shift = 63 - Long.numberOfLeadingZeros(micros) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (micros >> shift);
+    }
+
+    /**
+     * Returns the lowest value that falls into bucket.
+     */
+    private static long getBucketValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_HALF_COUNT) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKET_HALF_COUNT - 1;
+        return (long) (bucket % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT) << shift;
+    }
+
+    private static String formatL(int interaction) {
+        final long frames = sFrames[interaction];
+        final StringBuilder sb = new StringBuilder();
+        sb.append(INTERACTION_NAMES[interaction])
+                .append(" count=").append(sInteractions[interaction])
+                .append(" frames=").append(frames);
+        if (frames == 0) {
+            return sb.toString();
+        }
+        sb.append(" janky=").append(sJankyFrames[interaction])
+                .append(String.format(" (%.1f%%)", 100f * sJankyFrames[interaction] / frames))
+                .append(" mean=").append(sTotalMicros[interaction] / frames / 1000f).append("ms");
+
+        // Walk the buckets once, reporting every percentile as its rank is passed
+        final int offset = interaction * BUCKET_COUNT;
+        long seen = 0;
+        int p = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT && p < PERCENTILES.length; bucket++) {
+            seen += sCounts[offset + bucket];
+            while (p < PERCENTILES.length && seen >= Math.ceil(PERCENTILES[p] / 100 * frames)) {
+                sb.append(" p").append((int) PERCENTILES[p]).append('=')
+                        .append(getBucketValue(bucket) / 1000f).append("ms");
+                p++;
+            }
+        }
+        sb.append(" max=").append(sMaxMicros[interaction] / 1000f).append("ms");
+        return sb.toString();
+    }
+
+    private static String[] format() {
+        synchronized (sCounts) {
+            final String[] lines = new String[INTERACTION_COUNT];
+            for (int i = 0; i < INTERACTION_COUNT; i++) {
+                lines[i] = formatL(i);
+            }
+            return lines;
+        }
+    }
+
+    static void reset() {
+        synchronized (sCounts) {
+            for (int i = 0; i < sCounts.length; i++) {
+                sCounts[i] = 0;
+            }
+            for (int i = 0; i < INTERACTION_COUNT; i++) {
+                sFrames[i] = 0;
+                sJankyFrames[i] = 0;
+                sTotalMicros[i] = 0;
+                sMaxMicros[i] = 0;
+                sInteractions[i] = 0;
+            }
+        }
+    }
+
+    static void dumpState() {
+        Log.d(TAG, "enabled=" + sEnabled + " jankThresholdMs=" + sJankThresholdNanos / 1000000f);
+        for (String line : format()) {
+            Log.d(TAG, "  " + line);
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        writer.println(" ");
+        writer.println("Frame stats (enabled=" + sEnabled
+                + " jankThresholdMs=" + sJankThresholdNanos / 1000000f + "):");
+        for (String line : format()) {
+            writer.println("  " + line);
+        }
+    }
+}
@@ -23,7 +23,6 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.Region.Op;
 
@@ -31,18 +30,32 @@ public class HolographicOutlineHelper {
 
     private static final Rect sTempRect = new Rect();
 
+    // Alpha below which pixels are ignored when clipping the outline shape
+    private static final int CLIP_ALPHA_THRESHOLD = 188;
+    // Box blur passes used to approximate a gaussian blur
+    private static final int BLUR_PASSES = 3;
+
     private final Canvas mCanvas = new Canvas();
     private final Paint mDrawPaint = new Paint();
     private final Paint mBlurPaint = new Paint();
-    private final Paint mErasePaint = new Paint();
-
-    private final BlurMaskFilter mMediumOuterBlurMaskFilter;
-    private final BlurMaskFilter mThinOuterBlurMaskFilter;
-    private final BlurMaskFilter mMediumInnerBlurMaskFilter;
 
     private final BlurMaskFilter mShaowBlurMaskFilter;
     private final int mShadowOffset;
 
+    // The outline is blurred on a copy of the shape downscaled by this factor, with box blur
+    // radii equivalent to the medium (2dp) and thin (1dp) blur mask filters used originally.
+    private final int mOutlineDownscale;
+    private final int mMediumBlurRadius;
+    private final int mThinBlurRadius;
+
+    // Scratch buffers for applyExpensiveOutlineWithBlur, grown as needed
+    private int[] mPixels;
+    private int[] mShape;
+    private int[] mSmallShape;
+    private int[] mMediumBlur;
+    private int[] mThinBlur;
+    private int[] mBlurTemp;
+
     /**
      * Padding used when creating shadow bitmap;
      */
@@ -53,9 +66,9 @@ public class HolographicOutlineHelper {
     private HolographicOutlineHelper(Context context) {
         final float scale = LauncherAppState.getInstance().getScreenDensity();
 
-        mMediumOuterBlurMaskFilter = new BlurMaskFilter(scale * 2.0f, BlurMaskFilter.Blur.OUTER);
-        mThinOuterBlurMaskFilter = new BlurMaskFilter(scale * 1.0f, BlurMaskFilter.Blur.OUTER);
-        mMediumInnerBlurMaskFilter = new BlurMaskFilter(scale * 2.0f, BlurMaskFilter.Blur.NORMAL);
+        mOutlineDownscale = scale >= 2.0f ? 2 : 1;
+        mMediumBlurRadius = getBoxBlurRadius(scale * 2.0f, mOutlineDownscale);
+        mThinBlurRadius = getBoxBlurRadius(scale * 1.0f, mOutlineDownscale);
 
         mShaowBlurMaskFilter = new BlurMaskFilter(scale * 4.0f, BlurMaskFilter.Blur.NORMAL);
         mShadowOffset = (int) (scale * 2.0f);
@@ -65,9 +78,6 @@ public class HolographicOutlineHelper {
         mDrawPaint.setAntiAlias(true);
         mBlurPaint.setFilterBitmap(true);
         mBlurPaint.setAntiAlias(true);
-        mErasePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
-        mErasePaint.setFilterBitmap(true);
-        mErasePaint.setAntiAlias(true);
     }
 
     public static HolographicOutlineHelper obtain(Context context) {
@@ -77,79 +87,195 @@ public class HolographicOutlineHelper {
         return INSTANCE;
     }
 
+    /**
+     * Returns the radius of a box blur that, applied {@link #BLUR_PASSES} times to a shape
+     * downscaled by the given factor, approximates a {@link BlurMaskFilter} of the given radius.
+     */
+    private static int getBoxBlurRadius(float blurMaskRadius, int downscale) {
+        // Same radius to sigma conversion as the blur mask filter
+        final float sigma = (0.57735f * blurMaskRadius + 0.5f) / downscale;
+        // n passes of a box of width w have a variance of n * (w * w - 1) / 12
+        final float width = (float) Math.sqrt(12 * sigma * sigma / BLUR_PASSES + 1);
+        return Math.max(1, Math.round((width - 1) / 2));
+    }
+
     /**
      * Applies a more expensive and accurate outline to whatever is currently drawn in a specified
      * bitmap.
      */
-    void applyExpensiveOutlineWithBlur(Bitmap srcDst, Canvas srcDstCanvas, int color,
-            int outlineColor) {
-        applyExpensiveOutlineWithBlur(srcDst, srcDstCanvas, color, outlineColor, true);
+    void applyExpensiveOutlineWithBlur(Bitmap srcDst, int color, int outlineColor) {
+        applyExpensiveOutlineWithBlur(srcDst, color, outlineColor, true);
     }
-    void applyExpensiveOutlineWithBlur(Bitmap srcDst, Canvas srcDstCanvas, int color,
+
+    /**
+     * Replaces the content of srcDst by a glow of the given color around the edges of its shape,
+     * and a thin bright outline of outlineColor just outside of it.
+     *
+     * The blurs are computed on a downscaled copy of the shape using buffers kept between calls,
+     * rather than with blur mask filters which allocate a new bitmap per pass. This may be called
+     * from a background thread.
+     */
+    synchronized void applyExpensiveOutlineWithBlur(Bitmap srcDst, int color,
             int outlineColor, boolean clipAlpha) {
+        final int width = srcDst.getWidth();
+        final int height = srcDst.getHeight();
+        final int size = width * height;
+        final int ds = mOutlineDownscale;
+        final int smallWidth = (width + ds - 1) / ds;
+        final int smallHeight = (height + ds - 1) / ds;
+        final int smallSize = smallWidth * smallHeight;
+        ensureOutlineBuffers(size, smallSize);
+
+        final int[] pixels = mPixels;
+        final int[] shape = mShape;
+        srcDst.getPixels(pixels, 0, width, 0, 0, width, height);
 
         // We start by removing most of the alpha channel so as to ignore shadows, and
         // other types of partial transparency when defining the shape of the object
-        if (clipAlpha) {
-            int[] srcBuffer = new int[srcDst.getWidth() * srcDst.getHeight()];
-            srcDst.getPixels(srcBuffer,
-                    0, srcDst.getWidth(), 0, 0, srcDst.getWidth(), srcDst.getHeight());
-            for (int i = 0; i < srcBuffer.length; i++) {
-                final int alpha = srcBuffer[i] >>> 24;
-                if (alpha < 188) {
-                    srcBuffer[i] = 0;
+        for (int i = 0; i < size; i++) {
+            final int alpha = pixels[i] >>> 24;
+            shape[i] = clipAlpha && alpha < CLIP_ALPHA_THRESHOLD ? 0 : alpha;
+        }
+
+        downscale(shape, width, height, mSmallShape, smallWidth, smallHeight, ds);
+        boxBlur(mSmallShape, mMediumBlur, mBlurTemp, smallWidth, smallHeight, mMediumBlurRadius);
+        boxBlur(mSmallShape, mThinBlur, mBlurTemp, smallWidth, smallHeight, mThinBlurRadius);
+
+        final int colorAlpha = Color.alpha(color);
+        final int outlineAlpha = Color.alpha(outlineColor);
+        final int colorRgb = color & 0xFFFFFF;
+        final int outlineRgb = outlineColor & 0xFFFFFF;
+        final boolean sameRgb = colorRgb == outlineRgb;
+
+        for (int y = 0; y < height; y++) {
+            final float sy = Math.max(0, (y + 0.5f) / ds - 0.5f);
+            for (int x = 0; x < width; x++) {
+                final int i = y * width + x;
+                final float sx = Math.max(0, (x + 0.5f) / ds - 0.5f);
+                final int inside = shape[i];
+                final int outside = 255 - inside;
+                final int medium = sample(mMediumBlur, smallWidth, smallHeight, sx, sy);
+                final int thin = sample(mThinBlur, smallWidth, smallHeight, sx, sy);
+
+                // The glow is the medium blur of the inverted shape inside the shape (inner
+                // blur), plus the medium blur of the shape outside of it (outer blur)
+                final int glow = ((255 - medium) * inside + medium * outside) / 255;
+                final int glowAlpha = glow * colorAlpha / 255;
+                // The bright outline is drawn over the glow
+                final int brightAlpha = (thin * outside / 255) * outlineAlpha / 255;
+                final int alpha = brightAlpha + glowAlpha * (255 - brightAlpha) / 255;
+
+                if (alpha == 0) {
+                    pixels[i] = 0;
+                } else if (sameRgb) {
+                    pixels[i] = (alpha << 24) | colorRgb;
+                } else {
+                    final int glowWeight = glowAlpha * (255 - brightAlpha) / 255;
+                    pixels[i] = Color.argb(alpha,
+                            (Color.red(outlineColor) * brightAlpha
+                                    + Color.red(color) * glowWeight) / alpha,
+                            (Color.green(outlineColor) * brightAlpha
+                                    + Color.green(color) * glowWeight) / alpha,
+                            (Color.blue(outlineColor) * brightAlpha
+                                    + Color.blue(color) * glowWeight) / alpha);
                 }
             }
-            srcDst.setPixels(srcBuffer,
-                    0, srcDst.getWidth(), 0, 0, srcDst.getWidth(), srcDst.getHeight());
         }
-        Bitmap glowShape = srcDst.extractAlpha();
-
-        // calculate the outer blur first
-        mBlurPaint.setMaskFilter(mMediumOuterBlurMaskFilter);
-        int[] outerBlurOffset = new int[2];
-        Bitmap thickOuterBlur = glowShape.extractAlpha(mBlurPaint, outerBlurOffset);
-
-        mBlurPaint.setMaskFilter(mThinOuterBlurMaskFilter);
-        int[] brightOutlineOffset = new int[2];
-        Bitmap brightOutline = glowShape.extractAlpha(mBlurPaint, brightOutlineOffset);
-
-        // calculate the inner blur
-        srcDstCanvas.setBitmap(glowShape);
-        srcDstCanvas.drawColor(0xFF000000, PorterDuff.Mode.SRC_OUT);
-        mBlurPaint.setMaskFilter(mMediumInnerBlurMaskFilter);
-        int[] thickInnerBlurOffset = new int[2];
-        Bitmap thickInnerBlur = glowShape.extractAlpha(mBlurPaint, thickInnerBlurOffset);
-
-        // mask out the inner blur
-        srcDstCanvas.setBitmap(thickInnerBlur);
-        srcDstCanvas.drawBitmap(glowShape, -thickInnerBlurOffset[0],
-                -thickInnerBlurOffset[1], mErasePaint);
-        srcDstCanvas.drawRect(0, 0, -thickInnerBlurOffset[0], thickInnerBlur.getHeight(),
-                mErasePaint);
-        srcDstCanvas.drawRect(0, 0, thickInnerBlur.getWidth(), -thickInnerBlurOffset[1],
-                mErasePaint);
-
-        // draw the inner and outer blur
-        srcDstCanvas.setBitmap(srcDst);
-        srcDstCanvas.drawColor(0, PorterDuff.Mode.CLEAR);
-        mDrawPaint.setColor(color);
-        srcDstCanvas.drawBitmap(thickInnerBlur, thickInnerBlurOffset[0], thickInnerBlurOffset[1],
-                mDrawPaint);
-        srcDstCanvas.drawBitmap(thickOuterBlur, outerBlurOffset[0], outerBlurOffset[1],
-                mDrawPaint);
-
-        // draw the bright outline
-        mDrawPaint.setColor(outlineColor);
-        srcDstCanvas.drawBitmap(brightOutline, brightOutlineOffset[0], brightOutlineOffset[1],
-                mDrawPaint);
-
-        // cleanup
-        srcDstCanvas.setBitmap(null);
-        brightOutline.recycle();
-        thickOuterBlur.recycle();
-        thickInnerBlur.recycle();
-        glowShape.recycle();
+        srcDst.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    private void ensureOutlineBuffers(int size, int smallSize) {
+        if (mPixels == null || mPixels.length < size) {
+            mPixels = new int[size];
+            mShape = new int[size];
+        }
+        if (mSmallShape == null || mSmallShape.length < smallSize) {
+            mSmallShape = new int[smallSize];
+            mMediumBlur = new int[smallSize];
+            mThinBlur = new int[smallSize];
+            mBlurTemp = new int[smallSize];
+        }
+    }
+
+    /**
+     * Averages ds x ds blocks of src into dst.
+     */
+    private static void downscale(int[] src, int width, int height, int[] dst, int dstWidth,
+            int dstHeight, int ds) {
+        if (ds == 1) {
+            System.arraycopy(src, 0, dst, 0, width * height);
+            return;
+        }
+        for (int dy = 0; dy < dstHeight; dy++) {
+            final int y0 = dy * ds;
+            final int y1 = Math.min(y0 + ds, height);
+            for (int dx = 0; dx < dstWidth; dx++) {
+                final int x0 = dx * ds;
+                final int x1 = Math.min(x0 + ds, width);
+                int sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        sum += src[y * width + x];
+                    }
+                }
+                dst[dy * dstWidth + dx] = sum / ((y1 - y0) * (x1 - x0));
+            }
+        }
+    }
+
+    /**
+     * Blurs src into dst with {@link #BLUR_PASSES} separable box blurs. Pixels outside of the
+     * buffer are treated as transparent.
+     */
+    private static void boxBlur(int[] src, int[] dst, int[] temp, int width, int height,
+            int radius) {
+        int[] in = src;
+        for (int pass = 0; pass < BLUR_PASSES; pass++) {
+            // Rows, then columns
+            boxBlurPass(in, temp, height, width, radius, 1, width);
+            boxBlurPass(temp, dst, width, height, radius, width, 1);
+            in = dst;
+        }
+    }
+
+    /**
+     * Runs a box blur of the given radius along lines of length count, whose pixels are step
+     * apart. Lines start stride apart.
+     */
+    private static void boxBlurPass(int[] in, int[] out, int lines, int count, int radius,
+            int step, int stride) {
+        final int div = 2 * radius + 1;
+        for (int line = 0; line < lines; line++) {
+            final int start = line * stride;
+            int sum = 0;
+            for (int i = 0; i < radius && i < count; i++) {
+                sum += in[start + i * step];
+            }
+            for (int i = 0; i < count; i++) {
+                if (i + radius < count) {
+                    sum += in[start + (i + radius) * step];
+                }
+                out[start + i * step] = sum / div;
+                if (i - radius >= 0) {
+                    sum -= in[start + (i - radius) * step];
+                }
+            }
+        }
+    }
+
+    /**
+     * Bilinearly samples buffer at (x, y).
+     */
+    private static int sample(int[] buffer, int width, int height, float x, float y) {
+        final int x0 = Math.min((int) x, width - 1);
+        final int y0 = Math.min((int) y, height - 1);
+        final int x1 = Math.min(x0 + 1, width - 1);
+        final int y1 = Math.min(y0 + 1, height - 1);
+        final float fx = x - x0;
+        final float fy = y - y0;
+        final float top = buffer[y0 * width + x0] * (1 - fx) + buffer[y0 * width + x1] * fx;
+        final float bottom = buffer[y1 * width + x0] * (1 - fx) + buffer[y1 * width + x1] * fx;
+        return (int) (top * (1 - fy) + bottom * fy + 0.5f);
     }
 
     Bitmap createMediumDropShadow(BubbleTextView view) {
@@ -49,11 +49,17 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Cache of application icons.  Icons can be made from any thread.
+ *
+ * Cached entries are looked up under the read lock of mCacheLock only, so the UI thread is not
+ * held up by icons being loaded on the worker thread. Entries are created, and removed, while
+ * holding mLoadLock, and put into the cache under the write lock. The keys of every package
+ * are indexed, so that removing a package doesn't walk the whole cache.
  */
-public class IconCache {
+public class IconCache implements BitmapMemoryRegistry.BitmapOwner {
 
     private static final String TAG = "Launcher.IconCache";
 
@@ -103,6 +109,13 @@ public class IconCache {
     private final LauncherAppsCompat mLauncherApps;
     private final HashMap<CacheKey, CacheEntry> mCache =
             new HashMap<CacheKey, CacheEntry>(INITIAL_ICON_CACHE_CAPACITY);
+    // The keys in mCache by package name
+    private final HashMap<String, HashSet<CacheKey>> mPackageKeys =
+            new HashMap<String, HashSet<CacheKey>>();
+    // Guards mCache and mPackageKeys
+    private final ReentrantReadWriteLock mCacheLock = new ReentrantReadWriteLock();
+    // Held while entries are created or removed, and while the icon pack is loaded
+    private final Object mLoadLock = new Object();
     private int mIconDpi;
 
     public IconCache(Context context) {
@@ -121,6 +134,8 @@ public class IconCache {
 
         mIconPackHelper = new IconPackHelper(context);
         loadIconPack();
+
+        BitmapMemoryRegistry.register(BitmapMemoryRegistry.OWNER_ICON_CACHE, this);
     }
 
     public Drawable getFullResDefaultActivityIcon() {
@@ -204,47 +219,143 @@ public class IconCache {
         }
     }
 
+    /**
+     * Returns the cached entry for key, or null.
+     */
+    private CacheEntry getCachedEntry(CacheKey key) {
+        mCacheLock.readLock().lock();
+        try {
+            return mCache.get(key);
+        } finally {
+            mCacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds entry to the cache. Must be called with mLoadLock held.
+     */
+    private void putEntry(CacheKey key, CacheEntry entry) {
+        mCacheLock.writeLock().lock();
+        try {
+            mCache.put(key, entry);
+            final String packageName = key.componentName.getPackageName();
+            HashSet<CacheKey> keys = mPackageKeys.get(packageName);
+            if (keys == null) {
+                keys = new HashSet<CacheKey>();
+                mPackageKeys.put(packageName, keys);
+            }
+            keys.add(key);
+        } finally {
+            mCacheLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes key from the package index. Must be called with the write lock held.
+     */
+    private void unindexLocked(CacheKey key) {
+        final String packageName = key.componentName.getPackageName();
+        final HashSet<CacheKey> keys = mPackageKeys.get(packageName);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            mPackageKeys.remove(packageName);
+        }
+    }
+
     /**
      * Remove any records for the supplied ComponentName.
      */
-    public synchronized void remove(ComponentName componentName, UserHandleCompat user) {
-        mCache.remove(new CacheKey(componentName, user));
+    public void remove(ComponentName componentName, UserHandleCompat user) {
+        synchronized (mLoadLock) {
+            mCacheLock.writeLock().lock();
+            try {
+                final CacheKey key = new CacheKey(componentName, user);
+                mCache.remove(key);
+                unindexLocked(key);
+            } finally {
+                mCacheLock.writeLock().unlock();
+            }
+        }
     }
 
     /**
      * Remove any records for the supplied package name.
      */
-    public synchronized void remove(String packageName, UserHandleCompat user) {
-        HashSet<CacheKey> forDeletion = new HashSet<CacheKey>();
-        for (CacheKey key: mCache.keySet()) {
-            if (key.componentName.getPackageName().equals(packageName)
-                    && key.user.equals(user)) {
-                forDeletion.add(key);
+    public void remove(String packageName, UserHandleCompat user) {
+        synchronized (mLoadLock) {
+            mCacheLock.writeLock().lock();
+            try {
+                final HashSet<CacheKey> keys = mPackageKeys.get(packageName);
+                if (keys == null) {
+                    return;
+                }
+                for (Iterator<CacheKey> it = keys.iterator(); it.hasNext(); ) {
+                    final CacheKey key = it.next();
+                    if (key.user.equals(user)) {
+                        mCache.remove(key);
+                        it.remove();
+                    }
+                }
+                if (keys.isEmpty()) {
+                    mPackageKeys.remove(packageName);
+                }
+            } finally {
+                mCacheLock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void countBitmaps(BitmapMemoryRegistry.Counter counter) {
+        synchronized (mDefaultIcons) {
+            for (Bitmap icon : mDefaultIcons.values()) {
+                counter.add(icon);
             }
         }
-        for (CacheKey condemned: forDeletion) {
-            mCache.remove(condemned);
+        mCacheLock.readLock().lock();
+        try {
+            for (CacheEntry entry : mCache.values()) {
+                counter.add(entry.icon);
+            }
+        } finally {
+            mCacheLock.readLock().unlock();
         }
     }
 
     /**
      * Empty out the cache.
      */
-    public synchronized void flush() {
-        mCache.clear();
-        loadIconPack();
+    public void flush() {
+        synchronized (mLoadLock) {
+            mCacheLock.writeLock().lock();
+            try {
+                mCache.clear();
+                mPackageKeys.clear();
+            } finally {
+                mCacheLock.writeLock().unlock();
+            }
+            loadIconPack();
+        }
     }
 
     /**
      * Empty out the cache that aren't of the correct grid size
      */
-    public synchronized void flushInvalidIcons(DeviceProfile grid) {
-        Iterator<Entry<CacheKey, CacheEntry>> it = mCache.entrySet().iterator();
-        while (it.hasNext()) {
-            final CacheEntry e = it.next().getValue();
-            if ((e.icon != null) && (e.icon.getWidth() < grid.iconSizePx
-                    || e.icon.getHeight() < grid.iconSizePx)) {
-                it.remove();
+    public void flushInvalidIcons(DeviceProfile grid) {
+        synchronized (mLoadLock) {
+            mCacheLock.writeLock().lock();
+            try {
+                Iterator<Entry<CacheKey, CacheEntry>> it = mCache.entrySet().iterator();
+                while (it.hasNext()) {
+                    final Entry<CacheKey, CacheEntry> e = it.next();
+                    final Bitmap icon = e.getValue().icon;
+                    if ((icon != null) && (icon.getWidth() < grid.iconSizePx
+                            || icon.getHeight() < grid.iconSizePx)) {
+                        it.remove();
+                        unindexLocked(e.getKey());
+                    }
+                }
+            } finally {
+                mCacheLock.writeLock().unlock();
             }
         }
     }
@@ -252,17 +363,17 @@ public class IconCache {
     /**
      * Fill in "application" with the icon and label for "info."
      */
-    public synchronized void getTitleAndIcon(AppInfo application, LauncherActivityInfoCompat info,
+    public void getTitleAndIcon(AppInfo application, LauncherActivityInfoCompat info,
             HashMap<Object, CharSequence> labelCache) {
         CacheEntry entry = cacheLocked(application.componentName, info, labelCache,
-                info.getUser(), false, application.unreadNum);
+                info.getUser(), false);
 
         application.title = entry.title;
         application.iconBitmap = entry.icon;
         application.contentDescription = entry.contentDescription;
     }
 
-    public synchronized Bitmap getIcon(Intent intent, UserHandleCompat user) {
+    public Bitmap getIcon(Intent intent, UserHandleCompat user) {
         ComponentName component = intent.getComponent();
         // null info means not installed, but if we have a component from the intent then
         // we should still look in the cache for restored app icons.
@@ -270,15 +381,20 @@ public class IconCache {
             return getDefaultIcon(user);
         }
 
-        LauncherActivityInfoCompat launcherActInfo = mLauncherApps.resolveActivity(intent, user);
-        CacheEntry entry = cacheLocked(component, launcherActInfo, null, user, true, -1);
+        // Only resolve the activity if the icon has to be loaded
+        CacheEntry entry = getCachedEntry(new CacheKey(component, user));
+        if (entry == null) {
+            LauncherActivityInfoCompat launcherActInfo =
+                    mLauncherApps.resolveActivity(intent, user);
+            entry = cacheLocked(component, launcherActInfo, null, user, true);
+        }
         return entry.icon;
     }
 
     /**
      * Fill in "shortcutInfo" with the icon and label for "info."
      */
-    public synchronized void getTitleAndIcon(ShortcutInfo shortcutInfo, Intent intent,
+    public void getTitleAndIcon(ShortcutInfo shortcutInfo, Intent intent,
             UserHandleCompat user, boolean usePkgIcon) {
         ComponentName component = intent.getComponent();
         // null info means not installed, but if we have a component from the intent then
@@ -288,9 +404,12 @@ public class IconCache {
             shortcutInfo.title = "";
             shortcutInfo.usingFallbackIcon = true;
         } else {
-            LauncherActivityInfoCompat launcherActInfo =
-                    mLauncherApps.resolveActivity(intent, user);
-            CacheEntry entry = cacheLocked(component, launcherActInfo, null, user, usePkgIcon, -1);
+            CacheEntry entry = getCachedEntry(new CacheKey(component, user));
+            if (entry == null) {
+                LauncherActivityInfoCompat launcherActInfo =
+                        mLauncherApps.resolveActivity(intent, user);
+                entry = cacheLocked(component, launcherActInfo, null, user, usePkgIcon);
+            }
 
             shortcutInfo.setIcon(entry.icon);
             shortcutInfo.title = entry.title;
@@ -299,25 +418,29 @@ public class IconCache {
     }
 
 
-    public synchronized Bitmap getDefaultIcon(UserHandleCompat user) {
-        if (!mDefaultIcons.containsKey(user)) {
-            mDefaultIcons.put(user, makeDefaultIcon(user));
+    public Bitmap getDefaultIcon(UserHandleCompat user) {
+        synchronized (mDefaultIcons) {
+            if (!mDefaultIcons.containsKey(user)) {
+                mDefaultIcons.put(user, makeDefaultIcon(user));
+            }
+            return mDefaultIcons.get(user);
         }
-        return mDefaultIcons.get(user);
     }
 
-    public synchronized Bitmap getIcon(ComponentName component, LauncherActivityInfoCompat info,
+    public Bitmap getIcon(ComponentName component, LauncherActivityInfoCompat info,
             HashMap<Object, CharSequence> labelCache) {
         if (info == null || component == null) {
             return null;
         }
 
-        CacheEntry entry = cacheLocked(component, info, labelCache, info.getUser(), false, -1);
+        CacheEntry entry = cacheLocked(component, info, labelCache, info.getUser(), false);
         return entry.icon;
     }
 
     public boolean isDefaultIcon(Bitmap icon, UserHandleCompat user) {
-        return mDefaultIcons.get(user) == icon;
+        synchronized (mDefaultIcons) {
+            return mDefaultIcons.get(user) == icon;
+        }
     }
 
     public Drawable getIconForInfo(LauncherActivityInfoCompat info) {
@@ -332,19 +455,25 @@ public class IconCache {
     }
 
     /**
-     * Retrieves the entry from the cache. If the entry is not present, it creates a new entry.
-     * This method is not thread safe, it must be called from a synchronized method.
+     * Retrieves the entry from the cache. If the entry is not present, it creates a new entry
+     * while holding mLoadLock, and adds it once it is complete.
      */
     private CacheEntry cacheLocked(ComponentName componentName, LauncherActivityInfoCompat info,
             HashMap<Object, CharSequence> labelCache, UserHandleCompat user,
-            boolean usePackageIcon, int unreadNum) {
+            boolean usePackageIcon) {
         CacheKey cacheKey = new CacheKey(componentName, user);
-        CacheEntry entry = mCache.get(cacheKey);
-        if (entry == null || unreadNum >= 0) {
+        CacheEntry entry = getCachedEntry(cacheKey);
+        if (entry != null) {
+            return entry;
+        }
+        synchronized (mLoadLock) {
+            // It may have been created while waiting for the lock
+            entry = getCachedEntry(cacheKey);
+            if (entry != null) {
+                return entry;
+            }
             entry = new CacheEntry();
 
-            mCache.put(cacheKey, entry);
-
             if (info != null) {
                 ComponentName labelKey = info.getComponentName();
                 if (labelCache != null && labelCache.containsKey(labelKey)) {
@@ -363,7 +492,7 @@ public class IconCache {
                     entry.icon = Utilities.createIconBitmap(
                             icon, mContext, mIconPackHelper);
                 } else {
-                    entry.icon = Utilities.createIconBitmap(icon, mContext, unreadNum);
+                    entry.icon = Utilities.createIconBitmap(icon, mContext);
                 }
             } else {
                 entry.title = "";
@@ -395,6 +524,7 @@ public class IconCache {
                     }
                 }
             }
+            putEntry(cacheKey, entry);
         }
         return entry;
     }
@@ -403,32 +533,37 @@ public class IconCache {
      * Adds a default package entry in the cache. This entry is not persisted and will be removed
      * when the cache is flushed.
      */
-    public synchronized void cachePackageInstallInfo(String packageName, UserHandleCompat user,
+    public void cachePackageInstallInfo(String packageName, UserHandleCompat user,
             Bitmap icon, CharSequence title) {
-        remove(packageName, user);
-
-        CacheEntry entry = getEntryForPackage(packageName, user);
-        if (!TextUtils.isEmpty(title)) {
-            entry.title = title;
-        }
-        if (icon != null) {
-            entry.icon = Utilities.createIconBitmap(
-                    new BitmapDrawable(mContext.getResources(), icon), mContext);
+        final Bitmap iconBitmap = icon == null ? null : Utilities.createIconBitmap(
+                new BitmapDrawable(mContext.getResources(), icon), mContext);
+        synchronized (mLoadLock) {
+            remove(packageName, user);
+            getEntryForPackage(packageName, user, iconBitmap, title);
         }
     }
 
     /**
      * Gets an entry for the package, which can be used as a fallback entry for various components.
-     * This method is not thread safe, it must be called from a synchronized method.
+     * Must be called with mLoadLock held.
      */
     private CacheEntry getEntryForPackage(String packageName, UserHandleCompat user) {
-        ComponentName cn = new ComponentName(packageName, EMPTY_CLASS_NAME);;
+        return getEntryForPackage(packageName, user, null, null);
+    }
+
+    /**
+     * Like {@link #getEntryForPackage(String, UserHandleCompat)}, but if the entry is created,
+     * icon and title replace the package's own when they are set. The entry is only added to
+     * the cache once it is complete, as readers don't take any lock to read its fields.
+     */
+    private CacheEntry getEntryForPackage(String packageName, UserHandleCompat user,
+            Bitmap icon, CharSequence title) {
+        ComponentName cn = new ComponentName(packageName, EMPTY_CLASS_NAME);
         CacheKey cacheKey = new CacheKey(cn, user);
-        CacheEntry entry = mCache.get(cacheKey);
+        CacheEntry entry = getCachedEntry(cacheKey);
         if (entry == null) {
             entry = new CacheEntry();
             entry.title = "";
-            mCache.put(cacheKey, entry);
 
             try {
                 ApplicationInfo info = mPackageManager.getApplicationInfo(packageName, 0);
@@ -445,20 +580,30 @@ public class IconCache {
                 if (DEBUG) Log.d(TAG, "Application not installed " + packageName);
             }
 
-            if (entry.icon == null) {
+            if (!TextUtils.isEmpty(title)) {
+                entry.title = title;
+            }
+            if (icon != null) {
+                entry.icon = icon;
+            } else if (entry.icon == null) {
                 entry.icon = getPreloadedIcon(cn, user);
             }
+            putEntry(cacheKey, entry);
         }
         return entry;
     }
 
-    public synchronized HashMap<ComponentName,Bitmap> getAllIcons() {
-        HashMap<ComponentName,Bitmap> set = new HashMap<ComponentName,Bitmap>();
-        for (CacheKey ck : mCache.keySet()) {
-            final CacheEntry e = mCache.get(ck);
-            set.put(ck.componentName, e.icon);
+    public HashMap<ComponentName,Bitmap> getAllIcons() {
+        mCacheLock.readLock().lock();
+        try {
+            HashMap<ComponentName,Bitmap> set = new HashMap<ComponentName,Bitmap>(mCache.size());
+            for (Entry<CacheKey, CacheEntry> e : mCache.entrySet()) {
+                set.put(e.getKey().componentName, e.getValue().icon);
+            }
+            return set;
+        } finally {
+            mCacheLock.readLock().unlock();
         }
-        return set;
     }
 
     /**
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.content.ComponentName;
+import android.text.TextUtils;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.Map;
+
+/**
+ * Reads the item entries of an icon pack's appfilter.xml, which map a component to the name of
+ * its icon, eg:
+ *
+ *   &lt;item component="ComponentInfo{com.android.chrome/com.google.android.apps.chrome.Main}"
+ *       drawable="chrome" /&gt;
+ *
+ * Icon packs list a few thousand of these, so this is most of the work of loading an icon pack.
+ * It only relies on ComponentName, TextUtils and the pull parser, so it can be benchmarked on
+ * the host.
+ */
+final class IconPackAppFilter {
+    static final String ITEM_TAG = "item";
+
+    private static final String COMPONENT_PREFIX = "ComponentInfo{";
+    private static final String COMPONENT_SUFFIX = "}";
+
+    private IconPackAppFilter() {
+    }
+
+    /**
+     * If the parser is at the start of an item tag, puts its component and drawable into
+     * iconPackResources, unless they are missing or malformed.
+     *
+     * @return Whether the parser is at an item tag.
+     */
+    static boolean parseItem(XmlPullParser parser, Map<ComponentName, String> iconPackResources) {
+        if (!parser.getName().equalsIgnoreCase(ITEM_TAG)) {
+            return false;
+        }
+
+        String component = parser.getAttributeValue(null, "component");
+        String drawable = parser.getAttributeValue(null, "drawable");
+
+        // Validate component/drawable exist
+        if (TextUtils.isEmpty(component) || TextUtils.isEmpty(drawable)) {
+            return true;
+        }
+
+        ComponentName name = parseComponent(component);
+        if (name != null) {
+            iconPackResources.put(name, drawable);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the lower case component of a "ComponentInfo{package/class}" or
+     * "ComponentInfo{package}" string, or null if it is malformed.
+     */
+    static ComponentName parseComponent(String component) {
+        // Validate format/length of component
+        if (!component.startsWith(COMPONENT_PREFIX) || !component.endsWith(COMPONENT_SUFFIX)
+                || component.length() < 16) {
+            return null;
+        }
+
+        // Sanitize stored value
+        component = component.substring(COMPONENT_PREFIX.length(), component.length() - 1)
+                .toLowerCase();
+
+        if (!component.contains("/")) {
+            // Package icon reference
+            return new ComponentName(component, "");
+        } else {
+            return ComponentName.unflattenFromString(component);
+        }
+    }
+}
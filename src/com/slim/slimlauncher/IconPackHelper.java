@@ -279,38 +279,7 @@ public class IconPackHelper {
                 continue;
             }
 
-            if (!parser.getName().equalsIgnoreCase("item")) {
-                continue;
-            }
-
-            String component = parser.getAttributeValue(null, "component");
-            String drawable = parser.getAttributeValue(null, "drawable");
-
-            // Validate component/drawable exist
-            if (TextUtils.isEmpty(component) || TextUtils.isEmpty(drawable)) {
-                continue;
-            }
-
-            // Validate format/length of component
-            if (!component.startsWith("ComponentInfo{") || !component.endsWith("}")
-                    || component.length() < 16) {
-                continue;
-            }
-
-            // Sanitize stored value
-            component = component.substring(14, component.length() - 1).toLowerCase();
-
-            ComponentName name;
-            if (!component.contains("/")) {
-                // Package icon reference
-                name = new ComponentName(component.toLowerCase(), "");
-            } else {
-                name = ComponentName.unflattenFromString(component);
-            }
-
-            if (name != null) {
-                iconPackResources.put(name, drawable);
-            }
+            IconPackAppFilter.parseItem(parser, iconPackResources);
         } while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT);
     }
 
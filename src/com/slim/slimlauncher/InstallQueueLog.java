@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records in a file, which InstallShortcutReceiver queues the shortcuts
+ * to install in until the workspace can take them. Every record is written as its length, the
+ * CRC32 of its bytes and the bytes, so queuing a shortcut is one write at the end of the file
+ * instead of rewriting the whole queue, and the queue is read back in one pass. A record cut
+ * short by a crash, or whose checksum doesn't match, ends the log: the records before it are
+ * kept and it is truncated away before anything is appended.
+ *
+ * Appends are handed to the kernel right away, so they survive the process being killed, but
+ * are only forced to disk every syncInterval records and by {@link #sync}, so that a burst of
+ * shortcuts costs one fsync; the caller syncs when the burst ends. {@link #retain} compacts the
+ * log into a new file, which replaces it once it is on disk, and the rename is forced to disk
+ * through the {@link DirectorySync}. Not thread safe.
+ */
+final class InstallQueueLog {
+    // The length and the CRC32 of every record
+    private static final int HEADER_SIZE = 8;
+    // Longer records can only be read from a corrupt header
+    static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    interface Filter {
+        boolean retain(byte[] record);
+    }
+
+    /**
+     * Forces the entries of a directory to disk, so that creating or renaming a file in it
+     * survives a crash. Java can't open a directory on every platform, so the caller does it.
+     */
+    interface DirectorySync {
+        void sync(File dir) throws IOException;
+    }
+
+    private final File mFile;
+    private final int mSyncInterval;
+    private final DirectorySync mDirectorySync;
+    private final CRC32 mCrc = new CRC32();
+
+    private FileOutputStream mFileOut;
+    private DataOutputStream mOut;
+    // Records appended since the last fsync
+    private int mUnsynced;
+
+    /**
+     * @param syncInterval How many appended records to force to disk at once.
+     * @param directorySync Syncs the directory of the log, or null to leave it to the kernel.
+     */
+    InstallQueueLog(File file, int syncInterval, DirectorySync directorySync) {
+        mFile = file;
+        mSyncInterval = Math.max(1, syncInterval);
+        mDirectorySync = directorySync;
+    }
+
+    void append(byte[] record) throws IOException {
+        if (record.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record of " + record.length + " bytes");
+        }
+        if (mOut == null) {
+            openForAppend();
+        }
+        try {
+            writeRecord(mOut, record);
+            mOut.flush();
+        } catch (IOException e) {
+            // The next append truncates whatever part of the record was written
+            closeStream();
+            throw e;
+        }
+        if (++mUnsynced >= mSyncInterval) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the records appended so far to disk.
+     */
+    void sync() throws IOException {
+        if (mOut != null && mUnsynced > 0) {
+            mOut.flush();
+            mFileOut.getFD().sync();
+            mUnsynced = 0;
+        }
+    }
+
+    /**
+     * Returns every record in the log, in the order they were appended.
+     */
+    ArrayList<byte[]> readAll() throws IOException {
+        final ArrayList<byte[]> records = new ArrayList<byte[]>();
+        read(records);
+        return records;
+    }
+
+    /**
+     * Returns every record in the log, in the order they were appended, and empties it.
+     */
+    ArrayList<byte[]> drain() throws IOException {
+        final ArrayList<byte[]> records = new ArrayList<byte[]>();
+        read(records);
+        clear();
+        return records;
+    }
+
+    void clear() throws IOException {
+        closeStream();
+        truncate(0);
+    }
+
+    /**
+     * Removes the records filter doesn't retain, by writing the others to a new file which
+     * replaces the log.
+     *
+     * @return The number of records removed.
+     */
+    int retain(Filter filter) throws IOException {
+        final ArrayList<byte[]> records = new ArrayList<byte[]>();
+        final long validLength = read(records);
+        final ArrayList<byte[]> retained = new ArrayList<byte[]>(records.size());
+        for (byte[] record : records) {
+            if (filter.retain(record)) {
+                retained.add(record);
+            }
+        }
+        final int removed = records.size() - retained.size();
+        if (removed == 0 && validLength == mFile.length()) {
+            return 0;
+        }
+
+        closeStream();
+        if (retained.isEmpty()) {
+            truncate(0);
+            return removed;
+        }
+        final File compacted = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream fileOut = new FileOutputStream(compacted);
+        try {
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+            for (byte[] record : retained) {
+                writeRecord(out, record);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!compacted.renameTo(mFile)) {
+            compacted.delete();
+            throw new IOException("Couldn't replace " + mFile + " with " + compacted);
+        }
+        syncDirectory();
+        return removed;
+    }
+
+    /**
+     * Forces the log to disk and closes it. It is opened again by the next append.
+     */
+    void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            closeStream();
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        // Records appended after a torn one could never be read back
+        final long validLength = read(null);
+        if (validLength < mFile.length()) {
+            truncate(validLength);
+        }
+        final boolean created = !mFile.exists();
+        mFileOut = new FileOutputStream(mFile, true);
+        mOut = new DataOutputStream(new BufferedOutputStream(mFileOut, BUFFER_SIZE));
+        mUnsynced = 0;
+        if (created) {
+            syncDirectory();
+        }
+    }
+
+    private void syncDirectory() throws IOException {
+        if (mDirectorySync != null) {
+            mDirectorySync.sync(mFile.getAbsoluteFile().getParentFile());
+        }
+    }
+
+    private void closeStream() {
+        if (mOut != null) {
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                // The records that didn't make it are lost either way
+            }
+            mOut = null;
+            mFileOut = null;
+            mUnsynced = 0;
+        }
+    }
+
+    private void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        mCrc.reset();
+        mCrc.update(record, 0, record.length);
+        out.writeInt(record.length);
+        out.writeInt((int) mCrc.getValue());
+        out.write(record);
+    }
+
+    /**
+     * Reads the records into records, if not null, up to the end of the file or the first
+     * record that is torn or corrupt.
+     *
+     * @return The length of the valid records.
+     */
+    private long read(ArrayList<byte[]> records) throws IOException {
+        if (mFile.length() == 0) {
+            return 0;
+        }
+        if (mOut != null) {
+            mOut.flush();
+        }
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile), BUFFER_SIZE));
+        long validLength = 0;
+        try {
+            while (true) {
+                final int length = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                final int crc = in.readInt();
+                final byte[] record = new byte[length];
+                in.readFully(record);
+                mCrc.reset();
+                mCrc.update(record, 0, length);
+                if ((int) mCrc.getValue() != crc) {
+                    break;
+                }
+                if (records != null) {
+                    records.add(record);
+                }
+                validLength += HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            // The end of the file, or of a record cut short
+        } finally {
+            in.close();
+        }
+        return validLength;
+    }
+
+    private void truncate(long length) throws IOException {
+        if (mFile.length() <= length) {
+            return;
+        }
+        final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+}
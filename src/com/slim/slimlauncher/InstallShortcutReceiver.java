@@ -24,6 +24,9 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
 import android.text.TextUtils;
 import android.util.Base64;
 import android.util.Log;
@@ -35,12 +38,17 @@ import com.slim.slimlauncher.compat.UserManagerCompat;
 
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONStringer;
 import org.json.JSONTokener;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -60,79 +68,168 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
     private static final String APP_SHORTCUT_TYPE_KEY = "isAppShortcut";
     private static final String USER_HANDLE_KEY = "userHandle";
 
-    // The set of shortcuts that are pending install
+    // The set of shortcuts that were pending install before they were queued in a file
     private static final String APPS_PENDING_INSTALL = "apps_to_install";
 
+    // The log of shortcuts pending install, in the files directory
+    private static final String INSTALL_QUEUE_FILE = "install_queue.log";
+    // How many queued shortcuts to force to disk at once
+    private static final int INSTALL_QUEUE_SYNC_INTERVAL = 16;
+    // How long a queued shortcut may wait for more before it is forced to disk
+    private static final int INSTALL_QUEUE_SYNC_DELAY_MS = 500;
+
+    // The first byte of every queued shortcut
+    private static final byte RECORD_LEGACY_JSON = 0;
+    private static final byte RECORD_APP = 1;
+    private static final byte RECORD_SHORTCUT = 2;
+
     public static final int NEW_SHORTCUT_BOUNCE_DURATION = 450;
     public static final int NEW_SHORTCUT_STAGGER_DELAY = 85;
 
     private static final Object sLock = new Object();
 
-    private static void addToInstallQueue(
-            SharedPreferences sharedPrefs, PendingInstallShortcutInfo info) {
-        synchronized(sLock) {
-            String encoded = info.encodeToString();
-            if (encoded != null) {
-                Set<String> strings = sharedPrefs.getStringSet(APPS_PENDING_INSTALL, null);
-                if (strings == null) {
-                    strings = new HashSet<String>(1);
-                } else {
-                    strings = new HashSet<String>(strings);
+    // Guarded by sLock
+    private static InstallQueueLog sInstallQueue;
+    private static boolean sInstallQueueSyncScheduled;
+
+    private static final Runnable sSyncInstallQueue = new Runnable() {
+        public void run() {
+            synchronized(sLock) {
+                sInstallQueueSyncScheduled = false;
+                syncInstallQueueLocked();
+            }
+        }
+    };
+
+    private static final InstallQueueLog.DirectorySync sDirectorySync =
+            new InstallQueueLog.DirectorySync() {
+        @Override
+        public void sync(File dir) throws IOException {
+            // Directories can only be opened through the system calls, public from L on
+            if (!Utilities.isLmpOrAbove()) {
+                return;
+            }
+            try {
+                FileDescriptor fd = Os.open(dir.getPath(), OsConstants.O_RDONLY, 0);
+                try {
+                    Os.fsync(fd);
+                } finally {
+                    Os.close(fd);
                 }
-                strings.add(encoded);
-                sharedPrefs.edit().putStringSet(APPS_PENDING_INSTALL, strings).commit();
+            } catch (ErrnoException e) {
+                throw new IOException(e);
             }
         }
-    }
+    };
 
-    public static void removeFromInstallQueue(Context context, ArrayList<String> packageNames,
-            UserHandleCompat user) {
-        if (packageNames.isEmpty()) {
-            return;
+    /**
+     * Returns the log of shortcuts pending install, first moving the ones pending in the shared
+     * preferences to it.
+     */
+    private static InstallQueueLog getInstallQueueLocked(Context context) {
+        if (sInstallQueue != null) {
+            return sInstallQueue;
         }
+        sInstallQueue = new InstallQueueLog(new File(context.getFilesDir(), INSTALL_QUEUE_FILE),
+                INSTALL_QUEUE_SYNC_INTERVAL, sDirectorySync);
+
         String spKey = LauncherAppState.getSharedPreferencesKey();
         SharedPreferences sp = context.getSharedPreferences(spKey, Context.MODE_PRIVATE);
+        Set<String> strings = sp.getStringSet(APPS_PENDING_INSTALL, null);
+        if (strings != null) {
+            try {
+                // Copied as they are, they are decoded when the queue is flushed
+                for (String encoded : strings) {
+                    sInstallQueue.append(encodeLegacy(encoded));
+                }
+                sInstallQueue.sync();
+                sp.edit().remove(APPS_PENDING_INSTALL).commit();
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't move the shortcuts pending install to "
+                        + INSTALL_QUEUE_FILE, e);
+            }
+        }
+        return sInstallQueue;
+    }
+
+    /**
+     * @param deferred Whether the queue won't be flushed right away, in which case the shortcut
+     *        is forced to disk once no more shortcuts come in for a moment.
+     */
+    private static void addToInstallQueue(Context context, PendingInstallShortcutInfo info,
+            boolean deferred) {
+        byte[] encoded = info.encode();
+        if (encoded == null) {
+            return;
+        }
         synchronized(sLock) {
-            Set<String> strings = sp.getStringSet(APPS_PENDING_INSTALL, null);
-            if (DBG) {
-                Log.d(TAG, "APPS_PENDING_INSTALL: " + strings
-                        + ", removing packages: " + packageNames);
+            try {
+                getInstallQueueLocked(context).append(encoded);
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't queue shortcut " + info.launchIntent, e);
+                return;
             }
-            if (strings != null) {
-                Set<String> newStrings = new HashSet<String>(strings);
-                Iterator<String> newStringsIter = newStrings.iterator();
-                while (newStringsIter.hasNext()) {
-                    String encoded = newStringsIter.next();
-                    PendingInstallShortcutInfo info = decode(encoded, context);
-                    if (info == null || (packageNames.contains(info.getTargetPackage())
-                            && user.equals(info.user))) {
-                        newStringsIter.remove();
+            if (deferred && !sInstallQueueSyncScheduled) {
+                sInstallQueueSyncScheduled = true;
+                LauncherModel.runOnWorkerThreadDelayed(WorkerQueueStats.TASK_DB_WRITE,
+                        sSyncInstallQueue, INSTALL_QUEUE_SYNC_DELAY_MS);
+            }
+        }
+    }
+
+    private static void syncInstallQueueLocked() {
+        if (sInstallQueue != null) {
+            try {
+                sInstallQueue.sync();
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't sync the install queue", e);
+            }
+        }
+    }
+
+    public static void removeFromInstallQueue(final Context context,
+            final ArrayList<String> packageNames, final UserHandleCompat user) {
+        if (packageNames.isEmpty()) {
+            return;
+        }
+        synchronized(sLock) {
+            if (DBG) Log.d(TAG, "Removing packages from the install queue: " + packageNames);
+            try {
+                getInstallQueueLocked(context).retain(new InstallQueueLog.Filter() {
+                    @Override
+                    public boolean retain(byte[] record) {
+                        PendingInstallShortcutInfo info = decode(record, context);
+                        return info != null && !(packageNames.contains(info.getTargetPackage())
+                                && user.equals(info.user));
                     }
-                }
-                sp.edit().putStringSet(APPS_PENDING_INSTALL, newStrings).commit();
+                });
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't remove packages from the install queue", e);
             }
         }
     }
 
     private static ArrayList<PendingInstallShortcutInfo> getAndClearInstallQueue(
-            SharedPreferences sharedPrefs, Context context) {
+            Context context) {
+        ArrayList<byte[]> records;
         synchronized(sLock) {
-            Set<String> strings = sharedPrefs.getStringSet(APPS_PENDING_INSTALL, null);
-            if (DBG) Log.d(TAG, "Getting and clearing APPS_PENDING_INSTALL: " + strings);
-            if (strings == null) {
+            try {
+                records = getInstallQueueLocked(context).drain();
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't read the install queue", e);
                 return new ArrayList<PendingInstallShortcutInfo>();
             }
-            ArrayList<PendingInstallShortcutInfo> infos =
-                new ArrayList<PendingInstallShortcutInfo>();
-            for (String encoded : strings) {
-                PendingInstallShortcutInfo info = decode(encoded, context);
-                if (info != null) {
-                    infos.add(info);
-                }
+        }
+        if (DBG) Log.d(TAG, "Got and cleared " + records.size() + " queued shortcuts");
+        ArrayList<PendingInstallShortcutInfo> infos =
+            new ArrayList<PendingInstallShortcutInfo>(records.size());
+        for (byte[] record : records) {
+            PendingInstallShortcutInfo info = decode(record, context);
+            if (info != null) {
+                infos.add(info);
             }
-            sharedPrefs.edit().putStringSet(APPS_PENDING_INSTALL, new HashSet<String>()).commit();
-            return infos;
         }
+        return infos;
     }
 
     // Determines whether to defer installing shortcuts immediately until
@@ -160,10 +257,9 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
         LauncherAppState app = LauncherAppState.getInstance();
         boolean launcherNotLoaded = app.getModel().getCallback() == null;
 
-        String spKey = LauncherAppState.getSharedPreferencesKey();
-        SharedPreferences sp = context.getSharedPreferences(spKey, Context.MODE_PRIVATE);
-        addToInstallQueue(sp, info);
-        if (!mUseInstallQueue && !launcherNotLoaded) {
+        boolean deferred = mUseInstallQueue || launcherNotLoaded;
+        addToInstallQueue(context, info, deferred);
+        if (!deferred) {
             flushInstallQueue(context);
         }
     }
@@ -173,12 +269,14 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
     }
     static void disableAndFlushInstallQueue(Context context) {
         mUseInstallQueue = false;
+        // The burst of deferred shortcuts ended
+        synchronized(sLock) {
+            syncInstallQueueLocked();
+        }
         flushInstallQueue(context);
     }
     static void flushInstallQueue(Context context) {
-        String spKey = LauncherAppState.getSharedPreferencesKey();
-        SharedPreferences sp = context.getSharedPreferences(spKey, Context.MODE_PRIVATE);
-        ArrayList<PendingInstallShortcutInfo> installQueue = getAndClearInstallQueue(sp, context);
+        ArrayList<PendingInstallShortcutInfo> installQueue = getAndClearInstallQueue(context);
         if (!installQueue.isEmpty()) {
             Iterator<PendingInstallShortcutInfo> iter = installQueue.iterator();
             ArrayList<ItemInfo> addShortcuts = new ArrayList<ItemInfo>();
@@ -294,59 +392,56 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
             label = info.getLabel().toString();
         }
 
-        public String encodeToString() {
-            if (activityInfo != null) {
-                try {
+        public byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                if (activityInfo != null) {
                     // If it a launcher target, we only need component name, and user to
                     // recreate this.
-                    return new JSONStringer()
-                        .object()
-                        .key(LAUNCH_INTENT_KEY).value(launchIntent.toUri(0))
-                        .key(APP_SHORTCUT_TYPE_KEY).value(true)
-                        .key(USER_HANDLE_KEY).value(UserManagerCompat.getInstance(mContext)
-                                .getSerialNumberForUser(user))
-                        .endObject().toString();
-                } catch (JSONException e) {
-                    Log.d(TAG, "Exception when adding shortcut: " + e);
-                    return null;
+                    out.writeByte(RECORD_APP);
+                    writeString(out, launchIntent.toUri(0));
+                    out.writeLong(UserManagerCompat.getInstance(mContext)
+                            .getSerialNumberForUser(user));
+                    return bytes.toByteArray();
                 }
-            }
-
-            if (launchIntent.getAction() == null) {
-                launchIntent.setAction(Intent.ACTION_VIEW);
-            } else if (launchIntent.getAction().equals(Intent.ACTION_MAIN) &&
-                    launchIntent.getCategories() != null &&
-                    launchIntent.getCategories().contains(Intent.CATEGORY_LAUNCHER)) {
-                launchIntent.addFlags(
-                        Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
-            }
 
-            // This name is only used for comparisons and notifications, so fall back to activity
-            // name if not supplied
-            String name = ensureValidName(mContext, launchIntent, label).toString();
-            Bitmap icon = data.getParcelableExtra(Intent.EXTRA_SHORTCUT_ICON);
-            Intent.ShortcutIconResource iconResource =
-                data.getParcelableExtra(Intent.EXTRA_SHORTCUT_ICON_RESOURCE);
+                if (launchIntent.getAction() == null) {
+                    launchIntent.setAction(Intent.ACTION_VIEW);
+                } else if (launchIntent.getAction().equals(Intent.ACTION_MAIN) &&
+                        launchIntent.getCategories() != null &&
+                        launchIntent.getCategories().contains(Intent.CATEGORY_LAUNCHER)) {
+                    launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+                            | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+                }
 
-            // Only encode the parameters which are supported by the API.
-            try {
-                JSONStringer json = new JSONStringer()
-                    .object()
-                    .key(LAUNCH_INTENT_KEY).value(launchIntent.toUri(0))
-                    .key(NAME_KEY).value(name);
-                if (icon != null) {
-                    byte[] iconByteArray = ItemInfo.flattenBitmap(icon);
-                    json = json.key(ICON_KEY).value(
-                            Base64.encodeToString(
-                                    iconByteArray, 0, iconByteArray.length, Base64.DEFAULT));
+                // This name is only used for comparisons and notifications, so fall back to
+                // activity name if not supplied
+                String name = ensureValidName(mContext, launchIntent, label).toString();
+                Bitmap icon = data.getParcelableExtra(Intent.EXTRA_SHORTCUT_ICON);
+                Intent.ShortcutIconResource iconResource =
+                    data.getParcelableExtra(Intent.EXTRA_SHORTCUT_ICON_RESOURCE);
+
+                // Only encode the parameters which are supported by the API.
+                out.writeByte(RECORD_SHORTCUT);
+                writeString(out, launchIntent.toUri(0));
+                writeString(out, name);
+                byte[] iconByteArray = icon != null ? ItemInfo.flattenBitmap(icon) : null;
+                if (iconByteArray != null) {
+                    out.writeInt(iconByteArray.length);
+                    out.write(iconByteArray);
+                } else {
+                    out.writeInt(-1);
                 }
-                if (iconResource != null) {
-                    json = json.key(ICON_RESOURCE_NAME_KEY).value(iconResource.resourceName);
-                    json = json.key(ICON_RESOURCE_PACKAGE_NAME_KEY)
-                            .value(iconResource.packageName);
+                writeString(out, iconResource != null ? iconResource.resourceName : null);
+                writeString(out, iconResource != null ? iconResource.packageName : null);
+                byte[] encoded = bytes.toByteArray();
+                if (encoded.length > InstallQueueLog.MAX_RECORD_SIZE) {
+                    Log.d(TAG, "Shortcut too large to queue: " + encoded.length + " bytes");
+                    return null;
                 }
-                return json.endObject().toString();
-            } catch (JSONException e) {
+                return encoded;
+            } catch (IOException e) {
                 Log.d(TAG, "Exception when adding shortcut: " + e);
             }
             return null;
@@ -379,44 +474,130 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
         }
     }
 
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, "UTF-8");
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        // Records are read from byte arrays, where available() is what is left of them
+        if (length > in.available()) {
+            throw new IOException("Truncated shortcut");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] encodeLegacy(String encoded) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_LEGACY_JSON);
+        writeString(out, encoded);
+        return bytes.toByteArray();
+    }
+
+    private static PendingInstallShortcutInfo decode(byte[] record, Context context) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            switch (in.readByte()) {
+                case RECORD_APP: {
+                    Intent launchIntent = Intent.parseUri(readString(in), 0);
+                    return decodeAppShortcut(launchIntent, in.readLong(), context);
+                }
+                case RECORD_SHORTCUT: {
+                    Intent launchIntent = Intent.parseUri(readString(in), 0);
+                    String name = readString(in);
+                    byte[] icon = readBytes(in);
+                    String iconResourceName = readString(in);
+                    String iconResourcePackageName = readString(in);
+                    return decodeShortcut(launchIntent, name, icon, iconResourceName,
+                            iconResourcePackageName, context);
+                }
+                case RECORD_LEGACY_JSON:
+                    return decode(readString(in), context);
+                default:
+                    Log.d(TAG, "Unknown shortcut to add: " + record[0]);
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "Exception reading shortcut to add: " + e);
+        } catch (URISyntaxException e) {
+            Log.d(TAG, "Exception reading shortcut to add: " + e);
+        }
+        return null;
+    }
+
+    private static PendingInstallShortcutInfo decodeAppShortcut(Intent launchIntent,
+            long userSerial, Context context) {
+        // The is an internal launcher target shortcut.
+        UserHandleCompat user = UserManagerCompat.getInstance(context)
+                .getUserForSerialNumber(userSerial);
+        if (user == null) {
+            return null;
+        }
+
+        LauncherActivityInfoCompat info = LauncherAppsCompat.getInstance(context)
+                .resolveActivity(launchIntent, user);
+        return info == null ? null : new PendingInstallShortcutInfo(info, context);
+    }
+
+    private static PendingInstallShortcutInfo decodeShortcut(Intent launchIntent, String name,
+            byte[] icon, String iconResourceName, String iconResourcePackageName,
+            Context context) {
+        Intent data = new Intent();
+        data.putExtra(Intent.EXTRA_SHORTCUT_INTENT, launchIntent);
+        data.putExtra(Intent.EXTRA_SHORTCUT_NAME, name);
+
+        if (icon != null && icon.length > 0) {
+            Bitmap b = BitmapFactory.decodeByteArray(icon, 0, icon.length);
+            data.putExtra(Intent.EXTRA_SHORTCUT_ICON, b);
+        } else if (iconResourceName != null && !iconResourceName.isEmpty()) {
+            Intent.ShortcutIconResource iconResource =
+                new Intent.ShortcutIconResource();
+            iconResource.resourceName = iconResourceName;
+            iconResource.packageName = iconResourcePackageName;
+            data.putExtra(Intent.EXTRA_SHORTCUT_ICON_RESOURCE, iconResource);
+        }
+
+        return new PendingInstallShortcutInfo(data, context);
+    }
+
+    /**
+     * Decodes a shortcut queued in the shared preferences by an older version.
+     */
     private static PendingInstallShortcutInfo decode(String encoded, Context context) {
+        if (encoded == null) {
+            return null;
+        }
         try {
             JSONObject object = (JSONObject) new JSONTokener(encoded).nextValue();
             Intent launcherIntent = Intent.parseUri(object.getString(LAUNCH_INTENT_KEY), 0);
 
             if (object.optBoolean(APP_SHORTCUT_TYPE_KEY)) {
-                // The is an internal launcher target shortcut.
-                UserHandleCompat user = UserManagerCompat.getInstance(context)
-                        .getUserForSerialNumber(object.getLong(USER_HANDLE_KEY));
-                if (user == null) {
-                    return null;
-                }
-
-                LauncherActivityInfoCompat info = LauncherAppsCompat.getInstance(context)
-                        .resolveActivity(launcherIntent, user);
-                return info == null ? null : new PendingInstallShortcutInfo(info, context);
+                return decodeAppShortcut(launcherIntent, object.getLong(USER_HANDLE_KEY),
+                        context);
             }
 
-            Intent data = new Intent();
-            data.putExtra(Intent.EXTRA_SHORTCUT_INTENT, launcherIntent);
-            data.putExtra(Intent.EXTRA_SHORTCUT_NAME, object.getString(NAME_KEY));
-
             String iconBase64 = object.optString(ICON_KEY);
-            String iconResourceName = object.optString(ICON_RESOURCE_NAME_KEY);
-            String iconResourcePackageName = object.optString(ICON_RESOURCE_PACKAGE_NAME_KEY);
-            if (iconBase64 != null && !iconBase64.isEmpty()) {
-                byte[] iconArray = Base64.decode(iconBase64, Base64.DEFAULT);
-                Bitmap b = BitmapFactory.decodeByteArray(iconArray, 0, iconArray.length);
-                data.putExtra(Intent.EXTRA_SHORTCUT_ICON, b);
-            } else if (iconResourceName != null && !iconResourceName.isEmpty()) {
-                Intent.ShortcutIconResource iconResource =
-                    new Intent.ShortcutIconResource();
-                iconResource.resourceName = iconResourceName;
-                iconResource.packageName = iconResourcePackageName;
-                data.putExtra(Intent.EXTRA_SHORTCUT_ICON_RESOURCE, iconResource);
-            }
-
-            return new PendingInstallShortcutInfo(data, context);
+            byte[] icon = iconBase64 != null && !iconBase64.isEmpty()
+                    ? Base64.decode(iconBase64, Base64.DEFAULT) : null;
+            return decodeShortcut(launcherIntent, object.getString(NAME_KEY), icon,
+                    object.optString(ICON_RESOURCE_NAME_KEY),
+                    object.optString(ICON_RESOURCE_PACKAGE_NAME_KEY), context);
         } catch (JSONException e) {
             Log.d(TAG, "Exception reading shortcut to add: " + e);
         } catch (URISyntaxException e) {
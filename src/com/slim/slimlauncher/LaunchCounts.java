@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The number of times each intent was launched, keyed by the flattened intent, as kept by
+ * {@link Stats}. The intents keep the order they were first launched in, which is the order
+ * they are saved in, and lookups go through a hash index rather than scanning the intents,
+ * since the launch count comparator looks up every app several times per sort.
+ */
+final class LaunchCounts {
+    private final ArrayList<String> mIntents;
+    private int[] mCounts;
+    // The position of every intent in mIntents
+    private final HashMap<String, Integer> mPositions;
+
+    LaunchCounts(int initialCapacity) {
+        mIntents = new ArrayList<String>(initialCapacity);
+        mCounts = new int[initialCapacity];
+        mPositions = new HashMap<String, Integer>(initialCapacity);
+    }
+
+    /**
+     * Appends an intent with the given count. If the intent is already known, lookups keep
+     * returning the count of the first one.
+     */
+    void add(String intent, int count) {
+        final int position = mIntents.size();
+        if (position == mCounts.length) {
+            mCounts = Arrays.copyOf(mCounts, Math.max(position * 2, 16));
+        }
+        mIntents.add(intent);
+        mCounts[position] = count;
+        if (!mPositions.containsKey(intent)) {
+            mPositions.put(intent, position);
+        }
+    }
+
+    void increment(String intent) {
+        Integer position = mPositions.get(intent);
+        if (position == null) {
+            add(intent, 1);
+        } else {
+            mCounts[position]++;
+        }
+    }
+
+    int get(String intent) {
+        Integer position = mPositions.get(intent);
+        return position == null ? 0 : mCounts[position];
+    }
+
+    int size() {
+        return mIntents.size();
+    }
+
+    String getIntent(int position) {
+        return mIntents.get(position);
+    }
+
+    int getCount(int position) {
+        return mCounts[position];
+    }
+}
@@ -69,6 +69,7 @@ import android.os.Message;
 import android.os.StrictMode;
 import android.os.SystemClock;
 import android.speech.RecognizerIntent;
+import android.support.annotation.VisibleForTesting;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.Selection;
@@ -129,8 +130,8 @@ import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -359,10 +360,8 @@ public class Launcher extends Activity
     private final ArrayList<Integer> mSynchronouslyBoundPages = new ArrayList<Integer>();
     private static final boolean DISABLE_SYNCHRONOUS_BINDING_CURRENT_PAGE = false;
 
-    static final ArrayList<String> sDumpLogs = new ArrayList<String>();
-    static Date sDateStamp = new Date();
-    static DateFormat sDateFormat =
-            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    // Bounded, the oldest logs are dropped
+    static final DumpLogBuffer sDumpLogs = new DumpLogBuffer(1024);
     static long sRunStart = System.currentTimeMillis();
     static final String CORRUPTION_EMAIL_SENT_KEY = "corruptionEmailSent";
 
@@ -528,6 +527,26 @@ public class Launcher extends Activity
         return true;
     }
 
+    /**
+     * Notified on the main thread when the model finishes a bind, so that the stress tests can
+     * time the loader. For tests only.
+     */
+    @VisibleForTesting
+    public interface BindListener {
+        void onFinishBindingItems();
+        void onBindAllApplications(int appCount);
+    }
+
+    private static BindListener sBindListener;
+
+    /**
+     * For tests only, see {@link BindListener}. Kept by proguard.flags.
+     */
+    @VisibleForTesting
+    public static void setBindListener(BindListener listener) {
+        sBindListener = listener;
+    }
+
     private void initializeDynamicGrid() {
         LauncherAppState app = LauncherAppState.getInstance();
         LauncherAppState.getLauncherProvider().setLauncherProviderChangeListener(this);
@@ -543,6 +562,10 @@ public class Launcher extends Activity
 
         mLockWorkspace = SettingsProvider.getBoolean(this,
                 SettingsProvider.KEY_LOCK_WORKSPACE, false);
+
+        FrameStats.setEnabled(SettingsProvider.getBoolean(this,
+                SettingsProvider.KEY_FRAME_STATS, false),
+                getWindowManager().getDefaultDisplay().getRefreshRate());
     }
 
     public void updateDynamicGrid() {
@@ -5153,6 +5176,7 @@ public class Launcher extends Activity
         if (waitUntilResume(r)) {
             return;
         }
+        traceFirstDrawAfterBind();
         if (mSavedState != null) {
             if (!mWorkspace.hasFocus()) {
                 mWorkspace.getChildAt(mWorkspace.getCurrentPage()).requestFocus();
@@ -5191,9 +5215,34 @@ public class Launcher extends Activity
         if (mLauncherCallbacks != null) {
             mLauncherCallbacks.finishBindingItems(upgradePath);
         }
+        if (sBindListener != null) {
+            sBindListener.onFinishBindingItems();
+        }
     }
 
 
+    /**
+     * Records the time from now until the workspace is drawn next.
+     */
+    private void traceFirstDrawAfterBind() {
+        final long start = StartupTracer.now();
+        mWorkspace.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean mDrawn = false;
+            public void onDraw() {
+                if (mDrawn) return;
+                mDrawn = true;
+                StartupTracer.record(StartupTracer.SPAN_FIRST_DRAW, start);
+                // Listeners can't be removed while the tree is being drawn
+                final ViewTreeObserver.OnDrawListener listener = this;
+                mWorkspace.post(new Runnable() {
+                    public void run() {
+                        mWorkspace.getViewTreeObserver().removeOnDrawListener(listener);
+                    }
+                });
+            }
+        });
+    }
+
     private void sendLoadingCompleteBroadcastIfNecessary() {
         if (!mSharedPrefs.getBoolean(FIRST_LOAD_COMPLETE, false)) {
             String permission =
@@ -5262,23 +5311,20 @@ public class Launcher extends Activity
                 }
                 mIntentsOnWorkspaceFromUpgradePath = null;
             }
-            if (mAppsCustomizeContent != null) {
-                mAppsCustomizeContent.onPackagesUpdated(
-                        LauncherModel.getSortedWidgetsAndShortcuts(this));
-            }
         } else {
             if (mAppDrawerAdapter != null) {
                 mAppDrawerAdapter.setApps(apps);
             }
             if (mAppsCustomizeContent != null) {
                 mAppsCustomizeContent.setApps(apps);
-                mAppsCustomizeContent.onPackagesUpdated(
-                        LauncherModel.getSortedWidgetsAndShortcuts(this));
             }
         }
         if (mLauncherCallbacks != null) {
             mLauncherCallbacks.bindAllApplications(apps);
         }
+        if (sBindListener != null) {
+            sBindListener.onBindAllApplications(apps.size());
+        }
     }
 
     /**
@@ -5303,6 +5349,32 @@ public class Launcher extends Activity
         }
     }
 
+    /**
+     * Unread counts changed. Only the badges are redrawn; icons and app lists are untouched.
+     *
+     * Implementation of the method from LauncherModel.Callbacks.
+     */
+    private Runnable mBindUnreadCountsChangedRunnable = new Runnable() {
+            public void run() {
+                bindUnreadCountsChanged();
+            }
+        };
+    public void bindUnreadCountsChanged() {
+        // The counts live in the shared UnreadBadgeCache, so one deferred refresh covers them all
+        if (waitUntilResume(mBindUnreadCountsChangedRunnable, true)) {
+            return;
+        }
+
+        if (mWorkspace != null) {
+            mWorkspace.updateUnreadCounts();
+        }
+        if (!LauncherAppState.isDisableAllApps() &&
+                mAppsCustomizeContent != null) {
+            mAppsCustomizeContent.updateUnreadCounts();
+            mAppDrawerAdapter.updateUnreadCounts();
+        }
+    }
+
     @Override
     public void bindWidgetsRestored(final ArrayList<LauncherAppWidgetInfo> widgets) {
         Runnable r = new Runnable() {
@@ -5421,25 +5493,35 @@ public class Launcher extends Activity
     }
 
     /**
-     * A number of packages were updated.
+     * The widgets and shortcuts changed.
+     *
+     * Implementation of the method from LauncherModel.Callbacks.
      */
-    private ArrayList<Object> mWidgetsAndShortcuts;
-    private Runnable mBindPackagesUpdatedRunnable = new Runnable() {
+    private final ArrayList<WidgetCatalog.Diff> mPendingWidgetDiffs =
+            new ArrayList<WidgetCatalog.Diff>();
+    private Runnable mBindWidgetsChangedRunnable = new Runnable() {
             public void run() {
-                bindPackagesUpdated(mWidgetsAndShortcuts);
-                mWidgetsAndShortcuts = null;
+                applyWidgetDiffs();
             }
         };
-    public void bindPackagesUpdated(final ArrayList<Object> widgetsAndShortcuts) {
-        if (waitUntilResume(mBindPackagesUpdatedRunnable, true)) {
-            mWidgetsAndShortcuts = widgetsAndShortcuts;
+    public void bindWidgetsChanged(final WidgetCatalog.Diff diff) {
+        if (diff.fromVersion == WidgetCatalog.Diff.NO_VERSION) {
+            // Replaces everything before it
+            mPendingWidgetDiffs.clear();
+        }
+        mPendingWidgetDiffs.add(diff);
+        if (waitUntilResume(mBindWidgetsChangedRunnable, true)) {
             return;
         }
+        applyWidgetDiffs();
+    }
 
+    private void applyWidgetDiffs() {
         // Update the widgets pane
         if (mAppsCustomizeContent != null) {
-            mAppsCustomizeContent.onPackagesUpdated(widgetsAndShortcuts);
+            mAppsCustomizeContent.onWidgetsChanged(mPendingWidgetDiffs);
         }
+        mPendingWidgetDiffs.clear();
     }
 
     private int mapConfigurationOriActivityInfoOri(int configOri) {
@@ -5787,20 +5869,38 @@ public class Launcher extends Activity
         Log.d(TAG, "sFolders.size=" + sFolders.size());
         mModel.dumpState();
 
+        if (mWorkspace != null) {
+            mWorkspace.dumpState();
+        }
         if (mAppsCustomizeContent != null) {
             mAppsCustomizeContent.dumpState();
         }
+        BitmapMemoryRegistry.dumpState();
+        FrameStats.dumpState();
         Log.d(TAG, "END launcher3 dump state");
     }
 
     @Override
     public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
         super.dump(prefix, fd, writer, args);
-        synchronized (sDumpLogs) {
-            writer.println(" ");
-            writer.println("Debug logs: ");
-            for (int i = 0; i < sDumpLogs.size(); i++) {
-                writer.println("  " + sDumpLogs.get(i));
+        writer.println(" ");
+        writer.println("Debug logs: ");
+        sDumpLogs.dump(writer, "  ");
+        StartupTracer.dump(writer);
+        BitmapMemoryRegistry.dump(writer);
+        FrameStats.dump(writer);
+        WorkerQueueStats.dump(writer);
+        if (args != null && Arrays.asList(args).contains(FrameStats.DUMP_RESET_ARG)) {
+            FrameStats.reset();
+            writer.println("Frame stats reset");
+        }
+        if (args != null && Arrays.asList(args).contains(StartupTracer.DUMP_ARG)) {
+            File traceFile = new File(getFilesDir(), StartupTracer.TRACE_FILE_NAME);
+            try {
+                StartupTracer.exportChromeTrace(traceFile);
+                writer.println("Startup trace written to " + traceFile);
+            } catch (IOException e) {
+                writer.println("Failed to write startup trace: " + e);
             }
         }
         if (mLauncherCallbacks != null) {
@@ -5810,16 +5910,12 @@ public class Launcher extends Activity
 
     public static void dumpDebugLogsToConsole() {
         if (DEBUG_DUMP_LOG) {
-            synchronized (sDumpLogs) {
-                Log.d(TAG, "");
-                Log.d(TAG, "*********************");
-                Log.d(TAG, "Launcher debug logs: ");
-                for (int i = 0; i < sDumpLogs.size(); i++) {
-                    Log.d(TAG, "  " + sDumpLogs.get(i));
-                }
-                Log.d(TAG, "*********************");
-                Log.d(TAG, "");
-            }
+            Log.d(TAG, "");
+            Log.d(TAG, "*********************");
+            Log.d(TAG, "Launcher debug logs: ");
+            sDumpLogs.dumpToLog(TAG, "  ");
+            Log.d(TAG, "*********************");
+            Log.d(TAG, "");
         }
     }
 
@@ -5836,11 +5932,8 @@ public class Launcher extends Activity
             }
         }
         if (DEBUG_DUMP_LOG) {
-            sDateStamp.setTime(System.currentTimeMillis());
-            synchronized (sDumpLogs) {
-                sDumpLogs.add(sDateFormat.format(sDateStamp) + ": " + tag + ", " + log
-                    + (e == null ? "" : (", Exception: " + e)));
-            }
+            // Formatted when dumped
+            sDumpLogs.add(tag, log, e);
         }
     }
 
@@ -5849,12 +5942,12 @@ public class Launcher extends Activity
             new AsyncTask<Void, Void, Void>() {
                 public Void doInBackground(Void ... args) {
                     boolean success = false;
-                    sDateStamp.setTime(sRunStart);
-                    String FILENAME = sDateStamp.getMonth() + "-"
-                            + sDateStamp.getDay() + "_"
-                            + sDateStamp.getHours() + "-"
-                            + sDateStamp.getMinutes() + "_"
-                            + sDateStamp.getSeconds() + ".txt";
+                    Date runStart = new Date(sRunStart);
+                    String FILENAME = runStart.getMonth() + "-"
+                            + runStart.getDay() + "_"
+                            + runStart.getHours() + "-"
+                            + runStart.getMinutes() + "_"
+                            + runStart.getSeconds() + ".txt";
 
                     FileOutputStream fos = null;
                     File outFile = null;
@@ -5870,11 +5963,7 @@ public class Launcher extends Activity
 
                         writer.println(" ");
                         writer.println("Debug logs: ");
-                        synchronized (sDumpLogs) {
-                            for (int i = 0; i < sDumpLogs.size(); i++) {
-                                writer.println("  " + sDumpLogs.get(i));
-                            }
-                        }
+                        sDumpLogs.dump(writer, "  ");
                         writer.close();
                     }
                     try {
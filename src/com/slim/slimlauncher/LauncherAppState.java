@@ -51,6 +51,7 @@ public class LauncherAppState implements DeviceProfile.DeviceProfileCallbacks {
     private final BuildInfo mBuildInfo;
     private final LauncherModel mModel;
     private final IconCache mIconCache;
+    private final UnreadBadgeCache mUnreadBadgeCache;
 
     private final boolean mIsScreenLarge;
     private final float mScreenDensity;
@@ -119,6 +120,7 @@ public class LauncherAppState implements DeviceProfile.DeviceProfileCallbacks {
 
         recreateWidgetPreviewDb();
         mIconCache = new IconCache(sContext);
+        mUnreadBadgeCache = new UnreadBadgeCache(sContext);
 
         mAppFilter = AppFilter.loadByName(sContext.getString(R.string.app_filter_class));
         mBuildInfo = BuildInfo.loadByName(sContext.getString(R.string.build_info_class));
@@ -193,6 +195,10 @@ public class LauncherAppState implements DeviceProfile.DeviceProfileCallbacks {
         return mIconCache;
     }
 
+    public UnreadBadgeCache getUnreadBadgeCache() {
+        return mUnreadBadgeCache;
+    }
+
     LauncherModel getModel() {
         return mModel;
     }
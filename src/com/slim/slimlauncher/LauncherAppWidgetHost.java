@@ -79,7 +79,7 @@ public class LauncherAppWidgetHost extends AppWidgetHost {
     protected void onProvidersChanged() {
         // Once we get the message that widget packages are updated, we need to rebind items
         // in AppsCustomize accordingly.
-        mLauncher.bindPackagesUpdated(LauncherModel.getSortedWidgetsAndShortcuts(mLauncher));
+        mLauncher.getModel().reloadWidgetCatalog();
 
         for (Runnable callback : mProviderChangeListeners) {
             callback.run();
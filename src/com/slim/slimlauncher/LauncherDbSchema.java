@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+/**
+ * The SQL LauncherProvider runs to create, upgrade and clean up launcher.db. It only uses
+ * plain strings so that the same statements can be run against a copy of the database on the
+ * host, see tests/benchmarks and gen_launcher_db.py.
+ */
+final class LauncherDbSchema {
+    static final int DATABASE_VERSION = 20;
+
+    static final String CREATE_WORKSPACE_SCREENS_TABLE = "CREATE TABLE workspaceScreens (" +
+            "_id INTEGER," +
+            "screenRank INTEGER," +
+            "modified INTEGER NOT NULL DEFAULT 0" +
+            ");";
+
+    // Version 14
+    static final String ADD_APPWIDGET_PROVIDER_COLUMN = "ALTER TABLE favorites " +
+            "ADD COLUMN appWidgetProvider TEXT;";
+    // Version 15
+    static final String ADD_FAVORITES_MODIFIED_COLUMN = "ALTER TABLE favorites " +
+            "ADD COLUMN modified INTEGER NOT NULL DEFAULT 0;";
+    static final String ADD_WORKSPACE_SCREENS_MODIFIED_COLUMN = "ALTER TABLE workspaceScreens " +
+            "ADD COLUMN modified INTEGER NOT NULL DEFAULT 0;";
+    // Version 16
+    static final String ADD_RESTORED_COLUMN = "ALTER TABLE favorites " +
+            "ADD COLUMN restored INTEGER NOT NULL DEFAULT 0;";
+
+    // Items directly on the workspace whose screen id doesn't exist
+    static final String REMOVE_ORPHANED_DESKTOP_ITEMS = "DELETE FROM favorites WHERE " +
+            "screen NOT IN (SELECT _id FROM workspaceScreens) AND container = -100";
+    // Items contained in folders which no longer exist, after the above statement
+    static final String REMOVE_ORPHANED_FOLDER_ITEMS = "DELETE FROM favorites WHERE " +
+            "container <> -100 AND container <> -101 AND " +
+            "container NOT IN (SELECT _id FROM favorites WHERE itemType = 2)";
+
+    static final String SELECT_MAX_ITEM_ID = "SELECT MAX(_id) FROM favorites";
+    static final String SELECT_MAX_SCREEN_ID = "SELECT MAX(_id) FROM workspaceScreens";
+
+    private LauncherDbSchema() {
+    }
+
+    /**
+     * @param userSerialNumber The serial number of the user the existing items belong to.
+     */
+    static String createFavoritesTable(long userSerialNumber) {
+        return "CREATE TABLE favorites (" +
+                "_id INTEGER PRIMARY KEY," +
+                "title TEXT," +
+                "intent TEXT," +
+                "container INTEGER," +
+                "screen INTEGER," +
+                "cellX INTEGER," +
+                "cellY INTEGER," +
+                "spanX INTEGER," +
+                "spanY INTEGER," +
+                "itemType INTEGER," +
+                "appWidgetId INTEGER NOT NULL DEFAULT -1," +
+                "isShortcut INTEGER," +
+                "iconType INTEGER," +
+                "iconPackage TEXT," +
+                "iconResource TEXT," +
+                "icon BLOB," +
+                "uri TEXT," +
+                "displayMode INTEGER," +
+                "appWidgetProvider TEXT," +
+                "modified INTEGER NOT NULL DEFAULT 0," +
+                "restored INTEGER NOT NULL DEFAULT 0," +
+                "profileId INTEGER DEFAULT " + userSerialNumber +
+                ");";
+    }
+
+    /**
+     * Version 20, see {@link #createFavoritesTable}.
+     */
+    static String addProfileColumn(long userSerialNumber) {
+        return "ALTER TABLE favorites " +
+                "ADD COLUMN profileId INTEGER DEFAULT " + userSerialNumber + ";";
+    }
+}
@@ -26,6 +26,9 @@ public class LauncherFiles {
     public static final String WALLPAPER_IMAGES_DB = "saved_wallpaper_images.db";
     public static final String WIDGET_PREVIEWS_DB = "widgetpreviews.db";
 
+    // Lives in the cache directory, so it is not part of ALL_FILES
+    public static final String WALLPAPER_THUMBNAILS_DIR = "wallpaper_thumbnails";
+
     public static final List<String> ALL_FILES = Collections.unmodifiableList(Arrays.asList(
             DEFAULT_WALLPAPER_THUMBNAIL,
             DEFAULT_WALLPAPER_THUMBNAIL_OLD,
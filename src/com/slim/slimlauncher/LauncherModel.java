@@ -47,11 +47,11 @@ import android.os.Process;
 import android.os.RemoteException;
 import android.os.SystemClock;
 import android.provider.BaseColumns;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Pair;
 
-import com.slim.slimlauncher.compat.AppWidgetManagerCompat;
 import com.slim.slimlauncher.compat.LauncherActivityInfoCompat;
 import com.slim.slimlauncher.compat.LauncherAppsCompat;
 import com.slim.slimlauncher.compat.PackageInstallerCompat;
@@ -71,10 +71,13 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Maintains in-memory state of the Launcher. It is expected that there should be only one
@@ -100,6 +103,10 @@ public class LauncherModel extends BroadcastReceiver
     private static final int ITEMS_CHUNK = 6; // batch size for the workspace icons
     private static final long INVALID_SCREEN_ID = -1L;
 
+    // Package changes are collected until none came for this long, but at most the max delay
+    private static final long PACKAGE_BATCH_DELAY_MS = 200;
+    private static final long PACKAGE_BATCH_MAX_DELAY_MS = 1000;
+
     private final boolean mAppsCanBeOnRemoveableStorage;
     private final boolean mOldContentProviderExists;
 
@@ -109,6 +116,7 @@ public class LauncherModel extends BroadcastReceiver
     private LoaderTask mLoaderTask;
     private boolean mIsLoaderTaskRunning;
     private volatile boolean mFlushingWorkerThread;
+    private final PackageUpdateBatcher mPackageUpdateBatcher = new PackageUpdateBatcher();
 
     /**
      * Maintain a set of packages per user, for which we added a shortcut on the workspace.
@@ -184,6 +192,9 @@ public class LauncherModel extends BroadcastReceiver
 
     private IconCache mIconCache;
 
+    // The widgets and shortcuts for the widgets pane, loaded along with all apps
+    private final WidgetCatalog mWidgetCatalog;
+
     protected int mPreviousConfigMcc;
 
     private final LauncherAppsCompat mLauncherApps;
@@ -206,6 +217,7 @@ public class LauncherModel extends BroadcastReceiver
                                   ArrayList<ItemInfo> addAnimated,
                                   ArrayList<AppInfo> addedApps);
         public void bindAppsUpdated(ArrayList<AppInfo> apps);
+        public void bindUnreadCountsChanged();
         public void bindShortcutsChanged(ArrayList<ShortcutInfo> updated,
                 ArrayList<ShortcutInfo> removed, UserHandleCompat user);
         public void bindWidgetsRestored(ArrayList<LauncherAppWidgetInfo> widgets);
@@ -213,7 +225,7 @@ public class LauncherModel extends BroadcastReceiver
         public void updatePackageBadge(String packageName);
         public void bindComponentsRemoved(ArrayList<String> packageNames,
                         ArrayList<AppInfo> appInfos, UserHandleCompat user, int reason);
-        public void bindPackagesUpdated(ArrayList<Object> widgetsAndShortcuts);
+        public void bindWidgetsChanged(WidgetCatalog.Diff diff);
         public void bindSearchablesChanged();
         public boolean isAllAppsButtonRank(int rank);
         public void onPageBoundSynchronously(int page);
@@ -233,6 +245,10 @@ public class LauncherModel extends BroadcastReceiver
         }
     }
 
+    /**
+     * Applies the pending unread counts on the UI thread. Counts are drawn as an overlay by the
+     * icon views, so neither the icon cache nor the apps list need to be touched.
+     */
     private class UnreadNumberChangeTask implements Runnable {
         public void run() {
             ArrayList<UnreadInfo> unreadInfos = new ArrayList<LauncherModel.UnreadInfo>();
@@ -241,32 +257,17 @@ public class LauncherModel extends BroadcastReceiver
                 unreadChangedMap.clear();
             }
 
-            Context context = mApp.getContext();
-            final Callbacks callbacks = mCallbacks != null ? mCallbacks.get() : null;
-            if (callbacks == null) {
-                Log.w(TAG, "Nobody to tell about the new app.  Launcher is probably loading.");
-                return;
-            }
-
-            final ArrayList<AppInfo> unreadChangeFinal = new ArrayList<AppInfo>();
+            UnreadBadgeCache badges = mApp.getUnreadBadgeCache();
+            boolean changed = false;
             for (UnreadInfo uInfo : unreadInfos) {
-                AppInfo info = mBgAllAppsList.unreadNumbersChanged(context,
-                        uInfo.mComponentName, uInfo.mUnreadNum);
-                if (info != null) {
-                    unreadChangeFinal.add(info);
-                }
+                changed |= badges.setUnreadCount(uInfo.mComponentName, uInfo.mUnreadNum);
             }
+            if (!changed) return;
 
-            if (unreadChangeFinal.isEmpty()) return;
-
-            mHandler.post(new Runnable() {
-                public void run() {
-                    Callbacks cb = mCallbacks != null ? mCallbacks.get() : null;
-                    if (callbacks == cb && cb != null) {
-                        callbacks.bindAppsUpdated(unreadChangeFinal);
-                    }
-                }
-            });
+            Callbacks callbacks = getCallback();
+            if (callbacks != null) {
+                callbacks.bindUnreadCountsChanged();
+            }
         }
     }
 
@@ -301,6 +302,7 @@ public class LauncherModel extends BroadcastReceiver
         mApp = app;
         mBgAllAppsList = new AllAppsList(iconCache, appFilter);
         mIconCache = iconCache;
+        mWidgetCatalog = new WidgetCatalog(context);
 
         final Resources res = context.getResources();
         Configuration config = res.getConfiguration();
@@ -323,17 +325,48 @@ public class LauncherModel extends BroadcastReceiver
         }
     }
 
+    /**
+     * Blocks until the tasks posted to the worker thread so far have run, including the package
+     * changes still waiting to be batched. Used by the stress tests to wait for the model to
+     * process a change. For tests only, kept by proguard.flags.
+     *
+     * @return False if that took longer than timeoutMs.
+     */
+    @VisibleForTesting
+    public boolean waitForWorkerIdle(long timeoutMs) throws InterruptedException {
+        final CountDownLatch idle = new CountDownLatch(1);
+        sWorker.post(WorkerQueueStats.wrap(WorkerQueueStats.TASK_FLUSH, new Runnable() {
+            public void run() {
+                mPackageUpdateBatcher.flush();
+                idle.countDown();
+            }
+        }));
+        return idle.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
     /** Runs the specified runnable immediately if called from the worker thread, otherwise it is
-     * posted on the worker thread handler. */
-    private static void runOnWorkerThread(Runnable r) {
+     * posted on the worker thread handler, counted in the {@link WorkerQueueStats} of type. */
+    private static void runOnWorkerThread(int type, Runnable r) {
         if (sWorkerThread.getThreadId() == Process.myTid()) {
             r.run();
         } else {
             // If we are not on the worker thread, then post to the worker handler
-            sWorker.post(r);
+            sWorker.post(WorkerQueueStats.wrap(type, r));
         }
     }
 
+    /**
+     * Posts r on the worker thread handler after delayMillis, counted in the
+     * {@link WorkerQueueStats} of type once the delay is over.
+     */
+    static void runOnWorkerThreadDelayed(final int type, final Runnable r, long delayMillis) {
+        sWorker.postDelayed(new Runnable() {
+            public void run() {
+                sWorker.post(WorkerQueueStats.wrap(type, r));
+            }
+        }, delayMillis);
+    }
+
     boolean canMigrateFromOldLauncherDb(Launcher launcher) {
         return mOldContentProviderExists && !launcher.isLauncherPreinstalled() ;
     }
@@ -364,7 +397,7 @@ public class LauncherModel extends BroadcastReceiver
             }
         }
 
-        return CellLayout.findVacantCell(xy, 1, 1, xCount, yCount, occupied);
+        return CellGrid.findVacantCell(xy, 1, 1, xCount, yCount, occupied);
     }
     static Pair<Long, int[]> findNextAvailableIconSpace(Context context, String name,
                                                         Intent launchIntent,
@@ -448,7 +481,7 @@ public class LauncherModel extends BroadcastReceiver
                 });
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_ADD_ITEMS, r);
     }
 
     public void addAndBindAddedWorkspaceApps(final Context context,
@@ -567,7 +600,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_ADD_ITEMS, r);
     }
 
     public void unbindItemInfosAndClearQueuedBindRunnables() {
@@ -678,7 +711,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_OTHER, r);
     }
 
     static void updateItemInDatabaseHelper(Context context, final ContentValues values,
@@ -694,7 +727,7 @@ public class LauncherModel extends BroadcastReceiver
                 updateItemArrays(item, itemId, stackTrace);
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_DB_WRITE, r);
     }
 
     static void updateItemsInDatabaseHelper(Context context, final ArrayList<ContentValues> valuesList,
@@ -724,7 +757,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_DB_WRITE, r);
     }
 
     static void updateItemArrays(ItemInfo item, long itemId, StackTraceElement[] stackTrace) {
@@ -769,6 +802,7 @@ public class LauncherModel extends BroadcastReceiver
     }
 
     public void flushWorkerThread() {
+        final long start = System.nanoTime();
         mFlushingWorkerThread = true;
         Runnable waiter = new Runnable() {
                 public void run() {
@@ -780,7 +814,7 @@ public class LauncherModel extends BroadcastReceiver
             };
 
         synchronized(waiter) {
-            runOnWorkerThread(waiter);
+            runOnWorkerThread(WorkerQueueStats.TASK_FLUSH, waiter);
             if (mLoaderTask != null) {
                 synchronized(mLoaderTask) {
                     mLoaderTask.notify();
@@ -795,6 +829,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         }
+        WorkerQueueStats.recordFlush(System.nanoTime() - start);
     }
 
     /**
@@ -1090,7 +1125,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_DB_WRITE, r);
     }
 
     /**
@@ -1176,7 +1211,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_DB_WRITE, r);
     }
 
     /**
@@ -1228,7 +1263,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_DB_WRITE, r);
     }
 
     /**
@@ -1259,7 +1294,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
             }
         };
-        runOnWorkerThread(r);
+        runOnWorkerThread(WorkerQueueStats.TASK_DB_WRITE, r);
     }
 
     /**
@@ -1274,30 +1309,26 @@ public class LauncherModel extends BroadcastReceiver
     @Override
     public void onPackageChanged(String packageName, UserHandleCompat user) {
         int op = PackageUpdatedTask.OP_UPDATE;
-        enqueuePackageUpdated(new PackageUpdatedTask(op, new String[] { packageName },
-                user));
+        enqueuePackageUpdated(op, new String[] { packageName }, user);
     }
 
     @Override
     public void onPackageRemoved(String packageName, UserHandleCompat user) {
         int op = PackageUpdatedTask.OP_REMOVE;
-        enqueuePackageUpdated(new PackageUpdatedTask(op, new String[] { packageName },
-                user));
+        enqueuePackageUpdated(op, new String[] { packageName }, user);
     }
 
     @Override
     public void onPackageAdded(String packageName, UserHandleCompat user) {
         int op = PackageUpdatedTask.OP_ADD;
-        enqueuePackageUpdated(new PackageUpdatedTask(op, new String[] { packageName },
-                user));
+        enqueuePackageUpdated(op, new String[] { packageName }, user);
     }
 
     @Override
     public void onPackagesAvailable(String[] packageNames, UserHandleCompat user,
             boolean replacing) {
         if (!replacing) {
-            enqueuePackageUpdated(new PackageUpdatedTask(PackageUpdatedTask.OP_ADD, packageNames,
-                    user));
+            enqueuePackageUpdated(PackageUpdatedTask.OP_ADD, packageNames, user);
             if (mAppsCanBeOnRemoveableStorage) {
                 // Only rebind if we support removable storage. It catches the
                 // case where
@@ -1306,8 +1337,7 @@ public class LauncherModel extends BroadcastReceiver
             }
         } else {
             // If we are replacing then just update the packages in the list
-            enqueuePackageUpdated(new PackageUpdatedTask(PackageUpdatedTask.OP_UPDATE,
-                    packageNames, user));
+            enqueuePackageUpdated(PackageUpdatedTask.OP_UPDATE, packageNames, user);
         }
     }
 
@@ -1315,9 +1345,7 @@ public class LauncherModel extends BroadcastReceiver
     public void onPackagesUnavailable(String[] packageNames, UserHandleCompat user,
             boolean replacing) {
         if (!replacing) {
-            enqueuePackageUpdated(new PackageUpdatedTask(
-                    PackageUpdatedTask.OP_UNAVAILABLE, packageNames,
-                    user));
+            enqueuePackageUpdated(PackageUpdatedTask.OP_UNAVAILABLE, packageNames, user);
         }
 
     }
@@ -1362,13 +1390,19 @@ public class LauncherModel extends BroadcastReceiver
             synchronized (unreadChangedMap) {
                 unreadChangedMap.put(componentName, new UnreadInfo(componentName, unreadNum));
             }
-            sWorker.removeCallbacks(mUnreadUpdateTask);
-            sWorker.post(mUnreadUpdateTask);
+            mHandler.cancelRunnable(mUnreadUpdateTask);
+            mHandler.post(mUnreadUpdateTask);
         }
     }
 
     void forceReload() {
         resetLoadedState(true, true);
+        // The labels may have changed as well
+        runOnWorkerThread(WorkerQueueStats.TASK_OTHER, new Runnable() {
+            public void run() {
+                mWidgetCatalog.clear();
+            }
+        });
 
         // Do this here because if the launcher activity is running it will be restarted.
         // If it's not running startLoaderFromBackground will merely tell it that it needs
@@ -1376,6 +1410,30 @@ public class LauncherModel extends BroadcastReceiver
         startLoaderFromBackground();
     }
 
+    /**
+     * Queries all widgets and shortcuts again on the worker thread, for when the set of
+     * providers changed without a package event.
+     */
+    void reloadWidgetCatalog() {
+        runOnWorkerThread(WorkerQueueStats.TASK_OTHER, new Runnable() {
+            public void run() {
+                final WidgetCatalog.Diff widgets = mWidgetCatalog.reload();
+                mHandler.post(new Runnable() {
+                    public void run() {
+                        Callbacks callbacks = getCallback();
+                        if (callbacks != null) {
+                            callbacks.bindWidgetsChanged(widgets);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    WidgetCatalog getWidgetCatalog() {
+        return mWidgetCatalog;
+    }
+
     public void resetLoadedState(boolean resetAllAppsLoaded, boolean resetWorkspaceLoaded) {
         synchronized (mLock) {
             // Stop any existing loaders first, so they don't set mAllAppsLoaded or
@@ -1451,7 +1509,8 @@ public class LauncherModel extends BroadcastReceiver
                     mLoaderTask.runBindSynchronousPage(synchronousBindPage);
                 } else {
                     sWorkerThread.setPriority(Thread.NORM_PRIORITY);
-                    sWorker.post(mLoaderTask);
+                    sWorker.post(WorkerQueueStats.wrap(WorkerQueueStats.TASK_LOADER,
+                            mLoaderTask));
                 }
             }
         }
@@ -1571,7 +1630,9 @@ public class LauncherModel extends BroadcastReceiver
 
             boolean isUpgradePath = false;
             if (!mWorkspaceLoaded) {
+                final long loadStart = StartupTracer.now();
                 isUpgradePath = loadWorkspace();
+                StartupTracer.record(StartupTracer.SPAN_LOAD_WORKSPACE, loadStart);
                 synchronized (LoaderTask.this) {
                     if (mStopped) {
                         return isUpgradePath;
@@ -1792,7 +1853,8 @@ public class LauncherModel extends BroadcastReceiver
         }
 
         // check & update map of what's occupied; used to discard overlapping/invalid items
-        private boolean checkItemPlacement(HashMap<Long, ItemInfo[][]> occupied, ItemInfo item) {
+        private boolean checkItemPlacement(WorkspaceOccupancy<ItemInfo> occupied,
+                ItemInfo item) {
             LauncherAppState app = LauncherAppState.getInstance();
             DeviceProfile grid = app.getDynamicGrid().getDeviceProfile();
             final int countX = (int) grid.numColumns;
@@ -1800,77 +1862,45 @@ public class LauncherModel extends BroadcastReceiver
 
             long containerIndex = item.screenId;
             if (item.container == LauncherSettings.Favorites.CONTAINER_HOTSEAT) {
-
-                final ItemInfo[][] hotseatItems =
-                        occupied.get((long) LauncherSettings.Favorites.CONTAINER_HOTSEAT);
-
-                if (item.screenId >= grid.numHotseatIcons) {
-                    Log.e(TAG, "Error loading shortcut " + item
-                            + " into hotseat position " + item.screenId
-                            + ", position out of bounds: (0 to " + (grid.numHotseatIcons - 1)
-                            + ")");
-                    return false;
-                }
-
-                if (hotseatItems != null) {
-                    if (hotseatItems[(int) item.screenId][0] != null) {
+                switch (occupied.placeInHotseat(item, item.screenId)) {
+                    case WorkspaceOccupancy.OUT_OF_BOUNDS:
+                        Log.e(TAG, "Error loading shortcut " + item
+                                + " into hotseat position " + item.screenId
+                                + ", position out of bounds: (0 to " + (grid.numHotseatIcons - 1)
+                                + ")");
+                        return false;
+                    case WorkspaceOccupancy.OCCUPIED:
                         Log.e(TAG, "Error loading shortcut into hotseat " + item
                                 + " into position (" + item.screenId + ":" + item.cellX + ","
-                                + item.cellY + ") occupied by "
-                                + occupied.get(LauncherSettings.Favorites.CONTAINER_HOTSEAT)
-                                [(int) item.screenId][0]);
-                            return false;
-                    } else {
-                        hotseatItems[(int) item.screenId][0] = item;
+                                + item.cellY + ") occupied by " + occupied.getOccupant());
+                        return false;
+                    default:
                         return true;
-                    }
-                } else {
-                    final ItemInfo[][] items = new ItemInfo[(int) grid.numHotseatIcons][1];
-                    items[(int) item.screenId][0] = item;
-                    occupied.put((long) LauncherSettings.Favorites.CONTAINER_HOTSEAT, items);
-                    return true;
                 }
             } else if (item.container != LauncherSettings.Favorites.CONTAINER_DESKTOP) {
                 // Skip further checking if it is not the hotseat or workspace container
                 return true;
             }
 
-            if (!occupied.containsKey(item.screenId)) {
-                ItemInfo[][] items = new ItemInfo[countX + 1][countY + 1];
-                occupied.put(item.screenId, items);
-            }
-
-            final ItemInfo[][] screens = occupied.get(item.screenId);
-            if (item.container == LauncherSettings.Favorites.CONTAINER_DESKTOP &&
-                    item.cellX < 0 || item.cellY < 0 ||
-                    item.cellX + item.spanX > countX || item.cellY + item.spanY > countY) {
-                Log.e(TAG, "Error loading shortcut " + item
-                        + " into cell (" + containerIndex + "-" + item.screenId + ":"
-                        + item.cellX + "," + item.cellY
-                        + ") out of screen bounds ( " + countX + "x" + countY + ")");
-                return false;
-            }
-
-            // Check if any workspace icons overlap with each other
-            for (int x = item.cellX; x < (item.cellX+item.spanX); x++) {
-                for (int y = item.cellY; y < (item.cellY+item.spanY); y++) {
-                    if (screens[x][y] != null) {
-                        Log.e(TAG, "Error loading shortcut " + item
+            switch (occupied.placeOnScreen(item, item.screenId, item.cellX, item.cellY,
+                    item.spanX, item.spanY)) {
+                case WorkspaceOccupancy.OUT_OF_BOUNDS:
+                    Log.e(TAG, "Error loading shortcut " + item
+                            + " into cell (" + containerIndex + "-" + item.screenId + ":"
+                            + item.cellX + "," + item.cellY
+                            + ") out of screen bounds ( " + countX + "x" + countY + ")");
+                    return false;
+                case WorkspaceOccupancy.OCCUPIED:
+                    // Check if any workspace icons overlap with each other
+                    Log.e(TAG, "Error loading shortcut " + item
                             + " into cell (" + containerIndex + "-" + item.screenId + ":"
-                            + x + "," + y
+                            + occupied.getOccupiedX() + "," + occupied.getOccupiedY()
                             + ") occupied by "
-                            + screens[x][y]);
-                        return false;
-                    }
-                }
-            }
-            for (int x = item.cellX; x < (item.cellX+item.spanX); x++) {
-                for (int y = item.cellY; y < (item.cellY+item.spanY); y++) {
-                    screens[x][y] = item;
-                }
+                            + occupied.getOccupant());
+                    return false;
+                default:
+                    return true;
             }
-
-            return true;
         }
 
         /** Clears all the sBg data structures */
@@ -1936,12 +1966,14 @@ public class LauncherModel extends BroadcastReceiver
                 final ArrayList<Long> restoredRows = new ArrayList<Long>();
                 final Uri contentUri = LauncherSettings.Favorites.CONTENT_URI_NO_NOTIFICATION;
                 if (DEBUG_LOADERS) Log.d(TAG, "loading model from " + contentUri);
+                final long queryStart = StartupTracer.now();
                 final Cursor c = contentResolver.query(contentUri, null, null, null, null);
 
                 // +1 for the hotseat (it can be larger than the workspace)
                 // Load workspace in reverse order to ensure that latest items are loaded first (and
                 // before any earlier duplicates)
-                final HashMap<Long, ItemInfo[][]> occupied = new HashMap<Long, ItemInfo[][]>();
+                final WorkspaceOccupancy<ItemInfo> occupied = new WorkspaceOccupancy<ItemInfo>(
+                        countX, countY, (int) grid.numHotseatIcons);
 
                 try {
                     final int idIndex = c.getColumnIndexOrThrow(LauncherSettings.Favorites._ID);
@@ -2350,6 +2382,8 @@ public class LauncherModel extends BroadcastReceiver
                         c.close();
                     }
                 }
+                StartupTracer.record(StartupTracer.SPAN_WORKSPACE_QUERY, queryStart,
+                        sBgItemsIdMap.size());
 
                 // Break early if we've stopped loading
                 if (mStopped) {
@@ -2626,8 +2660,11 @@ public class LauncherModel extends BroadcastReceiver
                     public void run() {
                         Callbacks callbacks = tryGetCallbacks(oldCallbacks);
                         if (callbacks != null) {
+                            final long bindStart = StartupTracer.now();
                             callbacks.bindItems(workspaceItems, start, start+chunkSize,
                                     false);
+                            StartupTracer.record(StartupTracer.SPAN_BIND_ITEMS, bindStart,
+                                    chunkSize);
                         }
                     }
                 };
@@ -2684,6 +2721,7 @@ public class LauncherModel extends BroadcastReceiver
          */
         private void bindWorkspace(int synchronizeBindPage, final boolean isUpgradePath) {
             final long t = SystemClock.uptimeMillis();
+            final long bindStart = StartupTracer.now();
             Runnable r;
 
             // Don't use these two variables in any of the callback runnables.
@@ -2766,7 +2804,10 @@ public class LauncherModel extends BroadcastReceiver
                     public void run() {
                         Callbacks callbacks = tryGetCallbacks(oldCallbacks);
                         if (callbacks != null && currentScreen != PagedView.INVALID_RESTORE_PAGE) {
+                            final long bindStart = StartupTracer.now();
                             callbacks.onPageBoundSynchronously(currentScreen);
+                            StartupTracer.record(StartupTracer.SPAN_BIND_PAGE_SYNCHRONOUSLY,
+                                    bindStart, currentScreen);
                         }
                     }
                 };
@@ -2780,13 +2821,17 @@ public class LauncherModel extends BroadcastReceiver
             }
             bindWorkspaceItems(oldCallbacks, otherWorkspaceItems, otherAppWidgets, otherFolders,
                     (isLoadingSynchronously ? mDeferredBindRunnables : null));
+            StartupTracer.record(StartupTracer.SPAN_BIND_WORKSPACE, bindStart,
+                    workspaceItems.size());
 
             // Tell the workspace that we're done binding items
             r = new Runnable() {
                 public void run() {
                     Callbacks callbacks = tryGetCallbacks(oldCallbacks);
                     if (callbacks != null) {
+                        final long finishStart = StartupTracer.now();
                         callbacks.finishBindingItems(isUpgradePath);
+                        StartupTracer.record(StartupTracer.SPAN_FINISH_BINDING, finishStart);
                     }
 
                     // If we're profiling, ensure this is the last thing in the queue.
@@ -2836,12 +2881,17 @@ public class LauncherModel extends BroadcastReceiver
             @SuppressWarnings("unchecked")
             final ArrayList<AppInfo> list
                     = (ArrayList<AppInfo>) mBgAllAppsList.data.clone();
+            final WidgetCatalog.Diff widgets = mWidgetCatalog.snapshot();
             Runnable r = new Runnable() {
                 public void run() {
                     final long t = SystemClock.uptimeMillis();
                     final Callbacks callbacks = tryGetCallbacks(oldCallbacks);
                     if (callbacks != null) {
+                        final long bindStart = StartupTracer.now();
                         callbacks.bindAllApplications(list);
+                        StartupTracer.record(StartupTracer.SPAN_BIND_ALL_APPS, bindStart,
+                                list.size());
+                        callbacks.bindWidgetsChanged(widgets);
                     }
                     if (DEBUG_LOADERS) {
                         Log.d(TAG, "bound all " + list.size() + " apps from cache in "
@@ -2859,6 +2909,7 @@ public class LauncherModel extends BroadcastReceiver
 
         private void loadAllApps() {
             final long loadTime = DEBUG_LOADERS ? SystemClock.uptimeMillis() : 0;
+            final long loadStart = StartupTracer.now();
 
             final Callbacks oldCallbacks = mCallbacks.get();
             if (oldCallbacks == null) {
@@ -2879,7 +2930,10 @@ public class LauncherModel extends BroadcastReceiver
             for (UserHandleCompat user : profiles) {
                 // Query for the set of apps
                 final long qiaTime = DEBUG_LOADERS ? SystemClock.uptimeMillis() : 0;
+                final long queryStart = StartupTracer.now();
                 List<LauncherActivityInfoCompat> apps = mLauncherApps.getActivityList(null, user);
+                StartupTracer.record(StartupTracer.SPAN_QUERY_ACTIVITIES, queryStart,
+                        apps != null ? apps.size() : 0);
                 if (DEBUG_LOADERS) {
                     Log.d(TAG, "getActivityList took "
                             + (SystemClock.uptimeMillis()-qiaTime) + "ms for user " + user);
@@ -2900,11 +2954,13 @@ public class LauncherModel extends BroadcastReceiver
                 }
 
                 // Create the ApplicationInfos
+                final long iconStart = StartupTracer.now();
                 for (int i = 0; i < apps.size(); i++) {
                     LauncherActivityInfoCompat app = apps.get(i);
                     // This builds the icon bitmaps.
                     mBgAllAppsList.add(new AppInfo(mContext, app, user, mIconCache, mLabelCache));
                 }
+                StartupTracer.record(StartupTracer.SPAN_ICON_RENDER, iconStart, apps.size());
 
                 if (ADD_MANAGED_PROFILE_SHORTCUTS && !user.equals(UserHandleCompat.myUserHandle())) {
                     // Add shortcuts for packages which were installed while launcher was dead.
@@ -2929,13 +2985,21 @@ public class LauncherModel extends BroadcastReceiver
             final ArrayList<AppInfo> added = mBgAllAppsList.added;
             mBgAllAppsList.added = new ArrayList<AppInfo>();
 
+            // Load the widgets pane here too, so binding it never waits on the package manager
+            final WidgetCatalog.Diff widgets = mWidgetCatalog.isLoaded()
+                    ? mWidgetCatalog.snapshot() : mWidgetCatalog.reload();
+
             // Post callback on main thread
             mHandler.post(new Runnable() {
                 public void run() {
                     final long bindTime = SystemClock.uptimeMillis();
                     final Callbacks callbacks = tryGetCallbacks(oldCallbacks);
                     if (callbacks != null) {
+                        final long bindStart = StartupTracer.now();
                         callbacks.bindAllApplications(added);
+                        StartupTracer.record(StartupTracer.SPAN_BIND_ALL_APPS, bindStart,
+                                added.size());
+                        callbacks.bindWidgetsChanged(widgets);
                         if (DEBUG_LOADERS) {
                             Log.d(TAG, "bound " + added.size() + " apps in "
                                 + (SystemClock.uptimeMillis() - bindTime) + "ms");
@@ -2946,6 +3010,9 @@ public class LauncherModel extends BroadcastReceiver
                 }
             });
 
+            StartupTracer.record(StartupTracer.SPAN_LOAD_ALL_APPS, loadStart,
+                    mBgAllAppsList.size());
+
             if (DEBUG_LOADERS) {
                 Log.d(TAG, "Icons processed in "
                         + (SystemClock.uptimeMillis() - loadTime) + "ms");
@@ -2963,8 +3030,181 @@ public class LauncherModel extends BroadcastReceiver
         }
     }
 
-    void enqueuePackageUpdated(PackageUpdatedTask task) {
-        sWorker.post(task);
+    void enqueuePackageUpdated(int op, String[] packages, UserHandleCompat user) {
+        mPackageUpdateBatcher.enqueue(op, packages, user);
+    }
+
+    /**
+     * Collects the package changes reported within {@link #PACKAGE_BATCH_DELAY_MS} of each other
+     * and processes them in one pass on the worker thread, with one PackageUpdatedTask per
+     * operation and user, so that an app store updating dozens of apps scans the workspace and
+     * patches the widget catalog once instead of once per package. Everything the pass has to
+     * bind is posted to the main thread as a single message.
+     *
+     * The operations of a package are merged as long as the result is the same, e.g. an add
+     * followed by updates is one add and anything followed by a removal is a removal. An add or
+     * update after a removal starts a new round, so that the two still run in order.
+     */
+    private class PackageUpdateBatcher implements Runnable {
+        // The pending rounds, each with the operation of every package of every user.
+        // Guarded by this.
+        private final ArrayList<HashMap<UserHandleCompat, LinkedHashMap<String, Integer>>> mRounds =
+                new ArrayList<HashMap<UserHandleCompat, LinkedHashMap<String, Integer>>>();
+        private long mFirstEnqueueTime;
+        private long mLastEnqueueTime;
+        private boolean mScheduled;
+
+        // Posted once the batch is complete, so that the worker statistics don't count the
+        // batching delay as time in the queue
+        private final Runnable mFlushTask = new Runnable() {
+            public void run() {
+                flush();
+            }
+        };
+
+        synchronized void enqueue(int op, String[] packages, UserHandleCompat user) {
+            final long now = SystemClock.uptimeMillis();
+            if (mRounds.isEmpty()) {
+                mRounds.add(new HashMap<UserHandleCompat, LinkedHashMap<String, Integer>>());
+                mFirstEnqueueTime = now;
+            }
+            for (String packageName : packages) {
+                HashMap<UserHandleCompat, LinkedHashMap<String, Integer>> round =
+                        mRounds.get(mRounds.size() - 1);
+                LinkedHashMap<String, Integer> ops = round.get(user);
+                final Integer pending = ops != null ? ops.get(packageName) : null;
+                int merged = pending == null ? op : mergeOps(pending, op);
+                if (merged == PackageUpdatedTask.OP_NONE) {
+                    round = new HashMap<UserHandleCompat, LinkedHashMap<String, Integer>>();
+                    mRounds.add(round);
+                    ops = null;
+                    merged = op;
+                }
+                if (ops == null) {
+                    ops = new LinkedHashMap<String, Integer>();
+                    round.put(user, ops);
+                }
+                ops.put(packageName, merged);
+            }
+            mLastEnqueueTime = now;
+            if (!mScheduled) {
+                mScheduled = true;
+                sWorker.postDelayed(this, PACKAGE_BATCH_DELAY_MS);
+            }
+        }
+
+        /**
+         * Returns the operation with the effect of op followed by next, or OP_NONE if they
+         * can't be merged.
+         */
+        private int mergeOps(int op, int next) {
+            if (op == next) {
+                return op;
+            }
+            switch (next) {
+                case PackageUpdatedTask.OP_REMOVE:
+                    return next;
+                case PackageUpdatedTask.OP_UNAVAILABLE:
+                    // A removal still has to delete the package's items
+                    return op == PackageUpdatedTask.OP_REMOVE ? op : next;
+                case PackageUpdatedTask.OP_UPDATE:
+                    // An added package is queried in full anyway
+                    return op == PackageUpdatedTask.OP_ADD ? op : PackageUpdatedTask.OP_NONE;
+                default:
+                    return PackageUpdatedTask.OP_NONE;
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                // Keep collecting while changes are still coming in, up to the maximum delay
+                final long now = SystemClock.uptimeMillis();
+                final long delay = Math.min(mLastEnqueueTime + PACKAGE_BATCH_DELAY_MS,
+                        mFirstEnqueueTime + PACKAGE_BATCH_MAX_DELAY_MS) - now;
+                if (mRounds.isEmpty()) {
+                    mScheduled = false;
+                    return;
+                }
+                if (delay > 0) {
+                    sWorker.postDelayed(this, delay);
+                    return;
+                }
+                mScheduled = false;
+            }
+            sWorker.post(WorkerQueueStats.wrap(WorkerQueueStats.TASK_PACKAGE_UPDATE, mFlushTask));
+        }
+
+        /**
+         * Processes the pending changes right away. Must be called on the worker thread.
+         */
+        void flush() {
+            final ArrayList<HashMap<UserHandleCompat, LinkedHashMap<String, Integer>>> rounds;
+            synchronized (this) {
+                if (mRounds.isEmpty()) {
+                    return;
+                }
+                rounds = new ArrayList<HashMap<UserHandleCompat, LinkedHashMap<String, Integer>>>(
+                        mRounds);
+                mRounds.clear();
+            }
+
+            final Callbacks callbacks = getCallback();
+            final ArrayList<Runnable> binds = new ArrayList<Runnable>();
+            final HashSet<String> packages = new HashSet<String>();
+            for (HashMap<UserHandleCompat, LinkedHashMap<String, Integer>> round : rounds) {
+                for (Entry<UserHandleCompat, LinkedHashMap<String, Integer>> entry
+                        : round.entrySet()) {
+                    final HashMap<Integer, ArrayList<String>> packagesByOp =
+                            new HashMap<Integer, ArrayList<String>>();
+                    for (Entry<String, Integer> op : entry.getValue().entrySet()) {
+                        ArrayList<String> opPackages = packagesByOp.get(op.getValue());
+                        if (opPackages == null) {
+                            opPackages = new ArrayList<String>();
+                            packagesByOp.put(op.getValue(), opPackages);
+                        }
+                        opPackages.add(op.getKey());
+                        packages.add(op.getKey());
+                    }
+                    for (Entry<Integer, ArrayList<String>> op : packagesByOp.entrySet()) {
+                        final ArrayList<String> opPackages = op.getValue();
+                        new PackageUpdatedTask(op.getKey(),
+                                opPackages.toArray(new String[opPackages.size()]),
+                                entry.getKey(), binds).run();
+                    }
+                }
+            }
+
+            final WidgetCatalog.Diff widgets = mWidgetCatalog.updatePackages(
+                    packages.toArray(new String[packages.size()]));
+            if (callbacks == null) {
+                return;
+            }
+            if (!widgets.isEmpty()) {
+                binds.add(new Runnable() {
+                    public void run() {
+                        callbacks.bindWidgetsChanged(widgets);
+                    }
+                });
+            }
+            // Write all the logs to disk
+            binds.add(new Runnable() {
+                public void run() {
+                    callbacks.dumpLogsToLocalData();
+                }
+            });
+
+            mHandler.post(new Runnable() {
+                public void run() {
+                    Callbacks cb = getCallback();
+                    if (callbacks == cb && cb != null) {
+                        for (Runnable bind : binds) {
+                            bind.run();
+                        }
+                    }
+                }
+            });
+        }
     }
 
     private class AppsAvailabilityCheck extends BroadcastReceiver {
@@ -2995,12 +3235,12 @@ public class LauncherModel extends BroadcastReceiver
                         }
                     }
                     if (!packagesRemoved.isEmpty()) {
-                        enqueuePackageUpdated(new PackageUpdatedTask(PackageUpdatedTask.OP_REMOVE,
-                                packagesRemoved.toArray(new String[packagesRemoved.size()]), user));
+                        enqueuePackageUpdated(PackageUpdatedTask.OP_REMOVE,
+                                packagesRemoved.toArray(new String[packagesRemoved.size()]), user);
                     }
                     if (!packagesUnavailable.isEmpty()) {
-                        enqueuePackageUpdated(new PackageUpdatedTask(PackageUpdatedTask.OP_UNAVAILABLE,
-                                packagesUnavailable.toArray(new String[packagesUnavailable.size()]), user));
+                        enqueuePackageUpdated(PackageUpdatedTask.OP_UNAVAILABLE,
+                                packagesUnavailable.toArray(new String[packagesUnavailable.size()]), user);
                     }
                 }
                 sPendingPackages.clear();
@@ -3012,6 +3252,8 @@ public class LauncherModel extends BroadcastReceiver
         int mOp;
         String[] mPackages;
         UserHandleCompat mUser;
+        // What to run on the main thread, posted together by the PackageUpdateBatcher
+        final ArrayList<Runnable> mBinds;
 
         public static final int OP_NONE = 0;
         public static final int OP_ADD = 1;
@@ -3020,10 +3262,12 @@ public class LauncherModel extends BroadcastReceiver
         public static final int OP_UNAVAILABLE = 4; // external media unmounted
 
 
-        public PackageUpdatedTask(int op, String[] packages, UserHandleCompat user) {
+        public PackageUpdatedTask(int op, String[] packages, UserHandleCompat user,
+                ArrayList<Runnable> binds) {
             mOp = op;
             mPackages = packages;
             mUser = user;
+            mBinds = binds;
         }
 
         public void run() {
@@ -3143,7 +3387,7 @@ public class LauncherModel extends BroadcastReceiver
                     addedOrUpdatedApps.put(ai.componentName, ai);
                 }
 
-                mHandler.post(new Runnable() {
+                mBinds.add(new Runnable() {
                     public void run() {
                         Callbacks cb = getCallback();
                         if (callbacks == cb && cb != null) {
@@ -3257,7 +3501,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
 
                 if (!updatedShortcuts.isEmpty() || !removedShortcuts.isEmpty()) {
-                    mHandler.post(new Runnable() {
+                    mBinds.add(new Runnable() {
 
                         public void run() {
                             Callbacks cb = getCallback();
@@ -3272,7 +3516,7 @@ public class LauncherModel extends BroadcastReceiver
                     }
                 }
                 if (!widgets.isEmpty()) {
-                    mHandler.post(new Runnable() {
+                    mBinds.add(new Runnable() {
                         public void run() {
                             Callbacks cb = getCallback();
                             if (callbacks == cb && cb != null) {
@@ -3385,7 +3629,7 @@ public class LauncherModel extends BroadcastReceiver
                 }
 
                 if (!updatedShortcuts.isEmpty() || !removedShortcuts.isEmpty()) {
-                    mHandler.post(new Runnable() {
+                    mBinds.add(new Runnable() {
 
                         public void run() {
                             Callbacks cb = mCallbacks != null ? mCallbacks.get() : null;
@@ -3400,7 +3644,7 @@ public class LauncherModel extends BroadcastReceiver
                     }
                 }
                 if (!widgets.isEmpty()) {
-                    mHandler.post(new Runnable() {
+                    mBinds.add(new Runnable() {
                         public void run() {
                             Callbacks cb = mCallbacks != null ? mCallbacks.get() : null;
                             if (callbacks == cb && cb != null) {
@@ -3445,7 +3689,7 @@ public class LauncherModel extends BroadcastReceiver
                 // Remove any queued items from the install queue
                 InstallShortcutReceiver.removeFromInstallQueue(context, removedPackageNames, mUser);
                 // Call the components-removed callback
-                mHandler.post(new Runnable() {
+                mBinds.add(new Runnable() {
                     public void run() {
                         Callbacks cb = getCallback();
                         if (callbacks == cb && cb != null) {
@@ -3455,43 +3699,9 @@ public class LauncherModel extends BroadcastReceiver
                     }
                 });
             }
-
-            final ArrayList<Object> widgetsAndShortcuts =
-                    getSortedWidgetsAndShortcuts(context);
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    Callbacks cb = getCallback();
-                    if (callbacks == cb && cb != null) {
-                        callbacks.bindPackagesUpdated(widgetsAndShortcuts);
-                    }
-                }
-            });
-
-            // Write all the logs to disk
-            mHandler.post(new Runnable() {
-                public void run() {
-                    Callbacks cb = getCallback();
-                    if (callbacks == cb && cb != null) {
-                        callbacks.dumpLogsToLocalData();
-                    }
-                }
-            });
         }
     }
 
-    // Returns a list of ResolveInfos/AppWindowInfos in sorted order
-    public static ArrayList<Object> getSortedWidgetsAndShortcuts(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        final ArrayList<Object> widgetsAndShortcuts = new ArrayList<Object>();
-        widgetsAndShortcuts.addAll(AppWidgetManagerCompat.getInstance(context).getAllProviders());
-
-        Intent shortcutsIntent = new Intent(Intent.ACTION_CREATE_SHORTCUT);
-        widgetsAndShortcuts.addAll(packageManager.queryIntentActivities(shortcutsIntent, 0));
-        Collections.sort(widgetsAndShortcuts, new WidgetAndShortcutNameComparator(context));
-        return widgetsAndShortcuts;
-    }
-
     private static boolean isPackageDisabled(Context context, String packageName,
             UserHandleCompat user) {
         final LauncherAppsCompat launcherApps = LauncherAppsCompat.getInstance(context);
@@ -3889,16 +4099,11 @@ public class LauncherModel extends BroadcastReceiver
     }
 
     public static final Comparator<AppInfo> getAppNameComparator() {
-        final Collator collator = Collator.getInstance();
+        final AppTitleOrder titleOrder = new AppTitleOrder();
         return new Comparator<AppInfo>() {
             public final int compare(AppInfo a, AppInfo b) {
                 if (a.user.equals(b.user)) {
-                    int result = collator.compare(a.title.toString().trim(),
-                            b.title.toString().trim());
-                    if (result == 0) {
-                        result = a.componentName.compareTo(b.componentName);
-                    }
-                    return result;
+                    return titleOrder.compare(a.title, a.componentName, b.title, b.componentName);
                 } else {
                     // TODO Need to figure out rules for sorting
                     // profiles, this puts work second.
@@ -3908,35 +4113,27 @@ public class LauncherModel extends BroadcastReceiver
         };
     }
     public static final Comparator<AppInfo> getLaunchCountComparator(final Stats stats) {
-        final Collator collator = Collator.getInstance();
+        final AppTitleOrder titleOrder = new AppTitleOrder();
         return new Comparator<AppInfo>() {
             @Override
             public int compare(AppInfo a, AppInfo b) {
                 int result = stats.launchCount(b.intent) - stats.launchCount(a.intent);
                 if (result == 0) {
-                    result = collator.compare(a.title.toString().trim(),
-                            b.title.toString().trim());
-                    if (result == 0) {
-                        result = a.componentName.compareTo(b.componentName);
-                    }
+                    result = titleOrder.compare(a.title, a.componentName,
+                            b.title, b.componentName);
                 }
                 return result;
             }
         };
     }
     public static final Comparator<AppInfo> getAppInstallTimeComparator() {
-        final Collator collator = Collator.getInstance();
+        final AppTitleOrder titleOrder = new AppTitleOrder();
         return new Comparator<AppInfo>() {
-        @Override
-        public int compare(AppInfo a, AppInfo b) {
-            if (a.firstInstallTime < b.firstInstallTime) return 1;
-            if (a.firstInstallTime > b.firstInstallTime) return -1;
-            int result = collator.compare(a.title.toString().trim(),
-                        b.title.toString().trim());
-                if (result == 0) {
-                    result = a.componentName.compareTo(b.componentName);
-                }
-                return result;
+            @Override
+            public int compare(AppInfo a, AppInfo b) {
+                if (a.firstInstallTime < b.firstInstallTime) return 1;
+                if (a.firstInstallTime > b.firstInstallTime) return -1;
+                return titleOrder.compare(a.title, a.componentName, b.title, b.componentName);
             }
         };
     }
@@ -3979,39 +4176,6 @@ public class LauncherModel extends BroadcastReceiver
             return mCollator.compare(labelA, labelB);
         }
     };
-    public static class WidgetAndShortcutNameComparator implements Comparator<Object> {
-        private final AppWidgetManagerCompat mManager;
-        private final PackageManager mPackageManager;
-        private final HashMap<Object, String> mLabelCache;
-        private final Collator mCollator;
-
-        WidgetAndShortcutNameComparator(Context context) {
-            mManager = AppWidgetManagerCompat.getInstance(context);
-            mPackageManager = context.getPackageManager();
-            mLabelCache = new HashMap<Object, String>();
-            mCollator = Collator.getInstance();
-        }
-        public final int compare(Object a, Object b) {
-            String labelA, labelB;
-            if (mLabelCache.containsKey(a)) {
-                labelA = mLabelCache.get(a);
-            } else {
-                labelA = (a instanceof AppWidgetProviderInfo)
-                        ? mManager.loadLabel((AppWidgetProviderInfo) a)
-                        : ((ResolveInfo) a).loadLabel(mPackageManager).toString().trim();
-                mLabelCache.put(a, labelA);
-            }
-            if (mLabelCache.containsKey(b)) {
-                labelB = mLabelCache.get(b);
-            } else {
-                labelB = (b instanceof AppWidgetProviderInfo)
-                        ? mManager.loadLabel((AppWidgetProviderInfo) b)
-                        : ((ResolveInfo) b).loadLabel(mPackageManager).toString().trim();
-                mLabelCache.put(b, labelB);
-            }
-            return mCollator.compare(labelA, labelB);
-        }
-    };
 
     static boolean isValidProvider(AppWidgetProviderInfo provider) {
         return (provider != null) && (provider.provider != null)
@@ -4029,6 +4193,9 @@ public class LauncherModel extends BroadcastReceiver
         } else {
             Log.d(TAG, "mLoaderTask=null");
         }
+        Log.d(TAG, "mWidgetCatalog.size=" + mWidgetCatalog.size());
+        StartupTracer.dumpState();
+        WorkerQueueStats.dumpState();
     }
 
     public Callbacks getCallback() {
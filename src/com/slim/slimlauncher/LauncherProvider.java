@@ -65,7 +65,7 @@ public class LauncherProvider extends ContentProvider {
 
     private static final String DATABASE_NAME = "launcher.db";
 
-    private static final int DATABASE_VERSION = 20;
+    private static final int DATABASE_VERSION = LauncherDbSchema.DATABASE_VERSION;
 
     static final String OLD_AUTHORITY = "com.android.launcher2.settings";
     static final String AUTHORITY = ProviderConfig.AUTHORITY;
@@ -431,30 +431,7 @@ public class LauncherProvider extends ContentProvider {
             long userSerialNumber = userManager.getSerialNumberForUser(
                     UserHandleCompat.myUserHandle());
 
-            db.execSQL("CREATE TABLE favorites (" +
-                    "_id INTEGER PRIMARY KEY," +
-                    "title TEXT," +
-                    "intent TEXT," +
-                    "container INTEGER," +
-                    "screen INTEGER," +
-                    "cellX INTEGER," +
-                    "cellY INTEGER," +
-                    "spanX INTEGER," +
-                    "spanY INTEGER," +
-                    "itemType INTEGER," +
-                    "appWidgetId INTEGER NOT NULL DEFAULT -1," +
-                    "isShortcut INTEGER," +
-                    "iconType INTEGER," +
-                    "iconPackage TEXT," +
-                    "iconResource TEXT," +
-                    "icon BLOB," +
-                    "uri TEXT," +
-                    "displayMode INTEGER," +
-                    "appWidgetProvider TEXT," +
-                    "modified INTEGER NOT NULL DEFAULT 0," +
-                    "restored INTEGER NOT NULL DEFAULT 0," +
-                    "profileId INTEGER DEFAULT " + userSerialNumber +
-                    ");");
+            db.execSQL(LauncherDbSchema.createFavoritesTable(userSerialNumber));
             addWorkspacesTable(db);
 
             // Database was just created, so wipe any previous widgets
@@ -498,42 +475,15 @@ public class LauncherProvider extends ContentProvider {
         }
 
         private void addWorkspacesTable(SQLiteDatabase db) {
-            db.execSQL("CREATE TABLE " + TABLE_WORKSPACE_SCREENS + " (" +
-                    LauncherSettings.WorkspaceScreens._ID + " INTEGER," +
-                    LauncherSettings.WorkspaceScreens.SCREEN_RANK + " INTEGER," +
-                    LauncherSettings.ChangeLogColumns.MODIFIED + " INTEGER NOT NULL DEFAULT 0" +
-                    ");");
+            db.execSQL(LauncherDbSchema.CREATE_WORKSPACE_SCREENS_TABLE);
         }
 
         private void removeOrphanedItems(SQLiteDatabase db) {
             // Delete items directly on the workspace who's screen id doesn't exist
-            //  "DELETE FROM favorites WHERE screen NOT IN (SELECT _id FROM workspaceScreens)
-            //   AND container = -100"
-            String removeOrphanedDesktopItems = "DELETE FROM " + TABLE_FAVORITES +
-                    " WHERE " +
-                    LauncherSettings.Favorites.SCREEN + " NOT IN (SELECT " +
-                    LauncherSettings.WorkspaceScreens._ID + " FROM " + TABLE_WORKSPACE_SCREENS + ")" +
-                    " AND " +
-                    LauncherSettings.Favorites.CONTAINER + " = " +
-                    LauncherSettings.Favorites.CONTAINER_DESKTOP;
-            db.execSQL(removeOrphanedDesktopItems);
+            db.execSQL(LauncherDbSchema.REMOVE_ORPHANED_DESKTOP_ITEMS);
 
             // Delete items contained in folders which no longer exist (after above statement)
-            //  "DELETE FROM favorites  WHERE container <> -100 AND container <> -101 AND container
-            //   NOT IN (SELECT _id FROM favorites WHERE itemType = 2)"
-            String removeOrphanedFolderItems = "DELETE FROM " + TABLE_FAVORITES +
-                    " WHERE " +
-                    LauncherSettings.Favorites.CONTAINER + " <> " +
-                    LauncherSettings.Favorites.CONTAINER_DESKTOP +
-                    " AND "
-                    + LauncherSettings.Favorites.CONTAINER + " <> " +
-                    LauncherSettings.Favorites.CONTAINER_HOTSEAT +
-                    " AND "
-                    + LauncherSettings.Favorites.CONTAINER + " NOT IN (SELECT " +
-                    LauncherSettings.Favorites._ID + " FROM " + TABLE_FAVORITES +
-                    " WHERE " + LauncherSettings.Favorites.ITEM_TYPE + " = " +
-                    LauncherSettings.Favorites.ITEM_TYPE_FOLDER + ")";
-            db.execSQL(removeOrphanedFolderItems);
+            db.execSQL(LauncherDbSchema.REMOVE_ORPHANED_FOLDER_ITEMS);
         }
 
         private void setFlagJustLoadedOldDb() {
@@ -780,8 +730,7 @@ public class LauncherProvider extends ContentProvider {
                 db.beginTransaction();
                 try {
                     // Insert new column for holding widget provider name
-                    db.execSQL("ALTER TABLE favorites " +
-                            "ADD COLUMN appWidgetProvider TEXT;");
+                    db.execSQL(LauncherDbSchema.ADD_APPWIDGET_PROVIDER_COLUMN);
                     db.setTransactionSuccessful();
                     version = 14;
                 } catch (SQLException ex) {
@@ -796,10 +745,8 @@ public class LauncherProvider extends ContentProvider {
                 db.beginTransaction();
                 try {
                     // Insert new column for holding update timestamp
-                    db.execSQL("ALTER TABLE favorites " +
-                            "ADD COLUMN modified INTEGER NOT NULL DEFAULT 0;");
-                    db.execSQL("ALTER TABLE workspaceScreens " +
-                            "ADD COLUMN modified INTEGER NOT NULL DEFAULT 0;");
+                    db.execSQL(LauncherDbSchema.ADD_FAVORITES_MODIFIED_COLUMN);
+                    db.execSQL(LauncherDbSchema.ADD_WORKSPACE_SCREENS_MODIFIED_COLUMN);
                     db.setTransactionSuccessful();
                     version = 15;
                 } catch (SQLException ex) {
@@ -815,8 +762,7 @@ public class LauncherProvider extends ContentProvider {
                 db.beginTransaction();
                 try {
                     // Insert new column for holding restore status
-                    db.execSQL("ALTER TABLE favorites " +
-                            "ADD COLUMN restored INTEGER NOT NULL DEFAULT 0;");
+                    db.execSQL(LauncherDbSchema.ADD_RESTORED_COLUMN);
                     db.setTransactionSuccessful();
                     version = 16;
                 } catch (SQLException ex) {
@@ -895,9 +841,7 @@ public class LauncherProvider extends ContentProvider {
                 long userSerialNumber = userManager.getSerialNumberForUser(
                         UserHandleCompat.myUserHandle());
                 // Insert new column for holding user serial number
-                db.execSQL("ALTER TABLE favorites " +
-                        "ADD COLUMN profileId INTEGER DEFAULT "
-                                        + userSerialNumber + ";");
+                db.execSQL(LauncherDbSchema.addProfileColumn(userSerialNumber));
                 db.setTransactionSuccessful();
             } catch (SQLException ex) {
                 // Old version remains, which means we wipe old data
@@ -1078,7 +1022,7 @@ public class LauncherProvider extends ContentProvider {
         }
 
         private long initializeMaxItemId(SQLiteDatabase db) {
-            Cursor c = db.rawQuery("SELECT MAX(_id) FROM favorites", null);
+            Cursor c = db.rawQuery(LauncherDbSchema.SELECT_MAX_ITEM_ID, null);
 
             // get the result
             final int maxIdIndex = 0;
@@ -1119,7 +1063,7 @@ public class LauncherProvider extends ContentProvider {
         }
 
         private long initializeMaxScreenId(SQLiteDatabase db) {
-            Cursor c = db.rawQuery("SELECT MAX(" + LauncherSettings.WorkspaceScreens._ID + ") FROM " + TABLE_WORKSPACE_SCREENS, null);
+            Cursor c = db.rawQuery(LauncherDbSchema.SELECT_MAX_SCREEN_ID, null);
 
             // get the result
             final int maxIdIndex = 0;
@@ -54,6 +54,7 @@ public class LauncherViewPropertyAnimator extends Animator implements AnimatorLi
     ArrayList<Animator.AnimatorListener> mListeners;
     boolean mRunning = false;
     FirstFrameAnimatorHelper mFirstFrameHelper;
+    boolean mCancelOnDestroyRegistered;
 
     public LauncherViewPropertyAnimator(View target) {
         mTarget = target;
@@ -149,6 +150,7 @@ public class LauncherViewPropertyAnimator extends Animator implements AnimatorLi
     @Override
     public void removeAllListeners() {
         mListeners.clear();
+        mCancelOnDestroyRegistered = false;
     }
 
     @Override
@@ -195,7 +197,11 @@ public class LauncherViewPropertyAnimator extends Animator implements AnimatorLi
 
         // FirstFrameAnimatorHelper hooks itself up to the updates on the animator,
         // and then adjusts the play time to keep the first two frames jank-free
-        mFirstFrameHelper = new FirstFrameAnimatorHelper(mViewPropertyAnimator, mTarget);
+        if (mFirstFrameHelper == null) {
+            mFirstFrameHelper = new FirstFrameAnimatorHelper(mViewPropertyAnimator, mTarget);
+        } else {
+            mFirstFrameHelper.reset();
+        }
 
         if (mPropertiesToSet.contains(Properties.TRANSLATION_X)) {
             mViewPropertyAnimator.translationX(mTranslationX);
@@ -229,7 +235,11 @@ public class LauncherViewPropertyAnimator extends Animator implements AnimatorLi
         }
         mViewPropertyAnimator.setListener(this);
         mViewPropertyAnimator.start();
-        LauncherAnimUtils.cancelOnDestroyActivity(this);
+        if (!mCancelOnDestroyRegistered) {
+            // Restarting must not add the listener again
+            LauncherAnimUtils.cancelOnDestroyActivity(this);
+            mCancelOnDestroyRegistered = true;
+        }
     }
 
     public LauncherViewPropertyAnimator translationX(float value) {
@@ -108,6 +108,9 @@ public class MemoryDumpActivity extends Activity {
                     .append("\n");
             }
             if (pid == myPid) {
+                for (String line : BitmapMemoryRegistry.countNow()) {
+                    body.append("  ").append(line).append("\n");
+                }
                 final String path = String.format("%s/launcher-memory-%d.ahprof",
                         Environment.getExternalStorageDirectory(),
                         pid);
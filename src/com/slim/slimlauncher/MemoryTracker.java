@@ -159,6 +159,8 @@ public class MemoryTracker extends Service {
                 }
             }
         }
+        // The caches of this process, see BitmapMemoryRegistry
+        BitmapMemoryRegistry.sample();
     }
 
     @Override
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.util.Log;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Decides which pages of a {@link PagedView} get a hardware layer. The visible pages and the
+ * page we are scrolling towards are candidates, ordered by their distance to the page that will
+ * be shown next. Candidates get a layer until the estimated layer memory reaches the budget set
+ * by R.integer.config_pageLayerBudgetKb; all other pages lose theirs.
+ */
+class PageLayerManager {
+    private static final String TAG = "PageLayerManager";
+
+    interface LayerHost {
+        /** Returns the view of the page that holds the layer. */
+        View getLayerView(int page);
+
+        /** Returns false for pages that must never be given a layer. */
+        boolean canHaveLayer(int page);
+
+        void setLayerEnabled(int page, boolean enabled);
+
+        /** Builds the layer of a page that has one. */
+        void buildLayer(int page);
+    }
+
+    private final String mName;
+    private final PagedView mPagedView;
+    private final LayerHost mHost;
+    private final int mBudgetBytes;
+
+    private final int[] mVisiblePagesRange = new int[2];
+    private boolean[] mWantsLayer = new boolean[0];
+    private int mPendingBytes;
+
+    // Statistics for dumpState()
+    private int mLayerCount;
+    private int mLayerBytes;
+    private int mPeakLayerBytes;
+    private int mLayersCreated;
+    private int mLayersEvicted;
+    private int mBuildCount;
+    private long mBuildTimeNanos;
+
+    PageLayerManager(String name, PagedView pagedView, LayerHost host) {
+        mName = name;
+        mPagedView = pagedView;
+        mHost = host;
+        mBudgetBytes = pagedView.getResources().getInteger(R.integer.config_pageLayerBudgetKb)
+                * 1024;
+    }
+
+    /**
+     * Gives layers to the pages most likely to be drawn next, within the budget, and removes
+     * them from all others.
+     */
+    void update() {
+        final int count = mPagedView.getChildCount();
+        if (count == 0) {
+            return;
+        }
+        if (mWantsLayer.length < count) {
+            mWantsLayer = new boolean[count];
+        } else {
+            Arrays.fill(mWantsLayer, false);
+        }
+
+        mPagedView.getVisiblePages(mVisiblePagesRange);
+        final int target = Math.max(0, Math.min(mPagedView.getNextPage(), count - 1));
+        int first = mVisiblePagesRange[0];
+        int last = mVisiblePagesRange[1];
+        if (first < 0) {
+            first = last = target;
+        }
+
+        // Keep one more page towards the direction we are scrolling in, or next to the current
+        // page if it is the only one visible, so that it is ready when it comes in
+        final int direction = getScrollDirection(target);
+        if (direction < 0 || (direction == 0 && first == last && last == count - 1)) {
+            first = Math.max(0, first - 1);
+        } else if (direction > 0 || first == last) {
+            last = Math.min(count - 1, last + 1);
+        }
+
+        final int step = direction < 0 ? -1 : 1;
+        final int start = Math.max(first, Math.min(target, last));
+        mPendingBytes = 0;
+        for (int d = 0; d <= last - first; d++) {
+            addCandidate(start + step * d, first, last);
+            if (d > 0) {
+                addCandidate(start - step * d, first, last);
+            }
+        }
+
+        // Free the memory of the dropped layers before allocating the new ones
+        for (int i = 0; i < count; i++) {
+            if (!mWantsLayer[i]) {
+                setLayerEnabled(i, false);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (mWantsLayer[i]) {
+                setLayerEnabled(i, true);
+            }
+        }
+        updateLayerBytes();
+    }
+
+    private void addCandidate(int page, int first, int last) {
+        if (page < first || page > last || !mHost.canHaveLayer(page)) {
+            return;
+        }
+        final int bytes = getLayerBytes(mHost.getLayerView(page));
+        // The page we are going to always gets a layer, even if it is over the budget on its own
+        if (mPendingBytes > 0 && mPendingBytes + bytes > mBudgetBytes) {
+            if (hasLayer(page)) {
+                mLayersEvicted++;
+            }
+            return;
+        }
+        mWantsLayer[page] = true;
+        mPendingBytes += bytes;
+    }
+
+    private int getScrollDirection(int target) {
+        if (!mPagedView.isPageMoving()) {
+            return 0;
+        }
+        final int delta = mPagedView.getScrollForPage(target) - mPagedView.getScrollX();
+        final int direction = delta > 0 ? 1 : (delta < 0 ? -1 : 0);
+        return mPagedView.isLayoutRtl() ? -direction : direction;
+    }
+
+    /**
+     * Removes the layers of all pages.
+     */
+    void disableAll() {
+        final int count = mPagedView.getChildCount();
+        for (int i = 0; i < count; i++) {
+            setLayerEnabled(i, false);
+        }
+        updateLayerBytes();
+    }
+
+    /**
+     * Builds the layers that are currently enabled, so they are not built during the next
+     * animation. Must only be called while attached to a window.
+     */
+    void buildLayers() {
+        final int count = mPagedView.getChildCount();
+        for (int i = 0; i < count; i++) {
+            if (hasLayer(i)) {
+                final long start = System.nanoTime();
+                mHost.buildLayer(i);
+                mBuildTimeNanos += System.nanoTime() - start;
+                mBuildCount++;
+            }
+        }
+    }
+
+    private void setLayerEnabled(int page, boolean enabled) {
+        if (hasLayer(page) != enabled) {
+            mHost.setLayerEnabled(page, enabled);
+            if (enabled) {
+                mLayersCreated++;
+            }
+        }
+    }
+
+    private boolean hasLayer(int page) {
+        return mHost.getLayerView(page).getLayerType() == View.LAYER_TYPE_HARDWARE;
+    }
+
+    private void updateLayerBytes() {
+        mLayerCount = 0;
+        mLayerBytes = 0;
+        final int count = mPagedView.getChildCount();
+        for (int i = 0; i < count; i++) {
+            if (hasLayer(i)) {
+                mLayerCount++;
+                mLayerBytes += getLayerBytes(mHost.getLayerView(i));
+            }
+        }
+        mPeakLayerBytes = Math.max(mPeakLayerBytes, mLayerBytes);
+    }
+
+    private static int getLayerBytes(View v) {
+        // Layers are ARGB_8888 textures the size of the view
+        return v.getWidth() * v.getHeight() * 4;
+    }
+
+    void dumpState() {
+        Log.d(TAG, mName + " layers=" + mLayerCount + " layerKb=" + mLayerBytes / 1024
+                + " peakKb=" + mPeakLayerBytes / 1024 + " budgetKb=" + mBudgetBytes / 1024
+                + " created=" + mLayersCreated + " evicted=" + mLayersEvicted
+                + " builds=" + mBuildCount + " buildMs=" + mBuildTimeNanos / 1000000);
+    }
+}
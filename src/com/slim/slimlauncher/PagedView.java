@@ -606,6 +606,7 @@ public abstract class PagedView extends ViewGroup implements ViewGroup.OnHierarc
     protected void pageBeginMoving() {
         if (!mIsPageMoving) {
             mIsPageMoving = true;
+            FrameStats.begin(FrameStats.INTERACTION_PAGE_SWIPE);
             onPageBeginMoving();
         }
     }
@@ -613,6 +614,7 @@ public abstract class PagedView extends ViewGroup implements ViewGroup.OnHierarc
     protected void pageEndMoving() {
         if (mIsPageMoving) {
             mIsPageMoving = false;
+            FrameStats.end(FrameStats.INTERACTION_PAGE_SWIPE);
             onPageEndMoving();
         }
     }
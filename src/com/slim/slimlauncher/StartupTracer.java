@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Records how long the loader and bind phases take, so that startup can be compared across
+ * builds without a debug build. Spans go into a preallocated ring buffer, so recording one
+ * doesn't allocate; the oldest spans are overwritten once it is full.
+ *
+ * Usage:
+ *   final long start = StartupTracer.now();
+ *   ...
+ *   StartupTracer.record(StartupTracer.SPAN_LOAD_WORKSPACE, start);
+ *
+ * The spans are printed by LauncherModel.dumpState() and Launcher.dump(), and
+ * "dumpsys activity com.slim.slimlauncher/.Launcher --startup-trace" also writes them as a
+ * Chrome trace (chrome://tracing) to the app's files directory.
+ */
+final class StartupTracer {
+    private static final String TAG = "StartupTracer";
+
+    static final String DUMP_ARG = "--startup-trace";
+    static final String TRACE_FILE_NAME = "startup_trace.json";
+
+    static final int SPAN_LOAD_WORKSPACE = 0;
+    static final int SPAN_WORKSPACE_QUERY = 1;
+    static final int SPAN_BIND_WORKSPACE = 2;
+    static final int SPAN_BIND_ITEMS = 3;
+    static final int SPAN_BIND_PAGE_SYNCHRONOUSLY = 4;
+    static final int SPAN_FINISH_BINDING = 5;
+    static final int SPAN_FIRST_DRAW = 6;
+    static final int SPAN_LOAD_ALL_APPS = 7;
+    static final int SPAN_QUERY_ACTIVITIES = 8;
+    static final int SPAN_ICON_RENDER = 9;
+    static final int SPAN_BIND_ALL_APPS = 10;
+
+    private static final String[] SPAN_NAMES = {
+        "loadWorkspace",
+        "workspaceQuery",
+        "bindWorkspace",
+        "bindItems",
+        "bindPageSynchronously",
+        "finishBindingItems",
+        "firstDrawAfterBind",
+        "loadAllApps",
+        "getActivityList",
+        "iconRender",
+        "bindAllApplications",
+    };
+
+    private static final int CAPACITY = 512;
+
+    private static final int[] sSpans = new int[CAPACITY];
+    private static final int[] sArgs = new int[CAPACITY];
+    private static final int[] sTids = new int[CAPACITY];
+    private static final long[] sStarts = new long[CAPACITY];
+    private static final long[] sEnds = new long[CAPACITY];
+    // Total number of spans recorded, the next one goes to sCount % CAPACITY
+    private static int sCount;
+
+    private StartupTracer() {
+    }
+
+    static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a span from start until now.
+     */
+    static void record(int span, long start) {
+        record(span, start, now(), 0);
+    }
+
+    /**
+     * Records a span from start until now, with a number that describes it, eg. the number of
+     * items it processed.
+     */
+    static void record(int span, long start, int arg) {
+        record(span, start, now(), arg);
+    }
+
+    private static void record(int span, long start, long end, int arg) {
+        final int tid = Process.myTid();
+        synchronized (sSpans) {
+            final int i = sCount % CAPACITY;
+            sSpans[i] = span;
+            sArgs[i] = arg;
+            sTids[i] = tid;
+            sStarts[i] = start;
+            sEnds[i] = end;
+            sCount++;
+        }
+    }
+
+    /**
+     * A copy of the recorded spans, in the order they started. They are recorded in the order
+     * they end, so a span around others, like the workspace load around its binds, comes last.
+     */
+    private static class Snapshot {
+        int total;
+        int size;
+        int[] spans;
+        int[] args;
+        int[] tids;
+        long[] starts;
+        long[] ends;
+
+        String format(int j) {
+            return SPAN_NAMES[spans[j]] + " at=" + (starts[j] - starts[0]) / 1000 + "us"
+                    + " dur=" + (ends[j] - starts[j]) / 1000 + "us"
+                    + " tid=" + tids[j] + " arg=" + args[j];
+        }
+    }
+
+    private static Snapshot snapshot() {
+        final Snapshot s = new Snapshot();
+        synchronized (sSpans) {
+            s.total = sCount;
+            s.size = Math.min(sCount, CAPACITY);
+            s.spans = new int[s.size];
+            s.args = new int[s.size];
+            s.tids = new int[s.size];
+            s.starts = new long[s.size];
+            s.ends = new long[s.size];
+            final int first = sCount - s.size;
+            for (int j = 0; j < s.size; j++) {
+                final int i = (first + j) % CAPACITY;
+                s.spans[j] = sSpans[i];
+                s.args[j] = sArgs[i];
+                s.tids[j] = sTids[i];
+                s.starts[j] = sStarts[i];
+                s.ends[j] = sEnds[i];
+            }
+        }
+
+        // Insertion sort by start, the spans are mostly in order already
+        for (int j = 1; j < s.size; j++) {
+            final int span = s.spans[j];
+            final int arg = s.args[j];
+            final int tid = s.tids[j];
+            final long start = s.starts[j];
+            final long end = s.ends[j];
+            int k = j - 1;
+            for (; k >= 0 && s.starts[k] > start; k--) {
+                s.spans[k + 1] = s.spans[k];
+                s.args[k + 1] = s.args[k];
+                s.tids[k + 1] = s.tids[k];
+                s.starts[k + 1] = s.starts[k];
+                s.ends[k + 1] = s.ends[k];
+            }
+            s.spans[k + 1] = span;
+            s.args[k + 1] = arg;
+            s.tids[k + 1] = tid;
+            s.starts[k + 1] = start;
+            s.ends[k + 1] = end;
+        }
+        return s;
+    }
+
+    static void dumpState() {
+        final Snapshot s = snapshot();
+        Log.d(TAG, "spans=" + s.size + " recorded=" + s.total);
+        for (int j = 0; j < s.size; j++) {
+            Log.d(TAG, "  " + s.format(j));
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        final Snapshot s = snapshot();
+        writer.println(" ");
+        writer.println("Startup trace (" + s.size + " of " + s.total + " spans):");
+        for (int j = 0; j < s.size; j++) {
+            writer.println("  " + s.format(j));
+        }
+    }
+
+    /**
+     * Writes the recorded spans to file in the Chrome trace event format.
+     */
+    static void exportChromeTrace(File file) throws IOException {
+        final Snapshot s = snapshot();
+
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            final int pid = Process.myPid();
+            out.write("{\"traceEvents\":[");
+            for (int j = 0; j < s.size; j++) {
+                if (j > 0) {
+                    out.write(",");
+                }
+                out.write("\n{\"name\":\"" + SPAN_NAMES[s.spans[j]] + "\",\"cat\":\"launcher\""
+                        + ",\"ph\":\"X\",\"ts\":" + s.starts[j] / 1000
+                        + ",\"dur\":" + (s.ends[j] - s.starts[j]) / 1000
+                        + ",\"pid\":" + pid + ",\"tid\":" + s.tids[j]
+                        + ",\"args\":{\"arg\":" + s.args[j] + "}}");
+            }
+            out.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -26,7 +26,6 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
 
 public class Stats {
     private static final boolean DEBUG_BROADCASTS = false;
@@ -57,8 +56,7 @@ public class Stats {
 
     DataOutputStream mLog;
 
-    ArrayList<String> mIntents;
-    ArrayList<Integer> mHistogram;
+    LaunchCounts mLaunchCounts;
 
     public Stats(Launcher launcher) {
         mLauncher = launcher;
@@ -100,13 +98,7 @@ public class Stats {
     }
 
     public void incrementLaunch(String intentStr) {
-        int pos = mIntents.indexOf(intentStr);
-        if (pos < 0) {
-            mIntents.add(intentStr);
-            mHistogram.add(1);
-        } else {
-            mHistogram.set(pos, mHistogram.get(pos) + 1);
-        }
+        mLaunchCounts.increment(intentStr);
     }
 
     public int launchCount(Intent intent) {
@@ -114,12 +106,7 @@ public class Stats {
         intent.setSourceBounds(null);
 
         final String flat = intent.toUri(0);
-        int pos = mIntents.indexOf(flat);
-        if (pos < 0) {
-            return 0;
-        } else {
-            return mHistogram.get(pos);
-        }
+        return mLaunchCounts.get(flat);
     }
 
     public void recordLaunch(Intent intent) {
@@ -178,11 +165,11 @@ public class Stats {
             stats = new DataOutputStream(mLauncher.openFileOutput(
                     LauncherFiles.STATS_LOG + ".tmp", Context.MODE_PRIVATE));
             stats.writeInt(STATS_VERSION);
-            final int N = mHistogram.size();
+            final int N = mLaunchCounts.size();
             stats.writeInt(N);
             for (int i=0; i<N; i++) {
-                stats.writeUTF(mIntents.get(i));
-                stats.writeInt(mHistogram.get(i));
+                stats.writeUTF(mLaunchCounts.getIntent(i));
+                stats.writeInt(mLaunchCounts.getCount(i));
             }
             stats.close();
             stats = null;
@@ -202,8 +189,7 @@ public class Stats {
     }
 
     private void loadStats() {
-        mIntents = new ArrayList<String>(INITIAL_STATS_SIZE);
-        mHistogram = new ArrayList<Integer>(INITIAL_STATS_SIZE);
+        mLaunchCounts = new LaunchCounts(INITIAL_STATS_SIZE);
         DataInputStream stats = null;
         try {
             stats = new DataInputStream(mLauncher.openFileInput(LauncherFiles.STATS_LOG));
@@ -213,8 +199,7 @@ public class Stats {
                 for (int i=0; i<N; i++) {
                     final String pkg = stats.readUTF();
                     final int count = stats.readInt();
-                    mIntents.add(pkg);
-                    mHistogram.add(count);
+                    mLaunchCounts.add(pkg, count);
                 }
             }
         } catch (FileNotFoundException e) {
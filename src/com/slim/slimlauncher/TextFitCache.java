@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of the results of the searches done by {@link AutoFitTextView} and
+ * {@link AutoExpandTextView}. The same labels are fitted to the same widths over and over as
+ * drawer rows are recycled, so the search only needs to run once per label.
+ */
+final class TextFitCache {
+    /** Cached value is a text size in pixels. */
+    static final int TYPE_TEXT_SIZE = 0;
+    /** Cached value is a letter spacing in ems. */
+    static final int TYPE_LETTER_SPACING = 1;
+
+    private static final int MAX_ENTRIES = 256;
+
+    private static final LruCache<Key, Float> sCache = new LruCache<Key, Float>(MAX_ENTRIES);
+
+    private TextFitCache() {
+    }
+
+    /**
+     * @param paint the paint the search measures with, before the search changes it
+     * @param baseSize the text size the search starts from
+     * @return the cached result, or null if the search has not been done yet
+     */
+    static Float get(int type, CharSequence text, int width, int maxLines, Paint paint,
+            float baseSize, float precision) {
+        return sCache.get(new Key(type, text, width, maxLines, paint, baseSize, precision));
+    }
+
+    static void put(int type, CharSequence text, int width, int maxLines, Paint paint,
+            float baseSize, float precision, float value) {
+        sCache.put(new Key(type, text, width, maxLines, paint, baseSize, precision), value);
+    }
+
+    private static class Key {
+        final int type;
+        // Spans only change colors in these views, so the plain text is enough
+        final String text;
+        final int width;
+        final int maxLines;
+        final Typeface typeface;
+        final float textScaleX;
+        final float letterSpacing;
+        final float baseSize;
+        final float precision;
+
+        Key(int type, CharSequence text, int width, int maxLines, Paint paint,
+                float baseSize, float precision) {
+            this.type = type;
+            this.text = text.toString();
+            this.width = width;
+            this.maxLines = maxLines;
+            this.typeface = paint.getTypeface();
+            this.textScaleX = paint.getTextScaleX();
+            // The letter spacing search sets its own spacing, so the one it starts from does not
+            // change the result
+            this.letterSpacing = type != TYPE_LETTER_SPACING && Utilities.isLmpOrAbove()
+                    ? paint.getLetterSpacing() : 0;
+            this.baseSize = baseSize;
+            this.precision = precision;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + text.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + maxLines;
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + Float.floatToIntBits(textScaleX);
+            result = 31 * result + Float.floatToIntBits(letterSpacing);
+            result = 31 * result + Float.floatToIntBits(baseSize);
+            return 31 * result + Float.floatToIntBits(precision);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return type == k.type && width == k.width && maxLines == k.maxLines
+                    && baseSize == k.baseSize && precision == k.precision
+                    && textScaleX == k.textScaleX && letterSpacing == k.letterSpacing
+                    && typeface == k.typeface && text.equals(k.text);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.SparseArray;
+
+import com.slim.slimlauncher.settings.SettingsProvider;
+
+import java.util.HashMap;
+
+/**
+ * Holds the unread counts reported by {@link NotificationListener} and draws them as a badge on
+ * top of the icon views. Badges are pre-rendered once per count, so icon bitmaps never have to be
+ * re-created when a count changes.
+ *
+ * All methods must be called on the UI thread.
+ */
+public class UnreadBadgeCache {
+    // Counts of 1000 and above all share the "999+" badge
+    private static final int MAX_COUNT = 1000;
+    private static final int MAX_CACHED_BADGES = 32;
+
+    private final Context mContext;
+    private final HashMap<ComponentName, Integer> mCounts = new HashMap<ComponentName, Integer>();
+    private final SparseArray<Bitmap> mBadges = new SparseArray<Bitmap>();
+
+    private final float mTextSize;
+    private final float mHeight;
+    private final float mPadding;
+    private final float mRadius;
+    private final int mMinWidth;
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DEV_KERN_TEXT_FLAG);
+    private final Paint mCirclePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Canvas mCanvas = new Canvas();
+    private final RectF mRect = new RectF();
+
+    public UnreadBadgeCache(Context context) {
+        mContext = context;
+        final Resources res = context.getResources();
+        mTextSize = res.getDimension(R.dimen.infomation_count_textsize);
+        mHeight = res.getDimension(R.dimen.infomation_count_height);
+        mPadding = res.getDimension(R.dimen.infomation_count_padding);
+        mRadius = res.getDimension(R.dimen.infomation_count_circle_radius);
+        mMinWidth = res.getDimensionPixelSize(R.dimen.infomation_count_min_width);
+
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(mTextSize);
+        mCirclePaint.setColor(res.getColor(R.color.infomation_count_circle_color));
+    }
+
+    /**
+     * Records the unread count for a component.
+     *
+     * @return true if the count changed
+     */
+    public boolean setUnreadCount(ComponentName component, int count) {
+        Integer old = count > 0 ? mCounts.put(component, count) : mCounts.remove(component);
+        return (old == null ? 0 : old) != count;
+    }
+
+    /**
+     * Returns the count to show for an item, or 0 if it should not have a badge.
+     */
+    public int getUnreadCount(ItemInfo info) {
+        if (mCounts.isEmpty()) {
+            return 0;
+        }
+        ComponentName component = null;
+        if (info instanceof AppInfo) {
+            component = ((AppInfo) info).componentName;
+        } else if (info instanceof ShortcutInfo && info.itemType ==
+                LauncherSettings.Favorites.ITEM_TYPE_APPLICATION) {
+            component = ((ShortcutInfo) info).getTargetComponent();
+        }
+        if (component == null) {
+            return 0;
+        }
+        Integer count = mCounts.get(component);
+        if (count == null || !SettingsProvider.getBoolean(mContext,
+                SettingsProvider.KEY_NOTIFICATION_BADGES, false)) {
+            return 0;
+        }
+        return count;
+    }
+
+    /**
+     * Draws the badge for count so that its top right corner lines up with the top right
+     * corner of an icon drawn at the given position.
+     */
+    public void drawBadge(Canvas canvas, int count, float iconRight, float iconTop) {
+        if (count <= 0) {
+            return;
+        }
+        Bitmap badge = getBadge(count);
+        canvas.drawBitmap(badge, iconRight - badge.getWidth() - 1, iconTop + 1, null);
+    }
+
+    private Bitmap getBadge(int count) {
+        final int key = Math.min(count, MAX_COUNT);
+        Bitmap badge = mBadges.get(key);
+        if (badge == null) {
+            if (mBadges.size() >= MAX_CACHED_BADGES) {
+                mBadges.clear();
+            }
+            badge = createBadge(key >= MAX_COUNT ? "999+" : String.valueOf(key));
+            mBadges.put(key, badge);
+        }
+        return badge;
+    }
+
+    private Bitmap createBadge(String text) {
+        final int textWidth = (int) (mTextPaint.measureText(text) + 1);
+        final float width = Math.max(textWidth + mPadding * 2, mMinWidth);
+
+        Bitmap b = Bitmap.createBitmap((int) Math.ceil(width), (int) Math.ceil(mHeight),
+                Bitmap.Config.ARGB_8888);
+        final Canvas canvas = mCanvas;
+        canvas.setBitmap(b);
+        mRect.set(0, 0, width, mHeight);
+        canvas.drawRoundRect(mRect, mRadius, mRadius, mCirclePaint);
+        // The text baseline used to sit at mTextSize from the top of the icon, one pixel above
+        // the top of the badge
+        canvas.drawText(text, (width - textWidth) / 2, mTextSize - 1, mTextPaint);
+        canvas.setBitmap(null);
+        return b;
+    }
+}
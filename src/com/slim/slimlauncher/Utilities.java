@@ -38,7 +38,6 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
-import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.PaintDrawable;
@@ -51,7 +50,6 @@ import android.view.View;
 import android.widget.Toast;
 
 import com.slim.slimlauncher.palette.Palette;
-import com.slim.slimlauncher.settings.SettingsProvider;
 
 import java.util.ArrayList;
 
@@ -68,6 +66,8 @@ public final class Utilities {
 
     private static final Rect sOldBounds = new Rect();
     private static final Canvas sCanvas = new Canvas();
+    // Scratch point for getDescendantCoordRelativeToParent, which is only used on the UI thread
+    private static final float[] sPoint = new float[2];
 
     static {
         sCanvas.setDrawFilter(new PaintFlagsDrawFilter(Paint.DITHER_FLAG,
@@ -84,49 +84,6 @@ public final class Utilities {
     static final String FORCE_ENABLE_ROTATION_PROPERTY = "launcher_force_rotate";
     public static boolean sForceEnableRotation = isPropertyEnabled(FORCE_ENABLE_ROTATION_PROPERTY);
 
-   static Bitmap createIconBitmap(Drawable icon, Context context, int count) {
-       Bitmap b = createIconBitmap(icon, context);
-
-       if (!SettingsProvider.getBoolean(context,
-               SettingsProvider.KEY_NOTIFICATION_BADGES, false) || count <= 0) {
-           return b;
-       }
-
-       int textureWidth = b.getWidth();
-       final Resources resources = context.getResources();
-       final Canvas canvas = sCanvas;
-       canvas.setBitmap(b);
-
-       float textsize = resources.getDimension(R.dimen.infomation_count_textsize);
-       Paint countPaint = new Paint(Paint.ANTI_ALIAS_FLAG|Paint.DEV_KERN_TEXT_FLAG);
-       countPaint.setColor(Color.WHITE);
-       countPaint.setTextSize(textsize);
-
-       String text = String.valueOf(count);
-       if (count >= 1000) {
-           text = "999+";
-       }
-
-       float count_hight = resources.getDimension(R.dimen.infomation_count_height);
-       float padding = resources.getDimension(R.dimen.infomation_count_padding);
-       float radius = resources.getDimension(R.dimen.infomation_count_circle_radius);
-       int  textwidth = (int) (countPaint.measureText(text) + 1);
-       float width =textwidth + padding * 2;
-       width = Math.max(width, resources.getDimensionPixelSize(R.dimen.infomation_count_min_width));
-
-       RectF rect = new RectF(textureWidth - width -1, 1, textureWidth - 1, count_hight + 1);
-       Paint paint = new Paint();
-       paint.setAntiAlias(true);
-       paint.setColor(resources.getColor(R.color.infomation_count_circle_color));
-       canvas.drawRoundRect(rect , radius, radius, paint);
-
-       float x = textureWidth - (width + textwidth ) / 2 - 1;
-       float y = textsize;
-       canvas.drawText(text, x, y, countPaint);
-
-       return b;
-    }
-
     /**
      * Returns a bitmap suitable for the all apps view. If the package or the resource do not
      * exist, it returns null.
@@ -421,21 +378,15 @@ public final class Utilities {
      */
     public static float getDescendantCoordRelativeToParent(View descendant, View root,
                                                            int[] coord, boolean includeRootScroll) {
-        ArrayList<View> ancestorChain = new ArrayList<View>();
-
-        float[] pt = {coord[0], coord[1]};
-
-        View v = descendant;
-        while(v != root && v != null) {
-            ancestorChain.add(v);
-            v = (View) v.getParent();
-        }
-        ancestorChain.add(root);
+        // Called for every page on every frame while scrolling, so walk up the parents
+        // directly instead of collecting them first
+        final float[] pt = sPoint;
+        pt[0] = coord[0];
+        pt[1] = coord[1];
 
         float scale = 1.0f;
-        int count = ancestorChain.size();
-        for (int i = 0; i < count; i++) {
-            View v0 = ancestorChain.get(i);
+        View v0 = descendant;
+        while (true) {
             // For TextViews, scroll has a meaning which relates to the text position
             // which is very strange... ignore the scroll.
             if (v0 != descendant || includeRootScroll) {
@@ -447,6 +398,14 @@ public final class Utilities {
             pt[0] += v0.getLeft();
             pt[1] += v0.getTop();
             scale *= v0.getScaleX();
+
+            if (v0 == root) {
+                break;
+            }
+            v0 = (View) v0.getParent();
+            if (v0 == null) {
+                v0 = root;
+            }
         }
 
         coord[0] = (int) Math.round(pt[0]);
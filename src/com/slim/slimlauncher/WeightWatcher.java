@@ -37,6 +37,7 @@ import android.widget.TextView;
 public class WeightWatcher extends LinearLayout {
     private static final int RAM_GRAPH_RSS_COLOR = 0xFF990000;
     private static final int RAM_GRAPH_PSS_COLOR = 0xFF99CC00;
+    private static final int BITMAP_GRAPH_COLOR = 0xFF3399FF;
     private static final int TEXT_COLOR = 0xFFFFFFFF;
     private static final int BACKGROUND_COLOR = 0xc0000000;
 
@@ -65,10 +66,16 @@ public class WeightWatcher extends LinearLayout {
                     break;
                 case MSG_UPDATE:
                     int[] pids = mMemoryService.getTrackedProcesses();
+                    BitmapMemoryRegistry.OwnerMemInfo[] owners =
+                            BitmapMemoryRegistry.getOwners();
 
                     final int N = getChildCount();
-                    if (pids.length != N) initViews();
+                    if (pids.length + owners.length != N) initViews();
                     else for (int i=0; i<N; i++) {
+                        if (getChildAt(i) instanceof OwnerWatcher) {
+                            ((OwnerWatcher) getChildAt(i)).update();
+                            continue;
+                        }
                         ProcessWatcher pw = ((ProcessWatcher) getChildAt(i));
                         if (indexOf(pids, pw.getPid()) < 0) {
                             initViews();
@@ -112,6 +119,12 @@ public class WeightWatcher extends LinearLayout {
             v.setPid(processes[i]);
             addView(v);
         }
+        BitmapMemoryRegistry.OwnerMemInfo[] owners = BitmapMemoryRegistry.getOwners();
+        for (int i=0; i<owners.length; i++) {
+            final OwnerWatcher v = new OwnerWatcher(getContext());
+            v.setMemInfo(owners[i]);
+            addView(v);
+        }
     }
 
     public WeightWatcher(Context context) {
@@ -266,4 +279,97 @@ public class WeightWatcher extends LinearLayout {
             }
         }
     }
+
+    /**
+     * Shows the bitmap memory of the caches registered with {@link BitmapMemoryRegistry} under
+     * one name.
+     */
+    public class OwnerWatcher extends LinearLayout {
+        GraphView mBitmapGraph;
+        TextView mText;
+        private BitmapMemoryRegistry.OwnerMemInfo mMemInfo;
+
+        public OwnerWatcher(Context context) {
+            this(context, null);
+        }
+
+        public OwnerWatcher(Context context, AttributeSet attrs) {
+            super(context, attrs);
+
+            final float dp = getResources().getDisplayMetrics().density;
+
+            mText = new TextView(getContext());
+            mText.setTextColor(TEXT_COLOR);
+            mText.setTextSize(TypedValue.COMPLEX_UNIT_PX, 10 * dp);
+            mText.setGravity(Gravity.LEFT | Gravity.CENTER_VERTICAL);
+
+            final int p = (int)(2*dp);
+            setPadding(p, 0, p, 0);
+
+            mBitmapGraph = new GraphView(getContext());
+
+            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                    0,
+                    (int)(14 * dp),
+                    1f
+            );
+
+            addView(mText, params);
+            params.leftMargin = (int)(4*dp);
+            params.weight = 0f;
+            params.width = (int)(200 * dp);
+            addView(mBitmapGraph, params);
+        }
+
+        public void setMemInfo(BitmapMemoryRegistry.OwnerMemInfo info) {
+            mMemInfo = info;
+        }
+
+        public void update() {
+            mText.setText(mMemInfo.name
+                          + " N=" + mMemInfo.currentCount
+                          + " K=" + mMemInfo.currentBytes / 1024
+                          );
+            mBitmapGraph.invalidate();
+        }
+
+        public class GraphView extends View {
+            Paint bitmapPaint, headPaint;
+
+            public GraphView(Context context, AttributeSet attrs) {
+                super(context, attrs);
+
+                bitmapPaint = new Paint();
+                bitmapPaint.setColor(BITMAP_GRAPH_COLOR);
+                headPaint = new Paint();
+                headPaint.setColor(Color.WHITE);
+            }
+
+            public GraphView(Context context) {
+                this(context, null);
+            }
+
+            @Override
+            public void onDraw(Canvas c) {
+                int w = c.getWidth();
+                int h = c.getHeight();
+
+                if (mMemInfo == null) return;
+
+                final int N = mMemInfo.bytes.length;
+                final float barStep = (float) w / N;
+                final float barWidth = Math.max(1, barStep);
+                final float scale = (float) h / mMemInfo.max;
+
+                int i;
+                float x;
+                for (i=0; i<N; i++) {
+                    x = i * barStep;
+                    c.drawRect(x, h - scale * mMemInfo.bytes[i], x + barWidth, h, bitmapPaint);
+                }
+                x = mMemInfo.head * barStep;
+                c.drawRect(x, 0, x + barWidth, h, headPaint);
+            }
+        }
+    }
 }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+
+import com.slim.slimlauncher.compat.AppWidgetManagerCompat;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The sorted list of widget providers and shortcut activities shown in the widgets pane, owned
+ * by the model. It is loaded on the worker thread along with all apps and afterwards patched with
+ * the packages of every batch of package changes, so only the entries of changed packages are
+ * queried and have their labels loaded again. The collation key of every label is kept with its entry,
+ * so that inserting into the list never loads a label either.
+ *
+ * Every change produces a {@link Diff} that the UI applies to its own {@link Mirror} of the
+ * list, instead of being handed the whole list again.
+ */
+final class WidgetCatalog {
+
+    /**
+     * The changes between two versions of the catalog. A diff without a base version replaces
+     * the whole list.
+     */
+    static final class Diff {
+        static final int NO_VERSION = -1;
+
+        final int fromVersion;
+        final int toVersion;
+        // Items to remove from the old list, compared by identity
+        final ArrayList<Object> removed;
+        // Items to insert, in order, at the matching positions of the new list
+        final ArrayList<Object> added;
+        final int[] addedPositions;
+
+        private Diff(int fromVersion, int toVersion, ArrayList<Object> removed,
+                ArrayList<Object> added, int[] addedPositions) {
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.removed = removed;
+            this.added = added;
+            this.addedPositions = addedPositions;
+        }
+
+        boolean isEmpty() {
+            return fromVersion != NO_VERSION && removed.isEmpty() && added.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Diff{" + fromVersion + "->" + toVersion + " removed=" + removed.size()
+                    + " added=" + added.size() + "}";
+        }
+    }
+
+    /**
+     * The copy of the catalog used by the UI thread.
+     */
+    static final class Mirror {
+        private ArrayList<Object> mItems = new ArrayList<Object>();
+        private int mVersion = Diff.NO_VERSION;
+
+        /**
+         * Applies diff to the list. Returns false and leaves the list untouched if diff was not
+         * taken against the current version, in which case a snapshot should be applied instead.
+         */
+        boolean apply(Diff diff) {
+            if (diff.fromVersion == Diff.NO_VERSION) {
+                mItems = new ArrayList<Object>(diff.added);
+                mVersion = diff.toVersion;
+                return true;
+            }
+            if (diff.fromVersion != mVersion) {
+                return false;
+            }
+            final IdentityHashMap<Object, Boolean> removed = new IdentityHashMap<Object, Boolean>();
+            for (Object o : diff.removed) {
+                removed.put(o, Boolean.TRUE);
+            }
+            final ArrayList<Object> items = new ArrayList<Object>(
+                    mItems.size() - removed.size() + diff.added.size());
+            final Iterator<Object> old = mItems.iterator();
+            int next = 0;
+            while (next < diff.added.size() || old.hasNext()) {
+                if (next < diff.added.size() && diff.addedPositions[next] == items.size()) {
+                    items.add(diff.added.get(next++));
+                    continue;
+                }
+                if (!old.hasNext()) {
+                    // Positions past the end, the diff does not belong to this list
+                    return false;
+                }
+                final Object o = old.next();
+                if (!removed.containsKey(o)) {
+                    items.add(o);
+                }
+            }
+            mItems = items;
+            mVersion = diff.toVersion;
+            return true;
+        }
+
+        ArrayList<Object> getItems() {
+            return mItems;
+        }
+    }
+
+    private static final class Entry {
+        final Object info;
+        final String packageName;
+        final CollationKey key;
+
+        Entry(Object info, String packageName, CollationKey key) {
+            this.info = info;
+            this.packageName = packageName;
+            this.key = key;
+        }
+    }
+
+    private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.key.compareTo(b.key);
+        }
+    };
+
+    private final Context mContext;
+    private final AppWidgetManagerCompat mManager;
+    private final PackageManager mPackageManager;
+
+    // Only touched on the worker thread. The collator follows the locale, so it is recreated
+    // with the keys it made.
+    private Collator mCollator = Collator.getInstance();
+    private final HashMap<ComponentName, CollationKey> mKeyCache =
+            new HashMap<ComponentName, CollationKey>();
+
+    // Guarded by this, written on the worker thread
+    private ArrayList<Entry> mEntries = new ArrayList<Entry>();
+    private int mVersion = 0;
+    private boolean mLoaded;
+
+    WidgetCatalog(Context context) {
+        mContext = context;
+        mManager = AppWidgetManagerCompat.getInstance(context);
+        mPackageManager = context.getPackageManager();
+    }
+
+    synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Queries every provider and shortcut again, reusing the cached sort keys. Must be called
+     * on the worker thread. Returns the new contents as a full diff.
+     */
+    Diff reload() {
+        final ArrayList<Entry> entries = new ArrayList<Entry>();
+        for (AppWidgetProviderInfo info : mManager.getAllProviders()) {
+            if (LauncherModel.isValidProvider(info)) {
+                entries.add(newEntry(info));
+            }
+        }
+        for (ResolveInfo info : queryShortcuts(null)) {
+            entries.add(newEntry(info));
+        }
+        Collections.sort(entries, ENTRY_COMPARATOR);
+
+        synchronized (this) {
+            mEntries = entries;
+            mVersion++;
+            mLoaded = true;
+            return snapshotLocked();
+        }
+    }
+
+    /**
+     * Replaces the entries of packages with what the package manager currently reports for
+     * them, dropping their cached sort keys. Must be called on the worker thread.
+     */
+    Diff updatePackages(String[] packages) {
+        if (!isLoaded()) {
+            return reload();
+        }
+        final HashSet<String> packageSet = new HashSet<String>();
+        Collections.addAll(packageSet, packages);
+        for (Iterator<ComponentName> it = mKeyCache.keySet().iterator(); it.hasNext(); ) {
+            if (packageSet.contains(it.next().getPackageName())) {
+                it.remove();
+            }
+        }
+
+        final ArrayList<Entry> added = new ArrayList<Entry>();
+        for (AppWidgetProviderInfo info : mManager.getAllProviders()) {
+            if (LauncherModel.isValidProvider(info)
+                    && packageSet.contains(info.provider.getPackageName())) {
+                added.add(newEntry(info));
+            }
+        }
+        for (String packageName : packageSet) {
+            for (ResolveInfo info : queryShortcuts(packageName)) {
+                added.add(newEntry(info));
+            }
+        }
+        Collections.sort(added, ENTRY_COMPARATOR);
+
+        synchronized (this) {
+            final ArrayList<Object> removedItems = new ArrayList<Object>();
+            final ArrayList<Entry> entries = new ArrayList<Entry>(mEntries.size() + added.size());
+            final ArrayList<Object> addedItems = new ArrayList<Object>(added.size());
+            final int[] addedPositions = new int[added.size()];
+
+            // Merge the sorted lists, new entries go after equal old ones
+            int next = 0;
+            for (Entry e : mEntries) {
+                if (packageSet.contains(e.packageName)) {
+                    removedItems.add(e.info);
+                    continue;
+                }
+                while (next < added.size() && ENTRY_COMPARATOR.compare(added.get(next), e) < 0) {
+                    addedPositions[next] = entries.size();
+                    addedItems.add(added.get(next).info);
+                    entries.add(added.get(next++));
+                }
+                entries.add(e);
+            }
+            while (next < added.size()) {
+                addedPositions[next] = entries.size();
+                addedItems.add(added.get(next).info);
+                entries.add(added.get(next++));
+            }
+
+            final int fromVersion = mVersion;
+            mEntries = entries;
+            mVersion++;
+            return new Diff(fromVersion, mVersion, removedItems, addedItems, addedPositions);
+        }
+    }
+
+    /**
+     * Returns the whole catalog as a diff without a base version. Safe to call on any thread.
+     */
+    synchronized Diff snapshot() {
+        return snapshotLocked();
+    }
+
+    private Diff snapshotLocked() {
+        final ArrayList<Object> items = new ArrayList<Object>(mEntries.size());
+        for (Entry e : mEntries) {
+            items.add(e.info);
+        }
+        return new Diff(Diff.NO_VERSION, mVersion, new ArrayList<Object>(), items, new int[0]);
+    }
+
+    /**
+     * Forgets the loaded entries and sort keys, e.g. when the locale changes. Must be called on
+     * the worker thread.
+     */
+    void clear() {
+        synchronized (this) {
+            mEntries = new ArrayList<Entry>();
+            mVersion++;
+            mLoaded = false;
+        }
+        mCollator = Collator.getInstance();
+        mKeyCache.clear();
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    private List<ResolveInfo> queryShortcuts(String packageName) {
+        final Intent shortcutsIntent = new Intent(Intent.ACTION_CREATE_SHORTCUT);
+        if (packageName != null) {
+            shortcutsIntent.setPackage(packageName);
+        }
+        return mPackageManager.queryIntentActivities(shortcutsIntent, 0);
+    }
+
+    private Entry newEntry(AppWidgetProviderInfo info) {
+        CollationKey key = mKeyCache.get(info.provider);
+        if (key == null) {
+            key = mCollator.getCollationKey(mManager.loadLabel(info));
+            mKeyCache.put(info.provider, key);
+        }
+        return new Entry(info, info.provider.getPackageName(), key);
+    }
+
+    private Entry newEntry(ResolveInfo info) {
+        final ComponentName cn = new ComponentName(
+                info.activityInfo.packageName, info.activityInfo.name);
+        CollationKey key = mKeyCache.get(cn);
+        if (key == null) {
+            key = mCollator.getCollationKey(
+                    info.loadLabel(mPackageManager).toString().trim());
+            mKeyCache.put(cn, key);
+        }
+        return new Entry(info, cn.getPackageName(), key);
+    }
+}
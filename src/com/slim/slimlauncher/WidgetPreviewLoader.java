@@ -45,7 +45,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
-public class WidgetPreviewLoader {
+public class WidgetPreviewLoader implements BitmapMemoryRegistry.BitmapOwner {
 
     private static abstract class SoftReferenceThreadLocal<T> {
         private ThreadLocal<SoftReference<T>> mThreadLocal;
@@ -186,6 +186,22 @@ public class WidgetPreviewLoader {
                 editor.commit();
             }
         }
+
+        BitmapMemoryRegistry.register(BitmapMemoryRegistry.OWNER_WIDGET_PREVIEWS, this);
+    }
+
+    @Override
+    public void countBitmaps(BitmapMemoryRegistry.Counter counter) {
+        synchronized (mLoadedPreviews) {
+            for (WeakReference<Bitmap> ref : mLoadedPreviews.values()) {
+                counter.add(ref.get());
+            }
+        }
+        synchronized (mUnusedBitmaps) {
+            for (int i = 0; i < mUnusedBitmaps.size(); i++) {
+                counter.add(mUnusedBitmaps.get(i).get());
+            }
+        }
     }
 
     public void recreateDb() {
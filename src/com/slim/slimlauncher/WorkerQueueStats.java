@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * Keeps statistics of the tasks run on the model's worker thread, so that it can be seen why
+ * the thread backs up and the UI waits on it. Tasks are wrapped by type when posted, and for
+ * every type the time from posting to running, the run time and the number of pending tasks
+ * are recorded in preallocated arrays. Tasks that run longer than {@link #SLOW_TASK_MS} are
+ * logged and the most recent are kept, with their class, for the dumps.
+ *
+ * The time callers block in LauncherModel.flushWorkerThread() is recorded too. The statistics
+ * are printed by LauncherModel.dumpState() and Launcher.dump().
+ */
+final class WorkerQueueStats {
+    private static final String TAG = "WorkerQueueStats";
+
+    static final int TASK_LOADER = 0;
+    static final int TASK_PACKAGE_UPDATE = 1;
+    static final int TASK_ADD_ITEMS = 2;
+    static final int TASK_DB_WRITE = 3;
+    static final int TASK_FLUSH = 4;
+    static final int TASK_OTHER = 5;
+
+    private static final String[] TASK_NAMES = {
+        "loader",
+        "packageUpdate",
+        "addItems",
+        "dbWrite",
+        "flush",
+        "other",
+    };
+    private static final int TASK_TYPE_COUNT = TASK_NAMES.length;
+
+    static final long SLOW_TASK_MS = 100;
+    private static final long SLOW_TASK_NANOS = SLOW_TASK_MS * 1000 * 1000;
+    private static final int SLOW_TASK_CAPACITY = 16;
+
+    private static final Object sLock = new Object();
+
+    private static final long[] sRuns = new long[TASK_TYPE_COUNT];
+    private static final long[] sTotalWaitNanos = new long[TASK_TYPE_COUNT];
+    private static final long[] sMaxWaitNanos = new long[TASK_TYPE_COUNT];
+    private static final long[] sTotalRunNanos = new long[TASK_TYPE_COUNT];
+    private static final long[] sMaxRunNanos = new long[TASK_TYPE_COUNT];
+    private static final long[] sSlowRuns = new long[TASK_TYPE_COUNT];
+    private static final int[] sPending = new int[TASK_TYPE_COUNT];
+    private static final int[] sMaxPending = new int[TASK_TYPE_COUNT];
+    // All the pending tasks, of any type
+    private static int sDepth;
+    private static int sMaxDepth;
+
+    private static long sFlushes;
+    private static long sTotalFlushNanos;
+    private static long sMaxFlushNanos;
+
+    // The most recent slow tasks, the next one goes to sSlowCount % SLOW_TASK_CAPACITY
+    private static final int[] sSlowTypes = new int[SLOW_TASK_CAPACITY];
+    private static final String[] sSlowClasses = new String[SLOW_TASK_CAPACITY];
+    private static final long[] sSlowWaitNanos = new long[SLOW_TASK_CAPACITY];
+    private static final long[] sSlowRunNanos = new long[SLOW_TASK_CAPACITY];
+    private static final int[] sSlowDepths = new int[SLOW_TASK_CAPACITY];
+    private static final long[] sSlowTimes = new long[SLOW_TASK_CAPACITY];
+    private static int sSlowCount;
+
+    private WorkerQueueStats() {
+    }
+
+    /**
+     * Returns a runnable to post to the worker thread instead of task, which records the
+     * statistics of task under type. Must be posted right away.
+     */
+    static Runnable wrap(final int type, final Runnable task) {
+        final long enqueued = System.nanoTime();
+        synchronized (sLock) {
+            sDepth++;
+            sMaxDepth = Math.max(sMaxDepth, sDepth);
+            sPending[type]++;
+            sMaxPending[type] = Math.max(sMaxPending[type], sPending[type]);
+        }
+        return new Runnable() {
+            public void run() {
+                final long start = System.nanoTime();
+                final int depth;
+                synchronized (sLock) {
+                    sDepth--;
+                    sPending[type]--;
+                    depth = sDepth;
+                }
+                try {
+                    task.run();
+                } finally {
+                    record(type, task, start - enqueued, System.nanoTime() - start, depth);
+                }
+            }
+        };
+    }
+
+    private static void record(int type, Runnable task, long waitNanos, long runNanos,
+            int depth) {
+        final boolean slow = runNanos >= SLOW_TASK_NANOS;
+        synchronized (sLock) {
+            sRuns[type]++;
+            sTotalWaitNanos[type] += waitNanos;
+            sMaxWaitNanos[type] = Math.max(sMaxWaitNanos[type], waitNanos);
+            sTotalRunNanos[type] += runNanos;
+            sMaxRunNanos[type] = Math.max(sMaxRunNanos[type], runNanos);
+            if (slow) {
+                sSlowRuns[type]++;
+                final int i = sSlowCount % SLOW_TASK_CAPACITY;
+                sSlowTypes[i] = type;
+                sSlowClasses[i] = task.getClass().getName();
+                sSlowWaitNanos[i] = waitNanos;
+                sSlowRunNanos[i] = runNanos;
+                sSlowDepths[i] = depth;
+                sSlowTimes[i] = System.currentTimeMillis();
+                sSlowCount++;
+            }
+        }
+        if (slow) {
+            Log.w(TAG, "Slow " + TASK_NAMES[type] + " task " + task.getClass().getName()
+                    + " ran " + runNanos / 1000000 + "ms after waiting " + waitNanos / 1000000
+                    + "ms, " + depth + " tasks behind it");
+        }
+    }
+
+    /**
+     * Records that a caller blocked for the given time until the worker thread was flushed.
+     */
+    static void recordFlush(long nanos) {
+        synchronized (sLock) {
+            sFlushes++;
+            sTotalFlushNanos += nanos;
+            sMaxFlushNanos = Math.max(sMaxFlushNanos, nanos);
+        }
+    }
+
+    private static String[] format() {
+        final ArrayList<String> lines = new ArrayList<String>();
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        synchronized (sLock) {
+            lines.add("depth=" + sDepth + " maxDepth=" + sMaxDepth
+                    + " flushes=" + sFlushes
+                    + " meanFlushMs=" + (sFlushes == 0 ? 0 : sTotalFlushNanos / sFlushes / 1000000f)
+                    + " maxFlushMs=" + sMaxFlushNanos / 1000000f);
+            for (int type = 0; type < TASK_TYPE_COUNT; type++) {
+                final long runs = Math.max(1, sRuns[type]);
+                lines.add(TASK_NAMES[type] + " runs=" + sRuns[type]
+                        + " pending=" + sPending[type] + " maxPending=" + sMaxPending[type]
+                        + " meanWaitMs=" + sTotalWaitNanos[type] / runs / 1000000f
+                        + " maxWaitMs=" + sMaxWaitNanos[type] / 1000000f
+                        + " meanRunMs=" + sTotalRunNanos[type] / runs / 1000000f
+                        + " maxRunMs=" + sMaxRunNanos[type] / 1000000f
+                        + " slow=" + sSlowRuns[type]);
+            }
+            final int size = Math.min(sSlowCount, SLOW_TASK_CAPACITY);
+            for (int j = 0; j < size; j++) {
+                final int i = (sSlowCount - size + j) % SLOW_TASK_CAPACITY;
+                lines.add("slow " + dateFormat.format(new Date(sSlowTimes[i]))
+                        + " " + TASK_NAMES[sSlowTypes[i]] + " " + sSlowClasses[i]
+                        + " waitMs=" + sSlowWaitNanos[i] / 1000000f
+                        + " runMs=" + sSlowRunNanos[i] / 1000000f
+                        + " behind=" + sSlowDepths[i]);
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    static void dumpState() {
+        for (String line : format()) {
+            Log.d(TAG, line);
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        writer.println(" ");
+        writer.println("Worker queue (tasks slower than " + SLOW_TASK_MS + "ms are listed):");
+        for (String line : format()) {
+            writer.println("  " + line);
+        }
+    }
+}
@@ -49,6 +49,7 @@ import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -64,6 +65,7 @@ import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 import android.widget.TextView;
 
+import com.android.gallery3d.common.BitmapPool;
 import com.slim.slimlauncher.FolderIcon.FolderRingAnimator;
 import com.slim.slimlauncher.Launcher.CustomContentCallbacks;
 import com.slim.slimlauncher.Launcher.LauncherOverlay;
@@ -96,6 +98,9 @@ public class Workspace extends SmoothPagedView
         Insettable, MultiTouchObjectCanvas<Object> {
     private static final String TAG = "Launcher.Workspace";
 
+    // Logs how long the drop outline takes to create when a drag starts
+    private static final boolean DEBUG_DRAG_OUTLINE = false;
+
     // Y rotation to apply to the workspace screens
     private static final float WORKSPACE_OVERSCROLL_ROTATION = 24f;
 
@@ -240,10 +245,11 @@ public class Workspace extends SmoothPagedView
     private boolean mInScrollArea = false;
 
     private HolographicOutlineHelper mOutlineHelper;
+    private DragOutlineCache mOutlineCache;
+    private PageLayerManager mLayerManager;
     private Bitmap mDragOutline = null;
     private static final Rect sTempRect = new Rect();
     private final int[] mTempXY = new int[2];
-    private int[] mTempVisiblePagesRange = new int[2];
     private boolean mOverscrollEffectSet;
     public static final int DRAG_BITMAP_PADDING = 2;
     private boolean mWorkspaceFadeInAdjacentScreens;
@@ -271,6 +277,9 @@ public class Workspace extends SmoothPagedView
     private float mMaxDistanceForFolderCreation;
 
     private final Canvas mCanvas = new Canvas();
+    private final Rect mTempSrcRect = new Rect();
+    private final Rect mTempDstRect = new Rect();
+    private final Paint mScaleBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
     // Variables relating to touch disambiguation (scrolling workspace vs. scrolling a widget)
     private float mXDown;
@@ -309,6 +318,7 @@ public class Workspace extends SmoothPagedView
     private float[] mOldAlphas;
     private float[] mNewBackgroundAlphas;
     private float[] mNewAlphas;
+    private boolean[] mAnimateBackgroundAlphas;
     private int mLastChildCount = -1;
     private float mTransitionProgress;
     private Animator mStateAnimator = null;
@@ -358,6 +368,31 @@ public class Workspace extends SmoothPagedView
         mContentIsRefreshable = false;
 
         mOutlineHelper = HolographicOutlineHelper.obtain(context);
+        mOutlineCache = DragOutlineCache.obtain(context);
+        mLayerManager = new PageLayerManager(TAG, this, new PageLayerManager.LayerHost() {
+            @Override
+            public View getLayerView(int page) {
+                return ((CellLayout) getPageAt(page)).getShortcutsAndWidgets();
+            }
+
+            @Override
+            public boolean canHaveLayer(int page) {
+                // The custom content screen may animate its content during transitions
+                final CellLayout layout = (CellLayout) getPageAt(page);
+                return layout != mWorkspaceScreens.get(CUSTOM_CONTENT_SCREEN_ID)
+                        && shouldDrawChild(layout);
+            }
+
+            @Override
+            public void setLayerEnabled(int page, boolean enabled) {
+                ((CellLayout) getPageAt(page)).enableHardwareLayer(enabled);
+            }
+
+            @Override
+            public void buildLayer(int page) {
+                ((CellLayout) getPageAt(page)).buildHardwareLayer();
+            }
+        });
 
         mDragEnforcer = new DropTarget.DragEnforcer(context);
         // With workspace, data is available straight from the get-go
@@ -1672,8 +1707,14 @@ public class Workspace extends SmoothPagedView
         if (!workspaceInModalState() && !mIsSwitchingState) {
             if (mChildrenOutlineFadeOutAnimation != null) mChildrenOutlineFadeOutAnimation.cancel();
             if (mChildrenOutlineFadeInAnimation != null) mChildrenOutlineFadeInAnimation.cancel();
-            mChildrenOutlineFadeInAnimation = LauncherAnimUtils.ofFloat(this, "childrenOutlineAlpha", 1.0f);
-            mChildrenOutlineFadeInAnimation.setDuration(CHILDREN_OUTLINE_FADE_IN_DURATION);
+            if (mChildrenOutlineFadeInAnimation == null) {
+                mChildrenOutlineFadeInAnimation =
+                        LauncherAnimUtils.ofFloat(this, "childrenOutlineAlpha", 1.0f);
+                mChildrenOutlineFadeInAnimation.setDuration(CHILDREN_OUTLINE_FADE_IN_DURATION);
+            } else {
+                // Setting the values again makes the animator read the current alpha on start
+                mChildrenOutlineFadeInAnimation.setFloatValues(1.0f);
+            }
             mChildrenOutlineFadeInAnimation.start();
         }
     }
@@ -1682,9 +1723,14 @@ public class Workspace extends SmoothPagedView
         if (!workspaceInModalState() && !mIsSwitchingState) {
             if (mChildrenOutlineFadeInAnimation != null) mChildrenOutlineFadeInAnimation.cancel();
             if (mChildrenOutlineFadeOutAnimation != null) mChildrenOutlineFadeOutAnimation.cancel();
-            mChildrenOutlineFadeOutAnimation = LauncherAnimUtils.ofFloat(this, "childrenOutlineAlpha", 0.0f);
-            mChildrenOutlineFadeOutAnimation.setDuration(CHILDREN_OUTLINE_FADE_OUT_DURATION);
-            mChildrenOutlineFadeOutAnimation.setStartDelay(CHILDREN_OUTLINE_FADE_OUT_DELAY);
+            if (mChildrenOutlineFadeOutAnimation == null) {
+                mChildrenOutlineFadeOutAnimation =
+                        LauncherAnimUtils.ofFloat(this, "childrenOutlineAlpha", 0.0f);
+                mChildrenOutlineFadeOutAnimation.setDuration(CHILDREN_OUTLINE_FADE_OUT_DURATION);
+                mChildrenOutlineFadeOutAnimation.setStartDelay(CHILDREN_OUTLINE_FADE_OUT_DELAY);
+            } else {
+                mChildrenOutlineFadeOutAnimation.setFloatValues(0.0f);
+            }
             mChildrenOutlineFadeOutAnimation.start();
         }
     }
@@ -1791,7 +1837,9 @@ public class Workspace extends SmoothPagedView
         float translationX = 0;
         float progress = 0;
         if (hasCustomContent()) {
-            int index = mScreenOrder.indexOf(CUSTOM_CONTENT_SCREEN_ID);
+            // The custom content screen is always the first page; looking it up by id would box
+            // the id on every scroll frame
+            int index = 0;
 
             int scrollDelta = getScrollX() - getScrollForPage(index) -
                     getLayoutTransitionOffsetForPage(index);
@@ -1809,9 +1857,10 @@ public class Workspace extends SmoothPagedView
 
         if (Float.compare(progress, mLastCustomContentScrollProgress) == 0) return;
 
-        CellLayout cc = mWorkspaceScreens.get(CUSTOM_CONTENT_SCREEN_ID);
-        if (progress > 0 && cc.getVisibility() != VISIBLE && !workspaceInModalState()) {
-            cc.setVisibility(VISIBLE);
+        // progress is only ever positive when there is custom content
+        if (progress > 0 && getChildAt(0).getVisibility() != VISIBLE
+                && !workspaceInModalState()) {
+            getChildAt(0).setVisibility(VISIBLE);
         }
 
         mLastCustomContentScrollProgress = progress;
@@ -2010,39 +2059,14 @@ public class Workspace extends SmoothPagedView
             if (mChildrenLayersEnabled) {
                 enableHwLayersOnVisiblePages();
             } else {
-                for (int i = 0; i < getPageCount(); i++) {
-                    final CellLayout cl = (CellLayout) getChildAt(i);
-                    cl.enableHardwareLayer(false);
-                }
+                mLayerManager.disableAll();
             }
         }
     }
 
     private void enableHwLayersOnVisiblePages() {
         if (mChildrenLayersEnabled) {
-            final int screenCount = getChildCount();
-            getVisiblePages(mTempVisiblePagesRange);
-            int leftScreen = mTempVisiblePagesRange[0];
-            int rightScreen = mTempVisiblePagesRange[1];
-            if (leftScreen == rightScreen) {
-                // make sure we're caching at least two pages always
-                if (rightScreen < screenCount - 1) {
-                    rightScreen++;
-                } else if (leftScreen > 0) {
-                    leftScreen--;
-                }
-            }
-
-            final CellLayout customScreen = mWorkspaceScreens.get(CUSTOM_CONTENT_SCREEN_ID);
-            for (int i = 0; i < screenCount; i++) {
-                final CellLayout layout = (CellLayout) getPageAt(i);
-
-                // enable layers between left and right screen inclusive, except for the
-                // customScreen, which may animate its content during transitions.
-                boolean enableLayer = layout != customScreen &&
-                        leftScreen <= i && i <= rightScreen && shouldDrawChild(layout);
-                layout.enableHardwareLayer(enableLayer);
-            }
+            mLayerManager.update();
         }
     }
 
@@ -2050,15 +2074,16 @@ public class Workspace extends SmoothPagedView
         // force layers to be enabled just for the call to buildLayer
         updateChildrenLayersEnabled(true);
         if (getWindowToken() != null) {
-            final int childCount = getChildCount();
-            for (int i = 0; i < childCount; i++) {
-                CellLayout cl = (CellLayout) getChildAt(i);
-                cl.buildHardwareLayer();
-            }
+            // Only the pages that the layer manager kept within its budget have a layer to build
+            mLayerManager.buildLayers();
         }
         updateChildrenLayersEnabled(false);
     }
 
+    void dumpState() {
+        mLayerManager.dumpState();
+    }
+
     protected void onWallpaperTap(MotionEvent ev) {
         final int[] position = mTempCell;
         getLocationOnScreen(position);
@@ -2130,6 +2155,10 @@ public class Workspace extends SmoothPagedView
     }
 
     private final ZoomInInterpolator mZoomInInterpolator = new ZoomInInterpolator();
+    private final DecelerateInterpolator mOverviewAlphaInterpolator =
+            new DecelerateInterpolator(2);
+    private final HashMap<View, AlphaUpdateListener> mAlphaUpdateListeners =
+            new HashMap<View, AlphaUpdateListener>();
 
     /*
     *
@@ -2203,6 +2232,8 @@ public class Workspace extends SmoothPagedView
         mOldAlphas = new float[childCount];
         mNewBackgroundAlphas = new float[childCount];
         mNewAlphas = new float[childCount];
+        mAnimateBackgroundAlphas = new boolean[childCount];
+        mLastChildCount = childCount;
     }
 
     Animator getChangeStateAnimation(final State state, boolean animated,
@@ -2327,9 +2358,11 @@ public class Workspace extends SmoothPagedView
             workspaceAnim.addListener(new AnimatorListenerAdapter() {
                 @Override
                 public void onAnimationEnd(Animator arg0) {
+                    FrameStats.end(FrameStats.INTERACTION_OVERVIEW_TRANSITION);
                     onTransitionEnd();
                 }
             });
+            FrameStats.begin(FrameStats.INTERACTION_OVERVIEW_TRANSITION);
             workspaceAnim.start();
         }
     }
@@ -2509,9 +2542,10 @@ public class Workspace extends SmoothPagedView
                 .setDuration(duration)
                 .setInterpolator(mZoomInInterpolator);
             anim.play(scale);
-            for (int index = 0; index < getChildCount(); index++) {
-                final int i = index;
+            boolean animateBackgroundAlphas = false;
+            for (int i = 0; i < getChildCount(); i++) {
                 final CellLayout cl = (CellLayout) getChildAt(i);
+                mAnimateBackgroundAlphas[i] = false;
                 float currentAlpha = cl.getShortcutsAndWidgets().getAlpha();
                 if (mOldAlphas[i] == 0 && mNewAlphas[i] == 0) {
                     cl.setBackgroundAlpha(mNewBackgroundAlphas[i]);
@@ -2530,26 +2564,24 @@ public class Workspace extends SmoothPagedView
                     }
                     if (mOldBackgroundAlphas[i] != 0 ||
                         mNewBackgroundAlphas[i] != 0) {
-                        ValueAnimator bgAnim =
-                                LauncherAnimUtils.ofFloat(cl, 0f, 1f);
-                        bgAnim.setInterpolator(mZoomInInterpolator);
-                        bgAnim.setDuration(duration);
-                        bgAnim.addUpdateListener(new LauncherAnimatorUpdateListener() {
-                                public void onAnimationUpdate(float a, float b) {
-                                    cl.setBackgroundAlpha(
-                                            a * mOldBackgroundAlphas[i] +
-                                            b * mNewBackgroundAlphas[i]);
-                                }
-                            });
-                        anim.play(bgAnim);
+                        mAnimateBackgroundAlphas[i] = true;
+                        animateBackgroundAlphas = true;
                     }
                 }
             }
+            if (animateBackgroundAlphas) {
+                // A single animator fades the backgrounds of all pages
+                ValueAnimator bgAnim = LauncherAnimUtils.ofFloat(this, 0f, 1f);
+                bgAnim.setInterpolator(mZoomInInterpolator);
+                bgAnim.setDuration(duration);
+                bgAnim.addUpdateListener(mBackgroundAlphaUpdateListener);
+                anim.play(bgAnim);
+            }
             Animator pageIndicatorAlpha = null;
             if (pageIndicator != null) {
                 pageIndicatorAlpha = new LauncherViewPropertyAnimator(pageIndicator)
                     .alpha(finalHotseatAndPageIndicatorAlpha).withLayer();
-                pageIndicatorAlpha.addListener(new AlphaUpdateListener(pageIndicator));
+                pageIndicatorAlpha.addListener(getAlphaUpdateListener(pageIndicator));
             } else {
                 // create a dummy animation so we don't need to do null checks later
                 pageIndicatorAlpha = ValueAnimator.ofFloat(0, 0);
@@ -2557,11 +2589,11 @@ public class Workspace extends SmoothPagedView
 
             Animator hotseatAlpha = new LauncherViewPropertyAnimator(hotseat)
                 .alpha(finalHotseatAndPageIndicatorAlpha).withLayer();
-            hotseatAlpha.addListener(new AlphaUpdateListener(hotseat));
+            hotseatAlpha.addListener(getAlphaUpdateListener(hotseat));
 
             Animator overviewPanelAlpha = new LauncherViewPropertyAnimator(overviewPanel)
                 .alpha(finalOverviewPanelAlpha).withLayer();
-            overviewPanelAlpha.addListener(new AlphaUpdateListener(overviewPanel));
+            overviewPanelAlpha.addListener(getAlphaUpdateListener(overviewPanel));
 
             // For animation optimations, we may need to provide the Launcher transition
             // with a set of views on which to force build layers in certain scenarios.
@@ -2573,13 +2605,13 @@ public class Workspace extends SmoothPagedView
             }
 
             if (workspaceToOverview) {
-                pageIndicatorAlpha.setInterpolator(new DecelerateInterpolator(2));
-                hotseatAlpha.setInterpolator(new DecelerateInterpolator(2));
+                pageIndicatorAlpha.setInterpolator(mOverviewAlphaInterpolator);
+                hotseatAlpha.setInterpolator(mOverviewAlphaInterpolator);
                 overviewPanelAlpha.setInterpolator(null);
             } else if (overviewToWorkspace) {
                 pageIndicatorAlpha.setInterpolator(null);
                 hotseatAlpha.setInterpolator(null);
-                overviewPanelAlpha.setInterpolator(new DecelerateInterpolator(2));
+                overviewPanelAlpha.setInterpolator(mOverviewAlphaInterpolator);
             }
 
             overviewPanelAlpha.setDuration(duration);
@@ -2589,7 +2621,7 @@ public class Workspace extends SmoothPagedView
             if (searchBar != null && mShowSearchBar) {
                 Animator searchBarAlpha = new LauncherViewPropertyAnimator(searchBar)
                     .alpha(finalSearchBarAlpha).withLayer();
-                searchBarAlpha.addListener(new AlphaUpdateListener(searchBar));
+                searchBarAlpha.addListener(getAlphaUpdateListener(searchBar));
                 searchBar.setLayerType(View.LAYER_TYPE_HARDWARE, null);
                 if (layerViews != null) {
                     layerViews.add(searchBar);
@@ -2602,12 +2634,7 @@ public class Workspace extends SmoothPagedView
             anim.play(hotseatAlpha);
             anim.play(pageIndicatorAlpha);
             anim.setStartDelay(delay);
-            anim.addListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    mStateAnimator = null;
-                }
-            });
+            anim.addListener(mStateAnimatorEndListener);
         } else {
             overviewPanel.setAlpha(finalOverviewPanelAlpha);
             AlphaUpdateListener.updateVisibility(overviewPanel);
@@ -2637,6 +2664,40 @@ public class Workspace extends SmoothPagedView
         return anim;
     }
 
+    private final LauncherAnimatorUpdateListener mBackgroundAlphaUpdateListener =
+            new LauncherAnimatorUpdateListener() {
+        public void onAnimationUpdate(float a, float b) {
+            final int count = Math.min(getChildCount(), mAnimateBackgroundAlphas.length);
+            for (int i = 0; i < count; i++) {
+                if (mAnimateBackgroundAlphas[i]) {
+                    ((CellLayout) getChildAt(i)).setBackgroundAlpha(
+                            a * mOldBackgroundAlphas[i] + b * mNewBackgroundAlphas[i]);
+                }
+            }
+        }
+    };
+
+    private final AnimatorListenerAdapter mStateAnimatorEndListener =
+            new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            mStateAnimator = null;
+        }
+    };
+
+    /**
+     * Returns the listener that updates the visibility of v as its alpha is animated. The
+     * listeners are kept, as the same few views are animated on every state change.
+     */
+    private AlphaUpdateListener getAlphaUpdateListener(View v) {
+        AlphaUpdateListener listener = mAlphaUpdateListeners.get(v);
+        if (listener == null) {
+            listener = new AlphaUpdateListener(v);
+            mAlphaUpdateListeners.put(v, listener);
+        }
+        return listener;
+    }
+
     static class AlphaUpdateListener implements AnimatorUpdateListener, AnimatorListener {
         View view;
         public AlphaUpdateListener(View v) {
@@ -2785,25 +2846,28 @@ public class Workspace extends SmoothPagedView
     }
 
     /**
-     * Returns a new bitmap to show when the given View is being dragged around.
-     * Responsibility for the bitmap is transferred to the caller.
+     * Returns a bitmap to show when the given View is being dragged around. The bitmap is
+     * taken from the drag controller's pool; responsibility for it is transferred to the
+     * caller, who should give it back to that pool once it is no longer used.
      * @param expectedPadding padding to add to the drag view. If a different padding was used
      * its value will be changed
      */
     public Bitmap createDragBitmap(View v, AtomicInteger expectedPadding) {
+        final BitmapPool pool = mDragController.getBitmapPool();
         Bitmap b;
 
         int padding = expectedPadding.get();
         if (v instanceof TextView) {
             Drawable d = ((TextView) v).getCompoundDrawables()[1];
             Rect bounds = getDrawableBounds(d);
-            b = Bitmap.createBitmap(bounds.width() + padding,
+            b = pool.acquireOrCreate(bounds.width() + padding,
                     bounds.height() + padding, Bitmap.Config.ARGB_8888);
             expectedPadding.set(padding - bounds.left - bounds.top);
         } else {
-            b = Bitmap.createBitmap(
+            b = pool.acquireOrCreate(
                     v.getWidth() + padding, v.getHeight() + padding, Bitmap.Config.ARGB_8888);
         }
+        b.eraseColor(Color.TRANSPARENT);
 
         mCanvas.setBitmap(b);
         drawDragView(v, mCanvas, padding);
@@ -2813,18 +2877,25 @@ public class Workspace extends SmoothPagedView
     }
 
     /**
-     * Returns a new bitmap to be used as the object outline, e.g. to visualize the drop location.
-     * Responsibility for the bitmap is transferred to the caller.
+     * Returns a bitmap to be used as the object outline, e.g. to visualize the drop location.
+     * Outlines of icons come from the {@link DragOutlineCache} and must not be modified.
      */
     private Bitmap createDragOutline(View v, int padding) {
+        if (v instanceof BubbleTextView) {
+            Bitmap outline = mOutlineCache.get((BubbleTextView) v, padding);
+            if (outline != null) {
+                return outline;
+            }
+        }
+
         final int outlineColor = getResources().getColor(R.color.outline_color);
         final Bitmap b = Bitmap.createBitmap(
                 v.getWidth() + padding, v.getHeight() + padding, Bitmap.Config.ARGB_8888);
 
         mCanvas.setBitmap(b);
         drawDragView(v, mCanvas, padding);
-        mOutlineHelper.applyExpensiveOutlineWithBlur(b, mCanvas, outlineColor, outlineColor);
         mCanvas.setBitmap(null);
+        mOutlineHelper.applyExpensiveOutlineWithBlur(b, outlineColor, outlineColor);
         return b;
     }
 
@@ -2849,9 +2920,8 @@ public class Workspace extends SmoothPagedView
         dst.offset((w - scaledWidth) / 2, (h - scaledHeight) / 2);
 
         mCanvas.drawBitmap(orig, src, dst, null);
-        mOutlineHelper.applyExpensiveOutlineWithBlur(b, mCanvas, outlineColor, outlineColor,
-                clipAlpha);
         mCanvas.setBitmap(null);
+        mOutlineHelper.applyExpensiveOutlineWithBlur(b, outlineColor, outlineColor, clipAlpha);
 
         return b;
     }
@@ -2877,7 +2947,12 @@ public class Workspace extends SmoothPagedView
         child.setPressed(false);
 
         // The outline is used to visualize where the item will land if dropped
+        final long outlineStart = DEBUG_DRAG_OUTLINE ? SystemClock.uptimeMillis() : 0;
         mDragOutline = createDragOutline(child, DRAG_BITMAP_PADDING);
+        if (DEBUG_DRAG_OUTLINE) {
+            Log.d(TAG, "Drag outline for " + child.getTag() + " took "
+                    + (SystemClock.uptimeMillis() - outlineStart) + "ms");
+        }
 
         mLauncher.onDragStarted(child);
         // The drag bitmap follows the touch point around on the screen
@@ -2933,7 +3008,8 @@ public class Workspace extends SmoothPagedView
             mDragSourceInternal = (ShortcutAndWidgetContainer) child.getParent();
         }
 
-        b.recycle();
+        // The drag view has its own copy of the bitmap
+        mDragController.getBitmapPool().release(b);
     }
 
     public void beginExternalDragShared(View child, DragSource source) {
@@ -2946,13 +3022,14 @@ public class Workspace extends SmoothPagedView
 
         // Compose a new drag bitmap that is of the icon size
         AtomicInteger padding = new AtomicInteger(DRAG_BITMAP_PADDING);
+        final BitmapPool pool = mDragController.getBitmapPool();
         final Bitmap tmpB = createDragBitmap(child, padding);
-        Bitmap b = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
-        Paint p = new Paint();
-        p.setFilterBitmap(true);
+        Bitmap b = pool.acquireOrCreate(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        b.eraseColor(Color.TRANSPARENT);
         mCanvas.setBitmap(b);
-        mCanvas.drawBitmap(tmpB, new Rect(0, 0, tmpB.getWidth(), tmpB.getHeight()),
-                new Rect(0, 0, iconSize, iconSize), p);
+        mTempSrcRect.set(0, 0, tmpB.getWidth(), tmpB.getHeight());
+        mTempDstRect.set(0, 0, iconSize, iconSize);
+        mCanvas.drawBitmap(tmpB, mTempSrcRect, mTempDstRect, mScaleBitmapPaint);
         mCanvas.setBitmap(null);
 
         // Find the child's location on the screen
@@ -2979,8 +3056,9 @@ public class Workspace extends SmoothPagedView
                 DragController.DRAG_ACTION_MOVE, dragVisualizeOffset, dragRect, scale);
         dv.setIntrinsicIconScaleFactor(source.getIntrinsicIconScaleFactor());
 
-        // Recycle temporary bitmaps
-        tmpB.recycle();
+        // The drag view has its own copy of the bitmap
+        pool.release(tmpB);
+        pool.release(b);
     }
 
     void addApplicationShortcut(ShortcutInfo info, CellLayout target, long container, long screenId,
@@ -4864,8 +4942,8 @@ public class Workspace extends SmoothPagedView
                         BubbleTextView shortcut = (BubbleTextView) v;
                         shortcut.applyFromShortcutInfo(shortcutInfo, mIconCache, true, false);
 
-                        if (parent != null) {
-                            parent.invalidate();
+                        if (parent instanceof FolderIcon) {
+                            ((FolderIcon) parent).invalidatePreview();
                         }
                     }
                 }
@@ -5051,8 +5129,28 @@ public class Workspace extends SmoothPagedView
                     shortcut.applyFromShortcutInfo(si, mIconCache, true,
                             si.isPromise() != oldPromiseState);
 
-                    if (parent != null) {
-                        parent.invalidate();
+                    if (parent instanceof FolderIcon) {
+                        ((FolderIcon) parent).invalidatePreview();
+                    }
+                }
+                // process all the shortcuts
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Refreshes the unread badges of the shortcuts and folders. Icons are not re-applied.
+     */
+    void updateUnreadCounts() {
+        final UnreadBadgeCache badges = LauncherAppState.getInstance().getUnreadBadgeCache();
+        mapOverItems(MAP_RECURSE, new ItemOperator() {
+            @Override
+            public boolean evaluate(ItemInfo info, View v, View parent) {
+                if (info instanceof ShortcutInfo && v instanceof BubbleTextView) {
+                    ((BubbleTextView) v).setUnreadCount(badges.getUnreadCount(info));
+                    if (parent instanceof FolderIcon) {
+                        ((FolderIcon) parent).updateUnreadCount();
                     }
                 }
                 // process all the shortcuts
@@ -5089,8 +5187,8 @@ public class Workspace extends SmoothPagedView
                         BubbleTextView shortcut = (BubbleTextView) v;
                         shortcut.applyFromShortcutInfo(shortcutInfo, mIconCache, true, false);
 
-                        if (parent != null) {
-                            parent.invalidate();
+                        if (parent instanceof FolderIcon) {
+                            ((FolderIcon) parent).invalidatePreview();
                         }
                     }
                 }
@@ -5120,6 +5218,10 @@ public class Workspace extends SmoothPagedView
                                 si.status &= ~ShortcutInfo.FLAG_INSTALL_SESSION_ACTIVE;
                             }
                             ((BubbleTextView)v).applyState(false);
+
+                            if (parent instanceof FolderIcon) {
+                                ((FolderIcon) parent).invalidatePreview();
+                            }
                         }
                     } else if (v instanceof PendingAppWidgetHostView
                             && info instanceof LauncherAppWidgetInfo
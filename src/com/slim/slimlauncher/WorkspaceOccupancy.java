@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import java.util.HashMap;
+
+/**
+ * The cells of the workspace screens and the hotseat taken by the items the loader has read so
+ * far, used to discard items that are out of bounds or overlap an earlier item. Kept free of
+ * framework classes so the loader's placement can be run on the host.
+ */
+final class WorkspaceOccupancy<T> {
+    static final int PLACED = 0;
+    static final int OUT_OF_BOUNDS = 1;
+    static final int OCCUPIED = 2;
+
+    private final int mCountX;
+    private final int mCountY;
+    private final int mHotseatCount;
+
+    private final HashMap<Long, Object[][]> mScreens = new HashMap<Long, Object[][]>();
+    private Object[] mHotseat;
+
+    // The item in the way of the last item that could not be placed, and the cell it is in
+    private Object mOccupant;
+    private int mOccupiedX;
+    private int mOccupiedY;
+
+    WorkspaceOccupancy(int countX, int countY, int hotseatCount) {
+        mCountX = countX;
+        mCountY = countY;
+        mHotseatCount = hotseatCount;
+    }
+
+    /**
+     * Takes the hotseat position of item if it is free.
+     *
+     * @return {@link #PLACED}, {@link #OUT_OF_BOUNDS} or {@link #OCCUPIED}.
+     */
+    int placeInHotseat(T item, long rank) {
+        if (rank < 0 || rank >= mHotseatCount) {
+            return OUT_OF_BOUNDS;
+        }
+        if (mHotseat == null) {
+            mHotseat = new Object[mHotseatCount];
+        }
+        if (mHotseat[(int) rank] != null) {
+            mOccupant = mHotseat[(int) rank];
+            mOccupiedX = (int) rank;
+            mOccupiedY = 0;
+            return OCCUPIED;
+        }
+        mHotseat[(int) rank] = item;
+        return PLACED;
+    }
+
+    /**
+     * Takes the cells of item on the given screen if they are all free.
+     *
+     * @return {@link #PLACED}, {@link #OUT_OF_BOUNDS} or {@link #OCCUPIED}.
+     */
+    int placeOnScreen(T item, long screenId, int cellX, int cellY, int spanX, int spanY) {
+        if (cellX < 0 || cellY < 0 || cellX + spanX > mCountX || cellY + spanY > mCountY) {
+            return OUT_OF_BOUNDS;
+        }
+
+        Object[][] screen = mScreens.get(screenId);
+        if (screen == null) {
+            screen = new Object[mCountX][mCountY];
+            mScreens.put(screenId, screen);
+        }
+
+        for (int x = cellX; x < cellX + spanX; x++) {
+            for (int y = cellY; y < cellY + spanY; y++) {
+                if (screen[x][y] != null) {
+                    mOccupant = screen[x][y];
+                    mOccupiedX = x;
+                    mOccupiedY = y;
+                    return OCCUPIED;
+                }
+            }
+        }
+        for (int x = cellX; x < cellX + spanX; x++) {
+            for (int y = cellY; y < cellY + spanY; y++) {
+                screen[x][y] = item;
+            }
+        }
+        return PLACED;
+    }
+
+    /**
+     * Returns the item that kept the last item from being placed, after {@link #OCCUPIED}.
+     */
+    @SuppressWarnings("unchecked")
+    T getOccupant() {
+        return (T) mOccupant;
+    }
+
+    int getOccupiedX() {
+        return mOccupiedX;
+    }
+
+    int getOccupiedY() {
+        return mOccupiedY;
+    }
+}
@@ -19,10 +19,16 @@ package com.slim.slimlauncher.compat;
 import android.content.ComponentName;
 import android.content.pm.ApplicationInfo;
 import android.graphics.drawable.Drawable;
+import android.support.annotation.VisibleForTesting;
 
 public abstract class LauncherActivityInfoCompat {
 
-    LauncherActivityInfoCompat() {
+    /**
+     * Protected so that the stress tests can make synthetic activities, otherwise only
+     * subclassed in this package. Kept by proguard.flags.
+     */
+    @VisibleForTesting
+    protected LauncherActivityInfoCompat() {
     }
 
     public abstract ComponentName getComponentName();
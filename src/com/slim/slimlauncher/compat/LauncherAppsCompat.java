@@ -24,6 +24,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.graphics.Rect;
 import android.os.Bundle;
+import android.support.annotation.VisibleForTesting;
 
 import com.slim.slimlauncher.Utilities;
 
@@ -63,6 +64,18 @@ public abstract class LauncherAppsCompat {
         }
     }
 
+    /**
+     * Replaces the instance returned by {@link #getInstance}, eg. by one that adds synthetic
+     * apps in the stress tests. Has to be called before the launcher model is created.
+     * For tests only, kept by proguard.flags.
+     */
+    @VisibleForTesting
+    public static void setInstance(LauncherAppsCompat instance) {
+        synchronized (sInstanceLock) {
+            sInstance = instance;
+        }
+    }
+
     public abstract List<LauncherActivityInfoCompat> getActivityList(String packageName,
             UserHandleCompat user);
     public abstract LauncherActivityInfoCompat resolveActivity(Intent intent,
@@ -75,6 +75,16 @@ final class ColorCutQuantizer {
         final int[] pixels = new int[width * height];
         bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
 
+        return fromPixels(pixels, maxColors);
+    }
+
+    /**
+     * Factory-method to generate a {@link ColorCutQuantizer} from the pixels of an image.
+     *
+     * @param pixels The ARGB pixels of the image, which are sorted in place
+     * @param maxColors The maximum number of colors that should be in the result palette.
+     */
+    static ColorCutQuantizer fromPixels(int[] pixels, int maxColors) {
         return new ColorCutQuantizer(new ColorHistogram(pixels), maxColors);
     }
 
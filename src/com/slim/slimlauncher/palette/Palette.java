@@ -144,6 +144,15 @@ public final class Palette {
         return new Palette(quantizer.getQuantizedColors());
     }
 
+    /**
+     * Generate a {@link Palette} from the ARGB pixels of an image that is already scaled down,
+     * see {@link #generate(Bitmap, int)}. The pixels are sorted in place.
+     */
+    static Palette generate(int[] pixels, int numColors) {
+        checkNumberColorsParam(numColors);
+        return new Palette(ColorCutQuantizer.fromPixels(pixels, numColors).getQuantizedColors());
+    }
+
     /**
      * Generate a {@link Palette} asynchronously. {@link PaletteAsyncListener#onGenerated(Palette)}
      * will be called with the created instance. The resulting {@link Palette} is the same as
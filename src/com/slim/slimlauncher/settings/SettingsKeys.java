@@ -30,6 +30,7 @@ public interface SettingsKeys {
     public static final String KEY_NOTIFICATION_BADGES = "notification_badges";
     public static final String KEY_LOCK_WORKSPACE = "lock_workspace";
     public static final String KEY_ICON_PACK = "icon_pack";
+    public static final String KEY_FRAME_STATS = "frame_stats";
 
     // Drawer
     public static final String KEY_DRAWER_STYLE = "drawer_style";
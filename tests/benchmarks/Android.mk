@@ -0,0 +1,41 @@
+# Copyright (C) 2015 The SlimRoms Project
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+LOCAL_PATH := $(call my-dir)
+include $(CLEAR_VARS)
+
+# Benchmarks of the launcher's hot paths on synthetic datasets, run on the host JVM.
+# The classes that use leaf framework classes (ComponentName, Color, SparseIntArray, Log)
+# run against layoutlib. LauncherDbHarness also runs the provider's upgrade and the loader's
+# pass over a launcher.db made by gen_launcher_db.py, given a SQLite JDBC driver at runtime.
+LOCAL_MODULE_TAGS := tests
+
+LOCAL_SRC_FILES := $(call all-java-files-under, src) \
+    ../host/src/com/slim/slimlauncher/ReferenceAppDrawerSections.java \
+    ../../src/com/slim/slimlauncher/AppDrawerSections.java \
+    ../../src/com/slim/slimlauncher/AppTitleOrder.java \
+    ../../src/com/slim/slimlauncher/CellGrid.java \
+    ../../src/com/slim/slimlauncher/IconPackAppFilter.java \
+    ../../src/com/slim/slimlauncher/InstallQueueLog.java \
+    ../../src/com/slim/slimlauncher/LaunchCounts.java \
+    ../../src/com/slim/slimlauncher/LauncherDbSchema.java \
+    ../../src/com/slim/slimlauncher/WorkspaceOccupancy.java \
+    $(call all-java-files-under, ../../src/com/slim/slimlauncher/palette) \
+    $(call all-java-files-under, ../../WallpaperPicker/src/com/android/gallery3d/exif)
+
+LOCAL_JAVA_LIBRARIES := layoutlib kxml2-2.3.0
+
+LOCAL_MODULE := SlimLauncherHostBenchmarks
+
+include $(BUILD_HOST_JAVA_LIBRARY)
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Times grouping the sorted drawer titles into sections with {@link AppDrawerSections}, and
+ * with the recursive grouping it replaced.
+ */
+class AppDrawerSectionsBenchmark extends HostBenchmark {
+    private final int mAppCount;
+    private final boolean mReference;
+
+    private final AppDrawerSections mSections = new AppDrawerSections();
+    private ArrayList<CharSequence> mTitles;
+
+    AppDrawerSectionsBenchmark(int appCount, boolean reference) {
+        super(reference ? "drawerSections.reference" : "drawerSections.build",
+                appCount + " apps, sorted by title");
+        mAppCount = appCount;
+        mReference = reference;
+    }
+
+    @Override
+    protected void setUp() {
+        mTitles = new SyntheticApps(mAppCount, mAppCount).getTitles();
+        Collections.sort(mTitles, Collator.getInstance());
+    }
+
+    @Override
+    protected long run(int reps) {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            if (mReference) {
+                sum += ReferenceAppDrawerSections.build(mTitles, false).size();
+            } else {
+                mSections.build(mTitles, false);
+                sum += mSections.getSectionCount();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import android.content.ComponentName;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times sorting the apps of the drawer in the three orders LauncherModel offers. AppInfo and
+ * Stats need a device, so the apps are plain records and the comparators below do what
+ * LauncherModel's do, with {@link LaunchCounts} in place of Stats.
+ */
+class AppTitleOrderBenchmark extends HostBenchmark {
+    static final int BY_NAME = 0;
+    static final int BY_LAUNCH_COUNT = 1;
+    static final int BY_INSTALL_TIME = 2;
+
+    private static final String[] NAMES = {
+        "appOrder.byName",
+        "appOrder.byLaunchCount",
+        "appOrder.byInstallTime",
+    };
+
+    private static final class App {
+        final CharSequence title;
+        final ComponentName componentName;
+        final String intent;
+        final long firstInstallTime;
+
+        App(CharSequence title, ComponentName componentName, String intent,
+                long firstInstallTime) {
+            this.title = title;
+            this.componentName = componentName;
+            this.intent = intent;
+            this.firstInstallTime = firstInstallTime;
+        }
+    }
+
+    private final int mAppCount;
+    private final int mOrder;
+
+    private App[] mApps;
+    private App[] mSorted;
+    private Comparator<App> mComparator;
+
+    AppTitleOrderBenchmark(int appCount, int order) {
+        super(NAMES[order], appCount + " apps, shuffled");
+        mAppCount = appCount;
+        mOrder = order;
+    }
+
+    @Override
+    protected void setUp() {
+        final SyntheticApps apps = new SyntheticApps(mAppCount, mAppCount);
+        final LaunchCounts launchCounts = new LaunchCounts(apps.size());
+        mApps = new App[apps.size()];
+        for (int i = 0; i < apps.size(); i++) {
+            final String intent = apps.getIntent(i);
+            mApps[i] = new App(apps.titles[i],
+                    new ComponentName(apps.packageNames[i], apps.classNames[i]), intent,
+                    apps.firstInstallTimes[i]);
+            if (apps.launchCounts[i] > 0) {
+                launchCounts.add(intent, apps.launchCounts[i]);
+            }
+        }
+        List<App> shuffled = Arrays.asList(mApps);
+        Collections.shuffle(shuffled, new Random(mAppCount));
+        mSorted = new App[mApps.length];
+
+        final AppTitleOrder titleOrder = new AppTitleOrder();
+        switch (mOrder) {
+            case BY_NAME:
+                mComparator = new Comparator<App>() {
+                    @Override
+                    public int compare(App a, App b) {
+                        return titleOrder.compare(a.title, a.componentName,
+                                b.title, b.componentName);
+                    }
+                };
+                break;
+            case BY_LAUNCH_COUNT:
+                mComparator = new Comparator<App>() {
+                    @Override
+                    public int compare(App a, App b) {
+                        int result = launchCounts.get(b.intent) - launchCounts.get(a.intent);
+                        if (result == 0) {
+                            result = titleOrder.compare(a.title, a.componentName,
+                                    b.title, b.componentName);
+                        }
+                        return result;
+                    }
+                };
+                break;
+            default:
+                mComparator = new Comparator<App>() {
+                    @Override
+                    public int compare(App a, App b) {
+                        if (a.firstInstallTime < b.firstInstallTime) return 1;
+                        if (a.firstInstallTime > b.firstInstallTime) return -1;
+                        return titleOrder.compare(a.title, a.componentName,
+                                b.title, b.componentName);
+                    }
+                };
+                break;
+        }
+    }
+
+    @Override
+    protected long run(int reps) {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            System.arraycopy(mApps, 0, mSorted, 0, mApps.length);
+            Arrays.sort(mSorted, mComparator);
+            sum += mSorted[0].firstInstallTime;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import java.util.Random;
+
+/**
+ * Times the {@link CellGrid} searches CellLayout runs while items are dropped and reordered,
+ * on 10x12 grids filled with a mix of icons and widgets.
+ */
+class CellGridBenchmark extends HostBenchmark {
+    static final int FIND_CELL_FOR_SPAN = 0;
+    static final int FIND_CELL_INTERSECTING = 1;
+    static final int FIND_VACANT_CELL = 2;
+    static final int FIND_NEAREST_AREA = 3;
+
+    private static final String[] NAMES = {
+        "cellGrid.findCellForSpan",
+        "cellGrid.findCellForSpanIntersecting",
+        "cellGrid.findVacantCell",
+        "cellGrid.findNearestArea",
+    };
+
+    static final float[] FILLS = { 0.3f, 0.9f };
+
+    private static final int COUNT_X = 10;
+    private static final int COUNT_Y = 12;
+    // Must be a power of two
+    private static final int GRIDS = 64;
+    // The span of the dropped item
+    private static final int SPAN_X = 2;
+    private static final int SPAN_Y = 2;
+    // Spans of the items already on the grids, icons being the most common
+    private static final int[][] ITEM_SPANS = {
+        { 1, 1 }, { 1, 1 }, { 1, 1 }, { 1, 1 }, { 1, 1 }, { 1, 1 }, { 1, 1 },
+        { 2, 1 }, { 2, 2 }, { 4, 2 }, { 4, 1 }, { 3, 3 },
+    };
+
+    private final int mOp;
+    private final float mFill;
+
+    private final boolean[][][] mGrids = new boolean[GRIDS][][];
+    private final int[] mCellX = new int[GRIDS];
+    private final int[] mCellY = new int[GRIDS];
+    private final int[][] mDirections = new int[GRIDS][];
+    private final int[] mResult = new int[2];
+    private final int[] mTmpDirection = new int[2];
+
+    CellGridBenchmark(int op, float fill) {
+        super(NAMES[op], COUNT_X + "x" + COUNT_Y + " grid, " + Math.round(fill * 100)
+                + "% occupied, " + SPAN_X + "x" + SPAN_Y + " item");
+        mOp = op;
+        mFill = fill;
+    }
+
+    @Override
+    protected void setUp() {
+        final Random random = new Random(COUNT_X * COUNT_Y + Math.round(mFill * 100));
+        final int target = Math.round(mFill * COUNT_X * COUNT_Y);
+        final int[] cell = new int[2];
+        for (int g = 0; g < GRIDS; g++) {
+            final boolean[][] occupied = new boolean[COUNT_X][COUNT_Y];
+            int filled = 0;
+            int misses = 0;
+            // Drop items at random cells until the grid is full enough, or nothing fits
+            while (filled < target && misses < 100) {
+                final int[] span = filled + 4 > target ? ITEM_SPANS[0]
+                        : ITEM_SPANS[random.nextInt(ITEM_SPANS.length)];
+                if (CellGrid.findCellForSpan(occupied, COUNT_X, COUNT_Y, cell, span[0], span[1],
+                        random.nextInt(COUNT_X), random.nextInt(COUNT_Y))) {
+                    CellGrid.markCells(occupied, COUNT_X, COUNT_Y, cell[0], cell[1], span[0],
+                            span[1], true);
+                    filled += span[0] * span[1];
+                } else {
+                    misses++;
+                }
+            }
+            mGrids[g] = occupied;
+            mCellX[g] = random.nextInt(COUNT_X);
+            mCellY[g] = random.nextInt(COUNT_Y);
+            mDirections[g] = new int[] { random.nextInt(3) - 1, random.nextInt(3) - 1 };
+        }
+    }
+
+    @Override
+    protected long run(int reps) {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            final int g = i & (GRIDS - 1);
+            final boolean[][] occupied = mGrids[g];
+            boolean found;
+            switch (mOp) {
+                case FIND_CELL_FOR_SPAN:
+                    found = CellGrid.findCellForSpan(occupied, COUNT_X, COUNT_Y, mResult,
+                            SPAN_X, SPAN_Y, -1, -1);
+                    break;
+                case FIND_CELL_INTERSECTING:
+                    found = CellGrid.findCellForSpan(occupied, COUNT_X, COUNT_Y, mResult,
+                            SPAN_X, SPAN_Y, mCellX[g], mCellY[g]);
+                    break;
+                case FIND_VACANT_CELL:
+                    found = CellGrid.findVacantCell(mResult, SPAN_X, SPAN_Y, COUNT_X, COUNT_Y,
+                            occupied);
+                    break;
+                default:
+                    CellGrid.findNearestArea(occupied, null, COUNT_X, COUNT_Y, mCellX[g],
+                            mCellY[g], SPAN_X, SPAN_Y, mDirections[g], mResult, mTmpDirection);
+                    found = mResult[0] >= 0;
+                    break;
+            }
+            sum += found ? mResult[0] * COUNT_Y + mResult[1] : -1;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import com.android.gallery3d.exif.ExifInterface;
+import com.android.gallery3d.exif.Rational;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.TimeZone;
+
+/**
+ * Times reading the orientation of a camera photo, as WallpaperCropActivity does before
+ * cropping it, from a generated JPEG with the tags a phone camera writes.
+ */
+class ExifBenchmark extends HostBenchmark {
+    // Size of the entropy coded data after the headers
+    private static final int SCAN_BYTES = 64 * 1024;
+
+    private byte[] mJpeg;
+
+    ExifBenchmark() {
+        super("exif.readOrientation", "camera JPEG, " + SCAN_BYTES / 1024 + "KB of scan data");
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        ExifInterface exif = new ExifInterface();
+        setTag(exif, ExifInterface.TAG_MAKE, "SlimRoms");
+        setTag(exif, ExifInterface.TAG_MODEL, "Benchmark Camera");
+        setTag(exif, ExifInterface.TAG_SOFTWARE, "Camera 2.0");
+        setTag(exif, ExifInterface.TAG_ORIENTATION, ExifInterface.Orientation.RIGHT_TOP);
+        setTag(exif, ExifInterface.TAG_X_RESOLUTION, new Rational(72, 1));
+        setTag(exif, ExifInterface.TAG_Y_RESOLUTION, new Rational(72, 1));
+        setTag(exif, ExifInterface.TAG_RESOLUTION_UNIT, (short) 2);
+        setTag(exif, ExifInterface.TAG_Y_CB_CR_POSITIONING,
+                ExifInterface.YCbCrPositioning.CENTERED);
+        setTag(exif, ExifInterface.TAG_EXPOSURE_TIME, new Rational(1, 120));
+        setTag(exif, ExifInterface.TAG_F_NUMBER, new Rational(20, 10));
+        setTag(exif, ExifInterface.TAG_ISO_SPEED_RATINGS, (short) 100);
+        setTag(exif, ExifInterface.TAG_FOCAL_LENGTH, new Rational(397, 100));
+        setTag(exif, ExifInterface.TAG_FLASH, (short) 0);
+        setTag(exif, ExifInterface.TAG_WHITE_BALANCE, (short) 0);
+        setTag(exif, ExifInterface.TAG_PIXEL_X_DIMENSION, 4160);
+        setTag(exif, ExifInterface.TAG_PIXEL_Y_DIMENSION, 3120);
+        final long time = 1420070400000L;
+        final TimeZone timeZone = TimeZone.getTimeZone("UTC");
+        exif.addDateTimeStampTag(ExifInterface.TAG_DATE_TIME, time, timeZone);
+        exif.addDateTimeStampTag(ExifInterface.TAG_DATE_TIME_ORIGINAL, time, timeZone);
+        exif.addDateTimeStampTag(ExifInterface.TAG_DATE_TIME_DIGITIZED, time, timeZone);
+        exif.addGpsTags(47.3769, 8.5417);
+        exif.addGpsDateTimeStampTag(time);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exif.writeExif(createJpeg(), out);
+        mJpeg = out.toByteArray();
+    }
+
+    private static void setTag(ExifInterface exif, int tagId, Object value) {
+        exif.setTag(exif.buildTag(tagId, value));
+    }
+
+    /**
+     * Returns the markers of a baseline JPEG without tables, enough for the EXIF parser.
+     */
+    private static byte[] createJpeg() {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        // SOI
+        jpeg.write(0xFF);
+        jpeg.write(0xD8);
+        // SOF0: 8 bit, 3120x4160, three components
+        final int[] sof = {
+            0xFF, 0xC0, 0x00, 0x11, 0x08, 0x0C, 0x30, 0x10, 0x40, 0x03,
+            0x01, 0x22, 0x00, 0x02, 0x11, 0x01, 0x03, 0x11, 0x01,
+        };
+        for (int b : sof) {
+            jpeg.write(b);
+        }
+        // SOS
+        final int[] sos = {
+            0xFF, 0xDA, 0x00, 0x0C, 0x03, 0x01, 0x00, 0x02, 0x11, 0x03, 0x11, 0x00, 0x3F, 0x00,
+        };
+        for (int b : sos) {
+            jpeg.write(b);
+        }
+        for (int i = 0; i < SCAN_BYTES; i++) {
+            // Scan data never contains an unstuffed marker
+            jpeg.write((i * 31) & 0x7F);
+        }
+        // EOI
+        jpeg.write(0xFF);
+        jpeg.write(0xD9);
+        return jpeg.toByteArray();
+    }
+
+    @Override
+    protected long run(int reps) throws Exception {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            ExifInterface ei = new ExifInterface();
+            ei.readExif(new BufferedInputStream(new ByteArrayInputStream(mJpeg)));
+            Integer ori = ei.getTagIntValue(ExifInterface.TAG_ORIENTATION);
+            sum += ori == null ? 0 : ori;
+        }
+        return sum;
+    }
+}
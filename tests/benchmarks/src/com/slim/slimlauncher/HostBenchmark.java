@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+/**
+ * One operation measured by {@link LauncherBenchmarks} on one dataset. The runner calls
+ * {@link #setUp} once, then {@link #run} with as many repetitions as it needs for a stable
+ * timing, and reports the time per repetition.
+ */
+public abstract class HostBenchmark {
+    private final String mName;
+    private final String mDataset;
+
+    /**
+     * @param name The operation, eg. "cellGrid.findCellForSpan".
+     * @param dataset What the operation runs on, eg. "10x12 grid, 90% occupied".
+     */
+    protected HostBenchmark(String name, String dataset) {
+        mName = name;
+        mDataset = dataset;
+    }
+
+    public final String getName() {
+        return mName;
+    }
+
+    public final String getDataset() {
+        return mDataset;
+    }
+
+    /**
+     * Builds the dataset. Not timed.
+     */
+    protected void setUp() throws Exception {
+    }
+
+    /**
+     * Runs the operation reps times.
+     *
+     * @return A value computed from the results, which the runner keeps so that the work can't
+     *         be dropped by the JIT.
+     */
+    protected abstract long run(int reps) throws Exception;
+}
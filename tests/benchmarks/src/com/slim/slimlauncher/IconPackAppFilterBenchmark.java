@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import android.content.ComponentName;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+/**
+ * Times reading the items of an icon pack's appfilter.xml with {@link IconPackAppFilter}, the
+ * way IconPackHelper loads an icon pack, from a generated file with one item per app.
+ */
+class IconPackAppFilterBenchmark extends HostBenchmark {
+    private final int mItemCount;
+
+    private byte[] mXml;
+    private final HashMap<ComponentName, String> mResources =
+            new HashMap<ComponentName, String>();
+
+    IconPackAppFilterBenchmark(int itemCount) {
+        super("iconPack.parseAppFilter", itemCount + " items");
+        mItemCount = itemCount;
+    }
+
+    @Override
+    protected void setUp() {
+        final SyntheticApps apps = new SyntheticApps(mItemCount, mItemCount);
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<resources>\n");
+        xml.append("    <iconback img1=\"iconback_1\" img2=\"iconback_2\" />\n");
+        xml.append("    <iconmask img=\"iconmask\" />\n");
+        xml.append("    <iconupon img=\"iconupon\" />\n");
+        xml.append("    <scale factor=\"0.8\" />\n");
+        for (int i = 0; i < apps.size(); i++) {
+            final String component;
+            if (i % 20 == 0) {
+                // Some packs theme whole packages
+                component = apps.packageNames[i];
+            } else {
+                component = apps.packageNames[i] + "/" + apps.classNames[i];
+            }
+            xml.append("    <!-- ").append(apps.titles[i]).append(" -->\n");
+            xml.append("    <item component=\"ComponentInfo{").append(component)
+                    .append("}\" drawable=\"").append(apps.packageNames[i].replace('.', '_'))
+                    .append("\" />\n");
+        }
+        xml.append("</resources>\n");
+        mXml = xml.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Override
+    protected long run(int reps) throws Exception {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            XmlPullParser parser = new KXmlParser();
+            parser.setInput(new ByteArrayInputStream(mXml), "UTF-8");
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    IconPackAppFilter.parseItem(parser, mResources);
+                }
+                eventType = parser.next();
+            }
+            sum += mResources.size();
+            mResources.clear();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Times queuing shortcuts while the workspace is busy and flushing the queue once it is idle,
+ * in {@link InstallQueueLog} and in the string set InstallShortcutReceiver kept in the shared
+ * preferences before, which copied the set and wrote and synced the whole file for every
+ * shortcut. Every repetition queues one shortcut, every {@link #QUEUED_SHORTCUTS}th one also
+ * drains the queue, so the time per operation is per shortcut.
+ */
+class InstallQueueBenchmark extends HostBenchmark {
+    static final int QUEUED_SHORTCUTS = 200;
+    // A flattened 144px icon and the intent URI, like shortcuts from other apps
+    private static final int ICON_BYTES = 6 * 1024;
+    private static final int URI_CHARS = 160;
+    private static final int SYNC_INTERVAL = 16;
+
+    private final boolean mReference;
+
+    private File mFile;
+    private InstallQueueLog mLog;
+    private final ArrayList<byte[]> mRecords = new ArrayList<byte[]>();
+    // The records as Base64 JSON strings would be, for the string set
+    private final ArrayList<String> mStrings = new ArrayList<String>();
+    private Set<String> mSet = new HashSet<String>();
+    private int mQueued;
+
+    InstallQueueBenchmark(boolean reference) {
+        super(reference ? "installQueue.prefsStringSet" : "installQueue.log",
+                QUEUED_SHORTCUTS + " shortcuts per flush, " + ICON_BYTES / 1024 + "KB icons");
+        mReference = reference;
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        mFile = File.createTempFile("install_queue", ".log");
+        mFile.deleteOnExit();
+        new File(mFile.getPath() + ".tmp").deleteOnExit();
+        mLog = new InstallQueueLog(mFile, SYNC_INTERVAL, null);
+
+        final Random random = new Random(QUEUED_SHORTCUTS);
+        for (int i = 0; i < QUEUED_SHORTCUTS; i++) {
+            final byte[] record = new byte[1 + URI_CHARS + ICON_BYTES];
+            random.nextBytes(record);
+            mRecords.add(record);
+
+            final StringBuilder sb = new StringBuilder(record.length * 4 / 3);
+            for (int j = 0; j < record.length * 4 / 3; j++) {
+                sb.append((char) ('A' + random.nextInt(26)));
+            }
+            mStrings.add(sb.toString());
+        }
+    }
+
+    @Override
+    protected long run(int reps) throws IOException {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            final int shortcut = mQueued++ % QUEUED_SHORTCUTS;
+            if (mReference) {
+                final Set<String> set = new HashSet<String>(mSet);
+                set.add(mStrings.get(shortcut));
+                writeSet(set);
+                mSet = set;
+            } else {
+                mLog.append(mRecords.get(shortcut));
+            }
+
+            if (shortcut == QUEUED_SHORTCUTS - 1) {
+                if (mReference) {
+                    sum += readSet().size();
+                    mSet = new HashSet<String>();
+                    writeSet(mSet);
+                } else {
+                    sum += mLog.drain().size();
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Writes the set like SharedPreferences.Editor.commit() writes the preferences: the whole
+     * file, then an fsync.
+     */
+    private void writeSet(Set<String> set) throws IOException {
+        final FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+            writer.write("<set name=\"apps_to_install\">\n");
+            for (String s : set) {
+                writer.write("<string>");
+                writer.write(s);
+                writer.write("</string>\n");
+            }
+            writer.write("</set>\n");
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private Set<String> readSet() throws IOException {
+        final Set<String> set = new HashSet<String>();
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(mFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("<string>")) {
+                    set.add(line.substring(8, line.length() - 9));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return set;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Times looking up the launch count of an app, as the launch count order does for every
+ * comparison, in {@link LaunchCounts} and in the parallel lists Stats searched before.
+ */
+class LaunchCountsBenchmark extends HostBenchmark {
+    // Must be a power of two
+    private static final int QUERIES = 1024;
+    // Share of the queries for apps that were never launched
+    private static final float MISS_RATIO = 0.25f;
+
+    private final int mAppCount;
+    private final boolean mReference;
+
+    private LaunchCounts mLaunchCounts;
+    private final ArrayList<String> mIntents = new ArrayList<String>();
+    private final ArrayList<Integer> mHistogram = new ArrayList<Integer>();
+    private final String[] mQueries = new String[QUERIES];
+
+    LaunchCountsBenchmark(int appCount, boolean reference) {
+        super(reference ? "launchCounts.listScan" : "launchCounts.get",
+                appCount + " launched apps, " + Math.round(MISS_RATIO * 100) + "% misses");
+        mAppCount = appCount;
+        mReference = reference;
+    }
+
+    @Override
+    protected void setUp() {
+        final SyntheticApps apps = new SyntheticApps(mAppCount, mAppCount);
+        final Random random = new Random(mAppCount);
+        mLaunchCounts = new LaunchCounts(mAppCount);
+        for (int i = 0; i < apps.size(); i++) {
+            final int count = 1 + apps.launchCounts[i];
+            mLaunchCounts.add(apps.getIntent(i), count);
+            mIntents.add(apps.getIntent(i));
+            mHistogram.add(count);
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            // Copies, like the intents Stats flattens for every lookup
+            final String intent = apps.getIntent(random.nextInt(apps.size()));
+            mQueries[q] = random.nextFloat() < MISS_RATIO
+                    ? intent.replace(";end", ";S.profile=0;end") : new String(intent);
+        }
+    }
+
+    @Override
+    protected long run(int reps) {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            final String intent = mQueries[i & (QUERIES - 1)];
+            if (mReference) {
+                final int pos = mIntents.indexOf(intent);
+                sum += pos < 0 ? 0 : mHistogram.get(pos);
+            } else {
+                sum += mLaunchCounts.get(intent);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import com.slim.slimlauncher.palette.PaletteBenchmark;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the host benchmarks of the launcher's hot paths on synthetic datasets. Each benchmark is
+ * calibrated to a fixed time per run, warmed up, then run several times; the time per operation
+ * of every run is reported. Run with:
+ *
+ *   java -cp SlimLauncherHostBenchmarks.jar:layoutlib.jar:kxml2-2.3.0.jar \
+ *       com.slim.slimlauncher.LauncherBenchmarks [--filter <text>] [--runs <n>] [--json <file>]
+ *
+ * --filter only runs the benchmarks whose name or dataset contain the text, and --json also
+ * writes the results to the file, so that runs from different builds can be compared by a
+ * script.
+ */
+public class LauncherBenchmarks {
+    private static final long TARGET_RUN_NANOS = 100 * 1000 * 1000L;
+    private static final int WARMUP_RUNS = 5;
+    private static final int DEFAULT_RUNS = 10;
+
+    // Keeps the JIT from dropping the benchmarks
+    private static long sSink;
+
+    // A small and a large app drawer
+    static final int[] SYNTHETIC_APP_COUNTS = { 300, 2000 };
+
+    static final class Result {
+        final HostBenchmark benchmark;
+        final int reps;
+        // Nanoseconds per operation of every measured run, sorted
+        final double[] nanosPerOp;
+
+        Result(HostBenchmark benchmark, int reps, double[] nanosPerOp) {
+            this.benchmark = benchmark;
+            this.reps = reps;
+            this.nanosPerOp = nanosPerOp;
+        }
+
+        double min() {
+            return nanosPerOp[0];
+        }
+
+        double max() {
+            return nanosPerOp[nanosPerOp.length - 1];
+        }
+
+        double median() {
+            final int n = nanosPerOp.length;
+            return n % 2 == 1 ? nanosPerOp[n / 2]
+                    : (nanosPerOp[n / 2 - 1] + nanosPerOp[n / 2]) / 2;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double value : nanosPerOp) {
+                sum += value;
+            }
+            return sum / nanosPerOp.length;
+        }
+    }
+
+    static List<HostBenchmark> createBenchmarks() {
+        List<HostBenchmark> benchmarks = new ArrayList<HostBenchmark>();
+        for (float fill : CellGridBenchmark.FILLS) {
+            benchmarks.add(new CellGridBenchmark(CellGridBenchmark.FIND_CELL_FOR_SPAN, fill));
+            benchmarks.add(new CellGridBenchmark(CellGridBenchmark.FIND_CELL_INTERSECTING, fill));
+            benchmarks.add(new CellGridBenchmark(CellGridBenchmark.FIND_VACANT_CELL, fill));
+            benchmarks.add(new CellGridBenchmark(CellGridBenchmark.FIND_NEAREST_AREA, fill));
+        }
+        for (int apps : SYNTHETIC_APP_COUNTS) {
+            benchmarks.add(new AppDrawerSectionsBenchmark(apps, false));
+            benchmarks.add(new AppDrawerSectionsBenchmark(apps, true));
+            benchmarks.add(new AppTitleOrderBenchmark(apps, AppTitleOrderBenchmark.BY_NAME));
+            benchmarks.add(new AppTitleOrderBenchmark(apps,
+                    AppTitleOrderBenchmark.BY_LAUNCH_COUNT));
+            benchmarks.add(new AppTitleOrderBenchmark(apps,
+                    AppTitleOrderBenchmark.BY_INSTALL_TIME));
+            benchmarks.add(new LaunchCountsBenchmark(apps, false));
+            benchmarks.add(new LaunchCountsBenchmark(apps, true));
+            benchmarks.add(new IconPackAppFilterBenchmark(apps));
+        }
+        benchmarks.add(new PaletteBenchmark(false));
+        benchmarks.add(new PaletteBenchmark(true));
+        benchmarks.add(new ExifBenchmark());
+        benchmarks.add(new InstallQueueBenchmark(false));
+        benchmarks.add(new InstallQueueBenchmark(true));
+        return benchmarks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = null;
+        String jsonPath = null;
+        int runs = DEFAULT_RUNS;
+        for (int i = 0; i < args.length; i++) {
+            if ("--filter".equals(args[i]) && i + 1 < args.length) {
+                filter = args[++i];
+            } else if ("--json".equals(args[i]) && i + 1 < args.length) {
+                jsonPath = args[++i];
+            } else if ("--runs".equals(args[i]) && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("usage: LauncherBenchmarks [--filter <text>] [--runs <n>]"
+                        + " [--json <file>]");
+                System.exit(1);
+            }
+        }
+
+        List<Result> results = new ArrayList<Result>();
+        for (HostBenchmark benchmark : createBenchmarks()) {
+            if (filter != null && !benchmark.getName().contains(filter)
+                    && !benchmark.getDataset().contains(filter)) {
+                continue;
+            }
+            benchmark.setUp();
+            Result result = measure(benchmark, runs);
+            System.out.println(String.format(
+                    "%-36s %-44s median %12.1f ns/op  min %12.1f  max %12.1f",
+                    benchmark.getName(), benchmark.getDataset(), result.median(), result.min(),
+                    result.max()));
+            results.add(result);
+        }
+
+        if (jsonPath != null) {
+            Writer out = new FileWriter(jsonPath);
+            try {
+                writeJson(new PrintWriter(out), results);
+            } finally {
+                out.close();
+            }
+        }
+        if (sSink == 42) {
+            System.out.println();
+        }
+    }
+
+    static Result measure(HostBenchmark benchmark, int runs) throws Exception {
+        // Double the repetitions until a run is long enough to scale them to the target time
+        int reps = 1;
+        long nanos;
+        while (true) {
+            nanos = time(benchmark, reps);
+            if (nanos >= TARGET_RUN_NANOS / 10 || reps >= Integer.MAX_VALUE / 2) {
+                break;
+            }
+            reps *= 2;
+        }
+        reps = (int) Math.max(1, Math.min(Integer.MAX_VALUE, reps * TARGET_RUN_NANOS / nanos));
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            time(benchmark, reps);
+        }
+        double[] nanosPerOp = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            nanosPerOp[i] = (double) time(benchmark, reps) / reps;
+        }
+        Arrays.sort(nanosPerOp);
+        return new Result(benchmark, reps, nanosPerOp);
+    }
+
+    private static long time(HostBenchmark benchmark, int reps) throws Exception {
+        final long start = System.nanoTime();
+        sSink += benchmark.run(reps);
+        return Math.max(1, System.nanoTime() - start);
+    }
+
+    static void writeJson(PrintWriter out, List<Result> results) {
+        out.println("{");
+        out.println("  \"vm\": " + quote(System.getProperty("java.vm.name") + " "
+                + System.getProperty("java.vm.version")) + ",");
+        out.println("  \"os\": " + quote(System.getProperty("os.name") + " "
+                + System.getProperty("os.arch")) + ",");
+        out.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+        out.println("  \"timestamp\": " + System.currentTimeMillis() + ",");
+        out.println("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            final Result result = results.get(i);
+            out.print("    {\"name\": " + quote(result.benchmark.getName())
+                    + ", \"dataset\": " + quote(result.benchmark.getDataset())
+                    + ", \"reps\": " + result.reps
+                    + ", \"median\": " + result.median()
+                    + ", \"mean\": " + result.mean()
+                    + ", \"min\": " + result.min()
+                    + ", \"max\": " + result.max()
+                    + ", \"nsPerOp\": [");
+            for (int j = 0; j < result.nanosPerOp.length; j++) {
+                out.print((j > 0 ? ", " : "") + result.nanosPerOp[j]);
+            }
+            out.println("]}" + (i < results.size() - 1 ? "," : ""));
+        }
+        out.println("  ]");
+        out.println("}");
+        out.flush();
+    }
+
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import android.content.ComponentName;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Runs the database side of launcher startup on the host against a launcher.db, eg. one made
+ * by gen_launcher_db.py: the provider's upgrade and orphan removal, and the loader's pass over
+ * the workspace screens and favorites. Every run works on a fresh copy of the database, and the
+ * rows per second and peak heap of every phase are reported. Needs a SQLite JDBC driver:
+ *
+ *   java -cp SlimLauncherHostBenchmarks.jar:layoutlib.jar:kxml2-2.3.0.jar:sqlite-jdbc.jar \
+ *       com.slim.slimlauncher.LauncherDbHarness launcher.db [--columns <n>] [--rows <n>] \
+ *       [--hotseat <n>] [--runs <n>] [--json <file>]
+ *
+ * The loader pass reads the columns LauncherModel.loadWorkspace reads for every item type and
+ * places the items with {@link WorkspaceOccupancy}. Resolving the intents and widget providers
+ * and building the item infos need a device, so they are not part of it.
+ */
+public class LauncherDbHarness {
+    // LauncherSettings.Favorites
+    private static final int CONTAINER_DESKTOP = -100;
+    private static final int CONTAINER_HOTSEAT = -101;
+    private static final int ITEM_TYPE_APPLICATION = 0;
+    private static final int ITEM_TYPE_SHORTCUT = 1;
+    private static final int ITEM_TYPE_FOLDER = 2;
+    private static final int ITEM_TYPE_APPWIDGET = 4;
+
+    // The oldest version whose upgrade doesn't need a device
+    static final int MIN_DB_VERSION = 14;
+
+    private static final int WARMUP_RUNS = 1;
+    private static final int DEFAULT_RUNS = 5;
+
+    /** What the loader pass found in the favorites. */
+    static final class LoadResult {
+        int rows;
+        int items;
+        int discarded;
+        int folderItems;
+        int widgets;
+        long iconBytes;
+    }
+
+    /** One phase of startup, run once per run on a fresh copy of the database. */
+    private abstract static class Phase {
+        final String name;
+        final long[] nanos;
+        final long[] peakHeap;
+        int rows;
+
+        Phase(String name, int runs) {
+            this.name = name;
+            nanos = new long[runs];
+            peakHeap = new long[runs];
+        }
+
+        /**
+         * @param favorites The number of favorites before the phase.
+         * @return The number of rows the phase went through.
+         */
+        abstract int run(Connection db, int favorites) throws SQLException;
+
+        void measure(Connection db, int favorites, int run) throws SQLException {
+            System.gc();
+            resetPeakHeap();
+            final long start = System.nanoTime();
+            rows = run(db, favorites);
+            final long time = System.nanoTime() - start;
+            if (run >= 0) {
+                nanos[run] = time;
+                peakHeap[run] = getPeakHeap();
+            }
+        }
+
+        long medianNanos() {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+
+        long maxPeakHeap() {
+            long max = 0;
+            for (long peak : peakHeap) {
+                max = Math.max(max, peak);
+            }
+            return max;
+        }
+
+        double rowsPerSecond() {
+            return rows * 1e9 / Math.max(1, medianNanos());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = null;
+        String jsonPath = null;
+        int countX = 5;
+        int countY = 5;
+        int hotseatCount = 5;
+        int runs = DEFAULT_RUNS;
+        for (int i = 0; i < args.length; i++) {
+            if ("--columns".equals(args[i]) && i + 1 < args.length) {
+                countX = Integer.parseInt(args[++i]);
+            } else if ("--rows".equals(args[i]) && i + 1 < args.length) {
+                countY = Integer.parseInt(args[++i]);
+            } else if ("--hotseat".equals(args[i]) && i + 1 < args.length) {
+                hotseatCount = Integer.parseInt(args[++i]);
+            } else if ("--runs".equals(args[i]) && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if ("--json".equals(args[i]) && i + 1 < args.length) {
+                jsonPath = args[++i];
+            } else if (dbPath == null && !args[i].startsWith("--")) {
+                dbPath = args[i];
+            } else {
+                dbPath = null;
+                break;
+            }
+        }
+        if (dbPath == null || runs < 1) {
+            System.err.println("usage: LauncherDbHarness <launcher.db> [--columns <n>]"
+                    + " [--rows <n>] [--hotseat <n>] [--runs <n>] [--json <file>]");
+            System.exit(1);
+        }
+
+        final File source = new File(dbPath);
+        final int[] oldVersion = new int[1];
+        final LoadResult[] loaded = new LoadResult[1];
+        final int finalCountX = countX;
+        final int finalCountY = countY;
+        final int finalHotseatCount = hotseatCount;
+        final Phase[] phases = {
+            new Phase("upgrade", runs) {
+                @Override
+                int run(Connection db, int favorites) throws SQLException {
+                    oldVersion[0] = upgrade(db);
+                    return favorites;
+                }
+            },
+            new Phase("removeOrphanedItems", runs) {
+                @Override
+                int run(Connection db, int favorites) throws SQLException {
+                    execute(db, LauncherDbSchema.REMOVE_ORPHANED_DESKTOP_ITEMS,
+                            LauncherDbSchema.REMOVE_ORPHANED_FOLDER_ITEMS);
+                    return favorites;
+                }
+            },
+            new Phase("initializeMaxIds", runs) {
+                @Override
+                int run(Connection db, int favorites) throws SQLException {
+                    queryLong(db, LauncherDbSchema.SELECT_MAX_ITEM_ID);
+                    queryLong(db, LauncherDbSchema.SELECT_MAX_SCREEN_ID);
+                    return favorites;
+                }
+            },
+            new Phase("loadWorkspaceScreens", runs) {
+                @Override
+                int run(Connection db, int favorites) throws SQLException {
+                    return loadWorkspaceScreens(db).size();
+                }
+            },
+            new Phase("loadWorkspace", runs) {
+                @Override
+                int run(Connection db, int favorites) throws SQLException {
+                    loaded[0] = loadWorkspace(db, finalCountX, finalCountY, finalHotseatCount);
+                    return loaded[0].rows;
+                }
+            },
+        };
+
+        for (int run = -WARMUP_RUNS; run < runs; run++) {
+            File copy = File.createTempFile("launcher", ".db");
+            Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Connection db = openDatabase(copy);
+                try {
+                    for (Phase phase : phases) {
+                        phase.measure(db, (int) queryLong(db, "SELECT COUNT(*) FROM favorites"),
+                                run);
+                    }
+                } finally {
+                    db.close();
+                }
+            } finally {
+                copy.delete();
+            }
+        }
+
+        final LoadResult result = loaded[0];
+        System.out.println(source.getName() + ": version " + oldVersion[0] + ", "
+                + countX + "x" + countY + " grid, " + hotseatCount + " hotseat icons");
+        System.out.println("loaded " + result.items + " items (" + result.folderItems
+                + " in folders, " + result.widgets + " widgets, " + result.iconBytes / 1024
+                + "KB of icons), discarded " + result.discarded);
+        for (Phase phase : phases) {
+            System.out.println(String.format("%-22s %8d rows %10.2f ms %12.0f rows/s"
+                    + " %8d KB peak heap", phase.name, phase.rows, phase.medianNanos() / 1e6,
+                    phase.rowsPerSecond(), phase.maxPeakHeap() / 1024));
+        }
+
+        if (jsonPath != null) {
+            Writer out = new FileWriter(jsonPath);
+            try {
+                writeJson(new PrintWriter(out), source, oldVersion[0], result, phases);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static Connection openDatabase(File file) throws SQLException {
+        try {
+            return DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        } catch (SQLException e) {
+            System.err.println("Couldn't open " + file + ", is a SQLite JDBC driver (eg."
+                    + " sqlite-jdbc.jar) on the classpath?");
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the steps of LauncherProvider's onUpgrade from the version of the database on.
+     *
+     * @return The version before the upgrade.
+     */
+    static int upgrade(Connection db) throws SQLException {
+        final int oldVersion = (int) queryLong(db, "PRAGMA user_version");
+        if (oldVersion < MIN_DB_VERSION) {
+            throw new SQLException("version " + oldVersion + " can only be upgraded on a device,"
+                    + " the host supports " + MIN_DB_VERSION + " and later");
+        }
+        final int version = oldVersion;
+        if (version < 15) {
+            execute(db, LauncherDbSchema.ADD_FAVORITES_MODIFIED_COLUMN,
+                    LauncherDbSchema.ADD_WORKSPACE_SCREENS_MODIFIED_COLUMN);
+        }
+        if (version < 16) {
+            execute(db, LauncherDbSchema.ADD_RESTORED_COLUMN);
+        }
+        // 17 only marks the clings as dismissed, and 18 is a no-op
+        if (version < 19) {
+            execute(db, LauncherDbSchema.REMOVE_ORPHANED_DESKTOP_ITEMS,
+                    LauncherDbSchema.REMOVE_ORPHANED_FOLDER_ITEMS);
+        }
+        if (version < 20) {
+            execute(db, LauncherDbSchema.addProfileColumn(0));
+        }
+        execute(db, "PRAGMA user_version = " + LauncherDbSchema.DATABASE_VERSION);
+        return oldVersion;
+    }
+
+    /**
+     * Mirrors LauncherModel.loadWorkspaceScreensDb.
+     */
+    static TreeMap<Integer, Long> loadWorkspaceScreens(Connection db) throws SQLException {
+        TreeMap<Integer, Long> orderedScreens = new TreeMap<Integer, Long>();
+        Statement statement = db.createStatement();
+        try {
+            ResultSet sc = statement.executeQuery("SELECT * FROM workspaceScreens");
+            final int idIndex = sc.findColumn("_id");
+            final int rankIndex = sc.findColumn("screenRank");
+            while (sc.next()) {
+                orderedScreens.put(sc.getInt(rankIndex), sc.getLong(idIndex));
+            }
+        } finally {
+            statement.close();
+        }
+        return orderedScreens;
+    }
+
+    /**
+     * Mirrors the pass of LauncherModel.loadWorkspace over the favorites.
+     */
+    static LoadResult loadWorkspace(Connection db, int countX, int countY, int hotseatCount)
+            throws SQLException {
+        final LoadResult result = new LoadResult();
+        final WorkspaceOccupancy<Long> occupied =
+                new WorkspaceOccupancy<Long>(countX, countY, hotseatCount);
+        final HashMap<Long, Integer> folderSizes = new HashMap<Long, Integer>();
+
+        Statement statement = db.createStatement();
+        try {
+            final ResultSet c = statement.executeQuery("SELECT * FROM favorites");
+            final int idIndex = c.findColumn("_id");
+            final int intentIndex = c.findColumn("intent");
+            final int titleIndex = c.findColumn("title");
+            final int iconTypeIndex = c.findColumn("iconType");
+            final int iconIndex = c.findColumn("icon");
+            final int iconPackageIndex = c.findColumn("iconPackage");
+            final int iconResourceIndex = c.findColumn("iconResource");
+            final int containerIndex = c.findColumn("container");
+            final int itemTypeIndex = c.findColumn("itemType");
+            final int appWidgetIdIndex = c.findColumn("appWidgetId");
+            final int appWidgetProviderIndex = c.findColumn("appWidgetProvider");
+            final int screenIndex = c.findColumn("screen");
+            final int cellXIndex = c.findColumn("cellX");
+            final int cellYIndex = c.findColumn("cellY");
+            final int spanXIndex = c.findColumn("spanX");
+            final int spanYIndex = c.findColumn("spanY");
+            final int restoredIndex = c.findColumn("restored");
+            final int profileIdIndex = c.findColumn("profileId");
+
+            while (c.next()) {
+                result.rows++;
+                final int itemType = c.getInt(itemTypeIndex);
+                c.getInt(restoredIndex);
+                final long id = c.getLong(idIndex);
+                final int container;
+                switch (itemType) {
+                    case ITEM_TYPE_APPLICATION:
+                    case ITEM_TYPE_SHORTCUT:
+                        final String intent = c.getString(intentIndex);
+                        c.getInt(profileIdIndex);
+                        if (itemType == ITEM_TYPE_APPLICATION && getComponent(intent) == null) {
+                            result.discarded++;
+                            continue;
+                        }
+                        c.getString(titleIndex);
+                        if (itemType == ITEM_TYPE_SHORTCUT) {
+                            c.getInt(iconTypeIndex);
+                            c.getString(iconPackageIndex);
+                            c.getString(iconResourceIndex);
+                        }
+                        final byte[] icon = c.getBytes(iconIndex);
+                        if (icon != null) {
+                            result.iconBytes += icon.length;
+                        }
+                        container = c.getInt(containerIndex);
+                        if (!place(occupied, id, container, c.getInt(screenIndex),
+                                c.getInt(cellXIndex), c.getInt(cellYIndex), 1, 1)) {
+                            result.discarded++;
+                            continue;
+                        }
+                        if (container != CONTAINER_DESKTOP && container != CONTAINER_HOTSEAT) {
+                            final Integer size = folderSizes.get((long) container);
+                            folderSizes.put((long) container, size == null ? 1 : size + 1);
+                            result.folderItems++;
+                        }
+                        result.items++;
+                        break;
+
+                    case ITEM_TYPE_FOLDER:
+                        c.getString(titleIndex);
+                        container = c.getInt(containerIndex);
+                        if (!place(occupied, id, container, c.getInt(screenIndex),
+                                c.getInt(cellXIndex), c.getInt(cellYIndex), 1, 1)) {
+                            result.discarded++;
+                            continue;
+                        }
+                        if (!folderSizes.containsKey(id)) {
+                            folderSizes.put(id, 0);
+                        }
+                        result.items++;
+                        break;
+
+                    case ITEM_TYPE_APPWIDGET:
+                        c.getInt(appWidgetIdIndex);
+                        final String savedProvider = c.getString(appWidgetProviderIndex);
+                        if (savedProvider == null
+                                || ComponentName.unflattenFromString(savedProvider) == null) {
+                            result.discarded++;
+                            continue;
+                        }
+                        container = c.getInt(containerIndex);
+                        if ((container != CONTAINER_DESKTOP && container != CONTAINER_HOTSEAT)
+                                || !place(occupied, id, container, c.getInt(screenIndex),
+                                        c.getInt(cellXIndex), c.getInt(cellYIndex),
+                                        c.getInt(spanXIndex), c.getInt(spanYIndex))) {
+                            result.discarded++;
+                            continue;
+                        }
+                        result.widgets++;
+                        result.items++;
+                        break;
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return result;
+    }
+
+    /**
+     * Mirrors LauncherModel's checkItemPlacement.
+     */
+    private static boolean place(WorkspaceOccupancy<Long> occupied, long id, int container,
+            long screenId, int cellX, int cellY, int spanX, int spanY) {
+        if (container == CONTAINER_HOTSEAT) {
+            return occupied.placeInHotseat(id, screenId) == WorkspaceOccupancy.PLACED;
+        } else if (container != CONTAINER_DESKTOP) {
+            return true;
+        }
+        return occupied.placeOnScreen(id, screenId, cellX, cellY, spanX, spanY)
+                == WorkspaceOccupancy.PLACED;
+    }
+
+    /**
+     * Returns the component of a flattened intent, like Intent.parseUri would find it.
+     */
+    private static ComponentName getComponent(String intent) {
+        if (intent == null) {
+            return null;
+        }
+        final int start = intent.indexOf(";component=");
+        if (start < 0) {
+            return null;
+        }
+        final int end = intent.indexOf(';', start + 1);
+        return ComponentName.unflattenFromString(intent.substring(
+                start + ";component=".length(), end < 0 ? intent.length() : end));
+    }
+
+    /**
+     * Runs the statements in one transaction, like the provider's upgrade steps.
+     */
+    private static void execute(Connection db, String... statements) throws SQLException {
+        db.setAutoCommit(false);
+        Statement statement = db.createStatement();
+        try {
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+            db.commit();
+        } catch (SQLException e) {
+            db.rollback();
+            throw e;
+        } finally {
+            statement.close();
+            db.setAutoCommit(true);
+        }
+    }
+
+    private static long queryLong(Connection db, String sql) throws SQLException {
+        Statement statement = db.createStatement();
+        try {
+            ResultSet c = statement.executeQuery(sql);
+            return c.next() ? c.getLong(1) : -1;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the peak usage of the heap pools since the last reset, which bounds
+     * the peak heap from above.
+     */
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void writeJson(PrintWriter out, File source, int version, LoadResult result,
+            Phase[] phases) throws IOException {
+        out.println("{");
+        out.println("  \"database\": " + LauncherBenchmarks.quote(source.getName()) + ",");
+        out.println("  \"version\": " + version + ",");
+        out.println("  \"vm\": " + LauncherBenchmarks.quote(System.getProperty("java.vm.name")
+                + " " + System.getProperty("java.vm.version")) + ",");
+        out.println("  \"loaded\": {\"items\": " + result.items
+                + ", \"folderItems\": " + result.folderItems
+                + ", \"widgets\": " + result.widgets
+                + ", \"discarded\": " + result.discarded
+                + ", \"iconBytes\": " + result.iconBytes + "},");
+        out.println("  \"phases\": [");
+        for (int i = 0; i < phases.length; i++) {
+            final Phase phase = phases[i];
+            out.println("    {\"name\": " + LauncherBenchmarks.quote(phase.name)
+                    + ", \"rows\": " + phase.rows
+                    + ", \"medianNanos\": " + phase.medianNanos()
+                    + ", \"rowsPerSecond\": " + phase.rowsPerSecond()
+                    + ", \"peakHeapBytes\": " + phase.maxPeakHeap() + "}"
+                    + (i < phases.length - 1 ? "," : ""));
+        }
+        out.println("  ]");
+        out.println("}");
+        out.flush();
+    }
+}
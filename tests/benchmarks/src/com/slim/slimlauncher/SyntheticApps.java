@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates the apps of a synthetic device: titles that mix words the way store apps do,
+ * including lower case brands, digits, punctuation, accents and non latin scripts, with the
+ * packages, install times and launch counts that go with them. The same count and seed always
+ * give the same apps.
+ */
+final class SyntheticApps {
+    private static final String[] WORDS = {
+        "Calculator", "Calendar", "Camera", "Chrome", "Clock", "Contacts", "Downloads", "Drive",
+        "Email", "Files", "Gallery", "Keep", "Maps", "Messages", "Music", "News", "Notes",
+        "Phone", "Photos", "Play", "Podcasts", "Radio", "Reader", "Recorder", "Scanner",
+        "Settings", "Shop", "Sports", "Store", "Translate", "Travel", "Video", "Wallet",
+        "Weather", "Fitness", "Banking", "Books", "Chat", "Cloud", "Docs", "Games", "Home",
+        "Launcher", "Mail", "Pay", "Sheets", "Slides", "Taxi", "Tickets", "Tools", "Tasks",
+    };
+
+    private static final String[] BRANDS = {
+        "eBay", "iHeartRadio", "imo", "tinyCam", "bitly", "mySugr", "2048", "9GAG", "7-Zip",
+        "360 Security", "#Hashtags", "@Home", "(Beta) Lab", "Élan", "Ébène", "Über", "Ørsted",
+        "Ångström", "Ζωή", "Ωmega", "ВКонтакте", "Яндекс", "Сбербанк", "微信", "支付宝", "한글",
+        "日本語", "עברית", "العربية", "ß Tools", "Ĳssel", "Çay", "Şehir",
+    };
+
+    // Share of the apps whose title starts with a brand rather than a word
+    private static final float BRAND_RATIO = 0.2f;
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long NOW_MS = 1420070400000L;
+
+    final String[] titles;
+    final String[] packageNames;
+    final String[] classNames;
+    final long[] firstInstallTimes;
+    final int[] launchCounts;
+
+    SyntheticApps(int count, long seed) {
+        final Random random = new Random(seed);
+        titles = new String[count];
+        packageNames = new String[count];
+        classNames = new String[count];
+        firstInstallTimes = new long[count];
+        launchCounts = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            if (random.nextFloat() < BRAND_RATIO) {
+                title.append(BRANDS[random.nextInt(BRANDS.length)]);
+            } else {
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            final int words = random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (random.nextInt(10) == 0) {
+                title.append(' ').append(random.nextInt(20));
+            }
+            titles[i] = title.toString();
+
+            final String vendor = WORDS[random.nextInt(WORDS.length)].toLowerCase();
+            packageNames[i] = "com." + vendor + ".app" + i;
+            classNames[i] = packageNames[i] + (random.nextBoolean() ? ".MainActivity"
+                    : ".ui.LauncherActivity");
+            firstInstallTimes[i] = NOW_MS - (long) (random.nextFloat() * 3 * 365) * DAY_MS
+                    - random.nextInt((int) DAY_MS);
+            // Most apps are rarely launched, a few very often
+            launchCounts[i] = random.nextInt(4) == 0 ? 0 : (int) (Math.pow(random.nextFloat(), 4)
+                    * 2000);
+        }
+    }
+
+    int size() {
+        return titles.length;
+    }
+
+    /**
+     * Returns the flattened launch intent of app i, in the format Stats keys its counts by.
+     */
+    String getIntent(int i) {
+        return "#Intent;action=android.intent.action.MAIN;"
+                + "category=android.intent.category.LAUNCHER;launchFlags=0x10200000;"
+                + "component=" + packageNames[i] + "/" + classNames[i] + ";end";
+    }
+
+    ArrayList<CharSequence> getTitles() {
+        ArrayList<CharSequence> list = new ArrayList<CharSequence>(titles.length);
+        for (String title : titles) {
+            list.add(title);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher.palette;
+
+import com.slim.slimlauncher.HostBenchmark;
+
+import java.util.Random;
+
+/**
+ * Times generating the {@link Palette} of an app icon, as IconPackHelper does for palettized
+ * icon backs, on generated icons already scaled down to the size Palette works on.
+ */
+public class PaletteBenchmark extends HostBenchmark {
+    // IconPackHelper.NUM_PALETTE_COLORS
+    private static final int NUM_COLORS = 32;
+    private static final int SIZE = 100;
+    // Must be a power of two
+    private static final int ICONS = 8;
+
+    private final boolean mNoisy;
+
+    private final int[][] mIcons = new int[ICONS][];
+    private final int[] mPixels = new int[SIZE * SIZE];
+
+    /**
+     * @param noisy Whether the icons are gradients with noise, like photos, rather than flat
+     *              shapes with anti-aliased edges.
+     */
+    public PaletteBenchmark(boolean noisy) {
+        super("palette.generate", SIZE + "x" + SIZE + (noisy ? " noisy gradient icon"
+                : " flat icon"));
+        mNoisy = noisy;
+    }
+
+    @Override
+    protected void setUp() {
+        final Random random = new Random(SIZE);
+        for (int i = 0; i < ICONS; i++) {
+            final int[] pixels = new int[SIZE * SIZE];
+            final int background = 0xFF000000 | random.nextInt(0x1000000);
+            final int foreground = 0xFF000000 | random.nextInt(0x1000000);
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    final int pixel;
+                    if (mNoisy) {
+                        final int r = Math.min(255, x * 255 / SIZE + random.nextInt(32));
+                        final int g = Math.min(255, y * 255 / SIZE + random.nextInt(32));
+                        final int b = Math.min(255, (x + y) * 127 / SIZE + random.nextInt(32));
+                        pixel = 0xFF000000 | (r << 16) | (g << 8) | b;
+                    } else {
+                        // A disc on a rounded square, blending the colors on the edge
+                        final float dx = x - SIZE / 2f;
+                        final float dy = y - SIZE / 2f;
+                        final float edge = (float) Math.sqrt(dx * dx + dy * dy) - SIZE / 4f;
+                        if (Math.abs(dx) > SIZE * 0.45f || Math.abs(dy) > SIZE * 0.45f) {
+                            pixel = 0;
+                        } else if (edge < -1) {
+                            pixel = foreground;
+                        } else if (edge > 1) {
+                            pixel = background;
+                        } else {
+                            pixel = blend(foreground, background, (edge + 1) / 2);
+                        }
+                    }
+                    pixels[y * SIZE + x] = pixel;
+                }
+            }
+            mIcons[i] = pixels;
+        }
+    }
+
+    private static int blend(int from, int to, float amount) {
+        int result = 0xFF000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            final int a = (from >> shift) & 0xFF;
+            final int b = (to >> shift) & 0xFF;
+            result |= Math.round(a + (b - a) * amount) << shift;
+        }
+        return result;
+    }
+
+    @Override
+    protected long run(int reps) {
+        long sum = 0;
+        for (int i = 0; i < reps; i++) {
+            // Palette sorts the pixels in place
+            System.arraycopy(mIcons[i & (ICONS - 1)], 0, mPixels, 0, mPixels.length);
+            sum += Palette.generate(mPixels, NUM_COLORS).getSwatches().size();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import junit.framework.TestCase;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link AppDrawerSections} groups the drawer titles exactly like the recursive
+ * grouping AppDrawerListAdapter used before.
+ */
+public class AppDrawerSectionsTest extends TestCase {
+
+    private static final String[] TITLES = {
+        "Calculator", "calendar", "Camera", "Chrome", "Clock", "Contacts", "Downloads", "Drive",
+        "Email", "Élan", "Ébène", "Files", "Gallery", "Gmail", "Google", "Keep", "Maps",
+        "Messaging", "Phone", "Photos", "Play Store", "Settings", "YouTube", "Über", "über",
+        "eBay", "iHeartRadio", "2048", "9GAG", "#Hashtags", "@Mentions", "(Beta) App",
+        "ВКонтакте", "Яндекс", "微信", "ß-Test", "ǆungla", "  Padded", "Ωmega",
+    };
+
+    public void testEmpty() {
+        AppDrawerSections sections = new AppDrawerSections();
+        sections.build(new ArrayList<CharSequence>(), false);
+        assertEquals(0, sections.getSectionCount());
+    }
+
+    public void testFixedTitles() {
+        List<String> titles = new ArrayList<String>(Arrays.asList(TITLES));
+        Collections.sort(titles, Collator.getInstance());
+        assertSameSections(titles, false);
+        assertSameSections(titles, true);
+    }
+
+    public void testUnsortedTitles() {
+        List<String> titles = new ArrayList<String>(Arrays.asList(TITLES));
+        Collections.shuffle(titles, new Random(7));
+        assertSameSections(titles, false);
+    }
+
+    public void testRandomTitles() {
+        final Random random = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            List<String> titles = new ArrayList<String>();
+            final int count = random.nextInt(300);
+            for (int i = 0; i < count; i++) {
+                titles.add(TITLES[random.nextInt(TITLES.length)] + " " + i);
+            }
+            Collections.sort(titles, Collator.getInstance());
+            assertSameSections(titles, false);
+        }
+    }
+
+    public void testReuse() {
+        AppDrawerSections sections = new AppDrawerSections();
+        List<String> many = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            many.add(TITLES[i % TITLES.length]);
+        }
+        sections.build(many, false);
+        sections.build(Arrays.asList("Alpha", "Beta"), false);
+        assertEquals(2, sections.getSectionCount());
+        assertEquals('A', sections.getSectionChar(0));
+        assertEquals(0, sections.getItem(0));
+        assertEquals('B', sections.getSectionChar(1));
+        assertEquals(1, sections.getItem(1));
+        assertEquals(2, sections.getSectionEnd(1));
+    }
+
+    private static void assertSameSections(List<String> titles, boolean singleSection) {
+        ArrayList<ReferenceAppDrawerSections.Section> expected =
+                ReferenceAppDrawerSections.build(titles, singleSection);
+        AppDrawerSections sections = new AppDrawerSections();
+        sections.build(titles, singleSection);
+
+        assertEquals("section count", expected.size(), sections.getSectionCount());
+        for (int s = 0; s < expected.size(); s++) {
+            final ReferenceAppDrawerSections.Section section = expected.get(s);
+            assertEquals("section " + s, section.sectionChar, sections.getSectionChar(s));
+            final int start = sections.getSectionStart(s);
+            assertEquals("size of section " + section.sectionChar, section.titles.size(),
+                    sections.getSectionEnd(s) - start);
+            for (int j = 0; j < section.titles.size(); j++) {
+                assertEquals(section.titles.get(j), titles.get(sections.getItem(start + j)));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+/**
+ * Times fling setup and per-frame fling evaluation of {@link FlingSpline} against the previous
+ * implementation. Run with:
+ *
+ *   java -cp SlimLauncherHostTests.jar com.slim.slimlauncher.FlingSplineBenchmark
+ */
+public class FlingSplineBenchmark {
+    private static final int ITERATIONS = 2000000;
+    private static final int ROUNDS = 5;
+    private static final float SCROLL_FRICTION = 0.015f;
+    private static final float PHYSICAL_COEFF = 9.80665f * 39.37f * 3f * 160.0f * 0.84f;
+
+    // Keeps the JIT from dropping the loops
+    private static double sSink;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < ROUNDS; round++) {
+            report("reference fling setup", referenceSetup());
+            report("shared fling setup", sharedSetup());
+            report("reference fling frame", referenceFrames());
+            report("shared fling frame", sharedFrames());
+        }
+        if (sSink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static long referenceSetup() {
+        final long start = System.nanoTime();
+        double sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final float velocity = 100 + (i & 16383);
+            sum += ReferenceFlingSpline.getSplineFlingDuration(velocity, SCROLL_FRICTION,
+                    PHYSICAL_COEFF);
+            sum += ReferenceFlingSpline.getSplineFlingDistance(velocity, SCROLL_FRICTION,
+                    PHYSICAL_COEFF);
+        }
+        sSink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static long sharedSetup() {
+        final long start = System.nanoTime();
+        final float frictionCoeff = SCROLL_FRICTION * PHYSICAL_COEFF;
+        double sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final float velocity = 100 + (i & 16383);
+            final double deceleration = FlingSpline.getDeceleration(velocity, frictionCoeff);
+            sum += FlingSpline.getFlingDuration(deceleration);
+            sum += FlingSpline.getFlingDistance(deceleration, frictionCoeff);
+        }
+        sSink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static long referenceFrames() {
+        final long start = System.nanoTime();
+        double sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final float t = (i & 1023) / 1024f;
+            sum += ReferenceFlingSpline.getDistanceCoef(t);
+            sum += ReferenceFlingSpline.getVelocityCoef(t);
+        }
+        sSink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static long sharedFrames() {
+        final long start = System.nanoTime();
+        double sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final float t = (i & 1023) / 1024f;
+            sum += FlingSpline.getDistanceCoef(t);
+            sum += FlingSpline.getVelocityCoef(t);
+        }
+        sSink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.println(name + ": " + String.format("%.1f", (double) nanos / ITERATIONS)
+                + " ns/op");
+    }
+}
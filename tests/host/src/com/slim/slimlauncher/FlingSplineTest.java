@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link FlingSpline} produces exactly the curves and fling trajectories that
+ * LauncherScroller produced before the tables were shared.
+ */
+public class FlingSplineTest extends TestCase {
+
+    // ViewConfiguration.getScrollFriction()
+    private static final float SCROLL_FRICTION = 0.015f;
+    private static final float[] DENSITIES = { 1f, 1.5f, 2f, 3f, 4f };
+    private static final int FRAME_TIME_MS = 16;
+
+    public void testDistanceAndVelocityCoefs() {
+        for (int i = 0; i <= 100000; i++) {
+            final float t = i / 100000f;
+            assertEquals("distance at " + t, ReferenceFlingSpline.getDistanceCoef(t),
+                    FlingSpline.getDistanceCoef(t), 0f);
+            assertEquals("velocity at " + t, ReferenceFlingSpline.getVelocityCoef(t),
+                    FlingSpline.getVelocityCoef(t), 0f);
+        }
+    }
+
+    public void testViscousFluid() {
+        for (int i = 0; i <= 10000; i++) {
+            final float x = i / 10000f;
+            assertEquals("viscous fluid at " + x, ReferenceFlingSpline.viscousFluid(x),
+                    FlingSpline.viscousFluid(x), 0f);
+        }
+    }
+
+    public void testFlingDurationAndDistance() {
+        for (float density : DENSITIES) {
+            final float physicalCoeff = getPhysicalCoeff(density);
+            final float frictionCoeff = SCROLL_FRICTION * physicalCoeff;
+            for (int velocity = -20000; velocity <= 20000; velocity += 7) {
+                final double deceleration = FlingSpline.getDeceleration(velocity, frictionCoeff);
+                assertEquals("duration at " + velocity,
+                        ReferenceFlingSpline.getSplineFlingDuration(velocity, SCROLL_FRICTION,
+                                physicalCoeff),
+                        FlingSpline.getFlingDuration(deceleration));
+                assertEquals("distance at " + velocity,
+                        ReferenceFlingSpline.getSplineFlingDistance(velocity, SCROLL_FRICTION,
+                                physicalCoeff),
+                        FlingSpline.getFlingDistance(deceleration, frictionCoeff), 0.0);
+            }
+        }
+    }
+
+    public void testFlingTrajectories() {
+        for (float density : DENSITIES) {
+            final float physicalCoeff = getPhysicalCoeff(density);
+            final float frictionCoeff = SCROLL_FRICTION * physicalCoeff;
+            for (int velocity = 100; velocity <= 20000; velocity += 100) {
+                final int duration = ReferenceFlingSpline.getSplineFlingDuration(velocity,
+                        SCROLL_FRICTION, physicalCoeff);
+                final double distance = ReferenceFlingSpline.getSplineFlingDistance(velocity,
+                        SCROLL_FRICTION, physicalCoeff);
+                final double deceleration = FlingSpline.getDeceleration(velocity, frictionCoeff);
+                assertEquals(duration, FlingSpline.getFlingDuration(deceleration));
+
+                // Same per-frame position as LauncherScroller.computeScrollOffset()
+                final int finalX = (int) Math.round(distance);
+                for (int time = 0; time < duration; time += FRAME_TIME_MS) {
+                    final float t = (float) time / duration;
+                    assertEquals("position of " + velocity + "px/s fling at " + time + "ms",
+                            Math.round(ReferenceFlingSpline.getDistanceCoef(t) * finalX),
+                            Math.round(FlingSpline.getDistanceCoef(t) * finalX));
+                }
+            }
+        }
+    }
+
+    public void testSplineIsMonotonic() {
+        float last = 0f;
+        for (int i = 0; i <= 1000; i++) {
+            final float coef = FlingSpline.getDistanceCoef(i / 1000f);
+            assertTrue("spline decreases at " + i, coef >= last);
+            last = coef;
+        }
+        assertEquals(1f, FlingSpline.getDistanceCoef(1f), 0f);
+        assertEquals(0f, FlingSpline.getVelocityCoef(1f), 0f);
+    }
+
+    private static float getPhysicalCoeff(float density) {
+        // Same as LauncherScroller.computeDeceleration(0.84f)
+        return 9.80665f * 39.37f * density * 160.0f * 0.84f;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link InstallQueueLog} reads back what was appended, in order, and drops a torn
+ * or corrupt tail instead of the whole queue.
+ */
+public class InstallQueueLogTest extends TestCase {
+
+    private File mFile;
+    private int mDirectorySyncs;
+
+    private final InstallQueueLog.DirectorySync mDirectorySync =
+            new InstallQueueLog.DirectorySync() {
+        @Override
+        public void sync(File dir) throws IOException {
+            assertEquals(mFile.getAbsoluteFile().getParentFile(), dir);
+            FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            mDirectorySyncs++;
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        mFile = File.createTempFile("install_queue", ".log");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    public void testEmpty() throws IOException {
+        InstallQueueLog log = new InstallQueueLog(mFile, 4, mDirectorySync);
+        assertEquals(0, log.drain().size());
+        mFile.delete();
+        assertEquals(0, log.readAll().size());
+
+        // Creating the log syncs its directory
+        log.append(new byte[1]);
+        assertEquals(1, mDirectorySyncs);
+        assertEquals(1, log.drain().size());
+    }
+
+    public void testAppendAndDrain() throws IOException {
+        List<byte[]> records = createRecords(50, 1);
+        InstallQueueLog log = new InstallQueueLog(mFile, 16, mDirectorySync);
+        for (byte[] record : records) {
+            log.append(record);
+        }
+        assertRecords(records, log.readAll());
+
+        // Another process reads what this one appended, even without a sync
+        assertRecords(records, new InstallQueueLog(mFile, 16, mDirectorySync).drain());
+        assertEquals(0, log.readAll().size());
+
+        // Appends after a drain start a new queue
+        log.append(records.get(0));
+        assertRecords(records.subList(0, 1), log.drain());
+    }
+
+    public void testTornTail() throws IOException {
+        List<byte[]> records = createRecords(10, 2);
+        InstallQueueLog log = new InstallQueueLog(mFile, 1, mDirectorySync);
+        for (byte[] record : records) {
+            log.append(record);
+        }
+        log.close();
+        setLength(mFile.length() - 3);
+        assertRecords(records.subList(0, 9), log.readAll());
+
+        // The torn record is truncated before appending, or the new ones would be lost too
+        log.append(records.get(9));
+        assertRecords(records, log.drain());
+    }
+
+    public void testCorruptRecord() throws IOException {
+        List<byte[]> records = createRecords(10, 3);
+        InstallQueueLog log = new InstallQueueLog(mFile, 1, mDirectorySync);
+        long offset = 0;
+        for (int i = 0; i < records.size(); i++) {
+            if (i == 6) {
+                offset = mFile.length();
+            }
+            log.append(records.get(i));
+        }
+        log.close();
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            // Flips a byte of the seventh record, after its length and checksum
+            file.seek(offset + 8);
+            int b = file.read();
+            file.seek(offset + 8);
+            file.write(b ^ 0xff);
+        } finally {
+            file.close();
+        }
+        assertRecords(records.subList(0, 6), log.drain());
+    }
+
+    public void testRetain() throws IOException {
+        List<byte[]> records = createRecords(30, 4);
+        InstallQueueLog log = new InstallQueueLog(mFile, 8, mDirectorySync);
+        for (byte[] record : records) {
+            log.append(record);
+        }
+        final long length = mFile.length();
+        assertEquals(10, log.retain(new InstallQueueLog.Filter() {
+            @Override
+            public boolean retain(byte[] record) {
+                return record[0] % 3 != 0;
+            }
+        }));
+        List<byte[]> expected = new ArrayList<byte[]>();
+        for (byte[] record : records) {
+            if (record[0] % 3 != 0) {
+                expected.add(record);
+            }
+        }
+        assertTrue(mFile.length() < length);
+        assertEquals(1, mDirectorySyncs);
+        assertRecords(expected, log.readAll());
+
+        log.append(records.get(0));
+        expected.add(records.get(0));
+        assertRecords(expected, log.readAll());
+
+        assertEquals(21, log.retain(new InstallQueueLog.Filter() {
+            @Override
+            public boolean retain(byte[] record) {
+                return false;
+            }
+        }));
+        assertEquals(0, mFile.length());
+    }
+
+    private static List<byte[]> createRecords(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> records = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[1 + random.nextInt(5000)];
+            random.nextBytes(record);
+            // The first byte tells the records apart
+            record[0] = (byte) i;
+            records.add(record);
+        }
+        return records;
+    }
+
+    private void setLength(long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void assertRecords(List<byte[]> expected, List<byte[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue("record " + i, Arrays.equals(expected.get(i), actual.get(i)));
+        }
+    }
+}
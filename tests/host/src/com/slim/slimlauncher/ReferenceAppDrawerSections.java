@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.slim.slimlauncher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The grouping AppDrawerListAdapter.populateByCharacter did before {@link AppDrawerSections},
+ * kept to check the new grouping against and to benchmark it. Like the original it takes the
+ * titles of the first remaining section out of a copy of the list and recurses on the rest.
+ */
+final class ReferenceAppDrawerSections {
+
+    static final class Section {
+        final char sectionChar;
+        final ArrayList<CharSequence> titles;
+
+        Section(char sectionChar, ArrayList<CharSequence> titles) {
+            this.sectionChar = sectionChar;
+            this.titles = titles;
+        }
+    }
+
+    private ReferenceAppDrawerSections() {
+    }
+
+    static ArrayList<Section> build(List<? extends CharSequence> titles, boolean singleSection) {
+        ArrayList<Section> sections = new ArrayList<Section>();
+        populateByCharacter(new ArrayList<CharSequence>(titles), singleSection, sections);
+        return sections;
+    }
+
+    private static void populateByCharacter(ArrayList<CharSequence> info, boolean singleSection,
+            ArrayList<Section> sections) {
+        if (info == null || info.size() <= 0) {
+            return;
+        }
+
+        // Create a clone of the titles to preserve data
+        ArrayList<CharSequence> tempInfo = new ArrayList<CharSequence>(info.size());
+        for (CharSequence i : info) {
+            tempInfo.add(i);
+        }
+
+        ArrayList<CharSequence> appInfos = new ArrayList<CharSequence>();
+
+        // get starting character
+        boolean isSpecial = false;
+        char startChar = tempInfo.get(0).toString().toUpperCase().charAt(0);
+        if (!Character.isLetter(startChar)) {
+            isSpecial = true;
+        }
+
+        if (singleSection) {
+            appInfos.addAll(tempInfo);
+        } else {
+            for (CharSequence info1 : tempInfo) {
+                char newChar = info1.toString().toUpperCase().charAt(0);
+                if (newChar == startChar) {
+                    appInfos.add(info1);
+                } else if (isSpecial && !Character.isLetter(newChar)) {
+                    appInfos.add(info1);
+                }
+            }
+        }
+
+        if (singleSection) {
+            sections.add(new Section(' ', appInfos));
+        } else if (isSpecial) {
+            sections.add(new Section('#', appInfos));
+        } else {
+            sections.add(new Section(startChar, appInfos));
+        }
+
+        for (CharSequence remove : appInfos) {
+            tempInfo.remove(remove);
+        }
+        populateByCharacter(tempInfo, singleSection, sections);
+    }
+}
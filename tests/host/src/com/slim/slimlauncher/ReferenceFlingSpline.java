@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher;
+
+/**
+ * The fling math as LauncherScroller computed it before it moved to {@link FlingSpline}, kept
+ * verbatim to check and benchmark the new code against.
+ */
+final class ReferenceFlingSpline {
+    private static float DECELERATION_RATE = (float) (Math.log(0.78) / Math.log(0.9));
+    private static final float INFLEXION = 0.35f; // Tension lines cross at (INFLEXION, 1)
+    private static final float START_TENSION = 0.5f;
+    private static final float END_TENSION = 1.0f;
+    private static final float P1 = START_TENSION * INFLEXION;
+    private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+
+    private static final int NB_SAMPLES = 100;
+    private static final float[] SPLINE_POSITION = new float[NB_SAMPLES + 1];
+    private static final float[] SPLINE_TIME = new float[NB_SAMPLES + 1];
+
+    static {
+        float x_min = 0.0f;
+        float y_min = 0.0f;
+        for (int i = 0; i < NB_SAMPLES; i++) {
+            final float alpha = (float) i / NB_SAMPLES;
+
+            float x_max = 1.0f;
+            float x, tx, coef;
+            while (true) {
+                x = x_min + (x_max - x_min) / 2.0f;
+                coef = 3.0f * x * (1.0f - x);
+                tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                if (Math.abs(tx - alpha) < 1E-5) break;
+                if (tx > alpha) x_max = x;
+                else x_min = x;
+            }
+            SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+
+            float y_max = 1.0f;
+            float y, dy;
+            while (true) {
+                y = y_min + (y_max - y_min) / 2.0f;
+                coef = 3.0f * y * (1.0f - y);
+                dy = coef * ((1.0f - y) * START_TENSION + y) + y * y * y;
+                if (Math.abs(dy - alpha) < 1E-5) break;
+                if (dy > alpha) y_max = y;
+                else y_min = y;
+            }
+            SPLINE_TIME[i] = coef * ((1.0f - y) * P1 + y * P2) + y * y * y;
+        }
+        SPLINE_POSITION[NB_SAMPLES] = SPLINE_TIME[NB_SAMPLES] = 1.0f;
+
+        // This controls the viscous fluid effect (how much of it)
+        sViscousFluidScale = 8.0f;
+        // must be set to 1.0 (used in viscousFluid())
+        sViscousFluidNormalize = 1.0f;
+        sViscousFluidNormalize = 1.0f / viscousFluid(1.0f);
+    }
+
+    private static float sViscousFluidScale;
+    private static float sViscousFluidNormalize;
+
+    private ReferenceFlingSpline() {
+    }
+
+    static float getDistanceCoef(float t) {
+        final int index = (int) (NB_SAMPLES * t);
+        float distanceCoef = 1.f;
+        if (index < NB_SAMPLES) {
+            final float t_inf = (float) index / NB_SAMPLES;
+            final float t_sup = (float) (index + 1) / NB_SAMPLES;
+            final float d_inf = SPLINE_POSITION[index];
+            final float d_sup = SPLINE_POSITION[index + 1];
+            final float velocityCoef = (d_sup - d_inf) / (t_sup - t_inf);
+            distanceCoef = d_inf + (t - t_inf) * velocityCoef;
+        }
+        return distanceCoef;
+    }
+
+    static float getVelocityCoef(float t) {
+        final int index = (int) (NB_SAMPLES * t);
+        float velocityCoef = 0.f;
+        if (index < NB_SAMPLES) {
+            final float t_inf = (float) index / NB_SAMPLES;
+            final float t_sup = (float) (index + 1) / NB_SAMPLES;
+            final float d_inf = SPLINE_POSITION[index];
+            final float d_sup = SPLINE_POSITION[index + 1];
+            velocityCoef = (d_sup - d_inf) / (t_sup - t_inf);
+        }
+        return velocityCoef;
+    }
+
+    private static double getSplineDeceleration(float velocity, float friction,
+            float physicalCoeff) {
+        return Math.log(INFLEXION * Math.abs(velocity) / (friction * physicalCoeff));
+    }
+
+    static int getSplineFlingDuration(float velocity, float friction, float physicalCoeff) {
+        final double l = getSplineDeceleration(velocity, friction, physicalCoeff);
+        final double decelMinusOne = DECELERATION_RATE - 1.0;
+        return (int) (1000.0 * Math.exp(l / decelMinusOne));
+    }
+
+    static double getSplineFlingDistance(float velocity, float friction, float physicalCoeff) {
+        final double l = getSplineDeceleration(velocity, friction, physicalCoeff);
+        final double decelMinusOne = DECELERATION_RATE - 1.0;
+        return friction * physicalCoeff * Math.exp(DECELERATION_RATE / decelMinusOne * l);
+    }
+
+    static float viscousFluid(float x)
+    {
+        x *= sViscousFluidScale;
+        if (x < 1.0f) {
+            x -= (1.0f - (float)Math.exp(-x));
+        } else {
+            float start = 0.36787944117f;   // 1/e == exp(-1)
+            x = 1.0f - (float)Math.exp(1.0f - x);
+            x = start + x * (1.0f - start);
+        }
+        x *= sViscousFluidNormalize;
+        return x;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import android.os.Bundle;
+import android.test.InstrumentationTestRunner;
+
+/**
+ * Installs the synthetic apps of {@link LauncherBindLatencyStressTest} before the launcher
+ * application is created, so that the model sees them from its first load.
+ */
+public class BindLatencyTestRunner extends InstrumentationTestRunner {
+    static final int APP_COUNT = 1000;
+
+    @Override
+    public void onCreate(Bundle arguments) {
+        SyntheticLauncherApps.install(getTargetContext(), APP_COUNT);
+        super.onCreate(arguments);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Collects the latencies measured by the stress tests and writes them in the JSON format of
+ * the host benchmarks (tests/benchmarks), so that the same scripts can compare both across
+ * builds.
+ */
+class LatencyResults {
+    private final String mDataset;
+    private final ArrayList<String> mNames = new ArrayList<String>();
+    private final ArrayList<Integer> mReps = new ArrayList<Integer>();
+    private final ArrayList<double[]> mNanosPerOp = new ArrayList<double[]>();
+
+    LatencyResults(String dataset) {
+        mDataset = dataset;
+    }
+
+    /**
+     * @param reps The number of operations every run timed, eg. the number of packages updated.
+     * @param nanos The time of every run.
+     */
+    void add(String name, int reps, long[] nanos) {
+        double[] nanosPerOp = new double[nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanosPerOp[i] = (double) nanos[i] / reps;
+        }
+        Arrays.sort(nanosPerOp);
+        mNames.add(name);
+        mReps.add(reps);
+        mNanosPerOp.add(nanosPerOp);
+    }
+
+    private static double median(double[] sorted) {
+        final int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    void log(String tag) {
+        for (int i = 0; i < mNames.size(); i++) {
+            final double[] nanosPerOp = mNanosPerOp.get(i);
+            Log.d(tag, String.format("%-20s %s: median %.2f ms, min %.2f ms, max %.2f ms",
+                    mNames.get(i), mDataset, median(nanosPerOp) / 1e6, nanosPerOp[0] / 1e6,
+                    nanosPerOp[nanosPerOp.length - 1] / 1e6));
+        }
+    }
+
+    /**
+     * Writes the results to fileName in the external files directory of the launcher, or its
+     * files directory if there is no external storage.
+     *
+     * @return The file written.
+     */
+    File write(Context context, String fileName) throws IOException {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        final File file = new File(dir, fileName);
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("{");
+            out.println("  \"vm\": " + quote(System.getProperty("java.vm.name") + " "
+                    + System.getProperty("java.vm.version")) + ",");
+            out.println("  \"os\": " + quote("Android " + Build.VERSION.RELEASE + " "
+                    + Build.MODEL) + ",");
+            out.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            out.println("  \"timestamp\": " + System.currentTimeMillis() + ",");
+            out.println("  \"results\": [");
+            for (int i = 0; i < mNames.size(); i++) {
+                final double[] nanosPerOp = mNanosPerOp.get(i);
+                out.print("    {\"name\": " + quote(mNames.get(i))
+                        + ", \"dataset\": " + quote(mDataset)
+                        + ", \"reps\": " + mReps.get(i)
+                        + ", \"median\": " + median(nanosPerOp)
+                        + ", \"mean\": " + mean(nanosPerOp)
+                        + ", \"min\": " + nanosPerOp[0]
+                        + ", \"max\": " + nanosPerOp[nanosPerOp.length - 1]
+                        + ", \"nsPerOp\": [");
+                for (int j = 0; j < nanosPerOp.length; j++) {
+                    out.print((j > 0 ? ", " : "") + nanosPerOp[j]);
+                }
+                out.println("]}" + (i < mNames.size() - 1 ? "," : ""));
+            }
+            out.println("  ]");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import com.slim.slimlauncher.AppsCustomizePagedView;
+import com.slim.slimlauncher.InstallShortcutReceiver;
+import com.slim.slimlauncher.Launcher;
+import com.slim.slimlauncher.LauncherModel;
+import com.slim.slimlauncher.PagedView;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the launcher with {@link BindLatencyTestRunner#APP_COUNT} synthetic apps, fills the
+ * workspace with shortcuts to them through {@link InstallShortcutReceiver} and times:
+ *
+ *   installShortcuts      receiving the shortcuts until they are bound, per shortcut
+ *   bindWorkspace         startLoader until finishBindingItems
+ *   bindAllApps           startLoader until bindAllApplications
+ *   openDrawer            showAllApps until the next frame is drawn
+ *   packageUpdate         an update of a package until it is bound, per package
+ *   packageUpdateUi       the main thread time spent on a burst of updates, per package
+ *   packageRemove         removing the packages until the model is done, per package
+ *
+ * The results are logged and written as bind_latency.json to the launcher's external files
+ * directory, in the format of the host benchmarks. Needs the BindLatencyTestRunner:
+ *
+ *   adb shell am instrument -w \
+ *       com.slim.slimlauncher.stress/.BindLatencyTestRunner
+ */
+public class LauncherBindLatencyStressTest extends ActivityInstrumentationTestCase2<Launcher> {
+
+    private static final int SHORTCUT_COUNT = 1000;
+    private static final int LOADER_RUNS = 5;
+    private static final int DRAWER_RUNS = 10;
+    private static final int PACKAGE_UPDATE_RUNS = 5;
+    private static final int PACKAGES_PER_UPDATE_RUN = 50;
+    private static final long TIMEOUT_MS = 120 * 1000;
+    private static final int WAIT_TIME_MS = 500;
+    private static final String RESULTS_FILE_NAME = "bind_latency.json";
+    private static final String LOG_TAG = "LauncherBindLatencyStressTest";
+
+    private SyntheticLauncherApps mApps;
+
+    public LauncherBindLatencyStressTest() {
+        super(Launcher.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mApps = SyntheticLauncherApps.getInstalled();
+        assertNotNull("Run with " + BindLatencyTestRunner.class.getName(), mApps);
+        mApps.setInstalled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Launcher.setBindListener(null);
+        // Removes the shortcuts if the test didn't get to it
+        mApps.setInstalled(false);
+        getActivity().getModel().waitForWorkerIdle(TIMEOUT_MS);
+        super.tearDown();
+    }
+
+    public void testBindLatency() throws Throwable {
+        final Launcher launcher = getActivity();
+        UiThreadAllocations.waitForWorkspace(getInstrumentation(), launcher);
+
+        final LatencyResults results = new LatencyResults(mApps.getCount() + " apps, "
+                + SHORTCUT_COUNT + " shortcuts");
+        results.add("installShortcuts", SHORTCUT_COUNT, new long[] { installShortcuts() });
+
+        final long[] workspaceNanos = new long[LOADER_RUNS];
+        final long[] allAppsNanos = new long[LOADER_RUNS];
+        for (int i = 0; i < LOADER_RUNS; i++) {
+            reload(launcher, i, workspaceNanos, allAppsNanos);
+        }
+        results.add("bindWorkspace", 1, workspaceNanos);
+        results.add("bindAllApps", 1, allAppsNanos);
+
+        final long[] drawerNanos = new long[DRAWER_RUNS];
+        for (int i = 0; i < DRAWER_RUNS; i++) {
+            drawerNanos[i] = openDrawer(launcher);
+        }
+        results.add("openDrawer", 1, drawerNanos);
+
+        final long[] updateNanos = new long[PACKAGE_UPDATE_RUNS];
+        final long[] updateUiNanos = new long[PACKAGE_UPDATE_RUNS];
+        final UiThreadTimer uiTimer = new UiThreadTimer();
+        for (int i = 0; i < PACKAGE_UPDATE_RUNS; i++) {
+            uiTimer.start();
+            final long start = System.nanoTime();
+            for (int j = 0; j < PACKAGES_PER_UPDATE_RUN; j++) {
+                mApps.notifyPackageChanged((i * PACKAGES_PER_UPDATE_RUN + j) % mApps.getCount());
+            }
+            waitForModel();
+            updateNanos[i] = System.nanoTime() - start;
+            updateUiNanos[i] = uiTimer.stop();
+            Log.d(LOG_TAG, "Update burst " + i + " dispatched " + uiTimer.getMessageCount()
+                    + " main thread messages");
+        }
+        results.add("packageUpdate", PACKAGES_PER_UPDATE_RUN, updateNanos);
+        results.add("packageUpdateUi", PACKAGES_PER_UPDATE_RUN, updateUiNanos);
+
+        final long start = System.nanoTime();
+        mApps.setInstalled(false);
+        waitForModel();
+        results.add("packageRemove", mApps.getCount(), new long[] { System.nanoTime() - start });
+
+        results.log(LOG_TAG);
+        final File file = results.write(getInstrumentation().getTargetContext(),
+                RESULTS_FILE_NAME);
+        Log.d(LOG_TAG, "Results written to " + file);
+    }
+
+    /**
+     * Sends an INSTALL_SHORTCUT broadcast for every shortcut to the receiver, on the main thread
+     * like the system would, and returns the time until they are all bound.
+     */
+    private long installShortcuts() throws Throwable {
+        final Context context = getInstrumentation().getTargetContext();
+        final Bitmap icon = Bitmap.createBitmap(48, 48, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(Color.GRAY);
+        final InstallShortcutReceiver receiver = new InstallShortcutReceiver();
+
+        final long start = System.nanoTime();
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < SHORTCUT_COUNT; i++) {
+                    receiver.onReceive(context,
+                            mApps.makeInstallShortcutIntent(i % mApps.getCount(), icon));
+                }
+            }
+        });
+        waitForModel();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Reloads the model like a configuration change would and records the time until the
+     * workspace and the apps are bound.
+     */
+    private void reload(final Launcher launcher, int run, long[] workspaceNanos,
+            long[] allAppsNanos) throws Throwable {
+        final CountDownLatch workspaceBound = new CountDownLatch(1);
+        final CountDownLatch allAppsBound = new CountDownLatch(1);
+        final long[] ends = new long[2];
+        final int[] appCount = new int[1];
+        Launcher.setBindListener(new Launcher.BindListener() {
+            public void onFinishBindingItems() {
+                ends[0] = System.nanoTime();
+                workspaceBound.countDown();
+            }
+
+            public void onBindAllApplications(int count) {
+                ends[1] = System.nanoTime();
+                appCount[0] = count;
+                allAppsBound.countDown();
+            }
+        });
+
+        final long[] start = new long[1];
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                final LauncherModel model = launcher.getModel();
+                model.resetLoadedState(true, true);
+                start[0] = System.nanoTime();
+                model.startLoader(false, PagedView.INVALID_RESTORE_PAGE);
+            }
+        });
+        assertTrue("Workspace wasn't bound",
+                workspaceBound.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue("Apps weren't bound", allAppsBound.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        Launcher.setBindListener(null);
+        assertTrue("Only " + appCount[0] + " apps were bound", appCount[0] >= mApps.getCount());
+
+        workspaceNanos[run] = ends[0] - start[0];
+        allAppsNanos[run] = ends[1] - start[0];
+        getInstrumentation().waitForIdleSync();
+        SystemClock.sleep(WAIT_TIME_MS);
+    }
+
+    /**
+     * Opens the drawer without animation, returns the time until the next frame is drawn and
+     * goes back to the workspace.
+     */
+    private long openDrawer(final Launcher launcher) throws Throwable {
+        final View root = launcher.getWindow().getDecorView();
+        final CountDownLatch drawn = new CountDownLatch(1);
+        final long[] times = new long[2];
+        final ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            public void onDraw() {
+                if (times[0] != 0 && times[1] == 0) {
+                    times[1] = System.nanoTime();
+                    drawn.countDown();
+                }
+            }
+        };
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                root.getViewTreeObserver().addOnDrawListener(listener);
+                times[0] = System.nanoTime();
+                launcher.showAllApps(false, AppsCustomizePagedView.ContentType.Applications,
+                        true);
+            }
+        });
+        assertTrue("Drawer wasn't drawn", drawn.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                root.getViewTreeObserver().removeOnDrawListener(listener);
+                launcher.onBackPressed();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        SystemClock.sleep(WAIT_TIME_MS);
+        return times[1] - times[0];
+    }
+
+    /**
+     * Waits until the model processed what was queued so far and the main thread bound it.
+     */
+    private void waitForModel() throws InterruptedException {
+        assertTrue("Model didn't finish", getActivity().getModel().waitForWorkerIdle(TIMEOUT_MS));
+        getInstrumentation().waitForIdleSync();
+    }
+}
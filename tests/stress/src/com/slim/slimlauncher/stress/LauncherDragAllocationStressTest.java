@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import com.android.gallery3d.common.BitmapPool;
+import com.slim.slimlauncher.BubbleTextView;
+import com.slim.slimlauncher.CellLayout;
+import com.slim.slimlauncher.DragSource;
+import com.slim.slimlauncher.DropTarget.DragObject;
+import com.slim.slimlauncher.Launcher;
+import com.slim.slimlauncher.ShortcutAndWidgetContainer;
+import com.slim.slimlauncher.Workspace;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.View;
+
+/**
+ * Starts and cancels many drags of a workspace icon and checks that, once the drag bitmap pool
+ * and the drag view are warm, a drag takes all its bitmaps from the pool instead of allocating
+ * them. The bytes the main thread allocates are logged and checked too, but they only include
+ * the bitmaps' pixels on versions that keep them on the Java heap.
+ */
+public class LauncherDragAllocationStressTest extends ActivityInstrumentationTestCase2<Launcher> {
+
+    private static final int WARM_UP_DRAGS = 5;
+    private static final int NUM_DRAGS = 100;
+    private static final String LOG_TAG = "LauncherDragAllocationStressTest";
+
+    private final DragSource mSource = new DragSource() {
+        public boolean supportsFlingToDelete() {
+            return false;
+        }
+
+        public boolean supportsAppInfoDropTarget() {
+            return false;
+        }
+
+        public boolean supportsDeleteDropTarget() {
+            return false;
+        }
+
+        public float getIntrinsicIconScaleFactor() {
+            return 1f;
+        }
+
+        public void onFlingToDeleteCompleted() {
+        }
+
+        public void onDropCompleted(View target, DragObject d, boolean isFlingToDelete,
+                boolean success) {
+        }
+    };
+
+    public LauncherDragAllocationStressTest() {
+        super(Launcher.class);
+    }
+
+    public void testDragAllocations() throws Throwable {
+        final Launcher launcher = getActivity();
+        UiThreadAllocations.waitForWorkspace(getInstrumentation(), launcher);
+
+        final BubbleTextView icon = findIcon(launcher.getWorkspace());
+        assertNotNull("No icon on the workspace to drag", icon);
+
+        final BitmapPool pool = launcher.getDragController().getBitmapPool();
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < WARM_UP_DRAGS; i++) {
+                    drag(launcher, icon);
+                }
+            }
+        });
+
+        final int hits = pool.getHitCount();
+        final int misses = pool.getMissCount();
+        final UiThreadAllocations allocations =
+                new UiThreadAllocations(getInstrumentation(), launcher.getWorkspace());
+        allocations.start();
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < NUM_DRAGS; i++) {
+                    drag(launcher, icon);
+                }
+            }
+        });
+        allocations.stop();
+        final int dragHits = pool.getHitCount() - hits;
+        final int dragMisses = pool.getMissCount() - misses;
+
+        // Every drag takes at least the drag bitmap from the pool
+        Log.d(LOG_TAG, "Pool hits " + dragHits + ", misses " + dragMisses
+                + " over " + NUM_DRAGS + " drags");
+        assertEquals("Drags allocated " + dragMisses + " bitmaps", 0, dragMisses);
+        assertTrue("Drags took " + dragHits + " bitmaps from the pool", dragHits >= NUM_DRAGS);
+
+        // A drag bitmap is at least as large as the icon itself
+        final long iconBytes = (long) icon.getWidth() * icon.getHeight() * 4;
+        final long bytesPerDrag = allocations.getBytes() / NUM_DRAGS;
+        Log.d(LOG_TAG, "Allocated " + bytesPerDrag + " bytes per drag, icon is "
+                + iconBytes + " bytes");
+        assertTrue("Drags allocate " + bytesPerDrag + " bytes each",
+                bytesPerDrag < iconBytes / 2);
+    }
+
+    private void drag(Launcher launcher, BubbleTextView icon) {
+        launcher.getWorkspace().beginDragShared(icon, mSource);
+        launcher.getDragController().cancelDrag();
+    }
+
+    private static BubbleTextView findIcon(Workspace workspace) {
+        for (int i = 0; i < workspace.getChildCount(); i++) {
+            ShortcutAndWidgetContainer container =
+                    ((CellLayout) workspace.getChildAt(i)).getShortcutsAndWidgets();
+            for (int j = 0; j < container.getChildCount(); j++) {
+                View child = container.getChildAt(j);
+                if (child instanceof BubbleTextView && child.getWidth() > 0) {
+                    return (BubbleTextView) child;
+                }
+            }
+        }
+        return null;
+    }
+}
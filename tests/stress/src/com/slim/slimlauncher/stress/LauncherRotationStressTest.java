@@ -14,19 +14,17 @@
  * limitations under the License.
  */
 
-package com.android.launcher3.stress;
-
-
-import com.android.launcher3.Launcher;
+package com.slim.slimlauncher.stress;
 
 import android.content.pm.ActivityInfo;
 import android.os.SystemClock;
 import android.test.ActivityInstrumentationTestCase2;
 import android.test.RepetitiveTest;
-import android.util.Log;
+
+import com.slim.slimlauncher.Launcher;
 
 /**
- * Run rotation stress test using Launcher2 for 50 iterations.
+ * Run rotation stress test using SlimLauncher for 50 iterations.
  */
 public class LauncherRotationStressTest extends ActivityInstrumentationTestCase2<Launcher> {
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import com.slim.slimlauncher.Launcher;
+import com.slim.slimlauncher.Workspace;
+
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+/**
+ * Swipes between workspace pages and in and out of overview mode, and checks how much the UI
+ * thread allocates per drawn frame while doing so.
+ */
+public class LauncherScrollAllocationStressTest extends ActivityInstrumentationTestCase2<Launcher> {
+
+    private static final int NUM_SWIPES = 100;
+    private static final int OVERVIEW_EVERY = 10;
+    private static final int SWIPE_TIME_MS = 400;
+    private static final int WAIT_TIME_MS = 500;
+    private static final long MAX_BYTES_PER_FRAME = 2048;
+    private static final String LOG_TAG = "LauncherScrollAllocationStressTest";
+
+    public LauncherScrollAllocationStressTest() {
+        super(Launcher.class);
+    }
+
+    public void testScrollAllocations() throws Throwable {
+        final Launcher launcher = getActivity();
+        UiThreadAllocations.waitForWorkspace(getInstrumentation(), launcher);
+
+        final Workspace workspace = launcher.getWorkspace();
+        assertTrue("Need at least two pages to swipe", workspace.getChildCount() > 1);
+
+        // Warm up once so that the first transition's setup isn't counted
+        swipe(workspace, true);
+        toggleOverview(workspace);
+        toggleOverview(workspace);
+
+        final UiThreadAllocations allocations =
+                new UiThreadAllocations(getInstrumentation(), workspace);
+        allocations.start();
+
+        boolean right = false;
+        for (int i = 0; i < NUM_SWIPES; i++) {
+            if (i % 2 == 0) {
+                right = !right;
+            }
+            swipe(workspace, right);
+            if (i % OVERVIEW_EVERY == 0) {
+                toggleOverview(workspace);
+            }
+        }
+        if (workspace.isInOverviewMode()) {
+            toggleOverview(workspace);
+        }
+
+        allocations.stop();
+
+        assertTrue("No frames were drawn", allocations.getFrameCount() > 0);
+        final long bytesPerFrame = allocations.getBytesPerFrame();
+        Log.d(LOG_TAG, "Allocated " + allocations.getBytes() + " bytes over "
+                + allocations.getFrameCount() + " frames, " + bytesPerFrame + " bytes per frame");
+        assertTrue("Scrolling allocates " + bytesPerFrame + " bytes per frame",
+                bytesPerFrame < MAX_BYTES_PER_FRAME);
+    }
+
+    private void swipe(final Workspace workspace, final boolean right) throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                if (right) {
+                    workspace.scrollRight();
+                } else {
+                    workspace.scrollLeft();
+                }
+            }
+        });
+        SystemClock.sleep(SWIPE_TIME_MS);
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void toggleOverview(final Workspace workspace) throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                if (workspace.isInOverviewMode()) {
+                    workspace.exitOverviewMode(true);
+                } else {
+                    workspace.enterOverviewMode(true);
+                }
+            }
+        });
+        SystemClock.sleep(WAIT_TIME_MS);
+        getInstrumentation().waitForIdleSync();
+    }
+}
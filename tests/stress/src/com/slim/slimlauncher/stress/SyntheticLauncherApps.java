@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import com.slim.slimlauncher.compat.LauncherActivityInfoCompat;
+import com.slim.slimlauncher.compat.LauncherAppsCompat;
+import com.slim.slimlauncher.compat.UserHandleCompat;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.PaintDrawable;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A {@link LauncherAppsCompat} that adds synthetic launcher activities, one per package, to the
+ * apps of the device, so that the model can be loaded with a large app set without installing
+ * anything. The synthetic packages can be uninstalled and reinstalled, which is reported to
+ * the registered callbacks like a real package change.
+ */
+public class SyntheticLauncherApps extends LauncherAppsCompat {
+    static final String PACKAGE_PREFIX = "com.slim.slimlauncher.synthetic.app";
+    private static final String CLASS_NAME = "MainActivity";
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "or", "pu", "ra", "si", "te", "ul", "va", "xe", "yo", "zu",
+        "bri", "cor", "dan", "fel", "gro", "hap", "jin", "qua", "wex", "äl", "ök", "éto",
+    };
+
+    private static SyntheticLauncherApps sInstalled;
+
+    private final LauncherAppsCompat mBase;
+    private final UserHandleCompat mUser = UserHandleCompat.myUserHandle();
+    private final ArrayList<SyntheticActivityInfo> mActivities =
+            new ArrayList<SyntheticActivityInfo>();
+    private final HashMap<String, SyntheticActivityInfo> mActivitiesByPackage =
+            new HashMap<String, SyntheticActivityInfo>();
+    private final ArrayList<OnAppsChangedCallbackCompat> mCallbacks =
+            new ArrayList<OnAppsChangedCallbackCompat>();
+    private volatile boolean mInstalled = true;
+
+    private static class SyntheticActivityInfo extends LauncherActivityInfoCompat {
+        private final ComponentName mComponent;
+        private final UserHandleCompat mUser;
+        private final String mLabel;
+        private final int mColor;
+        private final long mFirstInstallTime;
+
+        SyntheticActivityInfo(ComponentName component, UserHandleCompat user, String label,
+                int color, long firstInstallTime) {
+            mComponent = component;
+            mUser = user;
+            mLabel = label;
+            mColor = color;
+            mFirstInstallTime = firstInstallTime;
+        }
+
+        @Override
+        public ComponentName getComponentName() {
+            return mComponent;
+        }
+
+        @Override
+        public UserHandleCompat getUser() {
+            return mUser;
+        }
+
+        @Override
+        public CharSequence getLabel() {
+            return mLabel;
+        }
+
+        @Override
+        public Drawable getIcon(int density) {
+            return new PaintDrawable(mColor);
+        }
+
+        @Override
+        public ApplicationInfo getApplicationInfo() {
+            ApplicationInfo info = new ApplicationInfo();
+            info.packageName = mComponent.getPackageName();
+            info.flags = ApplicationInfo.FLAG_INSTALLED;
+            info.enabled = true;
+            return info;
+        }
+
+        @Override
+        public long getFirstInstallTime() {
+            return mFirstInstallTime;
+        }
+
+        @Override
+        public Drawable getBadgedIcon(int density) {
+            return getIcon(density);
+        }
+    }
+
+    private SyntheticLauncherApps(LauncherAppsCompat base, int count, long seed) {
+        mBase = base;
+        final Random random = new Random(seed);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            final String packageName = PACKAGE_PREFIX + i;
+            StringBuilder label = new StringBuilder();
+            final int syllables = 2 + random.nextInt(4);
+            for (int j = 0; j < syllables; j++) {
+                label.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            label.setCharAt(0, Character.toUpperCase(label.charAt(0)));
+            SyntheticActivityInfo info = new SyntheticActivityInfo(
+                    new ComponentName(packageName, packageName + "." + CLASS_NAME), mUser,
+                    label.toString(),
+                    Color.HSVToColor(new float[] { random.nextInt(360), 0.6f, 0.8f }),
+                    now - random.nextInt(365) * 24 * 3600 * 1000L);
+            mActivities.add(info);
+            mActivitiesByPackage.put(packageName, info);
+        }
+    }
+
+    /**
+     * Adds count synthetic apps to the apps of the device. Has to be called before the launcher
+     * model is created, see {@link BindLatencyTestRunner}.
+     */
+    static SyntheticLauncherApps install(Context context, int count) {
+        sInstalled = new SyntheticLauncherApps(LauncherAppsCompat.getInstance(context), count,
+                count);
+        LauncherAppsCompat.setInstance(sInstalled);
+        return sInstalled;
+    }
+
+    /**
+     * Returns the synthetic apps, or null if they weren't installed in this process.
+     */
+    static SyntheticLauncherApps getInstalled() {
+        return sInstalled;
+    }
+
+    int getCount() {
+        return mActivities.size();
+    }
+
+    String getPackageName(int i) {
+        return mActivities.get(i).getComponentName().getPackageName();
+    }
+
+    /**
+     * Returns an INSTALL_SHORTCUT broadcast for a shortcut to the app i, as an app would send it.
+     */
+    Intent makeInstallShortcutIntent(int i, Bitmap icon) {
+        final SyntheticActivityInfo info = mActivities.get(i);
+        Intent launchIntent = new Intent(Intent.ACTION_MAIN);
+        launchIntent.setComponent(info.getComponentName());
+        launchIntent.putExtra("shortcut", i);
+
+        Intent data = new Intent("com.android.launcher.action.INSTALL_SHORTCUT");
+        data.putExtra(Intent.EXTRA_SHORTCUT_INTENT, launchIntent);
+        data.putExtra(Intent.EXTRA_SHORTCUT_NAME, info.getLabel() + " " + i);
+        data.putExtra(Intent.EXTRA_SHORTCUT_ICON, icon);
+        return data;
+    }
+
+    /**
+     * Reports the synthetic package i as updated to the registered callbacks.
+     */
+    void notifyPackageChanged(int i) {
+        for (OnAppsChangedCallbackCompat callback : getCallbacks()) {
+            callback.onPackageChanged(getPackageName(i), mUser);
+        }
+    }
+
+    /**
+     * Uninstalls or reinstalls all the synthetic packages and reports it to the registered
+     * callbacks.
+     */
+    void setInstalled(boolean installed) {
+        if (mInstalled == installed) {
+            return;
+        }
+        mInstalled = installed;
+        for (OnAppsChangedCallbackCompat callback : getCallbacks()) {
+            for (int i = 0; i < mActivities.size(); i++) {
+                if (installed) {
+                    callback.onPackageAdded(getPackageName(i), mUser);
+                } else {
+                    callback.onPackageRemoved(getPackageName(i), mUser);
+                }
+            }
+        }
+    }
+
+    private OnAppsChangedCallbackCompat[] getCallbacks() {
+        synchronized (mCallbacks) {
+            return mCallbacks.toArray(new OnAppsChangedCallbackCompat[mCallbacks.size()]);
+        }
+    }
+
+    private SyntheticActivityInfo getSynthetic(String packageName, UserHandleCompat user) {
+        if (packageName == null || !packageName.startsWith(PACKAGE_PREFIX)
+                || !mUser.equals(user)) {
+            return null;
+        }
+        return mActivitiesByPackage.get(packageName);
+    }
+
+    private boolean isSynthetic(String packageName) {
+        return packageName != null && packageName.startsWith(PACKAGE_PREFIX);
+    }
+
+    @Override
+    public List<LauncherActivityInfoCompat> getActivityList(String packageName,
+            UserHandleCompat user) {
+        if (isSynthetic(packageName)) {
+            List<LauncherActivityInfoCompat> list = new ArrayList<LauncherActivityInfoCompat>(1);
+            SyntheticActivityInfo info = getSynthetic(packageName, user);
+            if (info != null && mInstalled) {
+                list.add(info);
+            }
+            return list;
+        }
+        List<LauncherActivityInfoCompat> list = mBase.getActivityList(packageName, user);
+        if (packageName == null && mInstalled && mUser.equals(user)) {
+            list = new ArrayList<LauncherActivityInfoCompat>(list);
+            list.addAll(mActivities);
+        }
+        return list;
+    }
+
+    @Override
+    public LauncherActivityInfoCompat resolveActivity(Intent intent, UserHandleCompat user) {
+        final ComponentName component = intent.getComponent();
+        final String packageName = component != null ? component.getPackageName()
+                : intent.getPackage();
+        if (isSynthetic(packageName)) {
+            return mInstalled ? getSynthetic(packageName, user) : null;
+        }
+        return mBase.resolveActivity(intent, user);
+    }
+
+    @Override
+    public void startActivityForProfile(ComponentName component, UserHandleCompat user,
+            Rect sourceBounds, Bundle opts) {
+        if (!isSynthetic(component.getPackageName())) {
+            mBase.startActivityForProfile(component, user, sourceBounds, opts);
+        }
+    }
+
+    @Override
+    public void showAppDetailsForProfile(ComponentName component, UserHandleCompat user) {
+        if (!isSynthetic(component.getPackageName())) {
+            mBase.showAppDetailsForProfile(component, user);
+        }
+    }
+
+    @Override
+    public void addOnAppsChangedCallback(OnAppsChangedCallbackCompat listener) {
+        synchronized (mCallbacks) {
+            mCallbacks.add(listener);
+        }
+        mBase.addOnAppsChangedCallback(listener);
+    }
+
+    @Override
+    public void removeOnAppsChangedCallback(OnAppsChangedCallbackCompat listener) {
+        synchronized (mCallbacks) {
+            mCallbacks.remove(listener);
+        }
+        mBase.removeOnAppsChangedCallback(listener);
+    }
+
+    @Override
+    public boolean isPackageEnabledForProfile(String packageName, UserHandleCompat user) {
+        if (isSynthetic(packageName)) {
+            return mInstalled && getSynthetic(packageName, user) != null;
+        }
+        return mBase.isPackageEnabledForProfile(packageName, user);
+    }
+
+    @Override
+    public boolean isActivityEnabledForProfile(ComponentName component, UserHandleCompat user) {
+        if (isSynthetic(component.getPackageName())) {
+            final SyntheticActivityInfo info = getSynthetic(component.getPackageName(), user);
+            return mInstalled && info != null && info.getComponentName().equals(component);
+        }
+        return mBase.isActivityEnabledForProfile(component, user);
+    }
+
+    @Override
+    public boolean isAppEnabled(PackageManager pm, String packageName, int flags) {
+        if (isSynthetic(packageName)) {
+            return mInstalled;
+        }
+        return mBase.isAppEnabled(pm, packageName, flags);
+    }
+}
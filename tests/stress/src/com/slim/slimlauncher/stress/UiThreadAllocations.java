@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import com.slim.slimlauncher.Launcher;
+
+import android.app.Instrumentation;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Counts the bytes the main thread allocates, and the frames view draws, between
+ * {@link #start} and {@link #stop}, for the allocation stress tests.
+ */
+class UiThreadAllocations {
+    private static final int WAIT_TIME_MS = 500;
+
+    private final Instrumentation mInstrumentation;
+    private final View mView;
+
+    // Only touched on the main thread, and read after stop()
+    private int mFrames;
+    private long mBytes;
+
+    private final ViewTreeObserver.OnDrawListener mFrameCounter =
+            new ViewTreeObserver.OnDrawListener() {
+        public void onDraw() {
+            mFrames++;
+        }
+    };
+
+    UiThreadAllocations(Instrumentation instrumentation, View view) {
+        mInstrumentation = instrumentation;
+        mView = view;
+    }
+
+    /**
+     * Waits until launcher has bound the workspace and the main thread is idle.
+     */
+    static void waitForWorkspace(Instrumentation instrumentation, Launcher launcher) {
+        instrumentation.waitForIdleSync();
+        while (launcher.isWorkspaceLoading()) {
+            SystemClock.sleep(WAIT_TIME_MS);
+        }
+        instrumentation.waitForIdleSync();
+    }
+
+    void start() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            public void run() {
+                mFrames = 0;
+                mBytes = 0;
+                mView.getViewTreeObserver().addOnDrawListener(mFrameCounter);
+                Debug.resetThreadAllocSize();
+                Debug.startAllocCounting();
+            }
+        });
+    }
+
+    void stop() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            public void run() {
+                Debug.stopAllocCounting();
+                mBytes = Debug.getThreadAllocSize();
+                mView.getViewTreeObserver().removeOnDrawListener(mFrameCounter);
+            }
+        });
+    }
+
+    long getBytes() {
+        return mBytes;
+    }
+
+    int getFrameCount() {
+        return mFrames;
+    }
+
+    /**
+     * @return The bytes allocated per frame drawn, or all of them if no frame was drawn.
+     */
+    long getBytesPerFrame() {
+        return mBytes / Math.max(1, mFrames);
+    }
+}
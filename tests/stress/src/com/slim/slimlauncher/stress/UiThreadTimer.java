@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 The SlimRoms Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.slim.slimlauncher.stress;
+
+import android.os.Looper;
+import android.util.Printer;
+
+/**
+ * Measures how long the main thread spends dispatching messages, by installing a message
+ * logging printer on the main looper, which is called before and after every message.
+ */
+class UiThreadTimer implements Printer {
+    private long mDispatchStart;
+    private long mBusyNanos;
+    private int mMessages;
+
+    void start() {
+        synchronized (this) {
+            mDispatchStart = 0;
+            mBusyNanos = 0;
+            mMessages = 0;
+        }
+        Looper.getMainLooper().setMessageLogging(this);
+    }
+
+    /**
+     * @return The time the main thread was busy since {@link #start}.
+     */
+    long stop() {
+        Looper.getMainLooper().setMessageLogging(null);
+        synchronized (this) {
+            return mBusyNanos;
+        }
+    }
+
+    synchronized int getMessageCount() {
+        return mMessages;
+    }
+
+    @Override
+    public synchronized void println(String x) {
+        // Looper prints ">>>>> Dispatching to ..." and "<<<<< Finished to ..."
+        if (x.startsWith(">")) {
+            mDispatchStart = System.nanoTime();
+        } else if (x.startsWith("<") && mDispatchStart != 0) {
+            mBusyNanos += System.nanoTime() - mDispatchStart;
+            mDispatchStart = 0;
+            mMessages++;
+        }
+    }
+}